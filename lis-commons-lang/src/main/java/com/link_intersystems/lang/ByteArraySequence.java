@@ -0,0 +1,123 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteSequence} that is backed by a range of a byte array. The array
+ * is not copied, thus changes to the array are visible through the
+ * {@link ByteArraySequence}. {@link #subSequence(int, int)} returns a
+ * {@link ByteArraySequence} that shares the array.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public class ByteArraySequence implements ByteSequence {
+
+	private final byte[] bytes;
+
+	private final int offset;
+
+	private final int length;
+
+	/**
+	 * Constructs a {@link ByteArraySequence} of the whole array.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public ByteArraySequence(byte[] bytes) {
+		this(bytes, 0, bytes == null ? 0 : bytes.length);
+	}
+
+	/**
+	 * Constructs a {@link ByteArraySequence} of length bytes of the array
+	 * beginning at offset.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public ByteArraySequence(byte[] bytes, int offset, int length) {
+		Assert.notNull("bytes", bytes);
+		ByteSequences.checkRange(offset, length, bytes.length);
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public byte byteAt(int index) {
+		ByteSequences.checkIndex(index, length);
+		return bytes[offset + index];
+	}
+
+	public ByteSequence subSequence(int start, int end) {
+		ByteSequences.checkRange(start, end - start, length);
+		return new ByteArraySequence(bytes, offset + start, end - start);
+	}
+
+	@Override
+	public void copyTo(int start, byte[] target, int targetStart, int length) {
+		ByteSequences.checkRange(start, length, this.length);
+		System.arraycopy(bytes, offset + start, target, targetStart, length);
+	}
+
+	@Override
+	public void copyTo(int start, ByteBuffer target, int length) {
+		ByteSequences.checkRange(start, length, this.length);
+		if (target.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		target.put(bytes, offset + start, length);
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = hash64();
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!ByteSequences.isContentComparable(obj)) {
+			return false;
+		}
+		return contentEquals((ByteSequence) obj);
+	}
+
+	/**
+	 * The backing array. It is shared and must not be modified.
+	 */
+	byte[] getArray() {
+		return bytes;
+	}
+
+	/**
+	 * @return the index of the first byte of this {@link ByteArraySequence}
+	 *         in {@link #getArray()}.
+	 */
+	int getOffset() {
+		return offset;
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteSequence} that is backed by a heap, direct or memory-mapped
+ * {@link ByteBuffer}. The sequence consists of the bytes between the
+ * position and the limit of the {@link ByteBuffer} at construction time.
+ * Later changes of the position or limit of the {@link ByteBuffer} don't
+ * affect the {@link ByteBufferSequence}, but changes of its content are
+ * visible. {@link #subSequence(int, int)} returns a {@link ByteBufferSequence}
+ * that shares the content.
+ * <p>
+ * All read operations use absolute indexes or private duplicates of the
+ * {@link ByteBuffer}. Thus a {@link ByteBufferSequence} can be read by
+ * multiple threads concurrently.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public class ByteBufferSequence implements ByteSequence {
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Constructs a {@link ByteBufferSequence} of the remaining bytes of the
+	 * {@link ByteBuffer}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public ByteBufferSequence(ByteBuffer buffer) {
+		Assert.notNull("buffer", buffer);
+		this.buffer = buffer.slice();
+	}
+
+	public int length() {
+		return buffer.limit();
+	}
+
+	public byte byteAt(int index) {
+		return buffer.get(index);
+	}
+
+	public ByteSequence subSequence(int start, int end) {
+		ByteSequences.checkRange(start, end - start, buffer.limit());
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.limit(end);
+		duplicate.position(start);
+		return new ByteBufferSequence(duplicate);
+	}
+
+	@Override
+	public void copyTo(int start, byte[] target, int targetStart, int length) {
+		ByteSequences.checkRange(start, length, buffer.limit());
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(start);
+		duplicate.get(target, targetStart, length);
+	}
+
+	@Override
+	public void copyTo(int start, ByteBuffer target, int length) {
+		ByteSequences.checkRange(start, length, buffer.limit());
+		if (target.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.limit(start + length);
+		duplicate.position(start);
+		target.put(duplicate);
+	}
+
+	/**
+	 * @return a read-only view of the bytes of this {@link ByteBufferSequence}
+	 *         with the position 0 and the limit {@link #length()}.
+	 * @since 1.2.0.6
+	 */
+	public ByteBuffer asByteBuffer() {
+		return buffer.asReadOnlyBuffer();
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = hash64();
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!ByteSequences.isContentComparable(obj)) {
+			return false;
+		}
+		return contentEquals((ByteSequence) obj);
+	}
+
+	/**
+	 * The backing {@link ByteBuffer} with the position 0 and the limit
+	 * {@link #length()}. It is shared and its position and limit must not be
+	 * changed.
+	 */
+	ByteBuffer getBuffer() {
+		return buffer;
+	}
+}
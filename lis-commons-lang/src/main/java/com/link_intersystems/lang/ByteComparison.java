@@ -0,0 +1,241 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The comparison and hash algorithms of {@link ByteSequence}. They process 8
+ * bytes at a time. The words are read through the little endian
+ * {@link ByteBuffer} views of {@link ByteSearch#getWords(ByteSequence)}.
+ * Other {@link ByteSequence}s, like {@link ByteRope}s, are copied chunk by
+ * chunk into a small buffer by their bulk
+ * {@link ByteSequence#copyTo(int, byte[], int, int)}.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+abstract class ByteComparison {
+
+	/*
+	 * Must be a multiple of the hash stripe length.
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+
+	private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+
+	private static final long PRIME64_3 = 0x165667B19E3779F9L;
+
+	private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+
+	private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+	private static final int STRIPE_LENGTH = 32;
+
+	/**
+	 * @return the index of the first byte that differs or the length of the
+	 *         shorter {@link ByteSequence} if it is a prefix of the other or
+	 *         -1 if both {@link ByteSequence}s are equal.
+	 */
+	static int mismatch(ByteSequence byteSequence1, ByteSequence byteSequence2) {
+		int length1 = byteSequence1.length();
+		int length2 = byteSequence2.length();
+		int length = Math.min(length1, length2);
+		if (byteSequence1 != byteSequence2) {
+			ByteBuffer words1 = ByteSearch.getWords(byteSequence1);
+			ByteBuffer words2 = ByteSearch.getWords(byteSequence2);
+			if (words1 != null && words2 != null) {
+				int index = mismatch(words1, words2, length);
+				if (index != -1) {
+					return index;
+				}
+			} else {
+				byte[] chunk1 = new byte[Math.min(CHUNK_SIZE, length)];
+				byte[] chunk2 = new byte[chunk1.length];
+				ByteBuffer chunkWords1 = littleEndian(chunk1);
+				ByteBuffer chunkWords2 = littleEndian(chunk2);
+				for (int start = 0; start < length; start += CHUNK_SIZE) {
+					int count = Math.min(CHUNK_SIZE, length - start);
+					byteSequence1.copyTo(start, chunk1, 0, count);
+					byteSequence2.copyTo(start, chunk2, 0, count);
+					int index = mismatch(chunkWords1, chunkWords2, count);
+					if (index != -1) {
+						return start + index;
+					}
+				}
+			}
+		}
+		return length1 == length2 ? -1 : length;
+	}
+
+	private static int mismatch(ByteBuffer words1, ByteBuffer words2,
+			int length) {
+		int index = 0;
+		for (; index <= length - 8; index += 8) {
+			long difference = words1.getLong(index) ^ words2.getLong(index);
+			if (difference != 0) {
+				return index + (Long.numberOfTrailingZeros(difference) >>> 3);
+			}
+		}
+		for (; index < length; index++) {
+			if (words1.get(index) != words2.get(index)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares the {@link ByteSequence}s lexicographically. The bytes are
+	 * compared as unsigned values.
+	 */
+	static int compare(ByteSequence byteSequence1, ByteSequence byteSequence2) {
+		int index = mismatch(byteSequence1, byteSequence2);
+		if (index == -1) {
+			return 0;
+		}
+		int length1 = byteSequence1.length();
+		int length2 = byteSequence2.length();
+		if (index == length1 || index == length2) {
+			return length1 < length2 ? -1 : 1;
+		}
+		return (byteSequence1.byteAt(index) & 0xFF)
+				- (byteSequence2.byteAt(index) & 0xFF);
+	}
+
+	/**
+	 * @return the 64 bit xxHash (XXH64) with seed 0 of the
+	 *         {@link ByteSequence}.
+	 */
+	static long hash64(ByteSequence byteSequence) {
+		int length = byteSequence.length();
+		Hash hash = new Hash();
+		ByteBuffer words = ByteSearch.getWords(byteSequence);
+		if (words != null) {
+			int stripesEnd = hash.update(words, length);
+			return hash.digest(words, stripesEnd, length);
+		}
+
+		byte[] chunk = new byte[Math.min(CHUNK_SIZE, length)];
+		ByteBuffer chunkWords = littleEndian(chunk);
+		for (int start = 0;; start += CHUNK_SIZE) {
+			int count = Math.min(CHUNK_SIZE, length - start);
+			byteSequence.copyTo(start, chunk, 0, count);
+			int stripesEnd = hash.update(chunkWords, count);
+			if (start + CHUNK_SIZE >= length) {
+				return hash.digest(chunkWords, stripesEnd, length, count);
+			}
+		}
+	}
+
+	private static ByteBuffer littleEndian(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * The state of an XXH64 computation.
+	 */
+	private static class Hash {
+
+		private long v1 = PRIME64_1 + PRIME64_2;
+
+		private long v2 = PRIME64_2;
+
+		private long v3 = 0;
+
+		private long v4 = -PRIME64_1;
+
+		private boolean stripes;
+
+		/**
+		 * Processes all complete stripes of the first count bytes.
+		 *
+		 * @return the index after the last processed stripe.
+		 */
+		public int update(ByteBuffer words, int count) {
+			int index = 0;
+			for (; index <= count - STRIPE_LENGTH; index += STRIPE_LENGTH) {
+				v1 = round(v1, words.getLong(index));
+				v2 = round(v2, words.getLong(index + 8));
+				v3 = round(v3, words.getLong(index + 16));
+				v4 = round(v4, words.getLong(index + 24));
+				stripes = true;
+			}
+			return index;
+		}
+
+		public long digest(ByteBuffer words, int index, int length) {
+			return digest(words, index, length, length);
+		}
+
+		/**
+		 * Processes the bytes from index until count that do not fill a
+		 * stripe and finishes the hash of totalLength bytes.
+		 */
+		public long digest(ByteBuffer words, int index, int totalLength,
+				int count) {
+			long hash;
+			if (stripes) {
+				hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+						+ Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+				hash = mergeRound(hash, v1);
+				hash = mergeRound(hash, v2);
+				hash = mergeRound(hash, v3);
+				hash = mergeRound(hash, v4);
+			} else {
+				hash = PRIME64_5;
+			}
+			hash += totalLength;
+
+			for (; index <= count - 8; index += 8) {
+				hash ^= round(0, words.getLong(index));
+				hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+			}
+			if (index <= count - 4) {
+				hash ^= (words.getInt(index) & 0xFFFFFFFFL) * PRIME64_1;
+				hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+				index += 4;
+			}
+			for (; index < count; index++) {
+				hash ^= (words.get(index) & 0xFF) * PRIME64_5;
+				hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+			}
+
+			hash ^= hash >>> 33;
+			hash *= PRIME64_2;
+			hash ^= hash >>> 29;
+			hash *= PRIME64_3;
+			hash ^= hash >>> 32;
+			return hash;
+		}
+
+		private static long round(long accumulator, long input) {
+			accumulator += input * PRIME64_2;
+			accumulator = Long.rotateLeft(accumulator, 31);
+			return accumulator * PRIME64_1;
+		}
+
+		private static long mergeRound(long accumulator, long value) {
+			accumulator ^= round(0, value);
+			return accumulator * PRIME64_1 + PRIME64_4;
+		}
+	}
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Searches a set of byte patterns in a {@link ByteSequence} in one pass with
+ * the Aho-Corasick algorithm. The patterns are compiled into a deterministic
+ * automaton with a transition table of 256 entries per state, so that every
+ * byte of the searched {@link ByteSequence} costs exactly one table lookup,
+ * independent of the number of patterns. The table needs 1 KB per state and
+ * there are at most as many states as the patterns have bytes in total.
+ * <p>
+ * Matches are reported in the order of their end index. Of the matches that
+ * end at the same index the longest is reported first. Matches of equal
+ * patterns are reported in pattern order.
+ * </p>
+ * <p>
+ * A {@link BytePatternMatcher} is immutable and can be shared between
+ * threads.
+ * </p>
+ *
+ * <pre>
+ * BytePatternMatcher matcher = new BytePatternMatcher(ByteSequences.wrap(&quot;ERROR&quot;.getBytes()),
+ * 		ByteSequences.wrap(&quot;WARN&quot;.getBytes()));
+ * List&lt;Match&gt; matches = matcher.findAll(logFile);
+ * </pre>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public class BytePatternMatcher {
+
+	private static final int ALPHABET_SIZE = 256;
+
+	private final int[] patternLengths;
+
+	private final int[] transitions;
+
+	/*
+	 * The indexes of the patterns that end in a state, longest first, or null
+	 * if no pattern ends in the state.
+	 */
+	private final int[][] outputs;
+
+	/**
+	 * Compiles the patterns.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a pattern is empty.
+	 * @since 1.2.0.6
+	 */
+	public BytePatternMatcher(ByteSequence... patterns) {
+		this(Arrays.asList(patterns));
+	}
+
+	/**
+	 * Compiles the patterns.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a pattern is empty.
+	 * @since 1.2.0.6
+	 */
+	public BytePatternMatcher(List<? extends ByteSequence> patterns) {
+		Assert.notNull("patterns", patterns);
+		patternLengths = new int[patterns.size()];
+		int maxStates = 1;
+		for (int i = 0; i < patternLengths.length; i++) {
+			ByteSequence pattern = patterns.get(i);
+			Assert.notNull("pattern", pattern);
+			if (pattern.length() == 0) {
+				throw new IllegalArgumentException("pattern " + i
+						+ " is empty");
+			}
+			patternLengths[i] = pattern.length();
+			maxStates += pattern.length();
+		}
+
+		int[] trie = new int[maxStates * ALPHABET_SIZE];
+		Arrays.fill(trie, -1);
+		List<List<Integer>> stateOutputs = new ArrayList<List<Integer>>();
+		stateOutputs.add(null);
+		int stateCount = 1;
+		for (int i = 0; i < patternLengths.length; i++) {
+			ByteSequence pattern = patterns.get(i);
+			int state = 0;
+			for (int j = 0; j < pattern.length(); j++) {
+				int transition = state * ALPHABET_SIZE
+						+ (pattern.byteAt(j) & 0xFF);
+				if (trie[transition] == -1) {
+					trie[transition] = stateCount++;
+					stateOutputs.add(null);
+				}
+				state = trie[transition];
+			}
+			List<Integer> output = stateOutputs.get(state);
+			if (output == null) {
+				output = new ArrayList<Integer>();
+				stateOutputs.set(state, output);
+			}
+			output.add(i);
+		}
+
+		transitions = Arrays.copyOf(trie, stateCount * ALPHABET_SIZE);
+		outputs = new int[stateCount][];
+		int[] failures = new int[stateCount];
+		int[] queue = new int[stateCount];
+		int head = 0;
+		int tail = 0;
+		for (int b = 0; b < ALPHABET_SIZE; b++) {
+			int next = transitions[b];
+			if (next == -1) {
+				transitions[b] = 0;
+			} else {
+				failures[next] = 0;
+				queue[tail++] = next;
+			}
+		}
+		outputs[0] = toArray(stateOutputs.get(0), null);
+		while (head < tail) {
+			int state = queue[head++];
+			outputs[state] = toArray(stateOutputs.get(state),
+					outputs[failures[state]]);
+			int failure = failures[state];
+			for (int b = 0; b < ALPHABET_SIZE; b++) {
+				int transition = state * ALPHABET_SIZE + b;
+				int next = transitions[transition];
+				int failureNext = transitions[failure * ALPHABET_SIZE + b];
+				if (next == -1) {
+					transitions[transition] = failureNext;
+				} else {
+					failures[next] = failureNext;
+					queue[tail++] = next;
+				}
+			}
+		}
+	}
+
+	private static int[] toArray(List<Integer> output, int[] failureOutput) {
+		int outputSize = output == null ? 0 : output.size();
+		int failureOutputSize = failureOutput == null ? 0
+				: failureOutput.length;
+		if (outputSize + failureOutputSize == 0) {
+			return null;
+		}
+		int[] merged = new int[outputSize + failureOutputSize];
+		for (int i = 0; i < outputSize; i++) {
+			merged[i] = output.get(i);
+		}
+		if (failureOutputSize > 0) {
+			System.arraycopy(failureOutput, 0, merged, outputSize,
+					failureOutputSize);
+		}
+		return merged;
+	}
+
+	/**
+	 * @return the number of patterns.
+	 * @since 1.2.0.6
+	 */
+	public int getPatternCount() {
+		return patternLengths.length;
+	}
+
+	/**
+	 * @return the first {@link Match} in the text or null.
+	 * @since 1.2.0.6
+	 */
+	public Match find(ByteSequence text) {
+		return find(text, 0);
+	}
+
+	/**
+	 * @return the first {@link Match} in the text that starts at or after
+	 *         fromIndex or null.
+	 * @since 1.2.0.6
+	 */
+	public Match find(ByteSequence text, int fromIndex) {
+		Assert.notNull("text", text);
+		int length = text.length();
+		int state = 0;
+		for (int index = Math.max(fromIndex, 0); index < length; index++) {
+			state = transitions[state * ALPHABET_SIZE
+					+ (text.byteAt(index) & 0xFF)];
+			int[] output = outputs[state];
+			if (output != null) {
+				return newMatch(output[0], index + 1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return all, possibly overlapping, {@link Match}es in the text.
+	 * @since 1.2.0.6
+	 */
+	public List<Match> findAll(ByteSequence text) {
+		Assert.notNull("text", text);
+		List<Match> matches = null;
+		int length = text.length();
+		int state = 0;
+		for (int index = 0; index < length; index++) {
+			state = transitions[state * ALPHABET_SIZE
+					+ (text.byteAt(index) & 0xFF)];
+			int[] output = outputs[state];
+			if (output != null) {
+				if (matches == null) {
+					matches = new ArrayList<Match>();
+				}
+				for (int patternIndex : output) {
+					matches.add(newMatch(patternIndex, index + 1));
+				}
+			}
+		}
+		if (matches == null) {
+			return Collections.emptyList();
+		}
+		return matches;
+	}
+
+	private Match newMatch(int patternIndex, int end) {
+		return new Match(patternIndex, end - patternLengths[patternIndex], end);
+	}
+
+	/**
+	 * An occurrence of a pattern of a {@link BytePatternMatcher}.
+	 *
+	 * @author René Link <a
+	 *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+	 *         intersystems.com]</a>
+	 * @since 1.2.0.6
+	 */
+	public static final class Match {
+
+		private final int patternIndex;
+
+		private final int start;
+
+		private final int end;
+
+		Match(int patternIndex, int start, int end) {
+			this.patternIndex = patternIndex;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @return the index of the matching pattern in the order the
+		 *         patterns were passed to the {@link BytePatternMatcher}.
+		 * @since 1.2.0.6
+		 */
+		public int getPatternIndex() {
+			return patternIndex;
+		}
+
+		/**
+		 * @return the index of the first byte of the match.
+		 * @since 1.2.0.6
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * @return the index after the last byte of the match.
+		 * @since 1.2.0.6
+		 */
+		public int getEnd() {
+			return end;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + patternIndex;
+			result = prime * result + start;
+			result = prime * result + end;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Match other = (Match) obj;
+			return patternIndex == other.patternIndex && start == other.start
+					&& end == other.end;
+		}
+
+		@Override
+		public String toString() {
+			return "pattern " + patternIndex + " [" + start + ", " + end + ")";
+		}
+	}
+}
@@ -0,0 +1,430 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A {@link ByteSequence} that concatenates other {@link ByteSequence}s, its
+ * segments, without copying them. A {@link ByteRope} is a balanced binary
+ * tree whose leaves are the segments. Thus {@link #byteAt(int)} takes
+ * O(log n) steps for n segments. {@link #subSequence(int, int)} shares the
+ * segments and the subtrees that lie completely within the range, and only
+ * the segments at the range borders are cut by their own
+ * {@link ByteSequence#subSequence(int, int)}.
+ * <p>
+ * {@link ByteRope}s are immutable. {@link #concat(ByteSequence)} returns a
+ * new {@link ByteRope} that shares this {@link ByteRope}. The trees are
+ * joined like AVL trees, i.e. the shorter tree is attached to the spine of
+ * the taller one and the path up to the root is rebalanced by rotations.
+ * Thus a concatenation takes O(log n) steps, even if segments are appended
+ * one at a time, and the depth of a {@link ByteRope} is at most about
+ * 1.44 log2(n). If a lot of segments are concatenated at once,
+ * {@link #of(List)} creates a balanced tree in linear time.
+ * </p>
+ *
+ * <pre>
+ * ByteRope message = ByteRope.of(Arrays.asList(header, body));
+ * message = message.concat(trailer);
+ * </pre>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public final class ByteRope implements ByteSequence {
+
+	private static final ByteRope EMPTY = new ByteRope(new ByteArraySequence(
+			new byte[0]));
+
+	/*
+	 * The segment of a leaf or null if this is an inner node.
+	 */
+	private final ByteSequence segment;
+
+	private final ByteRope left;
+
+	private final ByteRope right;
+
+	private final int length;
+
+	private final int depth;
+
+	private final int segmentCount;
+
+	private ByteRope(ByteSequence segment) {
+		this.segment = segment;
+		this.left = null;
+		this.right = null;
+		this.length = segment.length();
+		this.depth = 0;
+		this.segmentCount = 1;
+	}
+
+	private ByteRope(ByteRope left, ByteRope right) {
+		long length = (long) left.length + right.length;
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"a ByteRope can not be longer than " + Integer.MAX_VALUE
+							+ " bytes");
+		}
+		this.segment = null;
+		this.left = left;
+		this.right = right;
+		this.length = (int) length;
+		this.depth = Math.max(left.depth, right.depth) + 1;
+		this.segmentCount = left.segmentCount + right.segmentCount;
+	}
+
+	/**
+	 * @return a balanced {@link ByteRope} of the {@link ByteSequence}s. Empty
+	 *         {@link ByteSequence}s are omitted and {@link ByteRope}s are
+	 *         shared as subtrees.
+	 * @since 1.2.0.6
+	 */
+	public static ByteRope of(ByteSequence... segments) {
+		return of(Arrays.asList(segments));
+	}
+
+	/**
+	 * @return a balanced {@link ByteRope} of the {@link ByteSequence}s. Empty
+	 *         {@link ByteSequence}s are omitted and {@link ByteRope}s are
+	 *         shared as subtrees.
+	 * @since 1.2.0.6
+	 */
+	public static ByteRope of(List<? extends ByteSequence> segments) {
+		Assert.notNull("segments", segments);
+		List<ByteRope> nodes = new ArrayList<ByteRope>(segments.size());
+		for (ByteSequence segment : segments) {
+			Assert.notNull("segment", segment);
+			if (segment.length() == 0) {
+				continue;
+			}
+			if (segment instanceof ByteRope) {
+				nodes.add((ByteRope) segment);
+			} else {
+				nodes.add(new ByteRope(segment));
+			}
+		}
+		if (nodes.isEmpty()) {
+			return EMPTY;
+		}
+		return balance(nodes, 0, nodes.size());
+	}
+
+	private static ByteRope balance(List<ByteRope> nodes, int start, int end) {
+		if (end - start == 1) {
+			return nodes.get(start);
+		}
+		int middle = (start + end) >>> 1;
+		return concat(balance(nodes, start, middle), balance(nodes, middle,
+				end));
+	}
+
+	/**
+	 * @return a {@link ByteRope} of this {@link ByteRope} followed by the
+	 *         {@link ByteSequence}.
+	 * @since 1.2.0.6
+	 */
+	public ByteRope concat(ByteSequence byteSequence) {
+		Assert.notNull("byteSequence", byteSequence);
+		if (byteSequence.length() == 0) {
+			return this;
+		}
+		ByteRope other = byteSequence instanceof ByteRope ? (ByteRope) byteSequence
+				: new ByteRope(byteSequence);
+		if (length == 0) {
+			return other;
+		}
+		return concat(this, other);
+	}
+
+	/**
+	 * Joins two balanced trees to a balanced tree. The depths of the subtrees
+	 * of every inner node differ by at most 1.
+	 */
+	private static ByteRope concat(ByteRope left, ByteRope right) {
+		if (left.depth > right.depth + 1) {
+			return concatRight(left, right);
+		}
+		if (right.depth > left.depth + 1) {
+			return concatLeft(left, right);
+		}
+		return new ByteRope(left, right);
+	}
+
+	/**
+	 * Attaches the right tree to the right spine of the deeper left tree.
+	 */
+	private static ByteRope concatRight(ByteRope left, ByteRope right) {
+		ByteRope leftLeft = left.left;
+		ByteRope leftRight = left.right;
+		if (leftRight.depth <= right.depth + 1) {
+			ByteRope joined = new ByteRope(leftRight, right);
+			if (joined.depth <= leftLeft.depth + 1) {
+				return new ByteRope(leftLeft, joined);
+			}
+			return rotateLeft(new ByteRope(leftLeft, rotateRight(joined)));
+		}
+		ByteRope joined = concatRight(leftRight, right);
+		ByteRope rope = new ByteRope(leftLeft, joined);
+		if (joined.depth <= leftLeft.depth + 1) {
+			return rope;
+		}
+		return rotateLeft(rope);
+	}
+
+	/**
+	 * Attaches the left tree to the left spine of the deeper right tree.
+	 */
+	private static ByteRope concatLeft(ByteRope left, ByteRope right) {
+		ByteRope rightLeft = right.left;
+		ByteRope rightRight = right.right;
+		if (rightLeft.depth <= left.depth + 1) {
+			ByteRope joined = new ByteRope(left, rightLeft);
+			if (joined.depth <= rightRight.depth + 1) {
+				return new ByteRope(joined, rightRight);
+			}
+			return rotateRight(new ByteRope(rotateLeft(joined), rightRight));
+		}
+		ByteRope joined = concatLeft(left, rightLeft);
+		ByteRope rope = new ByteRope(joined, rightRight);
+		if (joined.depth <= rightRight.depth + 1) {
+			return rope;
+		}
+		return rotateRight(rope);
+	}
+
+	private static ByteRope rotateLeft(ByteRope rope) {
+		ByteRope right = rope.right;
+		return new ByteRope(new ByteRope(rope.left, right.left), right.right);
+	}
+
+	private static ByteRope rotateRight(ByteRope rope) {
+		ByteRope left = rope.left;
+		return new ByteRope(left.left, new ByteRope(left.right, rope.right));
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public byte byteAt(int index) {
+		ByteSequences.checkIndex(index, length);
+		ByteRope node = this;
+		while (node.segment == null) {
+			if (index < node.left.length) {
+				node = node.left;
+			} else {
+				index -= node.left.length;
+				node = node.right;
+			}
+		}
+		return node.segment.byteAt(index);
+	}
+
+	public ByteSequence subSequence(int start, int end) {
+		ByteSequences.checkRange(start, end - start, length);
+		if (start == end) {
+			return EMPTY;
+		}
+		return subRope(start, end);
+	}
+
+	private ByteRope subRope(int start, int end) {
+		if (start == 0 && end == length) {
+			return this;
+		}
+		if (segment != null) {
+			return new ByteRope(segment.subSequence(start, end));
+		}
+		int leftLength = left.length;
+		if (end <= leftLength) {
+			return left.subRope(start, end);
+		}
+		if (start >= leftLength) {
+			return right.subRope(start - leftLength, end - leftLength);
+		}
+		return concat(left.subRope(start, leftLength),
+				right.subRope(0, end - leftLength));
+	}
+
+	@Override
+	public void copyTo(int start, byte[] target, int targetStart, int length) {
+		ByteSequences.checkRange(start, length, this.length);
+		ByteSequences.checkRange(targetStart, length, target.length);
+		if (length == 0) {
+			return;
+		}
+		if (segment != null) {
+			segment.copyTo(start, target, targetStart, length);
+			return;
+		}
+		int leftLength = left.length;
+		if (start < leftLength) {
+			int leftCount = Math.min(length, leftLength - start);
+			left.copyTo(start, target, targetStart, leftCount);
+			right.copyTo(0, target, targetStart + leftCount, length
+					- leftCount);
+		} else {
+			right.copyTo(start - leftLength, target, targetStart, length);
+		}
+	}
+
+	@Override
+	public void copyTo(int start, ByteBuffer target, int length) {
+		ByteSequences.checkRange(start, length, this.length);
+		if (target.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		if (length == 0) {
+			return;
+		}
+		if (segment != null) {
+			segment.copyTo(start, target, length);
+			return;
+		}
+		int leftLength = left.length;
+		if (start < leftLength) {
+			int leftCount = Math.min(length, leftLength - start);
+			left.copyTo(start, target, leftCount);
+			right.copyTo(0, target, length - leftCount);
+		} else {
+			right.copyTo(start - leftLength, target, length);
+		}
+	}
+
+	/**
+	 * Searches the byte segment by segment, so that the segments can use
+	 * their own search.
+	 */
+	@Override
+	public int indexOf(byte value, int fromIndex) {
+		fromIndex = Math.max(fromIndex, 0);
+		if (fromIndex >= length) {
+			return -1;
+		}
+		if (segment != null) {
+			return segment.indexOf(value, fromIndex);
+		}
+		int leftLength = left.length;
+		if (fromIndex < leftLength) {
+			int index = left.indexOf(value, fromIndex);
+			if (index != -1) {
+				return index;
+			}
+		}
+		int index = right.indexOf(value, Math.max(fromIndex - leftLength, 0));
+		return index == -1 ? -1 : leftLength + index;
+	}
+
+	/**
+	 * Searches the byte segment by segment, so that the segments can use
+	 * their own search.
+	 */
+	@Override
+	public int lastIndexOf(byte value, int fromIndex) {
+		fromIndex = Math.min(fromIndex, length - 1);
+		if (fromIndex < 0) {
+			return -1;
+		}
+		if (segment != null) {
+			return segment.lastIndexOf(value, fromIndex);
+		}
+		int leftLength = left.length;
+		if (fromIndex >= leftLength) {
+			int index = right.lastIndexOf(value, fromIndex - leftLength);
+			if (index != -1) {
+				return leftLength + index;
+			}
+		}
+		return left.lastIndexOf(value, Math.min(fromIndex, leftLength - 1));
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = hash64();
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!ByteSequences.isContentComparable(obj)) {
+			return false;
+		}
+		return contentEquals((ByteSequence) obj);
+	}
+
+	/**
+	 * @return the segments of this {@link ByteRope} in order.
+	 * @since 1.2.0.6
+	 */
+	public List<ByteSequence> getSegments() {
+		List<ByteRope> segmentNodes = getSegmentNodes();
+		List<ByteSequence> segments = new ArrayList<ByteSequence>(
+				segmentNodes.size());
+		for (ByteRope segmentNode : segmentNodes) {
+			segments.add(segmentNode.segment);
+		}
+		return segments;
+	}
+
+	/**
+	 * @return the number of segments of this {@link ByteRope}.
+	 * @since 1.2.0.6
+	 */
+	public int getSegmentCount() {
+		return length == 0 ? 0 : segmentCount;
+	}
+
+	/**
+	 * @return the depth of the tree. A {@link ByteRope} of one segment has
+	 *         the depth 0.
+	 * @since 1.2.0.6
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	private List<ByteRope> getSegmentNodes() {
+		List<ByteRope> segmentNodes = new ArrayList<ByteRope>(segmentCount);
+		if (length == 0) {
+			return segmentNodes;
+		}
+		Deque<ByteRope> stack = new ArrayDeque<ByteRope>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			ByteRope node = stack.pop();
+			if (node.segment != null) {
+				segmentNodes.add(node);
+			} else {
+				stack.push(node.right);
+				stack.push(node.left);
+			}
+		}
+		return segmentNodes;
+	}
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The search algorithms of {@link ByteSequence}.
+ * <ul>
+ * <li>Single bytes are searched word at a time (SWAR). 8 bytes are read as
+ * one long and tested for the searched byte with a few arithmetic operations.
+ * </li>
+ * <li>Sub-sequences are searched with the Boyer-Moore-Horspool algorithm.</li>
+ * </ul>
+ * The word at a time search reads longs through a little endian
+ * {@link ByteBuffer} view of the {@link ByteArraySequence}'s array or the
+ * {@link ByteBufferSequence}'s buffer. Other {@link ByteSequence}s are
+ * searched by {@link ByteSequence#byteAt(int)}.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+abstract class ByteSearch {
+
+	private static final long ONES = 0x0101010101010101L;
+
+	private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+	private static final int ALPHABET_SIZE = 256;
+
+	/**
+	 * @return the index of the first occurrence of the byte at or after
+	 *         fromIndex or -1.
+	 */
+	static int indexOf(ByteSequence byteSequence, byte value, int fromIndex) {
+		int length = byteSequence.length();
+		if (fromIndex < 0) {
+			fromIndex = 0;
+		}
+		ByteBuffer words = getWords(byteSequence);
+		int index = fromIndex;
+		if (words != null) {
+			long pattern = (value & 0xFFL) * ONES;
+			for (; index <= length - 8; index += 8) {
+				long matches = matches(words.getLong(index), pattern);
+				if (matches != 0) {
+					return index + (Long.numberOfTrailingZeros(matches) >>> 3);
+				}
+			}
+		}
+		for (; index < length; index++) {
+			if (byteSequence.byteAt(index) == value) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the last occurrence of the byte at or before
+	 *         fromIndex or -1.
+	 */
+	static int lastIndexOf(ByteSequence byteSequence, byte value,
+			int fromIndex) {
+		int index = Math.min(fromIndex, byteSequence.length() - 1);
+		ByteBuffer words = getWords(byteSequence);
+		if (words != null) {
+			long pattern = (value & 0xFFL) * ONES;
+			for (; index >= 7; index -= 8) {
+				long matches = matches(words.getLong(index - 7),
+						pattern);
+				if (matches != 0) {
+					return index - (Long.numberOfLeadingZeros(matches) >>> 3);
+				}
+			}
+		}
+		for (; index >= 0; index--) {
+			if (byteSequence.byteAt(index) == value) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the first occurrence of the pattern at or after
+	 *         fromIndex or -1.
+	 */
+	static int indexOf(ByteSequence byteSequence, ByteSequence pattern,
+			int fromIndex) {
+		int length = byteSequence.length();
+		int patternLength = pattern.length();
+		if (fromIndex < 0) {
+			fromIndex = 0;
+		}
+		if (patternLength == 0) {
+			return fromIndex <= length ? fromIndex : -1;
+		}
+		if (patternLength == 1) {
+			return indexOf(byteSequence, pattern.byteAt(0), fromIndex);
+		}
+		byte[] patternBytes = pattern.toByteArray();
+		int last = patternLength - 1;
+		int[] shifts = new int[ALPHABET_SIZE];
+		for (int i = 0; i < ALPHABET_SIZE; i++) {
+			shifts[i] = patternLength;
+		}
+		for (int i = 0; i < last; i++) {
+			shifts[patternBytes[i] & 0xFF] = last - i;
+		}
+
+		byte lastByte = patternBytes[last];
+		for (int index = fromIndex; index <= length - patternLength;) {
+			byte current = byteSequence.byteAt(index + last);
+			if (current == lastByte
+					&& regionMatches(byteSequence, index, patternBytes, last)) {
+				return index;
+			}
+			index += shifts[current & 0xFF];
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the last occurrence of the pattern that starts at
+	 *         or before fromIndex or -1.
+	 */
+	static int lastIndexOf(ByteSequence byteSequence, ByteSequence pattern,
+			int fromIndex) {
+		int length = byteSequence.length();
+		int patternLength = pattern.length();
+		int index = Math.min(fromIndex, length - patternLength);
+		if (index < 0) {
+			return -1;
+		}
+		if (patternLength == 0) {
+			return index;
+		}
+		if (patternLength == 1) {
+			return lastIndexOf(byteSequence, pattern.byteAt(0), index);
+		}
+		byte[] patternBytes = pattern.toByteArray();
+		int[] shifts = new int[ALPHABET_SIZE];
+		for (int i = 0; i < ALPHABET_SIZE; i++) {
+			shifts[i] = patternLength;
+		}
+		for (int i = patternLength - 1; i > 0; i--) {
+			shifts[patternBytes[i] & 0xFF] = i;
+		}
+
+		byte firstByte = patternBytes[0];
+		while (index >= 0) {
+			byte current = byteSequence.byteAt(index);
+			if (current == firstByte
+					&& regionMatches(byteSequence, index, patternBytes,
+							patternLength)) {
+				return index;
+			}
+			index -= shifts[current & 0xFF];
+		}
+		return -1;
+	}
+
+	private static boolean regionMatches(ByteSequence byteSequence,
+			int index, byte[] patternBytes, int count) {
+		for (int i = 0; i < count; i++) {
+			if (byteSequence.byteAt(index + i) != patternBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return a word with the high bit set in every byte of the word that
+	 *         equals the corresponding byte of the pattern. In contrast to
+	 *         the classic "has zero byte" test no carry crosses a byte, so
+	 *         every set bit is exact.
+	 */
+	private static long matches(long word, long pattern) {
+		long x = word ^ pattern;
+		long t = ((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x;
+		return ~(t | LOW_SEVEN_BITS);
+	}
+
+	/**
+	 * @return a little endian {@link ByteBuffer} to read words of the
+	 *         {@link ByteSequence}, whose index 0 is the first byte of the
+	 *         {@link ByteSequence}, or null if the {@link ByteSequence} can
+	 *         only be read byte by byte.
+	 */
+	static ByteBuffer getWords(ByteSequence byteSequence) {
+		ByteBuffer words;
+		if (byteSequence instanceof ByteArraySequence) {
+			ByteArraySequence byteArraySequence = (ByteArraySequence) byteSequence;
+			words = ByteBuffer.wrap(byteArraySequence.getArray(),
+					byteArraySequence.getOffset(), byteArraySequence.length())
+					.slice();
+		} else if (byteSequence instanceof ByteBufferSequence) {
+			words = ((ByteBufferSequence) byteSequence).getBuffer()
+					.duplicate();
+		} else {
+			return null;
+		}
+		return words.order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
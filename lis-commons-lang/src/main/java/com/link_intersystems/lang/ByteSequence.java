@@ -1,10 +1,216 @@
 package com.link_intersystems.lang;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A readable sequence of bytes, the byte counterpart of a
+ * {@link CharSequence}. Implementations are provided by {@link ByteSequences}
+ * for byte arrays, heap and direct {@link ByteBuffer}s and memory-mapped file
+ * regions. Single bytes and sub-sequences can be searched by the indexOf
+ * methods and sets of patterns by a {@link BytePatternMatcher}.
+ * <p>
+ * The implementations of {@link ByteSequences} are equal if they have the
+ * same content, see {@link #contentEquals(ByteSequence)}, and derive their
+ * hash code from {@link #hash64()}. Thus they can be used as hash keys, but
+ * they must not be changed through the backing storage while they are.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
 public interface ByteSequence {
 
+	/**
+	 * @return the number of bytes of this {@link ByteSequence}.
+	 */
 	int length();
 
+	/**
+	 * @return the byte at the index.
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not less than {@link #length()}.
+	 */
 	byte byteAt(int index);
 
+	/**
+	 * @return the {@link ByteSequence} from the start index, inclusive, to the
+	 *         end index, exclusive.
+	 * @throws IndexOutOfBoundsException
+	 *             if start or end are negative, end is greater than
+	 *             {@link #length()} or start is greater than end.
+	 */
 	ByteSequence subSequence(int start, int end);
+
+	/**
+	 * Copies length bytes of this {@link ByteSequence} beginning at start to
+	 * the target array beginning at targetStart. Implementations should
+	 * override this method to copy in bulk.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if the source or the target range is out of bounds.
+	 * @since 1.2.0.6
+	 */
+	default void copyTo(int start, byte[] target, int targetStart, int length) {
+		ByteSequences.checkRange(start, length, length());
+		ByteSequences.checkRange(targetStart, length, target.length);
+		for (int i = 0; i < length; i++) {
+			target[targetStart + i] = byteAt(start + i);
+		}
+	}
+
+	/**
+	 * Copies length bytes of this {@link ByteSequence} beginning at start to
+	 * the target {@link ByteBuffer} at its current position. The position of
+	 * the target is advanced by length. Implementations should override this
+	 * method to copy in bulk.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if the source range is out of bounds.
+	 * @throws BufferOverflowException
+	 *             if the target has less than length bytes remaining.
+	 * @since 1.2.0.6
+	 */
+	default void copyTo(int start, ByteBuffer target, int length) {
+		ByteSequences.checkRange(start, length, length());
+		if (target.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		for (int i = 0; i < length; i++) {
+			target.put(byteAt(start + i));
+		}
+	}
+
+	/**
+	 * @return a copy of the bytes of this {@link ByteSequence}.
+	 * @since 1.2.0.6
+	 */
+	default byte[] toByteArray() {
+		byte[] bytes = new byte[length()];
+		copyTo(0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	/**
+	 * @return the index of the first occurrence of the byte or -1.
+	 * @since 1.2.0.6
+	 */
+	default int indexOf(byte value) {
+		return indexOf(value, 0);
+	}
+
+	/**
+	 * @return the index of the first occurrence of the byte at or after
+	 *         fromIndex or -1.
+	 * @since 1.2.0.6
+	 */
+	default int indexOf(byte value, int fromIndex) {
+		return ByteSearch.indexOf(this, value, fromIndex);
+	}
+
+	/**
+	 * @return the index of the last occurrence of the byte or -1.
+	 * @since 1.2.0.6
+	 */
+	default int lastIndexOf(byte value) {
+		return lastIndexOf(value, length() - 1);
+	}
+
+	/**
+	 * @return the index of the last occurrence of the byte at or before
+	 *         fromIndex or -1.
+	 * @since 1.2.0.6
+	 */
+	default int lastIndexOf(byte value, int fromIndex) {
+		return ByteSearch.lastIndexOf(this, value, fromIndex);
+	}
+
+	/**
+	 * @return the index of the first occurrence of the pattern or -1.
+	 * @since 1.2.0.6
+	 */
+	default int indexOf(ByteSequence pattern) {
+		return indexOf(pattern, 0);
+	}
+
+	/**
+	 * @return the index of the first occurrence of the pattern that starts at
+	 *         or after fromIndex or -1. An empty pattern is found at
+	 *         fromIndex.
+	 * @since 1.2.0.6
+	 */
+	default int indexOf(ByteSequence pattern, int fromIndex) {
+		Assert.notNull("pattern", pattern);
+		return ByteSearch.indexOf(this, pattern, fromIndex);
+	}
+
+	/**
+	 * @return the index of the last occurrence of the pattern or -1.
+	 * @since 1.2.0.6
+	 */
+	default int lastIndexOf(ByteSequence pattern) {
+		return lastIndexOf(pattern, length());
+	}
+
+	/**
+	 * @return the index of the last occurrence of the pattern that starts at
+	 *         or before fromIndex or -1.
+	 * @since 1.2.0.6
+	 */
+	default int lastIndexOf(ByteSequence pattern, int fromIndex) {
+		Assert.notNull("pattern", pattern);
+		return ByteSearch.lastIndexOf(this, pattern, fromIndex);
+	}
+
+	/**
+	 * @return the index of the first byte that differs between this and the
+	 *         other {@link ByteSequence}, the length of the shorter
+	 *         {@link ByteSequence} if it is a prefix of the other or -1 if
+	 *         both have the same content.
+	 * @since 1.2.0.6
+	 */
+	default int mismatch(ByteSequence other) {
+		Assert.notNull("other", other);
+		return ByteComparison.mismatch(this, other);
+	}
+
+	/**
+	 * @return true if the other {@link ByteSequence} has the same bytes as
+	 *         this {@link ByteSequence}, regardless of the implementations.
+	 * @since 1.2.0.6
+	 */
+	default boolean contentEquals(ByteSequence other) {
+		if (other == null || other.length() != length()) {
+			return false;
+		}
+		return ByteComparison.mismatch(this, other) == -1;
+	}
+
+	/**
+	 * Compares this and the other {@link ByteSequence} lexicographically. The
+	 * bytes are compared as unsigned values, like memcmp does. If one
+	 * {@link ByteSequence} is a prefix of the other, the shorter one is less.
+	 *
+	 * @return a negative integer, zero, or a positive integer as this
+	 *         {@link ByteSequence} is less than, equal to, or greater than
+	 *         the other.
+	 * @since 1.2.0.6
+	 */
+	default int compareTo(ByteSequence other) {
+		Assert.notNull("other", other);
+		return ByteComparison.compare(this, other);
+	}
+
+	/**
+	 * @return a fast non-cryptographic 64 bit hash of the bytes of this
+	 *         {@link ByteSequence}. It is the 64 bit xxHash (XXH64) with seed
+	 *         0 and therefore the same for equal content, regardless of the
+	 *         implementation.
+	 * @since 1.2.0.6
+	 */
+	default long hash64() {
+		return ByteComparison.hash64(this);
+	}
 }
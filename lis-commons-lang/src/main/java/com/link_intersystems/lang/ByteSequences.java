@@ -0,0 +1,218 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Factory methods for {@link ByteSequence}s. None of the factory methods
+ * copies the bytes. Thus a large file can be processed through the
+ * {@link ByteSequence} abstraction without loading it onto the heap.
+ *
+ * <pre>
+ * List&lt;ByteSequence&gt; regions = ByteSequences.mapRegions(file, 256 * 1024 * 1024);
+ * for (ByteSequence region : regions) {
+ * 	...
+ * }
+ * </pre>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public abstract class ByteSequences {
+
+	private static final Comparator<ByteSequence> LEXICOGRAPHIC_COMPARATOR = new Comparator<ByteSequence>() {
+
+		public int compare(ByteSequence o1, ByteSequence o2) {
+			return o1.compareTo(o2);
+		}
+	};
+
+	/**
+	 * @return a {@link ByteSequence} that is backed by the whole byte array.
+	 * @since 1.2.0.6
+	 */
+	public static ByteSequence wrap(byte[] bytes) {
+		return new ByteArraySequence(bytes);
+	}
+
+	/**
+	 * @return a {@link ByteSequence} that is backed by length bytes of the
+	 *         byte array beginning at offset.
+	 * @since 1.2.0.6
+	 */
+	public static ByteSequence wrap(byte[] bytes, int offset, int length) {
+		return new ByteArraySequence(bytes, offset, length);
+	}
+
+	/**
+	 * @return a {@link ByteSequence} that is backed by the remaining bytes of
+	 *         the heap or direct {@link ByteBuffer}.
+	 * @since 1.2.0.6
+	 */
+	public static ByteSequence wrap(ByteBuffer buffer) {
+		return new ByteBufferSequence(buffer);
+	}
+
+	/**
+	 * @return a {@link ByteSequence} that concatenates the
+	 *         {@link ByteSequence}s without copying them.
+	 * @see ByteRope
+	 * @since 1.2.0.6
+	 */
+	public static ByteSequence concat(ByteSequence... byteSequences) {
+		return ByteRope.of(byteSequences);
+	}
+
+	/**
+	 * @return a {@link ByteSequence} that concatenates the
+	 *         {@link ByteSequence}s without copying them.
+	 * @see ByteRope
+	 * @since 1.2.0.6
+	 */
+	public static ByteSequence concat(
+			List<? extends ByteSequence> byteSequences) {
+		return ByteRope.of(byteSequences);
+	}
+
+	/**
+	 * Maps a region of the {@link FileChannel} read-only into memory. The
+	 * mapping stays valid after the {@link FileChannel} is closed until the
+	 * returned {@link ByteSequence} is garbage collected.
+	 *
+	 * @param position
+	 *            the position in the file where the region starts.
+	 * @param length
+	 *            the length of the region.
+	 * @return a {@link ByteSequence} that is backed by the mapped region.
+	 * @throws IOException
+	 *             if the region can not be mapped.
+	 * @since 1.2.0.6
+	 */
+	public static ByteSequence map(FileChannel fileChannel, long position,
+			int length) throws IOException {
+		Assert.notNull("fileChannel", fileChannel);
+		Assert.greaterOrEqual("length", 0, length);
+		MappedByteBuffer mappedByteBuffer = fileChannel.map(MapMode.READ_ONLY,
+				position, length);
+		return new ByteBufferSequence(mappedByteBuffer);
+	}
+
+	/**
+	 * Maps the whole file read-only into memory.
+	 *
+	 * @throws IOException
+	 *             if the file can not be mapped or is larger than
+	 *             {@link Integer#MAX_VALUE} bytes. Use
+	 *             {@link #mapRegions(File, int)} for larger files.
+	 * @since 1.2.0.6
+	 */
+	public static ByteSequence map(File file) throws IOException {
+		Assert.notNull("file", file);
+		FileChannel fileChannel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			long size = fileChannel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + " has " + size
+						+ " bytes and can not be mapped as one ByteSequence");
+			}
+			return map(fileChannel, 0, (int) size);
+		} finally {
+			fileChannel.close();
+		}
+	}
+
+	/**
+	 * Maps the whole file read-only into memory as consecutive regions of
+	 * regionSize bytes. The last region might be shorter. Files of any size
+	 * can be mapped this way.
+	 *
+	 * @return the regions in file order. An empty file has no regions.
+	 * @throws IOException
+	 *             if the file can not be mapped.
+	 * @since 1.2.0.6
+	 */
+	public static List<ByteSequence> mapRegions(File file, int regionSize)
+			throws IOException {
+		Assert.notNull("file", file);
+		Assert.greater("regionSize", 0, regionSize);
+		FileChannel fileChannel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ);
+		try {
+			long size = fileChannel.size();
+			List<ByteSequence> regions = new ArrayList<ByteSequence>(
+					(int) ((size + regionSize - 1) / regionSize));
+			for (long position = 0; position < size; position += regionSize) {
+				int length = (int) Math.min(regionSize, size - position);
+				regions.add(map(fileChannel, position, length));
+			}
+			return regions;
+		} finally {
+			fileChannel.close();
+		}
+	}
+
+	/**
+	 * @return a {@link Comparator} that orders {@link ByteSequence}s
+	 *         lexicographically by their unsigned bytes.
+	 * @see ByteSequence#compareTo(ByteSequence)
+	 * @since 1.2.0.6
+	 */
+	public static Comparator<ByteSequence> getLexicographicComparator() {
+		return LEXICOGRAPHIC_COMPARATOR;
+	}
+
+	/**
+	 * @return true if the object is one of the {@link ByteSequence}
+	 *         implementations that are equal by content.
+	 */
+	static boolean isContentComparable(Object object) {
+		return object instanceof ByteArraySequence
+				|| object instanceof ByteBufferSequence
+				|| object instanceof ByteRope;
+	}
+
+	static void checkIndex(int index, int length) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index
+					+ " is not between 0 and " + length);
+		}
+	}
+
+	/**
+	 * Checks that the range of count elements beginning at start lies within
+	 * 0 and length.
+	 */
+	static void checkRange(int start, int count, int length) {
+		if (start < 0 || count < 0 || start > length - count) {
+			throw new IndexOutOfBoundsException("range [" + start + ", "
+					+ ((long) start + count) + ") is not within [0, "
+					+ length + ")");
+		}
+	}
+}
@@ -0,0 +1,498 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link JarEntryCache} holds the extracted (inflated) entries of a jar file
+ * in a cache file. The cache file is keyed by the jar file's name, length and
+ * checksum and read back using memory-mapped I/O. Thus a jar's entries must
+ * only be inflated once and later uses of the same jar file (even in other JVM
+ * instances) can directly access the entries' bytes.
+ * <p>
+ * The entries of signed jar files are not cached, because the signers of an
+ * entry can only be determined by the {@link JarFile} itself. For signed jars
+ * the cache only holds the entry names and the manifest, so that the
+ * manifest's class path is available regardless of the signature.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+final class JarEntryCache {
+
+	private static final int MAGIC = 0x4C495343;
+
+	private static final int VERSION = 2;
+
+	private static final int FLAG_SIGNED = 1;
+
+	/**
+	 * The size of the magic, version and flags.
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * The size of a table entry with an empty name: name length, offset and
+	 * length.
+	 */
+	private static final int MIN_TABLE_ENTRY_SIZE = 12;
+
+	private static final String CACHE_FILE_SUFFIX = ".cache";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final URL jarURL;
+
+	private final ByteBuffer cacheBuffer;
+
+	private final Map<String, int[]> entries;
+
+	private final boolean signed;
+
+	private final URLStreamHandler entryURLStreamHandler = new EntryURLStreamHandler();
+
+	private Manifest manifest;
+
+	private JarEntryCache(URL jarURL, ByteBuffer cacheBuffer,
+			Map<String, int[]> entries, boolean signed) {
+		this.jarURL = jarURL;
+		this.cacheBuffer = cacheBuffer;
+		this.entries = entries;
+		this.signed = signed;
+	}
+
+	/**
+	 * Opens the {@link JarEntryCache} of the given jar file. If no cache file
+	 * exists for the jar file's current checksum it is created.
+	 *
+	 * @param jarURL
+	 *            the URL of the jar file as it is used by the class loader.
+	 * @param jarFile
+	 *            the jar file to open the cache for.
+	 * @param cacheDirectory
+	 *            the directory that holds the cache files.
+	 * @return the {@link JarEntryCache} of the jar file.
+	 * @throws IOException
+	 *             if the jar file can not be read or the cache file can not be
+	 *             read or written.
+	 * @since 1.2.0.6
+	 */
+	static JarEntryCache open(URL jarURL, File jarFile, File cacheDirectory)
+			throws IOException {
+		long checksum = checksum(jarFile);
+		String cacheFileName = jarFile.getName() + "-"
+				+ Long.toHexString(jarFile.length()) + "-"
+				+ Long.toHexString(checksum) + CACHE_FILE_SUFFIX;
+		File cacheFile = new File(cacheDirectory, cacheFileName);
+
+		if (!cacheFile.isFile()) {
+			writeCacheFile(jarFile, cacheFile);
+		}
+
+		try {
+			return readCacheFile(jarURL, cacheFile);
+		} catch (IOException e) {
+			/*
+			 * The cache file might be corrupt (e.g. a JVM crashed while it was
+			 * written). So we try to write it again.
+			 */
+			cacheFile.delete();
+			writeCacheFile(jarFile, cacheFile);
+			return readCacheFile(jarURL, cacheFile);
+		}
+	}
+
+	private static long checksum(File file) throws IOException {
+		CRC32 crc32 = new CRC32();
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				crc32.update(buffer, 0, read);
+			}
+		} finally {
+			inputStream.close();
+		}
+		return crc32.getValue();
+	}
+
+	/**
+	 * Cache file layout:
+	 *
+	 * <pre>
+	 * int magic, int version, int flags
+	 * byte[]... entry data
+	 * table: int entryCount, (int nameLength, byte[] utf8Name, int offset, int length)...
+	 * int tableOffset
+	 * </pre>
+	 */
+	private static void writeCacheFile(File jarFile, File cacheFile)
+			throws IOException {
+		File cacheDirectory = cacheFile.getParentFile();
+		if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+			throw new IOException("Unable to create cache directory "
+					+ cacheDirectory);
+		}
+		File tmpFile = File.createTempFile(jarFile.getName(), ".tmp",
+				cacheDirectory);
+
+		try {
+			JarFile jar = new JarFile(jarFile, false);
+			try {
+				List<String> names = new ArrayList<String>();
+				boolean signed = false;
+				Enumeration<JarEntry> jarEntries = jar.entries();
+				while (jarEntries.hasMoreElements()) {
+					JarEntry jarEntry = jarEntries.nextElement();
+					if (jarEntry.isDirectory()) {
+						continue;
+					}
+					String name = jarEntry.getName();
+					names.add(name);
+					signed |= isSignatureFile(name);
+				}
+
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(tmpFile)));
+				try {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(signed ? FLAG_SIGNED : 0);
+
+					int[] offsets = new int[names.size()];
+					int[] lengths = new int[names.size()];
+					byte[] buffer = new byte[8192];
+					for (int i = 0; i < names.size(); i++) {
+						offsets[i] = out.size();
+						if (signed
+								&& !JarFile.MANIFEST_NAME.equals(names.get(i))) {
+							continue;
+						}
+						InputStream entryInputStream = jar
+								.getInputStream(jar.getJarEntry(names
+										.get(i)));
+						try {
+							int read;
+							while ((read = entryInputStream.read(buffer)) != -1) {
+								out.write(buffer, 0, read);
+							}
+						} finally {
+							entryInputStream.close();
+						}
+						lengths[i] = out.size() - offsets[i];
+						if (out.size() == Integer.MAX_VALUE) {
+							throw new IOException(
+									"Jar file is too large to be cached "
+											+ jarFile);
+						}
+					}
+
+					int tableOffset = out.size();
+					out.writeInt(names.size());
+					for (int i = 0; i < names.size(); i++) {
+						byte[] nameBytes = names.get(i).getBytes(UTF_8);
+						out.writeInt(nameBytes.length);
+						out.write(nameBytes);
+						out.writeInt(offsets[i]);
+						out.writeInt(lengths[i]);
+					}
+					out.writeInt(tableOffset);
+				} finally {
+					out.close();
+				}
+			} finally {
+				jar.close();
+			}
+
+			if (!tmpFile.renameTo(cacheFile) && !cacheFile.isFile()) {
+				throw new IOException("Unable to create cache file "
+						+ cacheFile);
+			}
+		} finally {
+			/*
+			 * Another class loader might have created the cache file in the
+			 * meanwhile. In this case the rename fails and we just use the
+			 * other one.
+			 */
+			tmpFile.delete();
+		}
+	}
+
+	private static boolean isSignatureFile(String name) {
+		String upperCaseName = name.toUpperCase();
+		return upperCaseName.startsWith("META-INF/")
+				&& (upperCaseName.endsWith(".SF")
+						|| upperCaseName.endsWith(".RSA")
+						|| upperCaseName.endsWith(".DSA") || upperCaseName
+							.endsWith(".EC"));
+	}
+
+	private static JarEntryCache readCacheFile(URL jarURL, File cacheFile)
+			throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(cacheFile, "r");
+		MappedByteBuffer cacheBuffer;
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+			if (size < 16 || size > Integer.MAX_VALUE) {
+				throw new IOException("Invalid cache file " + cacheFile);
+			}
+			cacheBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			/*
+			 * A mapping, once established, is not dependent upon the file
+			 * channel that was used to create it.
+			 */
+			randomAccessFile.close();
+		}
+
+		checkCacheFile(cacheBuffer.getInt(0) == MAGIC
+				&& cacheBuffer.getInt(4) == VERSION, cacheFile);
+		boolean signed = (cacheBuffer.getInt(8) & FLAG_SIGNED) != 0;
+
+		/*
+		 * Every value that is read from the table is checked against the
+		 * bytes that are left, so that a corrupt cache file neither leads to
+		 * huge allocations nor to reads beyond the table.
+		 */
+		int tableLimit = cacheBuffer.limit() - 4;
+		int tableOffset = cacheBuffer.getInt(tableLimit);
+		checkCacheFile(tableOffset >= HEADER_SIZE
+				&& tableOffset <= tableLimit - 4, cacheFile);
+		ByteBuffer table = cacheBuffer.duplicate();
+		table.limit(tableLimit);
+		table.position(tableOffset);
+		int entryCount = table.getInt();
+		checkCacheFile(entryCount >= 0
+				&& entryCount <= table.remaining() / MIN_TABLE_ENTRY_SIZE,
+				cacheFile);
+		Map<String, int[]> entries = new HashMap<String, int[]>(
+				entryCount * 4 / 3 + 1);
+		for (int i = 0; i < entryCount; i++) {
+			checkCacheFile(table.remaining() >= MIN_TABLE_ENTRY_SIZE,
+					cacheFile);
+			int nameLength = table.getInt();
+			checkCacheFile(nameLength >= 0
+					&& nameLength <= table.remaining() - 8, cacheFile);
+			byte[] nameBytes = new byte[nameLength];
+			table.get(nameBytes);
+			int offset = table.getInt();
+			int length = table.getInt();
+			checkCacheFile(offset >= HEADER_SIZE && length >= 0
+					&& length <= tableOffset - offset, cacheFile);
+			entries.put(new String(nameBytes, UTF_8), new int[] { offset,
+					length });
+		}
+		return new JarEntryCache(jarURL, cacheBuffer,
+				Collections.unmodifiableMap(entries), signed);
+	}
+
+	/**
+	 * @throws IOException
+	 *             if the cache file is not valid, so that
+	 *             {@link #open(URL, File, File)} rebuilds it.
+	 */
+	private static void checkCacheFile(boolean valid, File cacheFile)
+			throws IOException {
+		if (!valid) {
+			throw new IOException("Invalid cache file " + cacheFile);
+		}
+	}
+
+	/**
+	 * @return the names of all entries (excluding directories) of the cached
+	 *         jar file.
+	 * @since 1.2.0.6
+	 */
+	Set<String> getEntryNames() {
+		return entries.keySet();
+	}
+
+	/**
+	 * @return true if the entries' bytes are available through this
+	 *         {@link JarEntryCache}. False if only the entry names are cached,
+	 *         e.g. because the jar file is signed.
+	 * @since 1.2.0.6
+	 */
+	boolean isEntryDataCached() {
+		return !signed;
+	}
+
+	/**
+	 * @param name
+	 *            the jar entry's name.
+	 * @return a read-only {@link ByteBuffer} that holds the uncompressed bytes
+	 *         of the entry or null if the entry does not exist or is not
+	 *         cached.
+	 * @since 1.2.0.6
+	 */
+	ByteBuffer getEntry(String name) {
+		if (signed) {
+			return null;
+		}
+		return getCachedEntry(name);
+	}
+
+	private ByteBuffer getCachedEntry(String name) {
+		int[] entry = entries.get(name);
+		if (entry == null) {
+			return null;
+		}
+		ByteBuffer entryBuffer = cacheBuffer.duplicate();
+		entryBuffer.limit(entry[0] + entry[1]);
+		entryBuffer.position(entry[0]);
+		return entryBuffer.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * @param name
+	 *            the jar entry's name.
+	 * @return a jar {@link URL} for the given entry whose content is read from
+	 *         this {@link JarEntryCache} or null if the entry is not cached.
+	 * @since 1.2.0.6
+	 */
+	URL getEntryURL(String name) {
+		if (signed || !entries.containsKey(name)) {
+			return null;
+		}
+		try {
+			return new URL(null, "jar:" + jarURL + "!/" + name,
+					entryURLStreamHandler);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the cached jar file's {@link Manifest} or null if the jar file
+	 *         does not contain a manifest.
+	 * @since 1.2.0.6
+	 */
+	synchronized Manifest getManifest() throws IOException {
+		if (manifest == null) {
+			ByteBuffer manifestEntry = getCachedEntry(JarFile.MANIFEST_NAME);
+			if (manifestEntry == null) {
+				return null;
+			}
+			manifest = new Manifest(new ByteBufferInputStream(manifestEntry));
+		}
+		return manifest;
+	}
+
+	/**
+	 * @return the URL of the jar file that this {@link JarEntryCache} caches.
+	 * @since 1.2.0.6
+	 */
+	URL getJarURL() {
+		return jarURL;
+	}
+
+	private class EntryURLStreamHandler extends URLStreamHandler {
+
+		@Override
+		protected URLConnection openConnection(URL u) throws IOException {
+			String spec = u.getFile();
+			int separatorIndex = spec.indexOf("!/");
+			final ByteBuffer entry = getEntry(spec
+					.substring(separatorIndex + 2));
+			if (entry == null) {
+				throw new IOException("No cached entry for " + u);
+			}
+			return new URLConnection(u) {
+
+				@Override
+				public void connect() {
+					connected = true;
+				}
+
+				@Override
+				public InputStream getInputStream() {
+					return new ByteBufferInputStream(entry.duplicate());
+				}
+
+				@Override
+				public int getContentLength() {
+					return entry.remaining();
+				}
+			};
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer byteBuffer;
+
+		public ByteBufferInputStream(ByteBuffer byteBuffer) {
+			this.byteBuffer = byteBuffer;
+		}
+
+		@Override
+		public int read() {
+			if (!byteBuffer.hasRemaining()) {
+				return -1;
+			}
+			return byteBuffer.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!byteBuffer.hasRemaining()) {
+				return -1;
+			}
+			int read = Math.min(len, byteBuffer.remaining());
+			byteBuffer.get(b, off, read);
+			return read;
+		}
+
+		@Override
+		public int available() {
+			return byteBuffer.remaining();
+		}
+	}
+}
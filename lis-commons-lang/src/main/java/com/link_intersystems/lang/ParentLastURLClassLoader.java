@@ -15,12 +15,59 @@
  */
 package com.link_intersystems.lang;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 /**
  * A {@link URLClassLoader} that first tries to load a class by it's own and if
  * it can not be loaded it asks it's parent class loader to load.
+ * <p>
+ * At construction time the {@link ParentLastURLClassLoader} builds an index of
+ * the packages that the URLs contain. A class whose package is not contained in
+ * that index is directly delegated to the parent class loader without searching
+ * the URLs. Furthermore class names that could not be found in the URLs are
+ * remembered so that a subsequent lookup of the same class name is also
+ * directly delegated to the parent class loader. If a URL can not be indexed,
+ * e.g. because it is not a <code>file:</code> URL, the package index is
+ * disabled and every class is searched in the URLs first.
+ * </p>
+ * <p>
+ * The package index of a directory is a snapshot that is taken when the
+ * directory's URL is added. Classes that are added to the directory later are
+ * only found if their package was already indexed. The classes that could not
+ * be found are remembered as long as the {@link ParentLastURLClassLoader}
+ * exists. Only {@link #addURL(URL)} clears them. Thus a class that is added to
+ * a directory after it was looked up once is also not found.
+ * </p>
+ * <p>
+ * Optionally a cache directory can be specified (
+ * {@link #ParentLastURLClassLoader(URL[], ClassLoader, File)}). In this case
+ * the entries of the jar files are extracted once into cache files that are
+ * keyed by the jar file's checksum. Classes and resources are then read from
+ * the memory-mapped cache files so that later class loaders (even in other JVM
+ * instances) that use the same jar files neither have to inflate the jar
+ * entries nor scan the jar's directory.
+ * </p>
  *
  * @author René Link <a
  *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
@@ -29,8 +76,40 @@ import java.net.URLClassLoader;
  */
 public class ParentLastURLClassLoader extends URLClassLoader {
 
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
 	private ClassLoader parent;
 
+	private final Set<String> packageIndex = new HashSet<String>();
+
+	private final Set<URL> indexedURLs = new HashSet<URL>();
+
+	private boolean packageIndexComplete = true;
+
+	private final File cacheDirectory;
+
+	/**
+	 * The URLs in the order they are searched by the {@link URLClassLoader}.
+	 */
+	private final List<URL> searchOrder = new CopyOnWriteArrayList<URL>();
+
+	private final Map<URL, JarEntryCache> jarEntryCaches = new ConcurrentHashMap<URL, JarEntryCache>();
+
+	/**
+	 * Jar URLs whose manifest defines a class path. The URLClassLoader searches
+	 * the manifest class path right after the jar.
+	 */
+	private final Set<URL> manifestClassPathURLs = Collections
+			.newSetFromMap(new ConcurrentHashMap<URL, Boolean>());
+
+	/**
+	 * Names of classes that could not be found in the URLs. A negative lookup
+	 * is cached so that it must not be repeated again. The cache is only
+	 * cleared by {@link #addURL(URL)}.
+	 */
+	private final Set<String> classNotFoundCache = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	/**
 	 * Constructs a new ParentLastURLClassLoader for the specified URLs using
 	 * this class loader's {@link ClassLoader} as it's parent . The URLs will be
@@ -74,8 +153,324 @@ public class ParentLastURLClassLoader extends URLClassLoader {
 	 * @since 1.2.0.0
 	 */
 	public ParentLastURLClassLoader(URL[] urls, ClassLoader parent) {
+		this(urls, parent, null);
+	}
+
+	/**
+	 * Same as {@link #ParentLastURLClassLoader(URL[], ClassLoader)}, but
+	 * extracts the entries of the jar files into cache files in the given
+	 * cacheDirectory. The cache files are named after the jar file's name,
+	 * length and checksum and are reused by every
+	 * {@link ParentLastURLClassLoader} that uses the same cacheDirectory as
+	 * long as the jar file does not change.
+	 *
+	 * @param urls
+	 *            the URLs from which to load classes and resources
+	 * @param parent
+	 *            the parent class loader to use. Can be <code>null</code>.
+	 * @param cacheDirectory
+	 *            the directory to hold the cache files. Will be created if it
+	 *            does not exist. Can be <code>null</code> to disable caching.
+	 *
+	 * @exception SecurityException
+	 *                if a security manager exists and its
+	 *                <code>checkCreateClassLoader</code> method doesn't allow
+	 *                creation of a class loader.
+	 * @since 1.2.0.6
+	 */
+	public ParentLastURLClassLoader(URL[] urls, ClassLoader parent,
+			File cacheDirectory) {
 		super(urls);
 		this.parent = parent;
+		this.cacheDirectory = cacheDirectory;
+		for (URL url : urls) {
+			searchOrder.add(url);
+			indexURL(url);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Adds the packages of the given URL to the package index and clears the
+	 * cache of classes that could not be found.
+	 * </p>
+	 *
+	 * @since 1.2.0.6
+	 */
+	@Override
+	protected synchronized void addURL(URL url) {
+		super.addURL(url);
+		searchOrder.add(url);
+		indexURL(url);
+		classNotFoundCache.clear();
+	}
+
+	private void indexURL(URL url) {
+		if (url == null || !indexedURLs.add(url)) {
+			return;
+		}
+		if (!"file".equals(url.getProtocol())) {
+			packageIndexComplete = false;
+			return;
+		}
+
+		File file;
+		try {
+			file = new File(url.toURI());
+		} catch (URISyntaxException e) {
+			packageIndexComplete = false;
+			return;
+		} catch (IllegalArgumentException e) {
+			packageIndexComplete = false;
+			return;
+		}
+
+		if (file.isDirectory()) {
+			indexDirectory(file, "", new HashSet<String>());
+		} else if (file.isFile()) {
+			try {
+				JarEntryCache jarEntryCache = openJarEntryCache(url, file);
+				if (jarEntryCache == null) {
+					indexJar(url, file);
+				} else {
+					jarEntryCaches.put(url, jarEntryCache);
+					indexEntryNames(jarEntryCache.getEntryNames());
+					indexManifestClassPath(url, jarEntryCache.getManifest());
+				}
+			} catch (IOException e) {
+				packageIndexComplete = false;
+			}
+		}
+		/*
+		 * A file that does not exist can not contain classes. The
+		 * URLClassLoader will also ignore it.
+		 */
+	}
+
+	/**
+	 * Adds the packages of the given directory and its subdirectories to the
+	 * package index.
+	 *
+	 * @param parentDirectories
+	 *            the canonical paths of the directories that are currently
+	 *            indexed. A directory whose canonical path is contained is a
+	 *            symbolic link to one of its parents and is not indexed again,
+	 *            because its subdirectories would be an endless cycle.
+	 */
+	private void indexDirectory(File directory, String packageName,
+			Set<String> parentDirectories) {
+		String canonicalPath;
+		try {
+			canonicalPath = directory.getCanonicalPath();
+		} catch (IOException e) {
+			packageIndexComplete = false;
+			return;
+		}
+		if (!parentDirectories.add(canonicalPath)) {
+			return;
+		}
+		File[] files = directory.listFiles();
+		if (files == null) {
+			packageIndexComplete = false;
+		} else {
+			for (File file : files) {
+				String fileName = file.getName();
+				if (file.isDirectory()) {
+					String subPackageName = packageName.length() == 0 ? fileName
+							: packageName + "." + fileName;
+					indexDirectory(file, subPackageName, parentDirectories);
+				} else if (fileName.endsWith(CLASS_FILE_SUFFIX)) {
+					packageIndex.add(packageName);
+				}
+			}
+		}
+		parentDirectories.remove(canonicalPath);
+	}
+
+	private JarEntryCache openJarEntryCache(URL jarURL, File file) {
+		if (cacheDirectory == null) {
+			return null;
+		}
+		try {
+			return JarEntryCache.open(jarURL, file, cacheDirectory);
+		} catch (IOException e) {
+			/*
+			 * The cache is only an optimization. If it can not be used the
+			 * jar file is used directly.
+			 */
+			return null;
+		}
+	}
+
+	private void indexJar(URL jarURL, File file) throws IOException {
+		JarFile jarFile = new JarFile(file);
+		try {
+			Collection<String> entryNames = new HashSet<String>();
+			Enumeration<JarEntry> entries = jarFile.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry jarEntry = entries.nextElement();
+				if (!jarEntry.isDirectory()) {
+					entryNames.add(jarEntry.getName());
+				}
+			}
+			indexEntryNames(entryNames);
+			indexManifestClassPath(jarURL, jarFile.getManifest());
+		} finally {
+			jarFile.close();
+		}
+	}
+
+	private void indexEntryNames(Collection<String> entryNames) {
+		for (String entryName : entryNames) {
+			if (entryName.endsWith(CLASS_FILE_SUFFIX)) {
+				int lastSlash = entryName.lastIndexOf('/');
+				String packageName = lastSlash < 0 ? "" : entryName.substring(
+						0, lastSlash).replace('/', '.');
+				packageIndex.add(packageName);
+			}
+		}
+	}
+
+	/*
+	 * The URLClassLoader also searches the jars that are referenced by a jar's
+	 * manifest class path.
+	 */
+	private void indexManifestClassPath(URL jarURL, Manifest manifest)
+			throws IOException {
+		if (manifest == null) {
+			return;
+		}
+		String classPath = manifest.getMainAttributes().getValue(
+				Attributes.Name.CLASS_PATH);
+		if (classPath == null) {
+			return;
+		}
+		manifestClassPathURLs.add(jarURL);
+		StringTokenizer classPathTokenizer = new StringTokenizer(classPath);
+		while (classPathTokenizer.hasMoreTokens()) {
+			String classPathEntry = classPathTokenizer.nextToken();
+			indexURL(new URL(jarURL, classPathEntry));
+		}
+	}
+
+	/**
+	 * @return true if the class with the given name might be contained in the
+	 *         URLs of this {@link ParentLastURLClassLoader}. False if it is
+	 *         known that the class can not be found.
+	 */
+	private boolean mightContain(String className) {
+		if (classNotFoundCache.contains(className)) {
+			return false;
+		}
+		if (!packageIndexComplete) {
+			return true;
+		}
+		int lastDot = className.lastIndexOf('.');
+		String packageName = lastDot < 0 ? "" : className.substring(0,
+				lastDot);
+		return packageIndex.contains(packageName);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Classes are defined from the jar entry cache files if a cache directory
+	 * is used.
+	 * </p>
+	 *
+	 * @since 1.2.0.6
+	 */
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		if (!jarEntryCaches.isEmpty()) {
+			String entryName = name.replace('.', '/')
+					.concat(CLASS_FILE_SUFFIX);
+			for (URL url : searchOrder) {
+				JarEntryCache jarEntryCache = jarEntryCaches.get(url);
+				if (jarEntryCache == null
+						|| !jarEntryCache.isEntryDataCached()) {
+					break;
+				}
+				ByteBuffer classBytes = jarEntryCache.getEntry(entryName);
+				if (classBytes != null) {
+					return defineClass(name, classBytes, jarEntryCache);
+				}
+				if (manifestClassPathURLs.contains(url)) {
+					break;
+				}
+			}
+		}
+		return super.findClass(name);
+	}
+
+	private Class<?> defineClass(String name, ByteBuffer classBytes,
+			JarEntryCache jarEntryCache) throws ClassNotFoundException {
+		URL jarURL = jarEntryCache.getJarURL();
+		int lastDot = name.lastIndexOf('.');
+		if (lastDot != -1) {
+			String packageName = name.substring(0, lastDot);
+			if (getPackage(packageName) == null) {
+				try {
+					Manifest manifest = jarEntryCache.getManifest();
+					if (manifest == null) {
+						definePackage(packageName, null, null, null, null,
+								null, null, null);
+					} else {
+						definePackage(packageName, manifest, jarURL);
+					}
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
+				} catch (IllegalArgumentException e) {
+					/*
+					 * The package has been defined in the meanwhile.
+					 */
+				}
+			}
+		}
+		CodeSource codeSource = new CodeSource(jarURL, (CodeSigner[]) null);
+		return defineClass(name, classBytes, codeSource);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Resources are read from the jar entry cache files if a cache directory
+	 * is used.
+	 * </p>
+	 *
+	 * @since 1.2.0.6
+	 */
+	@Override
+	public URL findResource(String name) {
+		if (!jarEntryCaches.isEmpty()) {
+			for (URL url : searchOrder) {
+				JarEntryCache jarEntryCache = jarEntryCaches.get(url);
+				if (jarEntryCache == null
+						|| !jarEntryCache.isEntryDataCached()) {
+					break;
+				}
+				URL entryURL = jarEntryCache.getEntryURL(name);
+				if (entryURL != null) {
+					return entryURL;
+				}
+				if (manifestClassPathURLs.contains(url)) {
+					break;
+				}
+			}
+		}
+		return super.findResource(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @since 1.2.0.6
+	 */
+	@Override
+	public void close() throws IOException {
+		jarEntryCaches.clear();
+		super.close();
 	}
 
 	/**
@@ -92,13 +487,21 @@ public class ParentLastURLClassLoader extends URLClassLoader {
 		// First, check if the class has already been loaded
 		Class<?> c = findLoadedClass(name);
 		if (c == null) {
-			try {
-				c = findClass(name);
-			} catch (ClassNotFoundException e) {
+			ClassNotFoundException classNotFoundException = null;
+			if (mightContain(name)) {
+				try {
+					c = findClass(name);
+				} catch (ClassNotFoundException e) {
+					classNotFoundCache.add(name);
+					classNotFoundException = e;
+				}
+			}
+			if (c == null) {
 				if (parent != null) {
 					c = parent.loadClass(name);
 				} else {
-					throw new ClassNotFoundException(name, e);
+					throw new ClassNotFoundException(name,
+							classNotFoundException);
 				}
 			}
 		}
@@ -0,0 +1,276 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.link_intersystems.lang.Assert;
+import com.link_intersystems.util.graph.Node;
+
+/**
+ * A {@link Node} adaption to an arbitrary object graph. The references of an
+ * {@link ObjectNode} are the non-null values of the object's reference fields,
+ * including the inherited and private ones, or the non-null elements if the
+ * object is an object array. Static fields are not followed.
+ * <p>
+ * The reference fields of every class are looked up once and the
+ * {@link Field} accessors are cached per class. Fields that can not be made
+ * accessible are not followed, see {@link #getInaccessibleFields(Class)}. If
+ * an object has such fields and is a {@link Collection} or a {@link Map} its
+ * elements or its keys and values are referenced instead.
+ * </p>
+ * <p>
+ * Every object that is reached from the root {@link ObjectNode} is
+ * represented by exactly one {@link ObjectNode}. Thus node iterators and
+ * traversals that track visited nodes by identity visit every object only
+ * once. The {@link ObjectNode}s of an object graph are registered in a
+ * concurrent map. Thus {@link #getReferences()} can be called by multiple
+ * threads, e.g. by a
+ * {@link com.link_intersystems.util.graph.ParallelBreadthFirstTraversal}, as
+ * long as the object graph is not modified while it is traversed.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public class ObjectNode implements Node {
+
+	private static final Field[] NO_FIELDS = new Field[0];
+
+	private static final ReferenceFields NO_REFERENCE_FIELDS = new ReferenceFields(
+			NO_FIELDS, NO_FIELDS);
+
+	private static final ClassValue<ReferenceFields> REFERENCE_FIELDS = new ClassValue<ReferenceFields>() {
+
+		@Override
+		protected ReferenceFields computeValue(Class<?> type) {
+			if (type.isArray() || type.isPrimitive()) {
+				return NO_REFERENCE_FIELDS;
+			}
+			List<Field> accessibleFields = new ArrayList<Field>();
+			List<Field> inaccessibleFields = new ArrayList<Field>();
+			Class<?> superclass = type.getSuperclass();
+			if (superclass != null) {
+				ReferenceFields superclassFields = get(superclass);
+				accessibleFields.addAll(Arrays
+						.asList(superclassFields.accessibleFields));
+				inaccessibleFields.addAll(Arrays
+						.asList(superclassFields.inaccessibleFields));
+			}
+			for (Field field : type.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())
+						|| field.getType().isPrimitive()) {
+					continue;
+				}
+				try {
+					field.setAccessible(true);
+					accessibleFields.add(field);
+				} catch (RuntimeException e) {
+					inaccessibleFields.add(field);
+				}
+			}
+			return new ReferenceFields(
+					accessibleFields.toArray(new Field[accessibleFields.size()]),
+					inaccessibleFields.toArray(new Field[inaccessibleFields
+							.size()]));
+		}
+	};
+
+	private final Object object;
+
+	/*
+	 * The nodes of the objects that were reached from the root node.
+	 */
+	private final ConcurrentMap<IdentityKey, ObjectNode> objectNodes;
+
+	/**
+	 * Constructs the root {@link ObjectNode} of an object graph.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public ObjectNode(Object object) {
+		Assert.notNull("object", object);
+		this.object = object;
+		this.objectNodes = new ConcurrentHashMap<IdentityKey, ObjectNode>();
+		this.objectNodes.put(new IdentityKey(object), this);
+	}
+
+	private ObjectNode(Object object,
+			ConcurrentMap<IdentityKey, ObjectNode> objectNodes) {
+		this.object = object;
+		this.objectNodes = objectNodes;
+	}
+
+	/**
+	 * @return the {@link ObjectNode}s of the objects that this
+	 *         {@link ObjectNode}'s object references in field declaration
+	 *         order, starting with the fields of the top most superclass, or
+	 *         in array index order.
+	 */
+	public Collection<Node> getReferences() {
+		Class<? extends Object> type = object.getClass();
+		List<Node> references;
+		if (type.isArray()) {
+			if (type.getComponentType().isPrimitive()) {
+				return new ArrayList<Node>(0);
+			}
+			int length = Array.getLength(object);
+			references = new ArrayList<Node>(length);
+			Object[] elements = (Object[]) object;
+			for (int i = 0; i < length; i++) {
+				addReference(references, elements[i]);
+			}
+		} else {
+			ReferenceFields referenceFields = REFERENCE_FIELDS.get(type);
+			Field[] fields = referenceFields.accessibleFields;
+			references = new ArrayList<Node>(fields.length);
+			for (Field field : fields) {
+				try {
+					addReference(references, field.get(object));
+				} catch (IllegalAccessException e) {
+					continue;
+				}
+			}
+			if (referenceFields.inaccessibleFields.length > 0) {
+				addPublicReferences(references);
+			}
+		}
+		return references;
+	}
+
+	/**
+	 * Adds the references that the public API of the object provides, because
+	 * some of its fields can not be read. These are the elements of a
+	 * {@link Collection} and the keys and values of a {@link Map}.
+	 */
+	private void addPublicReferences(List<Node> references) {
+		if (object instanceof Collection<?>) {
+			for (Object element : (Collection<?>) object) {
+				addReference(references, element);
+			}
+		} else if (object instanceof Map<?, ?>) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+				addReference(references, entry.getKey());
+				addReference(references, entry.getValue());
+			}
+		}
+	}
+
+	private void addReference(List<Node> references, Object reference) {
+		if (reference == null) {
+			return;
+		}
+		IdentityKey identityKey = new IdentityKey(reference);
+		ObjectNode objectNode = objectNodes.get(identityKey);
+		if (objectNode == null) {
+			objectNode = new ObjectNode(reference, objectNodes);
+			ObjectNode registeredNode = objectNodes.putIfAbsent(identityKey,
+					objectNode);
+			if (registeredNode != null) {
+				objectNode = registeredNode;
+			}
+		}
+		references.add(objectNode);
+	}
+
+	/**
+	 * @return the object that this {@link ObjectNode} adapts.
+	 */
+	public Object getUserObject() {
+		return object;
+	}
+
+	/**
+	 * The references of an {@link ObjectNode} are defined by it's object.
+	 * Therefore this method does nothing.
+	 */
+	public void addReference(Node node) {
+	}
+
+	/**
+	 * @return the non-static reference {@link Field}s of the type including
+	 *         the inherited ones that can not be made accessible and are
+	 *         therefore not followed. On Java 9 and later these are the fields
+	 *         of classes in packages that are not opened to this library, e.g.
+	 *         the internal fields of {@link String} or
+	 *         {@link java.util.HashMap}. A package can be opened by a JVM
+	 *         option like
+	 *         <code>--add-opens java.base/java.util=ALL-UNNAMED</code>.
+	 * @since 1.2.0.6
+	 */
+	public static List<Field> getInaccessibleFields(Class<?> type) {
+		Assert.notNull("type", type);
+		return Collections.unmodifiableList(Arrays.asList(REFERENCE_FIELDS
+				.get(type).inaccessibleFields));
+	}
+
+	@Override
+	public String toString() {
+		return object.getClass().getName() + "@"
+				+ Integer.toHexString(System.identityHashCode(object));
+	}
+
+	/**
+	 * The accessible and the inaccessible reference fields of a class.
+	 */
+	private static class ReferenceFields {
+
+		private final Field[] accessibleFields;
+
+		private final Field[] inaccessibleFields;
+
+		public ReferenceFields(Field[] accessibleFields,
+				Field[] inaccessibleFields) {
+			this.accessibleFields = accessibleFields;
+			this.inaccessibleFields = inaccessibleFields;
+		}
+	}
+
+	/**
+	 * Compares objects by identity in hash based collections.
+	 */
+	private static class IdentityKey {
+
+		private final Object object;
+
+		public IdentityKey(Object object) {
+			this.object = object;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(object);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IdentityKey
+					&& ((IdentityKey) obj).object == object;
+		}
+	}
+}
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Set;
+
+import org.apache.commons.collections4.Predicate;
+
+import com.link_intersystems.lang.Assert;
+import com.link_intersystems.util.graph.GraphFacade.NodeIterateStrategy;
+import com.link_intersystems.util.graph.Node;
+import com.link_intersystems.util.graph.NodeTraversal;
+import com.link_intersystems.util.graph.NodeVisitor;
+
+/**
+ * Estimates the memory footprint of objects without a heap dump or an
+ * instrumentation agent. The sizes are calculated from an object layout
+ * heuristic that is modelled after the HotSpot VM: an object consists of a
+ * header, the values of its instance fields and is padded to the object
+ * alignment. An array consists of a header that includes the length and its
+ * elements.
+ * <ul>
+ * <li>The shallow size is the size of an object itself.</li>
+ * <li>The retained size is the sum of the shallow sizes of all objects that
+ * are reachable from an object. The object graph is traversed with
+ * {@link ObjectNode}s and every object is counted once. Objects that are also
+ * referenced from outside the object graph are counted too. Thus the
+ * retained size is an upper bound of the memory that is freed if the object
+ * becomes unreachable, as long as all fields of the object graph can be
+ * read.</li>
+ * </ul>
+ * <p>
+ * On Java 9 and later the fields of JDK classes can only be read if their
+ * packages are opened to this library, e.g. by
+ * <code>--add-opens java.base/java.lang=ALL-UNNAMED</code> and
+ * <code>--add-opens java.base/java.util=ALL-UNNAMED</code>. Otherwise the
+ * retained size is only an approximation. The characters of a {@link String}
+ * are then estimated from its length and the elements of a
+ * {@link java.util.Collection} and the keys and values of a
+ * {@link java.util.Map} are reached through their public API, but the
+ * internal structure of these objects, e.g. the entries of a
+ * {@link java.util.HashMap}, is not counted.
+ * {@link #getRetainedSize(Object, Set)} reports the fields that could not be
+ * read.
+ * </p>
+ * The traversal can be cut off by a maximum depth, a maximum number of
+ * objects and an exclude {@link Predicate}. By default {@link Class} objects,
+ * {@link ClassLoader}s and enum constants are excluded, because they are
+ * shared by the whole application.
+ *
+ * <pre>
+ * ObjectSizeEstimator estimator = new ObjectSizeEstimator();
+ * estimator.setMaxDepth(10);
+ * long cacheEntrySize = estimator.getRetainedSize(cacheEntry);
+ * </pre>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public class ObjectSizeEstimator {
+
+	/**
+	 * The maximum depth or number of objects that means no limit.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public static final int UNLIMITED = -1;
+
+	private static final Predicate<Object> SHARED_OBJECTS_PREDICATE = new Predicate<Object>() {
+
+		public boolean evaluate(Object object) {
+			return object instanceof Class<?> || object instanceof ClassLoader
+					|| object instanceof Enum<?>;
+		}
+	};
+
+	private static final long COMPRESSED_REFERENCES_HEAP_LIMIT = 32L * 1024 * 1024 * 1024;
+
+	private final int objectHeaderSize;
+
+	private final int arrayHeaderSize;
+
+	private final int referenceSize;
+
+	private final int objectAlignment;
+
+	/*
+	 * The shallow size of an instance of a class or the size of an element of
+	 * an array class.
+	 */
+	private final ClassValue<Long> typeSizes = new ClassValue<Long>() {
+
+		@Override
+		protected Long computeValue(Class<?> type) {
+			if (type.isArray()) {
+				return Long.valueOf(getFieldSize(type.getComponentType()));
+			}
+			long size = objectHeaderSize;
+			for (Class<?> current = type; current != null; current = current
+					.getSuperclass()) {
+				for (Field field : current.getDeclaredFields()) {
+					if (!Modifier.isStatic(field.getModifiers())) {
+						size += getFieldSize(field.getType());
+					}
+				}
+			}
+			return Long.valueOf(align(size));
+		}
+	};
+
+	private int maxDepth = UNLIMITED;
+
+	private int maxObjects = UNLIMITED;
+
+	private Predicate<Object> excludePredicate = SHARED_OBJECTS_PREDICATE;
+
+	/**
+	 * Constructs an {@link ObjectSizeEstimator} that guesses the object layout
+	 * of the running VM. On 64 bit VMs compressed references are assumed if
+	 * the maximum heap is less than 32 GB.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public ObjectSizeEstimator() {
+		if ("32".equals(System.getProperty("sun.arch.data.model"))) {
+			this.objectHeaderSize = 8;
+			this.arrayHeaderSize = 12;
+			this.referenceSize = 4;
+		} else if (Runtime.getRuntime().maxMemory() < COMPRESSED_REFERENCES_HEAP_LIMIT) {
+			this.objectHeaderSize = 12;
+			this.arrayHeaderSize = 16;
+			this.referenceSize = 4;
+		} else {
+			this.objectHeaderSize = 16;
+			this.arrayHeaderSize = 24;
+			this.referenceSize = 8;
+		}
+		this.objectAlignment = 8;
+	}
+
+	/**
+	 * Constructs an {@link ObjectSizeEstimator} with the given object layout.
+	 *
+	 * @param objectHeaderSize
+	 *            the size of an object's header in bytes.
+	 * @param arrayHeaderSize
+	 *            the size of an array's header, including the length, in
+	 *            bytes.
+	 * @param referenceSize
+	 *            the size of a reference in bytes.
+	 * @param objectAlignment
+	 *            the alignment of objects in bytes. Must be a power of 2.
+	 * @since 1.2.0.6
+	 */
+	public ObjectSizeEstimator(int objectHeaderSize, int arrayHeaderSize,
+			int referenceSize, int objectAlignment) {
+		Assert.greater("objectHeaderSize", 0, objectHeaderSize);
+		Assert.greater("arrayHeaderSize", 0, arrayHeaderSize);
+		Assert.greater("referenceSize", 0, referenceSize);
+		Assert.greater("objectAlignment", 0, objectAlignment);
+		if (Integer.bitCount(objectAlignment) != 1) {
+			throw new IllegalArgumentException(
+					"objectAlignment must be a power of 2");
+		}
+		this.objectHeaderSize = objectHeaderSize;
+		this.arrayHeaderSize = arrayHeaderSize;
+		this.referenceSize = referenceSize;
+		this.objectAlignment = objectAlignment;
+	}
+
+	/**
+	 * Sets the maximum depth of the objects that are counted by
+	 * {@link #getRetainedSize(Object)}. The measured object has the depth 0.
+	 * Default is {@link #UNLIMITED}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setMaxDepth(int maxDepth) {
+		if (maxDepth < 0 && maxDepth != UNLIMITED) {
+			throw new IllegalArgumentException(
+					"maxDepth must be 0 or greater or UNLIMITED");
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Sets the maximum number of objects that are counted by
+	 * {@link #getRetainedSize(Object)}. Default is {@link #UNLIMITED}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setMaxObjects(int maxObjects) {
+		if (maxObjects < 1 && maxObjects != UNLIMITED) {
+			throw new IllegalArgumentException(
+					"maxObjects must be 1 or greater or UNLIMITED");
+		}
+		this.maxObjects = maxObjects;
+	}
+
+	/**
+	 * Sets the {@link Predicate} that selects the referenced objects that are
+	 * neither counted nor traversed by {@link #getRetainedSize(Object)}. The
+	 * measured object itself is always counted. Default is a
+	 * {@link Predicate} that excludes {@link Class} objects,
+	 * {@link ClassLoader}s and enum constants. Null means that no object is
+	 * excluded.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setExcludePredicate(Predicate<Object> excludePredicate) {
+		this.excludePredicate = excludePredicate;
+	}
+
+	/**
+	 * @return the estimated size of the object itself in bytes or 0 if the
+	 *         object is null.
+	 * @since 1.2.0.6
+	 */
+	public long getShallowSize(Object object) {
+		if (object == null) {
+			return 0;
+		}
+		Class<?> type = object.getClass();
+		long typeSize = typeSizes.get(type).longValue();
+		if (type.isArray()) {
+			return align(arrayHeaderSize + typeSize * Array.getLength(object));
+		}
+		return typeSize;
+	}
+
+	/**
+	 * @return the estimated size in bytes of the object and all objects that
+	 *         are reachable from it within the cut-off limits or 0 if the
+	 *         object is null.
+	 * @since 1.2.0.6
+	 */
+	public long getRetainedSize(Object object) {
+		return getRetainedSize(object, null);
+	}
+
+	/**
+	 * @param inaccessibleFields
+	 *            the {@link Set} that the {@link Field}s of the counted
+	 *            objects that could not be read are added to, see
+	 *            {@link ObjectNode#getInaccessibleFields(Class)}. If the
+	 *            {@link Set} is empty afterwards the retained size is not
+	 *            an approximation. Might be null.
+	 * @return the estimated size in bytes of the object and all objects that
+	 *         are reachable from it within the cut-off limits or 0 if the
+	 *         object is null.
+	 * @since 1.2.0.6
+	 */
+	public long getRetainedSize(Object object, Set<Field> inaccessibleFields) {
+		if (object == null) {
+			return 0;
+		}
+		RetainedSizeVisitor retainedSizeVisitor = new RetainedSizeVisitor(
+				inaccessibleFields);
+		NodeTraversal nodeTraversal = new NodeTraversal(new ObjectNode(object));
+		nodeTraversal.setNodeIterateStrategy(NodeIterateStrategy.BREADTH_FIRST);
+		nodeTraversal.setVisitNodesOnce(true);
+		if (maxDepth != UNLIMITED) {
+			nodeTraversal.setMaxDepth(maxDepth);
+		}
+		nodeTraversal.traverse(retainedSizeVisitor);
+		return retainedSizeVisitor.retainedSize;
+	}
+
+	private long getFieldSize(Class<?> type) {
+		if (type == long.class || type == double.class) {
+			return 8;
+		} else if (type == int.class || type == float.class) {
+			return 4;
+		} else if (type == short.class || type == char.class) {
+			return 2;
+		} else if (type == byte.class || type == boolean.class) {
+			return 1;
+		}
+		return referenceSize;
+	}
+
+	private long align(long size) {
+		return (size + objectAlignment - 1) & -objectAlignment;
+	}
+
+	/**
+	 * @return the estimated size of a {@link String}'s value array, if the
+	 *         array can not be read. The fields of {@link String} can only be
+	 *         inaccessible on Java 9 and later, which store strings compactly.
+	 *         Thus the estimate assumes 1 byte per character if all characters
+	 *         are Latin-1 characters and 2 bytes per character otherwise.
+	 */
+	private long getStringValueSize(String string) {
+		if (ObjectNode.getInaccessibleFields(String.class).isEmpty()) {
+			return 0;
+		}
+		int length = string.length();
+		long bytesPerChar = 1;
+		for (int i = 0; i < length; i++) {
+			if (string.charAt(i) > 0xFF) {
+				bytesPerChar = 2;
+				break;
+			}
+		}
+		return align(arrayHeaderSize + bytesPerChar * length);
+	}
+
+	private class RetainedSizeVisitor implements NodeVisitor {
+
+		private final Set<Field> inaccessibleFields;
+
+		private long retainedSize;
+
+		private int objectCount;
+
+		public RetainedSizeVisitor(Set<Field> inaccessibleFields) {
+			this.inaccessibleFields = inaccessibleFields;
+		}
+
+		public VisitResult visit(Node node, int depth) {
+			Object object = node.getUserObject();
+			if (depth > 0 && excludePredicate != null
+					&& excludePredicate.evaluate(object)) {
+				return VisitResult.SKIP_SUBTREE;
+			}
+			retainedSize += getShallowSize(object);
+			if (object instanceof String) {
+				retainedSize += getStringValueSize((String) object);
+			}
+			if (inaccessibleFields != null) {
+				inaccessibleFields.addAll(ObjectNode
+						.getInaccessibleFields(object.getClass()));
+			}
+			objectCount++;
+			if (maxObjects != UNLIMITED && objectCount >= maxObjects) {
+				return VisitResult.TERMINATE;
+			}
+			return VisitResult.CONTINUE;
+		}
+	}
+}
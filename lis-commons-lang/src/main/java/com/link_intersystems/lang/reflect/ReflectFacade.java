@@ -26,11 +26,6 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.collections4.Predicate;
 import org.apache.commons.collections4.Transformer;
-import org.apache.commons.collections4.functors.AndPredicate;
-import org.apache.commons.collections4.functors.EqualPredicate;
-import org.apache.commons.collections4.functors.NotNullPredicate;
-import org.apache.commons.collections4.functors.TransformedPredicate;
-import org.apache.commons.lang3.reflect.MethodUtils;
 
 import com.link_intersystems.lang.Assert;
 import com.link_intersystems.lang.ref.Reference;
@@ -94,44 +89,7 @@ public abstract class ReflectFacade {
 	 * @since 1.0.0.0
 	 */
 	public static Predicate getMemberNamePredicate(String memberName) {
-		Assert.notNull("memberName", memberName);
-
-		class SerializableMemberNamePredicate implements
-				SerializableReference<Predicate> {
-
-			private static final long serialVersionUID = -625148437829360498L;
-
-			private transient Predicate predicate;
-
-			private final String memberName;
-
-			public SerializableMemberNamePredicate(String memberName) {
-				this.memberName = memberName;
-			}
-
-			public Predicate get() {
-				if (predicate == null) {
-					Method memberGetNameMethod = MethodUtils
-							.getAccessibleMethod(Member.class, "getName",
-									new Class<?>[0]);
-					MethodInvokingTransformer member2NameTransformer = new MethodInvokingTransformer(
-							memberGetNameMethod);
-					Predicate propertyValuePredicate = AndPredicate
-							.andPredicate(NotNullPredicate.notNullPredicate(),
-									new EqualPredicate(memberName));
-					Predicate instance = TransformedPredicate
-							.transformedPredicate(member2NameTransformer,
-									propertyValuePredicate);
-					Predicate memberNamePredicate = AndPredicate.andPredicate(
-							NotNullPredicate.notNullPredicate(), instance);
-					this.predicate = memberNamePredicate;
-				}
-				return predicate;
-			}
-		}
-
-		return new SerializablePredicate(new SerializableMemberNamePredicate(
-				memberName));
+		return new MemberNamePredicate(memberName);
 	}
 
 	/**
@@ -146,43 +104,7 @@ public abstract class ReflectFacade {
 	 * @since 1.0.0.0
 	 */
 	public static Predicate getDeclaringClassPredicate(Class<?> declaringClass) {
-		Assert.notNull("declaringClass", declaringClass);
-
-		class SerializableDeclaringClassPredicate implements
-				SerializableReference<Predicate> {
-
-			private static final long serialVersionUID = -625148437829360498L;
-
-			private transient Predicate predicate;
-
-			private final Class<?> declaringClass;
-
-			public SerializableDeclaringClassPredicate(Class<?> declaringClass) {
-				this.declaringClass = declaringClass;
-			}
-
-			public Predicate get() {
-				if (predicate == null) {
-					Method getDeclaringClassMethod = MethodUtils
-							.getAccessibleMethod(Member.class,
-									"getDeclaringClass", new Class<?>[0]);
-					MethodInvokingTransformer member2NameTransformer = new MethodInvokingTransformer(
-							getDeclaringClassMethod);
-					Predicate propertyValuePredicate = AndPredicate
-							.andPredicate(NotNullPredicate.notNullPredicate(),
-									new EqualPredicate(declaringClass));
-					Predicate instance = TransformedPredicate.transformedPredicate(
-							member2NameTransformer, propertyValuePredicate);
-					Predicate memberNamePredicate = AndPredicate.andPredicate(
-							NotNullPredicate.notNullPredicate(), instance);
-					this.predicate = memberNamePredicate;
-				}
-				return predicate;
-			}
-		}
-
-		return new SerializablePredicate(
-				new SerializableDeclaringClassPredicate(declaringClass));
+		return new DeclaringClassMemberPredicate(declaringClass);
 	}
 
 	/**
@@ -503,8 +425,6 @@ class MemberNamePatternPredicate implements Predicate, Serializable {
 	 */
 	private static final long serialVersionUID = 7433776975628507987L;
 
-	private transient Matcher matcher;
-
 	private final Pattern namePattern;
 
 	/**
@@ -518,19 +438,6 @@ class MemberNamePatternPredicate implements Predicate, Serializable {
 	public MemberNamePatternPredicate(Pattern namePattern) {
 		Assert.notNull("namePattern", namePattern);
 		this.namePattern = namePattern;
-		matcher = namePattern.matcher("");
-	}
-
-	private Matcher getMatcher(String string) {
-		if (matcher == null) {
-			/**
-			 * In case of deserialization
-			 */
-			matcher = namePattern.matcher(string);
-		} else {
-			matcher.reset(string);
-		}
-		return matcher;
 	}
 
 	/**
@@ -547,12 +454,128 @@ class MemberNamePatternPredicate implements Predicate, Serializable {
 		}
 		Member member = (Member) object;
 		String memberName = member.getName();
-		Matcher matcher = getMatcher(memberName);
+		Matcher matcher = namePattern.matcher(memberName);
 		return matcher.matches();
 	}
 
 }
 
+/**
+ * A {@link Predicate} that evaluates to true if it is evaluated against a
+ * {@link Member} whose name is equal to the member name that this
+ * {@link MemberNamePredicate} was constructed with.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+class MemberNamePredicate implements Predicate, Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -625148437829360498L;
+
+	private final String memberName;
+
+	public MemberNamePredicate(String memberName) {
+		Assert.notNull("memberName", memberName);
+		this.memberName = memberName;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @param object
+	 *            should be a {@link Member}. Other objects always evaluate to
+	 *            false.
+	 * @since 1.2.0.6
+	 */
+	public boolean evaluate(Object object) {
+		if (object instanceof Member) {
+			Member member = (Member) object;
+			return memberName.equals(member.getName());
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return memberName.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		MemberNamePredicate other = (MemberNamePredicate) obj;
+		return memberName.equals(other.memberName);
+	}
+}
+
+/**
+ * A {@link Predicate} that evaluates to true if it is evaluated against a
+ * {@link Member} whose declaring class is equal to the {@link Class} that this
+ * {@link DeclaringClassMemberPredicate} was constructed with.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+class DeclaringClassMemberPredicate implements Predicate, Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 4186239402271957763L;
+
+	private final Class<?> declaringClass;
+
+	public DeclaringClassMemberPredicate(Class<?> declaringClass) {
+		Assert.notNull("declaringClass", declaringClass);
+		this.declaringClass = declaringClass;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @param object
+	 *            should be a {@link Member}. Other objects always evaluate to
+	 *            false.
+	 * @since 1.2.0.6
+	 */
+	public boolean evaluate(Object object) {
+		if (object instanceof Member) {
+			Member member = (Member) object;
+			return declaringClass.equals(member.getDeclaringClass());
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return declaringClass.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		DeclaringClassMemberPredicate other = (DeclaringClassMemberPredicate) obj;
+		return declaringClass.equals(other.declaringClass);
+	}
+}
+
 /**
  * An {@link Predicate} that evaluates to true if the {@link Class} that this
  * {@link AssignablePredicate} was constructed with is assignable from the class
@@ -615,6 +638,23 @@ class AssignablePredicate implements Predicate, Serializable {
 		return isAssignable;
 	}
 
+	@Override
+	public int hashCode() {
+		return clazz.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		AssignablePredicate other = (AssignablePredicate) obj;
+		return clazz.equals(other.clazz);
+	}
+
 }
 
 /**
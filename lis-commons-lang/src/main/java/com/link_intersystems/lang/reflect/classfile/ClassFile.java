@@ -0,0 +1,184 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * The metadata of a class as declared in a class file. A {@link ClassFile}
+ * describes a class without loading it. All class names are binary names as
+ * they are used by {@link Class#forName(String)}.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ * @see ClassFileParser
+ * @see ClassPathScanner
+ */
+public final class ClassFile {
+
+	private final int modifiers;
+
+	private final String name;
+
+	private final String superclassName;
+
+	private final List<String> interfaceNames;
+
+	private final List<String> annotationNames;
+
+	private final List<ClassFileMember> members;
+
+	private volatile Map<String, ClassFile> classPath = Collections
+			.emptyMap();
+
+	ClassFile(int modifiers, String name, String superclassName,
+			List<String> interfaceNames, List<String> annotationNames,
+			List<ClassFileMember> members) {
+		Assert.notNull("name", name);
+		this.modifiers = modifiers;
+		this.name = name;
+		this.superclassName = superclassName;
+		this.interfaceNames = interfaceNames;
+		this.annotationNames = annotationNames;
+		this.members = members;
+	}
+
+	/**
+	 * @return the modifiers of this class as {@link Class#getModifiers()}
+	 *         returns them. The ACC_SUPER flag is not included and the
+	 *         modifiers of a nested class are the access flags of its
+	 *         InnerClasses entry, e.g. {@link Modifier#STATIC} or
+	 *         {@link Modifier#PRIVATE}.
+	 * @since 1.2.0.6
+	 */
+	public int getModifiers() {
+		return modifiers;
+	}
+
+	/**
+	 * @return the binary name of this class, e.g.
+	 *         <code>java.util.Map$Entry</code>.
+	 * @since 1.2.0.6
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the binary name of the superclass or null if this class file
+	 *         describes {@link Object} or a module.
+	 * @since 1.2.0.6
+	 */
+	public String getSuperclassName() {
+		return superclassName;
+	}
+
+	/**
+	 * @return the binary names of the interfaces that this class directly
+	 *         implements or extends.
+	 * @since 1.2.0.6
+	 */
+	public List<String> getInterfaceNames() {
+		return interfaceNames;
+	}
+
+	/**
+	 * @return the fully qualified names of the annotations that are declared
+	 *         on this class (runtime visible and invisible).
+	 * @since 1.2.0.6
+	 */
+	public List<String> getAnnotationNames() {
+		return annotationNames;
+	}
+
+	/**
+	 * @return the fields, methods and constructors that this class declares.
+	 *         Static initializers are not included.
+	 * @since 1.2.0.6
+	 */
+	public List<ClassFileMember> getMembers() {
+		return members;
+	}
+
+	/**
+	 * @return true if this class file describes an interface.
+	 * @since 1.2.0.6
+	 */
+	public boolean isInterface() {
+		return Modifier.isInterface(modifiers);
+	}
+
+	/**
+	 * Checks if this class is the given class or a subtype of it. The
+	 * supertypes are resolved via the class files that were scanned together
+	 * with this {@link ClassFile} by a {@link ClassPathScanner}. Supertypes
+	 * that are not part of the scanned class path can only be matched by their
+	 * name, but their own supertypes are unknown.
+	 *
+	 * @param className
+	 *            the binary name of the class or interface.
+	 * @return true if this class is the given type or a subtype of it.
+	 * @since 1.2.0.6
+	 */
+	public boolean isSubtypeOf(String className) {
+		Assert.notNull("className", className);
+		Map<String, ClassFile> classPath = this.classPath;
+		Set<String> visited = new HashSet<String>();
+		List<String> typeNames = new ArrayList<String>();
+		typeNames.add(name);
+		while (!typeNames.isEmpty()) {
+			String typeName = typeNames.remove(typeNames.size() - 1);
+			if (className.equals(typeName)) {
+				return true;
+			}
+			if (!visited.add(typeName)) {
+				continue;
+			}
+			ClassFile classFile = name.equals(typeName) ? this : classPath
+					.get(typeName);
+			if (classFile != null) {
+				if (classFile.superclassName != null) {
+					typeNames.add(classFile.superclassName);
+				}
+				typeNames.addAll(classFile.interfaceNames);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the class files that were scanned together with this
+	 * {@link ClassFile} keyed by their names.
+	 */
+	void setClassPath(Map<String, ClassFile> classPath) {
+		this.classPath = classPath;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
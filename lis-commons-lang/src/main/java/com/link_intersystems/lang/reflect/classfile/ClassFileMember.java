@@ -0,0 +1,111 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * The metadata of a field, method or constructor as declared in a class file.
+ * A {@link ClassFileMember} describes a {@link Member} without loading the
+ * declaring class.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public final class ClassFileMember {
+
+	private final Class<? extends Member> memberType;
+
+	private final int modifiers;
+
+	private final String name;
+
+	private final String descriptor;
+
+	private final List<String> annotationNames;
+
+	ClassFileMember(Class<? extends Member> memberType, int modifiers,
+			String name, String descriptor, List<String> annotationNames) {
+		Assert.notNull("memberType", memberType);
+		Assert.notNull("name", name);
+		Assert.notNull("descriptor", descriptor);
+		Assert.notNull("annotationNames", annotationNames);
+		this.memberType = memberType;
+		this.modifiers = modifiers;
+		this.name = name;
+		this.descriptor = descriptor;
+		this.annotationNames = annotationNames;
+	}
+
+	/**
+	 * @return the {@link Member} type this {@link ClassFileMember} describes.
+	 *         Either {@link Field}, {@link Method} or {@link Constructor}.
+	 * @since 1.2.0.6
+	 */
+	public Class<? extends Member> getMemberType() {
+		return memberType;
+	}
+
+	/**
+	 * @return the access flags of this member as they are declared in the
+	 *         class file. The flags are compatible with
+	 *         {@link java.lang.reflect.Modifier}.
+	 * @since 1.2.0.6
+	 */
+	public int getModifiers() {
+		return modifiers;
+	}
+
+	/**
+	 * @return the name of this member as defined by {@link Member#getName()}.
+	 *         Constructors have the name of their declaring class.
+	 * @since 1.2.0.6
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the field or method descriptor as defined by the Java Virtual
+	 *         Machine Specification, e.g. <code>(ILjava/lang/Object;)V</code>.
+	 * @since 1.2.0.6
+	 */
+	public String getDescriptor() {
+		return descriptor;
+	}
+
+	/**
+	 * @return the fully qualified names of the annotations that are declared
+	 *         on this member (runtime visible and invisible).
+	 * @since 1.2.0.6
+	 */
+	public List<String> getAnnotationNames() {
+		return annotationNames;
+	}
+
+	@Override
+	public String toString() {
+		return name + descriptor;
+	}
+}
@@ -0,0 +1,373 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * Parses the metadata of a class file as specified by chapter 4 of the Java
+ * Virtual Machine Specification without loading the class. Only the constant
+ * pool entries and attributes that are needed to create a {@link ClassFile}
+ * are interpreted. All other attributes, e.g. the code of methods, are
+ * skipped.
+ * <p>
+ * A {@link ClassFileParser} has no state and can be used by multiple threads.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public class ClassFileParser {
+
+	private static final int MAGIC = 0xCAFEBABE;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_HANDLE = 15;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+
+	private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+	private static final String RUNTIME_INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+	private static final String INNER_CLASSES = "InnerClasses";
+
+	/**
+	 * ACC_SUPER has the same value as {@link Modifier#SYNCHRONIZED} and is
+	 * therefore not part of the modifiers that {@link Class#getModifiers()}
+	 * returns.
+	 */
+	private static final int ACC_SUPER = 0x0020;
+
+	private static final String CONSTRUCTOR_NAME = "<init>";
+	private static final String STATIC_INITIALIZER_NAME = "<clinit>";
+
+	/**
+	 * Parses the class file that the {@link InputStream} provides. The stream
+	 * is not closed.
+	 *
+	 * @param classFileInputStream
+	 *            the class file's content.
+	 * @return the {@link ClassFile} metadata.
+	 * @throws IOException
+	 *             if the stream can not be read or does not contain a valid
+	 *             class file.
+	 * @since 1.2.0.6
+	 */
+	public ClassFile parse(InputStream classFileInputStream) throws IOException {
+		Assert.notNull("classFileInputStream", classFileInputStream);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				classFileInputStream));
+
+		int magic = in.readInt();
+		if (magic != MAGIC) {
+			throw new IOException("Not a class file. Magic number is 0x"
+					+ Integer.toHexString(magic));
+		}
+		in.readUnsignedShort(); // minor version
+		in.readUnsignedShort(); // major version
+
+		Object[] constantPool = readConstantPool(in);
+
+		int modifiers = in.readUnsignedShort();
+		String name = getClassName(constantPool, in.readUnsignedShort());
+		int superclassIndex = in.readUnsignedShort();
+		String superclassName = superclassIndex == 0 ? null : getClassName(
+				constantPool, superclassIndex);
+
+		int interfacesCount = in.readUnsignedShort();
+		List<String> interfaceNames = new ArrayList<String>(interfacesCount);
+		for (int i = 0; i < interfacesCount; i++) {
+			interfaceNames.add(getClassName(constantPool,
+					in.readUnsignedShort()));
+		}
+
+		List<ClassFileMember> members = new ArrayList<ClassFileMember>();
+		readMembers(in, constantPool, name, true, members);
+		readMembers(in, constantPool, name, false, members);
+
+		int[] innerClassModifiers = { -1 };
+		List<String> annotationNames = readAnnotationNames(in, constantPool,
+				name, innerClassModifiers);
+		if (innerClassModifiers[0] != -1) {
+			modifiers = innerClassModifiers[0];
+		}
+		modifiers &= ~ACC_SUPER;
+
+		return new ClassFile(modifiers, name, superclassName,
+				Collections.unmodifiableList(interfaceNames),
+				annotationNames, Collections.unmodifiableList(members));
+	}
+
+	private Object[] readConstantPool(DataInputStream in) throws IOException {
+		int constantPoolCount = in.readUnsignedShort();
+		Object[] constantPool = new Object[constantPoolCount];
+		for (int i = 1; i < constantPoolCount; i++) {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+			case CONSTANT_UTF8:
+				constantPool[i] = in.readUTF();
+				break;
+			case CONSTANT_CLASS:
+				constantPool[i] = Integer.valueOf(in.readUnsignedShort());
+				break;
+			case CONSTANT_STRING:
+			case CONSTANT_METHOD_TYPE:
+			case CONSTANT_MODULE:
+			case CONSTANT_PACKAGE:
+				skipFully(in, 2);
+				break;
+			case CONSTANT_METHOD_HANDLE:
+				skipFully(in, 3);
+				break;
+			case CONSTANT_INTEGER:
+			case CONSTANT_FLOAT:
+			case CONSTANT_FIELDREF:
+			case CONSTANT_METHODREF:
+			case CONSTANT_INTERFACE_METHODREF:
+			case CONSTANT_NAME_AND_TYPE:
+			case CONSTANT_DYNAMIC:
+			case CONSTANT_INVOKE_DYNAMIC:
+				skipFully(in, 4);
+				break;
+			case CONSTANT_LONG:
+			case CONSTANT_DOUBLE:
+				skipFully(in, 8);
+				i++;
+				break;
+			default:
+				throw new IOException("Unknown constant pool tag " + tag
+						+ " at index " + i);
+			}
+		}
+		return constantPool;
+	}
+
+	private void readMembers(DataInputStream in, Object[] constantPool,
+			String className, boolean fields, List<ClassFileMember> members)
+			throws IOException {
+		int membersCount = in.readUnsignedShort();
+		for (int i = 0; i < membersCount; i++) {
+			int modifiers = in.readUnsignedShort();
+			String name = getUtf8(constantPool, in.readUnsignedShort());
+			String descriptor = getUtf8(constantPool, in.readUnsignedShort());
+			List<String> annotationNames = readAnnotationNames(in,
+					constantPool, null, null);
+
+			Class<? extends Member> memberType = null;
+			if (fields) {
+				memberType = Field.class;
+			} else if (CONSTRUCTOR_NAME.equals(name)) {
+				memberType = Constructor.class;
+				name = className;
+			} else if (!STATIC_INITIALIZER_NAME.equals(name)) {
+				memberType = Method.class;
+			}
+			if (memberType != null) {
+				members.add(new ClassFileMember(memberType, modifiers, name,
+						descriptor, annotationNames));
+			}
+		}
+	}
+
+	/**
+	 * Reads an attributes table and returns the annotation names of the
+	 * annotation attributes. If an innerClassName is given the access flags of
+	 * its InnerClasses entry are stored in innerClassModifiers[0]. All other
+	 * attributes are skipped.
+	 */
+	private List<String> readAnnotationNames(DataInputStream in,
+			Object[] constantPool, String innerClassName,
+			int[] innerClassModifiers) throws IOException {
+		List<String> annotationNames = null;
+		int attributesCount = in.readUnsignedShort();
+		for (int i = 0; i < attributesCount; i++) {
+			String attributeName = getUtf8(constantPool,
+					in.readUnsignedShort());
+			int attributeLength = in.readInt();
+			if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)
+					|| RUNTIME_INVISIBLE_ANNOTATIONS.equals(attributeName)) {
+				if (annotationNames == null) {
+					annotationNames = new ArrayList<String>();
+				}
+				int annotationsCount = in.readUnsignedShort();
+				for (int j = 0; j < annotationsCount; j++) {
+					annotationNames.add(readAnnotation(in, constantPool));
+				}
+			} else if (innerClassName != null
+					&& INNER_CLASSES.equals(attributeName)) {
+				readInnerClassModifiers(in, constantPool, innerClassName,
+						innerClassModifiers);
+			} else {
+				skipFully(in, attributeLength);
+			}
+		}
+		if (annotationNames == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(annotationNames);
+	}
+
+	/**
+	 * Reads an InnerClasses attribute. The attribute of a nested class
+	 * contains an entry for the class itself whose inner_class_access_flags
+	 * are the modifiers that {@link Class#getModifiers()} returns, e.g.
+	 * {@link Modifier#STATIC} or {@link Modifier#PRIVATE}.
+	 */
+	private void readInnerClassModifiers(DataInputStream in,
+			Object[] constantPool, String className, int[] innerClassModifiers)
+			throws IOException {
+		int classesCount = in.readUnsignedShort();
+		for (int i = 0; i < classesCount; i++) {
+			int innerClassInfoIndex = in.readUnsignedShort();
+			skipFully(in, 4); // outer_class_info_index, inner_name_index
+			int innerClassAccessFlags = in.readUnsignedShort();
+			if (className.equals(getClassName(constantPool,
+					innerClassInfoIndex))) {
+				innerClassModifiers[0] = innerClassAccessFlags;
+			}
+		}
+	}
+
+	/**
+	 * Reads an annotation structure and returns the annotation's type name.
+	 */
+	private String readAnnotation(DataInputStream in, Object[] constantPool)
+			throws IOException {
+		String typeDescriptor = getUtf8(constantPool, in.readUnsignedShort());
+		int elementValuePairsCount = in.readUnsignedShort();
+		for (int i = 0; i < elementValuePairsCount; i++) {
+			skipFully(in, 2); // element name
+			skipElementValue(in, constantPool);
+		}
+		return descriptorToClassName(typeDescriptor);
+	}
+
+	private void skipElementValue(DataInputStream in, Object[] constantPool)
+			throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case 'B':
+		case 'C':
+		case 'D':
+		case 'F':
+		case 'I':
+		case 'J':
+		case 'S':
+		case 'Z':
+		case 's':
+		case 'c':
+			skipFully(in, 2);
+			break;
+		case 'e':
+			skipFully(in, 4);
+			break;
+		case '@':
+			readAnnotation(in, constantPool);
+			break;
+		case '[':
+			int valuesCount = in.readUnsignedShort();
+			for (int i = 0; i < valuesCount; i++) {
+				skipElementValue(in, constantPool);
+			}
+			break;
+		default:
+			throw new IOException("Unknown element value tag " + (char) tag);
+		}
+	}
+
+	private void skipFully(DataInputStream in, int length) throws IOException {
+		int remaining = length;
+		while (remaining > 0) {
+			int skipped = in.skipBytes(remaining);
+			if (skipped == 0 && in.read() >= 0) {
+				skipped = 1;
+			}
+			if (skipped == 0) {
+				throw new IOException("Unexpected end of class file");
+			}
+			remaining -= skipped;
+		}
+	}
+
+	private String getUtf8(Object[] constantPool, int index)
+			throws IOException {
+		Object constant = getConstant(constantPool, index);
+		if (!(constant instanceof String)) {
+			throw new IOException("Constant pool index " + index
+					+ " is not a CONSTANT_Utf8");
+		}
+		return (String) constant;
+	}
+
+	private String getClassName(Object[] constantPool, int index)
+			throws IOException {
+		Object constant = getConstant(constantPool, index);
+		if (!(constant instanceof Integer)) {
+			throw new IOException("Constant pool index " + index
+					+ " is not a CONSTANT_Class");
+		}
+		String internalName = getUtf8(constantPool,
+				((Integer) constant).intValue());
+		return internalName.replace('/', '.');
+	}
+
+	private Object getConstant(Object[] constantPool, int index)
+			throws IOException {
+		if (index <= 0 || index >= constantPool.length) {
+			throw new IOException("Invalid constant pool index " + index);
+		}
+		return constantPool[index];
+	}
+
+	/**
+	 * Converts a field descriptor like <code>Ljava/lang/Deprecated;</code> to
+	 * a class name like <code>java.lang.Deprecated</code>.
+	 */
+	private String descriptorToClassName(String descriptor) {
+		if (descriptor.length() > 2 && descriptor.charAt(0) == 'L'
+				&& descriptor.charAt(descriptor.length() - 1) == ';') {
+			descriptor = descriptor.substring(1, descriptor.length() - 1);
+		}
+		return descriptor.replace('/', '.');
+	}
+}
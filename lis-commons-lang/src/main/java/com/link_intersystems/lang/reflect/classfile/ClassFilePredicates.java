@@ -0,0 +1,153 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Member;
+import java.util.regex.Pattern;
+
+import org.apache.commons.collections4.Predicate;
+
+import com.link_intersystems.lang.Assert;
+import com.link_intersystems.lang.reflect.criteria.MemberCriteria;
+import com.link_intersystems.lang.reflect.criteria.MemberQuery;
+
+/**
+ * Factory for {@link Predicate}s that evaluate {@link ClassFile} metadata. The
+ * predicates can be used with a {@link ClassPathScanner} to select classes
+ * before they are loaded. All predicates are thread-safe.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public abstract class ClassFilePredicates {
+
+	/**
+	 * @return a {@link Predicate} that evaluates to true if the
+	 *         {@link ClassFile} declares an annotation of the given type.
+	 * @since 1.2.0.6
+	 */
+	public static Predicate<ClassFile> annotatedWith(
+			Class<? extends Annotation> annotationType) {
+		Assert.notNull("annotationType", annotationType);
+		return annotatedWith(annotationType.getName());
+	}
+
+	/**
+	 * @return a {@link Predicate} that evaluates to true if the
+	 *         {@link ClassFile} declares an annotation with the given name.
+	 * @since 1.2.0.6
+	 */
+	public static Predicate<ClassFile> annotatedWith(
+			final String annotationName) {
+		Assert.notNull("annotationName", annotationName);
+		return new Predicate<ClassFile>() {
+
+			public boolean evaluate(ClassFile classFile) {
+				return classFile.getAnnotationNames().contains(annotationName);
+			}
+		};
+	}
+
+	/**
+	 * @return a {@link Predicate} that evaluates to true if the
+	 *         {@link ClassFile} describes the given type or a subtype of it.
+	 * @see ClassFile#isSubtypeOf(String)
+	 * @since 1.2.0.6
+	 */
+	public static Predicate<ClassFile> subtypeOf(Class<?> type) {
+		Assert.notNull("type", type);
+		return subtypeOf(type.getName());
+	}
+
+	/**
+	 * @return a {@link Predicate} that evaluates to true if the
+	 *         {@link ClassFile} describes the type with the given name or a
+	 *         subtype of it.
+	 * @see ClassFile#isSubtypeOf(String)
+	 * @since 1.2.0.6
+	 */
+	public static Predicate<ClassFile> subtypeOf(final String typeName) {
+		Assert.notNull("typeName", typeName);
+		return new Predicate<ClassFile>() {
+
+			public boolean evaluate(ClassFile classFile) {
+				return classFile.isSubtypeOf(typeName);
+			}
+		};
+	}
+
+	/**
+	 * @return a {@link Predicate} that evaluates to true if the
+	 *         {@link ClassFile}'s name matches the given {@link Pattern}.
+	 * @since 1.2.0.6
+	 */
+	public static Predicate<ClassFile> named(final Pattern namePattern) {
+		Assert.notNull("namePattern", namePattern);
+		return new Predicate<ClassFile>() {
+
+			public boolean evaluate(ClassFile classFile) {
+				return namePattern.matcher(classFile.getName()).matches();
+			}
+		};
+	}
+
+	/**
+	 * @return a {@link Predicate} that evaluates to true if the
+	 *         {@link ClassFile}'s modifiers contain all of the given
+	 *         modifiers.
+	 * @since 1.2.0.6
+	 */
+	public static Predicate<ClassFile> withModifiers(final int modifiers) {
+		return new Predicate<ClassFile>() {
+
+			public boolean evaluate(ClassFile classFile) {
+				return (classFile.getModifiers() & modifiers) == modifiers;
+			}
+		};
+	}
+
+	/**
+	 * A {@link Predicate} that evaluates to true if the {@link ClassFile}
+	 * declares at least one member that matches the member types, access,
+	 * modifier and name criteria of the {@link MemberCriteria}. The
+	 * {@link Predicate}s that were added to the {@link MemberCriteria} are not
+	 * evaluated, because they need the {@link Member} objects. They must be
+	 * evaluated after the matching classes have been loaded.
+	 *
+	 * @see MemberQuery#isCandidate(Class, int, String)
+	 * @since 1.2.0.6
+	 */
+	public static Predicate<ClassFile> declaresMember(
+			MemberCriteria<?> memberCriteria) {
+		Assert.notNull("memberCriteria", memberCriteria);
+		final MemberQuery<?> memberQuery = memberCriteria.compile();
+		return new Predicate<ClassFile>() {
+
+			public boolean evaluate(ClassFile classFile) {
+				for (ClassFileMember member : classFile.getMembers()) {
+					if (memberQuery.isCandidate(member.getMemberType(),
+							member.getModifiers(), member.getName())) {
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+}
@@ -0,0 +1,493 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+import org.apache.commons.collections4.Predicate;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * A persistent, memory-mapped index of the {@link ClassFile}s of a class path.
+ * The index holds the class names, supertypes, interfaces, annotations and
+ * member signatures of all classes and survives JVM restarts. Thus class
+ * hierarchy and annotation discovery at startup neither needs to scan jar
+ * files nor to load classes.
+ *
+ * <pre>
+ * ClassPathIndex index = new ClassPathIndex(indexDirectory, urlClassLoader);
+ * index.refresh();
+ * List&lt;Class&lt;?&gt;&gt; entities = index.loadClasses(ClassFilePredicates
+ * 		.annotatedWith(Entity.class));
+ * </pre>
+ *
+ * Each class path entry is stored in its own index file in the index
+ * directory. {@link #refresh()} only re-indexes the entries that changed since
+ * they were indexed. A re-indexed entry is written to a new index file and the
+ * previous one is deleted, so that a mapped index file is never replaced. A
+ * jar file is considered unchanged if its length and last modified time are
+ * unchanged or if its checksum is unchanged. The checksum of a directory is
+ * computed from the names, lengths and last modified times of its class files.
+ * <p>
+ * A {@link ClassPathIndex} can be used by multiple threads, but
+ * {@link #refresh()} must not be called concurrently with other methods.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ * @see ClassFilePredicates
+ * @see ClassPathScanner
+ */
+public class ClassPathIndex {
+
+	private static final String INDEX_FILE_SUFFIX = ".idx";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Comparator<File> GENERATION_COMPARATOR = new Comparator<File>() {
+
+		public int compare(File file1, File file2) {
+			return Long.compare(getGeneration(file2), getGeneration(file1));
+		}
+	};
+
+	private final File indexDirectory;
+
+	private final List<URL> urls;
+
+	private final ClassLoader classLoader;
+
+	private final ClassPathScanner classPathScanner;
+
+	private volatile List<ClassPathIndexFile> indexFiles = Collections.emptyList();
+
+	private final Map<String, ClassFile> classPath = new IndexedClassPath();
+
+	/**
+	 * Constructs a {@link ClassPathIndex} of the {@link URL}s of the given
+	 * {@link URLClassLoader} that loads the matching classes with it.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public ClassPathIndex(File indexDirectory, URLClassLoader classLoader) {
+		this(indexDirectory, classLoader.getURLs(), classLoader);
+	}
+
+	/**
+	 * Constructs a {@link ClassPathIndex} of the given directory and jar file
+	 * {@link URL}s that loads the matching classes with the given
+	 * {@link ClassLoader}. {@link URL}s that do not use the file protocol are
+	 * ignored.
+	 *
+	 * @param indexDirectory
+	 *            the directory that the index files are stored in. It is
+	 *            created if it does not exist.
+	 * @since 1.2.0.6
+	 */
+	public ClassPathIndex(File indexDirectory, URL[] urls,
+			ClassLoader classLoader) {
+		Assert.notNull("indexDirectory", indexDirectory);
+		this.indexDirectory = indexDirectory;
+		this.urls = Collections.unmodifiableList(new ArrayList<URL>(Arrays
+				.asList(urls)));
+		this.classLoader = classLoader;
+		this.classPathScanner = new ClassPathScanner(urls, classLoader);
+	}
+
+	/**
+	 * Sets the {@link ForkJoinPool} that is used to index class path entries
+	 * and to evaluate {@link Predicate}s. Default is the
+	 * {@link ForkJoinPool#commonPool()}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		classPathScanner.setForkJoinPool(forkJoinPool);
+	}
+
+	/**
+	 * Brings the index files up to date with the class path entries and maps
+	 * them. Only the entries that changed since they were indexed are read.
+	 *
+	 * @return the {@link URL}s of the class path entries that were
+	 *         (re-)indexed.
+	 * @throws IOException
+	 *             if an index file can not be written or a class path entry
+	 *             can not be read.
+	 * @since 1.2.0.6
+	 */
+	public List<URL> refresh() throws IOException {
+		if (!indexDirectory.isDirectory() && !indexDirectory.mkdirs()) {
+			throw new IOException("Unable to create index directory "
+					+ indexDirectory);
+		}
+		Map<String, List<File>> generations = getIndexFileGenerations();
+		List<URL> indexedURLs = new ArrayList<URL>();
+		List<ClassPathIndexFile> indexFiles = new ArrayList<ClassPathIndexFile>();
+		List<File> staleFiles = new ArrayList<File>();
+		for (URL url : urls) {
+			File root = ClassPathScanner.toFile(url);
+			if (root == null || !root.exists()) {
+				continue;
+			}
+			String indexFileName = getIndexFileName(root);
+			List<File> indexFileGenerations = generations.get(indexFileName);
+			if (indexFileGenerations == null) {
+				indexFileGenerations = new ArrayList<File>();
+				generations.put(indexFileName, indexFileGenerations);
+			}
+			File file = indexFileGenerations.isEmpty() ? null
+					: indexFileGenerations.get(0);
+			ClassPathIndexFile indexFile = file == null ? null : map(file);
+
+			long length = getLength(root);
+			long lastModified = getLastModified(root);
+			if (indexFile == null || !root.isFile()
+					|| indexFile.getLength() != length
+					|| indexFile.getLastModified() != lastModified) {
+				long checksum = getChecksum(root);
+				if (indexFile == null || indexFile.getChecksum() != checksum) {
+					List<ClassFile> classFiles = classPathScanner.read(root);
+					File newFile = getNextGeneration(indexFileName, file);
+					ClassPathIndexFile.write(newFile, length, lastModified,
+							checksum, classFiles);
+					indexFile = ClassPathIndexFile.map(newFile);
+					indexFileGenerations.add(0, newFile);
+					indexedURLs.add(url);
+				}
+			}
+			indexFiles.add(indexFile);
+			staleFiles.addAll(indexFileGenerations.subList(1,
+					indexFileGenerations.size()));
+		}
+		this.indexFiles = Collections.unmodifiableList(indexFiles);
+		for (File staleFile : staleFiles) {
+			/*
+			 * Stale files might still be mapped by this or another index. On
+			 * some platforms they can not be deleted then, but a later
+			 * refresh will try again.
+			 */
+			staleFile.delete();
+		}
+		return indexedURLs;
+	}
+
+	/**
+	 * @return the mapped index file or null if it is not a valid index file.
+	 */
+	private ClassPathIndexFile map(File file) {
+		try {
+			return ClassPathIndexFile.map(file);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * An index file is never overwritten, because it might still be mapped by
+	 * this or another index and a mapped file can not be replaced on every
+	 * platform. Instead a new generation of the index file is written. The
+	 * name of a generation is the index file name of the class path entry,
+	 * the generation number and the {@value #INDEX_FILE_SUFFIX} suffix.
+	 *
+	 * @return the index files in the index directory by their index file
+	 *         name. The generations of an index file are sorted latest
+	 *         first.
+	 */
+	private Map<String, List<File>> getIndexFileGenerations() {
+		Map<String, List<File>> generations = new HashMap<String, List<File>>();
+		File[] files = indexDirectory.listFiles();
+		if (files == null) {
+			return generations;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.endsWith(INDEX_FILE_SUFFIX)) {
+				continue;
+			}
+			name = name.substring(0,
+					name.length() - INDEX_FILE_SUFFIX.length());
+			int generationIndex = name.lastIndexOf('.');
+			String indexFileName = generationIndex < 0 ? name : name
+					.substring(0, generationIndex);
+			List<File> indexFileGenerations = generations.get(indexFileName);
+			if (indexFileGenerations == null) {
+				indexFileGenerations = new ArrayList<File>();
+				generations.put(indexFileName, indexFileGenerations);
+			}
+			indexFileGenerations.add(file);
+		}
+		for (List<File> indexFileGenerations : generations.values()) {
+			Collections.sort(indexFileGenerations, GENERATION_COMPARATOR);
+		}
+		return generations;
+	}
+
+	private File getNextGeneration(String indexFileName,
+			File latestGeneration) {
+		long generation = latestGeneration == null ? 0
+				: getGeneration(latestGeneration);
+		File file;
+		do {
+			generation++;
+			file = new File(indexDirectory, indexFileName + "."
+					+ Long.toHexString(generation) + INDEX_FILE_SUFFIX);
+		} while (file.exists());
+		return file;
+	}
+
+	/**
+	 * @return the generation number of the index file or -1 if its name does
+	 *         not contain one.
+	 */
+	private static long getGeneration(File file) {
+		String name = file.getName();
+		int generationIndex = name.lastIndexOf('.',
+				name.length() - INDEX_FILE_SUFFIX.length() - 1);
+		if (generationIndex < 0) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(generationIndex + 1,
+					name.length() - INDEX_FILE_SUFFIX.length()), 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return the index file name of the class path entry without generation
+	 *         and suffix. It is derived from the entry's name and a checksum
+	 *         of its absolute path.
+	 */
+	private String getIndexFileName(File root) {
+		CRC32 pathChecksum = new CRC32();
+		pathChecksum.update(root.getAbsolutePath().getBytes(
+				StandardCharsets.UTF_8));
+		return root.getName() + "-"
+				+ Long.toHexString(pathChecksum.getValue());
+	}
+
+	private static long getLength(File root) {
+		return root.isFile() ? root.length() : 0;
+	}
+
+	private static long getLastModified(File root) {
+		return root.isFile() ? root.lastModified() : 0;
+	}
+
+	/**
+	 * @return the CRC-32 of a jar file's content or of the names, lengths and
+	 *         last modified times of a directory's class files.
+	 */
+	private static long getChecksum(File root) throws IOException {
+		CRC32 checksum = new CRC32();
+		if (root.isFile()) {
+			InputStream in = new FileInputStream(root);
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					checksum.update(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+		} else {
+			updateDirectoryChecksum(checksum, root, "");
+		}
+		return checksum.getValue();
+	}
+
+	private static void updateDirectoryChecksum(CRC32 checksum,
+			File directory, String path) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			String filePath = path + "/" + file.getName();
+			if (file.isDirectory()) {
+				updateDirectoryChecksum(checksum, file, filePath);
+			} else if (filePath.endsWith(".class")) {
+				checksum.update(filePath.getBytes(StandardCharsets.UTF_8));
+				updateChecksum(checksum, file.length());
+				updateChecksum(checksum, file.lastModified());
+			}
+		}
+	}
+
+	private static void updateChecksum(CRC32 checksum, long value) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			checksum.update((int) (value >>> shift));
+		}
+	}
+
+	/**
+	 * @return the indexed {@link ClassFile} with the given binary name or null
+	 *         if the class path does not contain it. If a class is contained in
+	 *         multiple class path entries the first one is returned.
+	 * @since 1.2.0.6
+	 */
+	public ClassFile getClassFile(String className) {
+		Assert.notNull("className", className);
+		for (ClassPathIndexFile indexFile : indexFiles) {
+			int index = indexFile.indexOf(className);
+			if (index >= 0) {
+				return decode(indexFile, index);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the {@link ClassFile}s of all indexed classes in class path
+	 *         order and in name order within a class path entry.
+	 * @since 1.2.0.6
+	 */
+	public List<ClassFile> scan() {
+		Map<String, ClassFile> classFiles = new LinkedHashMap<String, ClassFile>();
+		for (ClassPathIndexFile indexFile : indexFiles) {
+			for (int i = 0; i < indexFile.size(); i++) {
+				String className = indexFile.getClassName(i);
+				if (!classFiles.containsKey(className)) {
+					classFiles.put(className, decode(indexFile, i));
+				}
+			}
+		}
+		return new ArrayList<ClassFile>(classFiles.values());
+	}
+
+	/**
+	 * @param predicate
+	 *            the {@link Predicate} that selects the {@link ClassFile}s. It
+	 *            is evaluated by multiple threads. If null all class files are
+	 *            selected.
+	 * @return the indexed {@link ClassFile}s that match the {@link Predicate}
+	 *         in the order of {@link #scan()}.
+	 * @since 1.2.0.6
+	 */
+	public List<ClassFile> scan(Predicate<ClassFile> predicate) {
+		List<ClassFile> classFiles = scan();
+		if (predicate == null) {
+			return classFiles;
+		}
+		return classPathScanner.filter(classFiles, predicate);
+	}
+
+	/**
+	 * Loads the classes whose indexed {@link ClassFile}s match the
+	 * {@link Predicate}. The classes are loaded, but not initialized.
+	 *
+	 * @throws ClassNotFoundException
+	 *             if a matching class can not be loaded by this index's
+	 *             {@link ClassLoader}.
+	 * @since 1.2.0.6
+	 */
+	public List<Class<?>> loadClasses(Predicate<ClassFile> predicate)
+			throws ClassNotFoundException {
+		List<ClassFile> classFiles = scan(predicate);
+		List<Class<?>> classes = new ArrayList<Class<?>>(classFiles.size());
+		for (ClassFile classFile : classFiles) {
+			classes.add(Class.forName(classFile.getName(), false, classLoader));
+		}
+		return classes;
+	}
+
+	private ClassFile decode(ClassPathIndexFile indexFile, int index) {
+		ClassFile classFile = indexFile.getClassFile(index);
+		classFile.setClassPath(classPath);
+		return classFile;
+	}
+
+	/**
+	 * A {@link Map} view of the indexed class path that is used by
+	 * {@link ClassFile#isSubtypeOf(String)} to resolve supertypes. The
+	 * {@link ClassFile}s are looked up in the index files on demand.
+	 */
+	private class IndexedClassPath extends AbstractMap<String, ClassFile> {
+
+		@Override
+		public ClassFile get(Object key) {
+			if (key instanceof String) {
+				return getClassFile((String) key);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Set<Map.Entry<String, ClassFile>> entrySet() {
+			final List<ClassFile> classFiles = scan();
+			return new AbstractSet<Map.Entry<String, ClassFile>>() {
+
+				@Override
+				public Iterator<Map.Entry<String, ClassFile>> iterator() {
+					final Iterator<ClassFile> iterator = classFiles.iterator();
+					return new Iterator<Map.Entry<String, ClassFile>>() {
+
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+
+						public Map.Entry<String, ClassFile> next() {
+							ClassFile classFile = iterator.next();
+							return new SimpleImmutableEntry<String, ClassFile>(
+									classFile.getName(), classFile);
+						}
+
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return classFiles.size();
+				}
+			};
+		}
+	}
+}
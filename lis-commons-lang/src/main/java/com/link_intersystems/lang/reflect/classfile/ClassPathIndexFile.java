@@ -0,0 +1,430 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The index file of a single class path entry. An index file is memory-mapped
+ * and the {@link ClassFile}s are decoded from the mapped buffer on demand.
+ * <p>
+ * Layout (all numbers are big endian):
+ *
+ * <pre>
+ * int    magic
+ * int    version
+ * long   length of the class path entry
+ * long   last modified time of the class path entry
+ * long   checksum of the class path entry
+ * int    string count
+ * int[]  string offsets
+ * int    class count
+ * int[]  class name string indexes, sorted by name
+ * int[]  class record offsets, in the same order
+ * byte[] strings: int length, UTF-8 bytes
+ * byte[] class records: modifiers, name, superclass name (or -1),
+ *        interface names, annotation names, members
+ * </pre>
+ *
+ * Each member is stored as member type, modifiers, name, descriptor and
+ * annotation names. All names are indexes into the string table and all
+ * lists are prefixed by their size.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+final class ClassPathIndexFile {
+
+	private static final int MAGIC = 0x4C435049;
+
+	private static final int VERSION = 2;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+
+	private static final int CONSTRUCTOR = 0;
+
+	private static final int METHOD = 1;
+
+	private static final int FIELD = 2;
+
+	private static final Comparator<ClassFile> CLASS_FILE_NAME_COMPARATOR = new Comparator<ClassFile>() {
+
+		public int compare(ClassFile classFile1, ClassFile classFile2) {
+			return classFile1.getName().compareTo(classFile2.getName());
+		}
+	};
+
+	private final File file;
+
+	private final ByteBuffer buffer;
+
+	private final int stringCount;
+
+	private final int classCount;
+
+	private final int classNamesOffset;
+
+	private final int classOffsetsOffset;
+
+	private final String[] strings;
+
+	private ClassPathIndexFile(File file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE + 8 || buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a class path index file");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(file + " has an unsupported version "
+					+ buffer.getInt(4));
+		}
+		int capacity = buffer.capacity();
+		this.stringCount = buffer.getInt(HEADER_SIZE);
+		long classCountOffset = HEADER_SIZE + 4 + 4L * stringCount;
+		if (stringCount < 0 || classCountOffset + 4 > capacity) {
+			throw new IOException(file + " is truncated or corrupt. "
+					+ stringCount + " strings exceed the file size "
+					+ capacity);
+		}
+		this.classCount = buffer.getInt((int) classCountOffset);
+		this.classNamesOffset = (int) classCountOffset + 4;
+		if (classCount < 0 || classNamesOffset + 8L * classCount > capacity) {
+			throw new IOException(file + " is truncated or corrupt. "
+					+ classCount + " classes exceed the file size "
+					+ capacity);
+		}
+		this.classOffsetsOffset = classNamesOffset + 4 * classCount;
+		this.strings = new String[stringCount];
+	}
+
+	/**
+	 * Memory-maps the given index file.
+	 *
+	 * @throws IOException
+	 *             if the file can not be read or is not an index file.
+	 */
+	static ClassPathIndexFile map(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			return new ClassPathIndexFile(file, buffer);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Writes an index file of the given {@link ClassFile}s. The file is
+	 * written to a temporary file first and then renamed, so that a partially
+	 * written file is never mapped. The file must not exist, because a file
+	 * that is mapped can not be replaced on every platform.
+	 */
+	static void write(File file, long length, long lastModified,
+			long checksum, List<ClassFile> classFiles) throws IOException {
+		List<ClassFile> sortedClassFiles = new ArrayList<ClassFile>(classFiles);
+		Collections.sort(sortedClassFiles, CLASS_FILE_NAME_COMPARATOR);
+
+		StringTable stringTable = new StringTable();
+		ByteArrayOutputStream classRecordBytes = new ByteArrayOutputStream();
+		DataOutputStream classRecords = new DataOutputStream(classRecordBytes);
+		int[] classNames = new int[sortedClassFiles.size()];
+		int[] classOffsets = new int[sortedClassFiles.size()];
+		for (int i = 0; i < sortedClassFiles.size(); i++) {
+			ClassFile classFile = sortedClassFiles.get(i);
+			classNames[i] = stringTable.indexOf(classFile.getName());
+			classOffsets[i] = classRecords.size();
+			writeClassRecord(classRecords, stringTable, classFile);
+		}
+		classRecords.flush();
+
+		List<String> strings = stringTable.getStrings();
+		int stringsOffset = HEADER_SIZE + 4 + 4 * strings.size() + 4 + 8
+				* classNames.length;
+		List<byte[]> encodedStrings = new ArrayList<byte[]>(strings.size());
+		int classRecordsOffset = stringsOffset;
+		for (String string : strings) {
+			byte[] encodedString = string.getBytes(StandardCharsets.UTF_8);
+			encodedStrings.add(encodedString);
+			classRecordsOffset += 4 + encodedString.length;
+		}
+
+		File tmpFile = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(length);
+			out.writeLong(lastModified);
+			out.writeLong(checksum);
+
+			out.writeInt(encodedStrings.size());
+			int stringOffset = stringsOffset;
+			for (byte[] encodedString : encodedStrings) {
+				out.writeInt(stringOffset);
+				stringOffset += 4 + encodedString.length;
+			}
+
+			out.writeInt(classNames.length);
+			for (int className : classNames) {
+				out.writeInt(className);
+			}
+			for (int classOffset : classOffsets) {
+				out.writeInt(classRecordsOffset + classOffset);
+			}
+
+			for (byte[] encodedString : encodedStrings) {
+				out.writeInt(encodedString.length);
+				out.write(encodedString);
+			}
+			classRecordBytes.writeTo(out);
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(file)) {
+			tmpFile.delete();
+			throw new IOException("Unable to rename " + tmpFile + " to "
+					+ file);
+		}
+	}
+
+	private static void writeClassRecord(DataOutputStream out,
+			StringTable stringTable, ClassFile classFile) throws IOException {
+		out.writeInt(classFile.getModifiers());
+		out.writeInt(stringTable.indexOf(classFile.getName()));
+		String superclassName = classFile.getSuperclassName();
+		out.writeInt(superclassName == null ? -1 : stringTable
+				.indexOf(superclassName));
+		writeStrings(out, stringTable, classFile.getInterfaceNames());
+		writeStrings(out, stringTable, classFile.getAnnotationNames());
+		List<ClassFileMember> members = classFile.getMembers();
+		out.writeInt(members.size());
+		for (ClassFileMember member : members) {
+			out.writeInt(getMemberTypeId(member.getMemberType()));
+			out.writeInt(member.getModifiers());
+			out.writeInt(stringTable.indexOf(member.getName()));
+			out.writeInt(stringTable.indexOf(member.getDescriptor()));
+			writeStrings(out, stringTable, member.getAnnotationNames());
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out,
+			StringTable stringTable, List<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for (String string : strings) {
+			out.writeInt(stringTable.indexOf(string));
+		}
+	}
+
+	private static int getMemberTypeId(Class<? extends Member> memberType) {
+		if (Constructor.class.equals(memberType)) {
+			return CONSTRUCTOR;
+		} else if (Method.class.equals(memberType)) {
+			return METHOD;
+		}
+		return FIELD;
+	}
+
+	private static Class<? extends Member> getMemberType(int memberTypeId) {
+		switch (memberTypeId) {
+		case CONSTRUCTOR:
+			return Constructor.class;
+		case METHOD:
+			return Method.class;
+		default:
+			return Field.class;
+		}
+	}
+
+	/**
+	 * @return the length of the class path entry when it was indexed.
+	 */
+	long getLength() {
+		return buffer.getLong(8);
+	}
+
+	/**
+	 * @return the last modified time of the class path entry when it was
+	 *         indexed.
+	 */
+	long getLastModified() {
+		return buffer.getLong(16);
+	}
+
+	/**
+	 * @return the checksum of the class path entry when it was indexed.
+	 */
+	long getChecksum() {
+		return buffer.getLong(24);
+	}
+
+	/**
+	 * @return the number of classes in this index file.
+	 */
+	int size() {
+		return classCount;
+	}
+
+	/**
+	 * @return the name of the class at the given index. Classes are sorted by
+	 *         name.
+	 */
+	String getClassName(int index) {
+		return getString(buffer.getInt(classNamesOffset + 4 * index));
+	}
+
+	/**
+	 * @return the index of the class with the given name or a negative value
+	 *         if this index file does not contain it.
+	 */
+	int indexOf(String className) {
+		int low = 0;
+		int high = classCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = getClassName(middle).compareTo(className);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @return the {@link ClassFile} at the given index decoded from the mapped
+	 *         buffer.
+	 */
+	ClassFile getClassFile(int index) {
+		int offset = buffer.getInt(classOffsetsOffset + 4 * index);
+		int modifiers = buffer.getInt(offset);
+		String name = getString(buffer.getInt(offset + 4));
+		int superclassIndex = buffer.getInt(offset + 8);
+		String superclassName = superclassIndex < 0 ? null
+				: getString(superclassIndex);
+		offset += 12;
+		List<String> interfaceNames = readStrings(offset);
+		offset += 4 + 4 * interfaceNames.size();
+		List<String> annotationNames = readStrings(offset);
+		offset += 4 + 4 * annotationNames.size();
+
+		int memberCount = buffer.getInt(offset);
+		offset += 4;
+		List<ClassFileMember> members = new ArrayList<ClassFileMember>(
+				memberCount);
+		for (int i = 0; i < memberCount; i++) {
+			Class<? extends Member> memberType = getMemberType(buffer
+					.getInt(offset));
+			int memberModifiers = buffer.getInt(offset + 4);
+			String memberName = getString(buffer.getInt(offset + 8));
+			String descriptor = getString(buffer.getInt(offset + 12));
+			offset += 16;
+			List<String> memberAnnotationNames = readStrings(offset);
+			offset += 4 + 4 * memberAnnotationNames.size();
+			members.add(new ClassFileMember(memberType, memberModifiers,
+					memberName, descriptor, memberAnnotationNames));
+		}
+		return new ClassFile(modifiers, name, superclassName, interfaceNames,
+				annotationNames, Collections.unmodifiableList(members));
+	}
+
+	private List<String> readStrings(int offset) {
+		int size = buffer.getInt(offset);
+		if (size == 0) {
+			return Collections.emptyList();
+		}
+		List<String> strings = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			strings.add(getString(buffer.getInt(offset + 4 + 4 * i)));
+		}
+		return Collections.unmodifiableList(strings);
+	}
+
+	/**
+	 * Decodes the string with the given index. Decoded strings are cached. The
+	 * cache is updated without synchronization, because decoding a string
+	 * twice is harmless.
+	 */
+	private String getString(int index) {
+		String string = strings[index];
+		if (string == null) {
+			int offset = buffer.getInt(HEADER_SIZE + 4 + 4 * index);
+			byte[] bytes = new byte[buffer.getInt(offset)];
+			ByteBuffer stringBuffer = buffer.duplicate();
+			stringBuffer.position(offset + 4);
+			stringBuffer.get(bytes);
+			string = new String(bytes, StandardCharsets.UTF_8);
+			strings[index] = string;
+		}
+		return string;
+	}
+
+	@Override
+	public String toString() {
+		return file.toString();
+	}
+
+	/**
+	 * Assigns an index to each distinct string.
+	 */
+	private static class StringTable {
+
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+		private final List<String> strings = new ArrayList<String>();
+
+		public int indexOf(String string) {
+			Integer index = indexes.get(string);
+			if (index == null) {
+				index = strings.size();
+				strings.add(string);
+				indexes.put(string, index);
+			}
+			return index;
+		}
+
+		public List<String> getStrings() {
+			return strings;
+		}
+	}
+}
@@ -0,0 +1,444 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.collections4.Predicate;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * Scans the class files of directories and jar files and selects the classes
+ * whose {@link ClassFile} metadata match a {@link Predicate} without loading
+ * them. Only the classes that match are loaded by
+ * {@link #loadClasses(Predicate)}.
+ *
+ * <pre>
+ * ClassPathScanner scanner = new ClassPathScanner(urlClassLoader);
+ * List&lt;Class&lt;?&gt;&gt; classes = scanner.loadClasses(ClassFilePredicates
+ * 		.annotatedWith(Entity.class));
+ * </pre>
+ *
+ * The class files are read and parsed in parallel by a {@link ForkJoinPool}.
+ * Directories are split by sub directories and jar files by their entries.
+ * The {@link Predicate}s are evaluated in parallel too and must therefore be
+ * thread-safe. If a class is contained in multiple class path entries only
+ * the first one is used, like a {@link ClassLoader} would do.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ * @see ClassFilePredicates
+ */
+public class ClassPathScanner {
+
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
+	private static final int JAR_ENTRIES_THRESHOLD = 64;
+
+	private static final int FILTER_THRESHOLD = 256;
+
+	private final List<URL> urls;
+
+	private final ClassLoader classLoader;
+
+	private final ClassFileParser classFileParser = new ClassFileParser();
+
+	private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+	/**
+	 * Constructs a {@link ClassPathScanner} that scans the {@link URL}s of
+	 * the given {@link URLClassLoader} and loads the matching classes with it.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public ClassPathScanner(URLClassLoader classLoader) {
+		this(classLoader.getURLs(), classLoader);
+	}
+
+	/**
+	 * Constructs a {@link ClassPathScanner} that scans the given directory and
+	 * jar file {@link URL}s and loads the matching classes with the given
+	 * {@link ClassLoader}. {@link URL}s that do not use the file protocol are
+	 * ignored.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public ClassPathScanner(URL[] urls, ClassLoader classLoader) {
+		Assert.notNull("urls", urls);
+		Assert.notNull("classLoader", classLoader);
+		this.urls = Collections.unmodifiableList(new ArrayList<URL>(Arrays
+				.asList(urls)));
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Sets the {@link ForkJoinPool} that is used to scan the class path.
+	 * Default is the {@link ForkJoinPool#commonPool()}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		Assert.notNull("forkJoinPool", forkJoinPool);
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/**
+	 * @return the {@link ClassFile}s of all classes in the scanned class path
+	 *         in class path order.
+	 * @throws IOException
+	 *             if a class file can not be read or parsed.
+	 * @since 1.2.0.6
+	 */
+	public List<ClassFile> scan() throws IOException {
+		return scan(null);
+	}
+
+	/**
+	 * @param predicate
+	 *            the {@link Predicate} that selects the {@link ClassFile}s. It
+	 *            is evaluated by multiple threads. If null all class files are
+	 *            selected.
+	 * @return the {@link ClassFile}s that match the {@link Predicate} in class
+	 *         path order.
+	 * @throws IOException
+	 *             if a class file can not be read or parsed.
+	 * @since 1.2.0.6
+	 */
+	public List<ClassFile> scan(Predicate<ClassFile> predicate)
+			throws IOException {
+		List<ClassFile> classFiles = readClassPath();
+		if (predicate == null) {
+			return classFiles;
+		}
+		return filter(classFiles, predicate);
+	}
+
+	/**
+	 * Scans the class path and loads the classes whose {@link ClassFile}s
+	 * match the {@link Predicate}. The classes are loaded, but not
+	 * initialized.
+	 *
+	 * @return the classes that match the {@link Predicate} in class path
+	 *         order.
+	 * @throws IOException
+	 *             if a class file can not be read or parsed.
+	 * @throws ClassNotFoundException
+	 *             if a matching class can not be loaded by this scanner's
+	 *             {@link ClassLoader}.
+	 * @since 1.2.0.6
+	 */
+	public List<Class<?>> loadClasses(Predicate<ClassFile> predicate)
+			throws IOException, ClassNotFoundException {
+		List<ClassFile> classFiles = scan(predicate);
+		List<Class<?>> classes = new ArrayList<Class<?>>(classFiles.size());
+		for (ClassFile classFile : classFiles) {
+			classes.add(Class.forName(classFile.getName(), false, classLoader));
+		}
+		return classes;
+	}
+
+	private List<ClassFile> readClassPath() throws IOException {
+		List<ReadRootTask> readRootTasks = new ArrayList<ReadRootTask>();
+		for (URL url : urls) {
+			File root = toFile(url);
+			if (root != null && root.exists()) {
+				readRootTasks.add(new ReadRootTask(root));
+			}
+		}
+
+		Map<String, ClassFile> classPath = new LinkedHashMap<String, ClassFile>();
+		for (ReadRootTask readRootTask : readRootTasks) {
+			forkJoinPool.execute(readRootTask);
+		}
+		for (ReadRootTask readRootTask : readRootTasks) {
+			List<ClassFile> classFiles = join(readRootTask);
+			for (ClassFile classFile : classFiles) {
+				if (!classPath.containsKey(classFile.getName())) {
+					classPath.put(classFile.getName(), classFile);
+				}
+			}
+		}
+
+		Map<String, ClassFile> unmodifiableClassPath = Collections
+				.unmodifiableMap(classPath);
+		for (ClassFile classFile : classPath.values()) {
+			classFile.setClassPath(unmodifiableClassPath);
+		}
+		return new ArrayList<ClassFile>(classPath.values());
+	}
+
+	/**
+	 * @return the {@link ClassFile}s of the given directory or jar file. Their
+	 *         supertypes are not resolved.
+	 */
+	List<ClassFile> read(File root) throws IOException {
+		ReadRootTask readRootTask = new ReadRootTask(root);
+		forkJoinPool.execute(readRootTask);
+		return join(readRootTask);
+	}
+
+	/**
+	 * @return the {@link ClassFile}s that match the {@link Predicate}. The
+	 *         {@link Predicate} is evaluated in parallel.
+	 */
+	List<ClassFile> filter(List<ClassFile> classFiles,
+			Predicate<ClassFile> predicate) {
+		return forkJoinPool.invoke(new FilterTask(classFiles, predicate, 0,
+				classFiles.size()));
+	}
+
+	private List<ClassFile> join(ReadRootTask readRootTask)
+			throws IOException {
+		try {
+			return readRootTask.join();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	static File toFile(URL url) {
+		if (!"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return new File(url.getPath());
+		}
+	}
+
+	private static boolean isClassFileName(String name) {
+		return name.endsWith(CLASS_FILE_SUFFIX)
+				&& !name.endsWith("module-info.class")
+				&& !name.endsWith("package-info.class");
+	}
+
+	private ClassFile parse(InputStream inputStream, String location) {
+		try {
+			try {
+				return classFileParser.parse(inputStream);
+			} finally {
+				inputStream.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to parse " + location, e);
+		}
+	}
+
+	private class ReadRootTask extends RecursiveTask<List<ClassFile>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final File root;
+
+		public ReadRootTask(File root) {
+			this.root = root;
+		}
+
+		@Override
+		protected List<ClassFile> compute() {
+			if (root.isDirectory()) {
+				return new ReadDirectoryTask(root).compute();
+			}
+			try {
+				JarFile jarFile = new JarFile(root);
+				try {
+					List<JarEntry> classEntries = new ArrayList<JarEntry>();
+					Enumeration<JarEntry> entries = jarFile.entries();
+					while (entries.hasMoreElements()) {
+						JarEntry jarEntry = entries.nextElement();
+						String name = jarEntry.getName();
+						if (!name.startsWith("META-INF/")
+								&& isClassFileName(name)) {
+							classEntries.add(jarEntry);
+						}
+					}
+					return new ReadJarEntriesTask(jarFile, classEntries, 0,
+							classEntries.size()).compute();
+				} finally {
+					jarFile.close();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to read " + root, e);
+			}
+		}
+	}
+
+	private class ReadDirectoryTask extends RecursiveTask<List<ClassFile>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final File directory;
+
+		public ReadDirectoryTask(File directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		protected List<ClassFile> compute() {
+			File[] files = directory.listFiles();
+			if (files == null) {
+				return Collections.emptyList();
+			}
+			Arrays.sort(files);
+
+			List<ReadDirectoryTask> subdirectoryTasks = new ArrayList<ReadDirectoryTask>();
+			for (File file : files) {
+				if (file.isDirectory()) {
+					ReadDirectoryTask subdirectoryTask = new ReadDirectoryTask(
+							file);
+					subdirectoryTask.fork();
+					subdirectoryTasks.add(subdirectoryTask);
+				}
+			}
+
+			List<ClassFile> classFiles = new ArrayList<ClassFile>();
+			for (File file : files) {
+				if (file.isFile() && isClassFileName(file.getName())) {
+					try {
+						classFiles.add(parse(new FileInputStream(file),
+								file.toString()));
+					} catch (IOException e) {
+						throw new UncheckedIOException("Unable to read "
+								+ file, e);
+					}
+				}
+			}
+			for (ReadDirectoryTask subdirectoryTask : subdirectoryTasks) {
+				classFiles.addAll(subdirectoryTask.join());
+			}
+			return classFiles;
+		}
+	}
+
+	private class ReadJarEntriesTask extends RecursiveTask<List<ClassFile>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final JarFile jarFile;
+
+		private final List<JarEntry> entries;
+
+		private final int from;
+
+		private final int to;
+
+		public ReadJarEntriesTask(JarFile jarFile, List<JarEntry> entries,
+				int from, int to) {
+			this.jarFile = jarFile;
+			this.entries = entries;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<ClassFile> compute() {
+			if (to - from > JAR_ENTRIES_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				ReadJarEntriesTask lowerHalf = new ReadJarEntriesTask(jarFile,
+						entries, from, middle);
+				ReadJarEntriesTask upperHalf = new ReadJarEntriesTask(jarFile,
+						entries, middle, to);
+				upperHalf.fork();
+				List<ClassFile> classFiles = new ArrayList<ClassFile>(
+						lowerHalf.compute());
+				classFiles.addAll(upperHalf.join());
+				return classFiles;
+			}
+
+			List<ClassFile> classFiles = new ArrayList<ClassFile>(to - from);
+			for (int i = from; i < to; i++) {
+				JarEntry jarEntry = entries.get(i);
+				String location = jarFile.getName() + "!/" + jarEntry.getName();
+				try {
+					classFiles.add(parse(jarFile.getInputStream(jarEntry),
+							location));
+				} catch (IOException e) {
+					throw new UncheckedIOException("Unable to read "
+							+ location, e);
+				}
+			}
+			return classFiles;
+		}
+	}
+
+	private static class FilterTask extends RecursiveTask<List<ClassFile>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<ClassFile> classFiles;
+
+		private final Predicate<ClassFile> predicate;
+
+		private final int from;
+
+		private final int to;
+
+		public FilterTask(List<ClassFile> classFiles,
+				Predicate<ClassFile> predicate, int from, int to) {
+			this.classFiles = classFiles;
+			this.predicate = predicate;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<ClassFile> compute() {
+			if (to - from > FILTER_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				FilterTask lowerHalf = new FilterTask(classFiles, predicate,
+						from, middle);
+				FilterTask upperHalf = new FilterTask(classFiles, predicate,
+						middle, to);
+				upperHalf.fork();
+				List<ClassFile> matches = new ArrayList<ClassFile>(
+						lowerHalf.compute());
+				matches.addAll(upperHalf.join());
+				return matches;
+			}
+
+			List<ClassFile> matches = new ArrayList<ClassFile>();
+			for (int i = from; i < to; i++) {
+				ClassFile classFile = classFiles.get(i);
+				if (predicate.evaluate(classFile)) {
+					matches.add(classFile);
+				}
+			}
+			return matches;
+		}
+	}
+}
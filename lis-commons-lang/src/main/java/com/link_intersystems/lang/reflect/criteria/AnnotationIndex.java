@@ -0,0 +1,334 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * An inverted index from annotation types to the classes, constructors,
+ * methods and fields that are annotated with them. An {@link AnnotationIndex}
+ * answers questions like "all methods annotated with X in the hierarchy of Y"
+ * by a lookup instead of a traversal.
+ * <p>
+ * An element is indexed under
+ * <ul>
+ * <li>every annotation that is present on it. For classes this includes
+ * {@link java.lang.annotation.Inherited inherited} annotations.</li>
+ * <li>every meta-annotation of these annotations, i.e. the annotations that
+ * annotate the annotation types, transitively. The meta-annotations of the
+ * <code>java.lang.annotation</code> package, like
+ * {@link java.lang.annotation.Retention} or
+ * {@link java.lang.annotation.Target}, are not followed, because almost every
+ * annotation type is annotated with them.</li>
+ * </ul>
+ * The indexes that {@link #forClass(Class)} and {@link #forHierarchy(Class)}
+ * return are built once per class and cached. {@link AnnotationIndex}es are
+ * immutable and can be shared between threads. The indexed constructors,
+ * methods and fields are not handed out. Every lookup returns copies of them,
+ * so that they can be made accessible without affecting other clients.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public final class AnnotationIndex {
+
+	private static final String JAVA_LANG_ANNOTATION_PACKAGE = "java.lang.annotation.";
+
+	private static final MemberQuery<Member> MEMBER_QUERY = new MemberCriteria<Member>()
+			.compile();
+
+	private static final ClassValue<Set<Class<? extends Annotation>>> ANNOTATION_CLOSURES = new ClassValue<Set<Class<? extends Annotation>>>() {
+
+		@Override
+		protected Set<Class<? extends Annotation>> computeValue(Class<?> type) {
+			return Collections.unmodifiableSet(getAnnotationClosure(type));
+		}
+	};
+
+	private static final ClassValue<AnnotationIndex> CLASS_INDEXES = new ClassValue<AnnotationIndex>() {
+
+		@Override
+		protected AnnotationIndex computeValue(Class<?> type) {
+			return new AnnotationIndex(Collections.<Class<?>> singletonList(type));
+		}
+	};
+
+	private static final ClassValue<AnnotationIndex> HIERARCHY_INDEXES = new ClassValue<AnnotationIndex>() {
+
+		@Override
+		protected AnnotationIndex computeValue(Class<?> type) {
+			List<AnnotationIndex> classIndexes = new ArrayList<AnnotationIndex>();
+			for (Class<?> clazz : getHierarchy(type)) {
+				classIndexes.add(forClass(clazz));
+			}
+			return new AnnotationIndex(classIndexes);
+		}
+	};
+
+	/**
+	 * @return the cached {@link AnnotationIndex} of the given class and the
+	 *         constructors, methods and fields it declares.
+	 * @since 1.2.0.6
+	 */
+	public static AnnotationIndex forClass(Class<?> clazz) {
+		Assert.notNull("clazz", clazz);
+		return CLASS_INDEXES.get(clazz);
+	}
+
+	/**
+	 * @return the cached {@link AnnotationIndex} of the given class, all its
+	 *         superclasses and interfaces and the constructors, methods and
+	 *         fields that these types declare. The elements are indexed in
+	 *         hierarchy order: the given class, its superclasses and then
+	 *         their interfaces.
+	 * @since 1.2.0.6
+	 */
+	public static AnnotationIndex forHierarchy(Class<?> clazz) {
+		Assert.notNull("clazz", clazz);
+		return HIERARCHY_INDEXES.get(clazz);
+	}
+
+	/**
+	 * Builds an {@link AnnotationIndex} of the given classes and the
+	 * constructors, methods and fields they declare. In contrast to
+	 * {@link #forClass(Class)} and {@link #forHierarchy(Class)} the returned
+	 * index is not cached. It can be used to index the classes of a
+	 * {@link ClassQuery}, e.g.
+	 * <code>AnnotationIndex.of(classQuery.getIterable(startAt))</code>.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public static AnnotationIndex of(Iterable<Class<?>> classes) {
+		Assert.notNull("classes", classes);
+		List<AnnotationIndex> classIndexes = new ArrayList<AnnotationIndex>();
+		for (Class<?> clazz : classes) {
+			classIndexes.add(forClass(clazz));
+		}
+		return new AnnotationIndex(classIndexes);
+	}
+
+	private final Map<Class<? extends Annotation>, List<AnnotatedElement>> index;
+
+	private AnnotationIndex(List<Class<?>> classes) {
+		Map<Class<? extends Annotation>, List<AnnotatedElement>> index = new LinkedHashMap<Class<? extends Annotation>, List<AnnotatedElement>>();
+		for (Class<?> clazz : classes) {
+			addAnnotatedElement(index, clazz, clazz.getAnnotations());
+			for (Member member : MEMBER_QUERY.getSortedMemberArray(clazz)) {
+				AnnotatedElement annotatedElement = (AnnotatedElement) member;
+				addAnnotatedElement(index, annotatedElement,
+						annotatedElement.getDeclaredAnnotations());
+			}
+		}
+		this.index = unmodifiableIndex(index);
+	}
+
+	private AnnotationIndex(Iterable<AnnotationIndex> annotationIndexes) {
+		Map<Class<? extends Annotation>, List<AnnotatedElement>> index = new LinkedHashMap<Class<? extends Annotation>, List<AnnotatedElement>>();
+		for (AnnotationIndex annotationIndex : annotationIndexes) {
+			for (Entry<Class<? extends Annotation>, List<AnnotatedElement>> entry : annotationIndex.index
+					.entrySet()) {
+				getElements(index, entry.getKey()).addAll(entry.getValue());
+			}
+		}
+		this.index = unmodifiableIndex(index);
+	}
+
+	private static void addAnnotatedElement(
+			Map<Class<? extends Annotation>, List<AnnotatedElement>> index,
+			AnnotatedElement annotatedElement, Annotation[] annotations) {
+		Set<Class<? extends Annotation>> annotationTypes = new LinkedHashSet<Class<? extends Annotation>>();
+		for (Annotation annotation : annotations) {
+			annotationTypes.addAll(ANNOTATION_CLOSURES.get(annotation
+					.annotationType()));
+		}
+		for (Class<? extends Annotation> annotationType : annotationTypes) {
+			getElements(index, annotationType).add(annotatedElement);
+		}
+	}
+
+	private static List<AnnotatedElement> getElements(
+			Map<Class<? extends Annotation>, List<AnnotatedElement>> index,
+			Class<? extends Annotation> annotationType) {
+		List<AnnotatedElement> elements = index.get(annotationType);
+		if (elements == null) {
+			elements = new ArrayList<AnnotatedElement>();
+			index.put(annotationType, elements);
+		}
+		return elements;
+	}
+
+	private static Map<Class<? extends Annotation>, List<AnnotatedElement>> unmodifiableIndex(
+			Map<Class<? extends Annotation>, List<AnnotatedElement>> index) {
+		for (Entry<Class<? extends Annotation>, List<AnnotatedElement>> entry : index
+				.entrySet()) {
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+		return Collections.unmodifiableMap(index);
+	}
+
+	/**
+	 * @return the class, its superclasses and then all interfaces of these
+	 *         classes, transitively and without duplicates.
+	 */
+	private static Set<Class<?>> getHierarchy(Class<?> clazz) {
+		Set<Class<?>> hierarchy = new LinkedHashSet<Class<?>>();
+		List<Class<?>> interfaces = new ArrayList<Class<?>>();
+		Class<?> superclass = clazz;
+		while (superclass != null) {
+			hierarchy.add(superclass);
+			interfaces.addAll(Arrays.asList(superclass.getInterfaces()));
+			superclass = superclass.getSuperclass();
+		}
+		while (!interfaces.isEmpty()) {
+			Class<?> interfaceClass = interfaces.remove(0);
+			if (hierarchy.add(interfaceClass)) {
+				interfaces.addAll(Arrays.asList(interfaceClass
+						.getInterfaces()));
+			}
+		}
+		return hierarchy;
+	}
+
+	/**
+	 * @return the annotation type itself and all its meta-annotation types,
+	 *         transitively. Meta-annotations of the
+	 *         {@value #JAVA_LANG_ANNOTATION_PACKAGE} package are omitted.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Set<Class<? extends Annotation>> getAnnotationClosure(
+			Class<?> annotationType) {
+		Set<Class<? extends Annotation>> closure = new LinkedHashSet<Class<? extends Annotation>>();
+		List<Class<? extends Annotation>> pending = new ArrayList<Class<? extends Annotation>>();
+		pending.add((Class<? extends Annotation>) annotationType);
+		while (!pending.isEmpty()) {
+			Class<? extends Annotation> type = pending.remove(0);
+			if (closure.add(type)) {
+				for (Annotation metaAnnotation : type.getDeclaredAnnotations()) {
+					Class<? extends Annotation> metaAnnotationType = metaAnnotation
+							.annotationType();
+					if (!metaAnnotationType.getName().startsWith(
+							JAVA_LANG_ANNOTATION_PACKAGE)) {
+						pending.add(metaAnnotationType);
+					}
+				}
+			}
+		}
+		return closure;
+	}
+
+	/**
+	 * @return the annotation types that are present or meta-present on at
+	 *         least one element of this {@link AnnotationIndex}.
+	 * @since 1.2.0.6
+	 */
+	public Set<Class<? extends Annotation>> getAnnotationTypes() {
+		return index.keySet();
+	}
+
+	/**
+	 * @return all classes, constructors, methods and fields that are annotated
+	 *         or meta-annotated with the given annotation type.
+	 * @since 1.2.0.6
+	 */
+	public List<AnnotatedElement> getAnnotatedElements(
+			Class<? extends Annotation> annotationType) {
+		List<AnnotatedElement> elements = getAnnotatedElements(
+				annotationType, AnnotatedElement.class);
+		return Collections.unmodifiableList(elements);
+	}
+
+	/**
+	 * @return the classes that are annotated or meta-annotated with the given
+	 *         annotation type.
+	 * @since 1.2.0.6
+	 */
+	public List<Class<?>> getClasses(Class<? extends Annotation> annotationType) {
+		return getAnnotatedElements(annotationType, Class.class);
+	}
+
+	/**
+	 * @return the constructors that are annotated or meta-annotated with the
+	 *         given annotation type.
+	 * @since 1.2.0.6
+	 */
+	public List<Constructor<?>> getConstructors(
+			Class<? extends Annotation> annotationType) {
+		return getAnnotatedElements(annotationType, Constructor.class);
+	}
+
+	/**
+	 * @return the methods that are annotated or meta-annotated with the given
+	 *         annotation type.
+	 * @since 1.2.0.6
+	 */
+	public List<Method> getMethods(Class<? extends Annotation> annotationType) {
+		return getAnnotatedElements(annotationType, Method.class);
+	}
+
+	/**
+	 * @return the fields that are annotated or meta-annotated with the given
+	 *         annotation type.
+	 * @since 1.2.0.6
+	 */
+	public List<Field> getFields(Class<? extends Annotation> annotationType) {
+		return getAnnotatedElements(annotationType, Field.class);
+	}
+
+	/**
+	 * @return the indexed elements of the given type. Members are copied,
+	 *         because the indexed members are shared by all clients.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> List<T> getAnnotatedElements(
+			Class<? extends Annotation> annotationType, Class<?> elementType) {
+		Assert.notNull("annotationType", annotationType);
+		List<AnnotatedElement> annotatedElements = index.get(annotationType);
+		if (annotatedElements == null) {
+			return new ArrayList<T>();
+		}
+		MemberCopier memberCopier = new MemberCopier();
+		List<T> elements = new ArrayList<T>();
+		for (AnnotatedElement annotatedElement : annotatedElements) {
+			if (elementType.isInstance(annotatedElement)) {
+				if (annotatedElement instanceof Member) {
+					annotatedElement = (AnnotatedElement) memberCopier
+							.copy((Member) annotatedElement);
+				}
+				elements.add((T) annotatedElement);
+			}
+		}
+		return elements;
+	}
+}
@@ -21,23 +21,16 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.collections4.Predicate;
-import org.apache.commons.collections4.Transformer;
-import org.apache.commons.collections4.functors.TransformedPredicate;
 import org.apache.commons.collections4.functors.UniquePredicate;
 
 import com.link_intersystems.lang.Assert;
 import com.link_intersystems.lang.reflect.ReflectFacade;
 import com.link_intersystems.util.ObjectFactory;
 import com.link_intersystems.util.SerializableTemplateObjectFactory;
-import com.link_intersystems.util.graph.BreadthFirstNodeIterator;
-import com.link_intersystems.util.graph.DepthFirstNodeIterator;
-import com.link_intersystems.util.graph.GraphFacade;
-import com.link_intersystems.util.graph.GraphFacade.NodeIterateStrategy;
-import com.link_intersystems.util.graph.Node;
 
 /**
  * A criteria for creating iterators that iterate over class hierarchies.
@@ -315,164 +308,83 @@ public class ClassCriteria extends ElementCriteria<Class<?>> {
 	 * @since 1.0.0.0
 	 */
 	public Iterable<Class<?>> getIterable(Class<?> startAt, Class<?> stopAt) {
-		Assert.notNull("startAt", startAt);
-		if (stopAt != null && !stopAt.isAssignableFrom(startAt)) {
-			throw new IllegalArgumentException("stopAt " + stopAt
-					+ " must be a superclass of " + startAt);
-		}
-		class StartAtIterable implements Iterable<Class<?>> {
-
-			private final Class<?> startAt;
-			private final ObjectFactory<ClassCriteria> templateObjectFactory;
-
-			public StartAtIterable(Class<?> startAt,
-					ObjectFactory<ClassCriteria> classCriteria) {
-				this.templateObjectFactory = classCriteria;
-				this.startAt = startAt;
-			}
-
-			@SuppressWarnings({ "unchecked", "rawtypes" })
-			public Iterator<Class<?>> iterator() {
-				ClassCriteria classCriteriaCopy = templateObjectFactory
-						.getObject();
-				TraverseStrategy traverseStrategy = classCriteriaCopy.traverseStrategy;
-				boolean separatedClassTypeTraversal = classCriteriaCopy.separatedClassTypeTraversal;
-				Comparator<Class<?>> interfacesComparator = classCriteriaCopy.interfacesComparator;
-				Comparator<Class<?>> innerClassesComparator = classCriteriaCopy.innerClassesComparator;
-				ClassType[] classTypes = classCriteriaCopy.classTypes;
-				ClassNode rootNode = new ClassNode(startAt, classTypes);
-
-				rootNode.setInterfacesOrder(interfacesComparator);
-				rootNode.setInnerClassesOrder(innerClassesComparator);
-
-				class Node2ClassTransformer implements Transformer {
-
-					public Object transform(Object input) {
-						Node node = Node.class.cast(input);
-						Object userObject = node.getUserObject();
-						Class<?> clazz = Class.class.cast(userObject);
-						return clazz;
-					}
-
-				}
-				Iterator<Node> classNodeIterator = null;
-				Iterator classesIterator = null;
-				if (separatedClassTypeTraversal) {
-					NodeIterateStrategy nodeIterateStrategy = NodeIterateStrategy
-							.valueOf(traverseStrategy.name());
-					Predicate[] nodeIteratePredicates = new Predicate[classTypes.length];
-					Node2ClassTransformer node2ClassTransformer = new Node2ClassTransformer();
-					for (int i = 0; i < classTypes.length; i++) {
-						ClassType classType = classTypes[i];
-						ClassTypePredicate classTypePredicate = new ClassTypePredicate(
-								classType);
-						TransformedPredicate transformedPredicate = new TransformedPredicate(
-								node2ClassTransformer, classTypePredicate);
-						nodeIteratePredicates[i] = transformedPredicate;
-					}
-					classNodeIterator = GraphFacade.perPredicateNodeIterator(
-							nodeIterateStrategy, rootNode,
-							nodeIteratePredicates);
-					classesIterator = IteratorUtils.transformedIterator(
-							classNodeIterator, new Node2ClassTransformer());
-				} else {
-					switch (classCriteriaCopy.traverseStrategy) {
-					case BREADTH_FIRST:
-						classNodeIterator = new BreadthFirstNodeIterator(
-								rootNode);
-						break;
-					case DEPTH_FIRST:
-						classNodeIterator = new DepthFirstNodeIterator(rootNode);
-						break;
-					}
-					classesIterator = IteratorUtils.transformedIterator(
-							classNodeIterator, new Node2ClassTransformer());
-				}
-
-				ClassTypePredicate classTypePredicate = new ClassTypePredicate(
-						classTypes);
-				classesIterator = IteratorUtils.filteredIterator(
-						classesIterator, classTypePredicate);
-
-				classesIterator = classCriteriaCopy
-						.applyTraverseClassesUniquely(classesIterator);
-
-				classesIterator = classCriteriaCopy
-						.applyStopAtFilter(classesIterator);
-
-				classesIterator = classCriteriaCopy
-						.applyElementFilter(classesIterator);
-
-				classesIterator = classCriteriaCopy
-						.applySelectionFilter(classesIterator);
-
-				return classesIterator;
-			}
-
-		}
-
-		return new StartAtIterable(startAt, getObjectFactory());
+		return compile().getIterable(startAt, stopAt);
+	}
+
+	/**
+	 * @param startAt
+	 * @return a {@link Stream} of the class hierarchy as defined by this
+	 *         criteria starting at the given class. If the criteria defines a
+	 *         stop class than the {@link Stream} will stop at that class.
+	 * @since 1.2.0.6
+	 * @see ClassQuery#stream(Class)
+	 */
+	public Stream<Class<?>> stream(Class<?> startAt) {
+		return compile().stream(startAt);
+	}
+
+	/**
+	 * @param startAt
+	 * @param stopAt
+	 * @return a {@link Stream} of the class hierarchy as defined by this
+	 *         criteria starting at the given class and stopping at the given
+	 *         class.
+	 * @since 1.2.0.6
+	 * @see ClassQuery#stream(Class, Class)
+	 */
+	public Stream<Class<?>> stream(Class<?> startAt, Class<?> stopAt) {
+		return compile().stream(startAt, stopAt);
+	}
+
+	/**
+	 * Compiles this {@link ClassCriteria} into an immutable {@link ClassQuery}
+	 * that reflects the current state of this criteria. Changes to this
+	 * criteria after compilation have no effect on the returned
+	 * {@link ClassQuery}. A {@link ClassQuery} can be shared between threads
+	 * and should be reused if the same criteria is executed often.
+	 *
+	 * @return a {@link ClassQuery} for the current state of this criteria.
+	 * @since 1.2.0.6
+	 */
+	public ClassQuery compile() {
+		return new ClassQuery(this);
 	}
 
-	@SuppressWarnings("unchecked")
 	protected Iterator<Class<?>> applyTraverseClassesUniquely(
 			Iterator<Class<?>> iterator) {
-		if (isTraverseClassesUniquelyEnabled()) {
-			iterator = IteratorUtils.filteredIterator(iterator,
-					UniquePredicate.uniquePredicate());
-		}
-		return iterator;
+		return compile().applyTraverseClassesUniquely(iterator);
 	}
 
 	protected boolean isTraverseClassesUniquelyEnabled() {
 		return traverseClassesUniquely;
 	}
 
-	@SuppressWarnings("unchecked")
 	protected Iterator<Class<?>> applyStopAtFilter(Iterator<Class<?>> iterator) {
-		if (stopClass != null) {
-			Predicate stopPredicate = ReflectFacade
-					.getIsAssignablePredicate(stopClass);
-			iterator = IteratorUtils.filteredIterator(iterator, stopPredicate);
-		}
-		return iterator;
+		return ClassQuery.applyStopAtFilter(iterator, stopClass);
 	}
 
-	public ObjectFactory<ClassCriteria> getObjectFactory() {
-		return new SerializableTemplateObjectFactory<ClassCriteria>(this);
+	ClassType[] getClassTypes() {
+		return classTypes;
+	}
+
+	Class<?> getStopClass() {
+		return stopClass;
+	}
+
+	TraverseStrategy getTraverseStrategy() {
+		return traverseStrategy;
+	}
+
+	boolean isSeparatedClassTypeTraversal() {
+		return separatedClassTypeTraversal;
 	}
 
-	private static class ClassTypePredicate implements Predicate {
-
-		private ClassType[] classTypes;
-
-		public ClassTypePredicate(ClassType... classTypes) {
-			this.classTypes = classTypes;
-		}
-
-		public boolean evaluate(Object object) {
-			Class<?> clazz = Class.class.cast(object);
-			boolean filterMatch = false;
-
-			for (int i = 0; i < classTypes.length; i++) {
-				ClassType classType = classTypes[i];
-				switch (classType) {
-				case INNER_CLASSES:
-					filterMatch = clazz.getEnclosingClass() != null;
-					break;
-				case CLASSES:
-					filterMatch = !clazz.isInterface()
-							&& clazz.getEnclosingClass() == null;
-					break;
-				case INTERFACES:
-					filterMatch = clazz.isInterface();
-				}
-				if (filterMatch) {
-					break;
-				}
-			}
-			return filterMatch;
-		}
+	Comparator<Class<?>> getInnerClassesComparator() {
+		return innerClassesComparator;
+	}
+
+	public ObjectFactory<ClassCriteria> getObjectFactory() {
+		return new SerializableTemplateObjectFactory<ClassCriteria>(this);
 	}
 
-}
\ No newline at end of file
+}
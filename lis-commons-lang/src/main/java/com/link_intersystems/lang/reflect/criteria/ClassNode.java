@@ -5,7 +5,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.link_intersystems.lang.Assert;
@@ -28,6 +30,13 @@ class ClassNode implements Node {
 	private Comparator<Class<?>> interfacesComparator;
 	private Comparator<Class<?>> innerClassesComparator;
 
+	/*
+	 * The nodes of the classes that were reached from the root node. Every
+	 * class is represented by exactly one node, so that node iterators can
+	 * track visited classes by node identity.
+	 */
+	private Map<Class<?>, ClassNode> classNodes;
+
 	/**
 	 * Constructs a {@link ClassNode} that returns it's referenced classes
 	 * (super class, inner classes and interfaces) in the classTypes order.
@@ -48,6 +57,8 @@ class ClassNode implements Node {
 		}
 		this.classTypes = classTypes;
 		this.clazz = clazz;
+		this.classNodes = new IdentityHashMap<Class<?>, ClassNode>();
+		this.classNodes.put(clazz, this);
 	}
 
 	/**
@@ -133,9 +144,14 @@ class ClassNode implements Node {
 	}
 
 	private ClassNode newClassNode(Class<?> clazz) {
-		ClassNode classNode = new ClassNode(clazz, classTypes);
-		classNode.setInterfacesOrder(interfacesComparator);
-		classNode.setInnerClassesOrder(innerClassesComparator);
+		ClassNode classNode = classNodes.get(clazz);
+		if (classNode == null) {
+			classNode = new ClassNode(clazz, classTypes);
+			classNode.setInterfacesOrder(interfacesComparator);
+			classNode.setInnerClassesOrder(innerClassesComparator);
+			classNode.classNodes = classNodes;
+			classNodes.put(clazz, classNode);
+		}
 		return classNode;
 	}
 
@@ -0,0 +1,555 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.lang.reflect.AnnotatedElement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.apache.commons.collections4.Predicate;
+import org.apache.commons.collections4.Transformer;
+import org.apache.commons.collections4.functors.TransformedPredicate;
+import org.apache.commons.collections4.functors.UniquePredicate;
+
+import com.link_intersystems.lang.Assert;
+import com.link_intersystems.lang.reflect.ReflectFacade;
+import com.link_intersystems.lang.reflect.criteria.ClassCriteria.ClassType;
+import com.link_intersystems.lang.reflect.criteria.ClassCriteria.TraverseStrategy;
+import com.link_intersystems.util.graph.BreadthFirstNodeIterator;
+import com.link_intersystems.util.graph.DepthFirstNodeIterator;
+import com.link_intersystems.util.graph.GraphFacade;
+import com.link_intersystems.util.graph.GraphFacade.NodeIterateStrategy;
+import com.link_intersystems.util.graph.Node;
+
+/**
+ * The compiled, immutable form of a {@link ClassCriteria}. A {@link ClassQuery}
+ * is created by {@link ClassCriteria#compile()} and can be shared between
+ * threads.
+ * <p>
+ * The class order that a traversal produces only depends on the start class
+ * and the selection, traverse strategy and ordering of a query. Therefore the
+ * linearized class order is cached per start class once a traversal has been
+ * completely iterated and subsequent traversals of the same hierarchy just
+ * iterate the cached array. Traversals that use custom interfaces or inner
+ * classes comparators are not cached, because the cache could otherwise not
+ * tell if two comparators define the same order.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public final class ClassQuery extends ElementQuery<Class<?>> {
+
+	private static final ClassValue<ConcurrentMap<LinearizationKey, Class<?>[]>> LINEARIZATIONS = new ClassValue<ConcurrentMap<LinearizationKey, Class<?>[]>>() {
+
+		@Override
+		protected ConcurrentMap<LinearizationKey, Class<?>[]> computeValue(
+				Class<?> type) {
+			return new ConcurrentHashMap<LinearizationKey, Class<?>[]>(4);
+		}
+	};
+
+	private final ClassType[] classTypes;
+
+	private final boolean traverseClassesUniquely;
+
+	private final Class<?> stopClass;
+
+	private final Comparator<Class<?>> interfacesComparator;
+
+	private final TraverseStrategy traverseStrategy;
+
+	private final boolean separatedClassTypeTraversal;
+
+	private final Comparator<Class<?>> innerClassesComparator;
+
+	private final LinearizationKey linearizationKey;
+
+	ClassQuery(ClassCriteria classCriteria) {
+		super(classCriteria);
+		this.classTypes = classCriteria.getClassTypes().clone();
+		this.traverseClassesUniquely = classCriteria
+				.isTraverseClassesUniquelyEnabled();
+		this.stopClass = classCriteria.getStopClass();
+		this.interfacesComparator = classCriteria.getInterfacesComparator();
+		this.traverseStrategy = classCriteria.getTraverseStrategy();
+		this.separatedClassTypeTraversal = classCriteria
+				.isSeparatedClassTypeTraversal();
+		this.innerClassesComparator = classCriteria
+				.getInnerClassesComparator();
+		this.linearizationKey = createLinearizationKey();
+	}
+
+	private LinearizationKey createLinearizationKey() {
+		if (isCacheable(interfacesComparator)
+				&& isCacheable(innerClassesComparator)) {
+			return new LinearizationKey(classTypes, traverseStrategy,
+					separatedClassTypeTraversal, traverseClassesUniquely,
+					interfacesComparator, innerClassesComparator);
+		}
+		return null;
+	}
+
+	private static boolean isCacheable(Comparator<Class<?>> comparator) {
+		return comparator == null
+				|| comparator == ReflectFacade.getCanonicalClassNameComparator();
+	}
+
+	/**
+	 * @param startAt
+	 * @return an {@link Iterable} that iterates through the class hierarchy as
+	 *         defined by this query starting at the given class. If the query
+	 *         defines a stop class than the {@link Iterable} will stop at that
+	 *         class.
+	 * @throws IllegalArgumentException
+	 *             if the this query specifies a stop class and this class is
+	 *             not a superclass of the start class.
+	 * @since 1.2.0.6
+	 */
+	public Iterable<Class<?>> getIterable(Class<?> startAt) {
+		return getIterable(startAt, stopClass);
+	}
+
+	/**
+	 * @param startAt
+	 * @param stopAt
+	 * @return an {@link Iterable} that iterates through the class hierarchy as
+	 *         defined by this query starting at the given class and stopping at
+	 *         the given class.
+	 * @throws IllegalArgumentException
+	 *             if the stop class is not a superclass of the start class.
+	 * @since 1.2.0.6
+	 */
+	public Iterable<Class<?>> getIterable(final Class<?> startAt,
+			final Class<?> stopAt) {
+		checkStartAndStop(startAt, stopAt);
+		return new Iterable<Class<?>>() {
+
+			public Iterator<Class<?>> iterator() {
+				return ClassQuery.this.iterator(startAt, stopAt);
+			}
+		};
+	}
+
+	/**
+	 * @param startAt
+	 * @return a {@link Stream} of the class hierarchy as defined by this query
+	 *         starting at the given class. If the query defines a stop class
+	 *         than the {@link Stream} will stop at that class.
+	 * @throws IllegalArgumentException
+	 *             if the this query specifies a stop class and this class is
+	 *             not a superclass of the start class.
+	 * @since 1.2.0.6
+	 * @see #getIterable(Class)
+	 */
+	public Stream<Class<?>> stream(Class<?> startAt) {
+		return stream(startAt, stopClass);
+	}
+
+	/**
+	 * @param startAt
+	 * @param stopAt
+	 * @return a {@link Stream} of the class hierarchy as defined by this query
+	 *         starting at the given class and stopping at the given class. If
+	 *         the linearized class hierarchy is already cached the
+	 *         {@link Stream} is backed by it and supports splitting.
+	 *         Otherwise the hierarchy is traversed lazily when the terminal
+	 *         operation of the {@link Stream} runs, so that short-circuiting
+	 *         operations like {@link Stream#findFirst()} stop the traversal
+	 *         early.
+	 * @throws IllegalArgumentException
+	 *             if the stop class is not a superclass of the start class.
+	 * @since 1.2.0.6
+	 * @see #getIterable(Class, Class)
+	 */
+	public Stream<Class<?>> stream(final Class<?> startAt,
+			final Class<?> stopAt) {
+		checkStartAndStop(startAt, stopAt);
+		final int characteristics = getCharacteristics();
+		Stream<Class<?>> stream = null;
+		Class<?>[] linearization = getCachedLinearization(startAt);
+		if (linearization != null) {
+			Spliterator<Class<?>> spliterator = Spliterators.spliterator(
+					linearization, characteristics);
+			stream = StreamSupport.stream(spliterator, false);
+		} else {
+			Supplier<Spliterator<Class<?>>> spliteratorSupplier = new Supplier<Spliterator<Class<?>>>() {
+
+				public Spliterator<Class<?>> get() {
+					return Spliterators.spliteratorUnknownSize(
+							linearizedIterator(startAt), characteristics);
+				}
+			};
+			stream = StreamSupport.stream(spliteratorSupplier,
+					characteristics, false);
+		}
+		if (stopAt != null) {
+			stream = stream.filter(new java.util.function.Predicate<Class<?>>() {
+
+				public boolean test(Class<?> clazz) {
+					return stopAt.isAssignableFrom(clazz);
+				}
+			});
+		}
+		stream = applyElementFilter(stream);
+		stream = applySelectionFilter(stream);
+		return stream;
+	}
+
+	/**
+	 * Same behavior as {@link #getIterable(Class)} but returns an
+	 * {@link Iterable} whose iterator returns {@link AnnotatedElement}s.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public Iterable<? extends AnnotatedElement> getAnnotatedElementIterable(
+			Class<?> startAt) {
+		return getIterable(startAt);
+	}
+
+	/**
+	 * Same behavior as {@link #getIterable(Class, Class)} but returns an
+	 * {@link Iterable} whose iterator returns {@link AnnotatedElement}s.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public Iterable<? extends AnnotatedElement> getAnnotatedElementIterable(
+			Class<?> startAt, Class<?> stopAt) {
+		return getIterable(startAt, stopAt);
+	}
+
+	private void checkStartAndStop(Class<?> startAt, Class<?> stopAt) {
+		Assert.notNull("startAt", startAt);
+		if (stopAt != null && !stopAt.isAssignableFrom(startAt)) {
+			throw new IllegalArgumentException("stopAt " + stopAt
+					+ " must be a superclass of " + startAt);
+		}
+	}
+
+	/**
+	 * @return the stop class of this query or null.
+	 */
+	Class<?> getStopClass() {
+		return stopClass;
+	}
+
+	@Override
+	void addFingerprintComponents(List<Object> components) {
+		super.addFingerprintComponents(components);
+		components.add(Arrays.asList(classTypes));
+		components.add(traverseStrategy);
+		components.add(separatedClassTypeTraversal);
+		components.add(traverseClassesUniquely);
+		components.add(stopClass);
+		components.add(interfacesComparator);
+		components.add(innerClassesComparator);
+	}
+
+	Iterator<Class<?>> iterator(Class<?> startAt, Class<?> stopAt) {
+		Iterator<Class<?>> classesIterator = linearizedIterator(startAt);
+
+		classesIterator = applyStopAtFilter(classesIterator, stopAt);
+
+		classesIterator = applyElementFilter(classesIterator);
+
+		classesIterator = applySelectionFilter(classesIterator);
+
+		return classesIterator;
+	}
+
+	/**
+	 * @return an {@link Iterator} over the classes of the hierarchy starting
+	 *         at the given class in the order defined by this query's
+	 *         selection, traverse strategy and ordering. The iterator is
+	 *         backed by the cached linearization if one exists. Otherwise the
+	 *         hierarchy is traversed and the linearization is cached when the
+	 *         traversal has been completely iterated.
+	 */
+	Iterator<Class<?>> linearizedIterator(Class<?> startAt) {
+		if (linearizationKey == null) {
+			return traverse(startAt);
+		}
+		ConcurrentMap<LinearizationKey, Class<?>[]> linearizations = LINEARIZATIONS
+				.get(startAt);
+		Class<?>[] linearization = linearizations.get(linearizationKey);
+		if (linearization != null) {
+			return IteratorUtils.arrayIterator(linearization);
+		}
+		return new LinearizationRecorder(traverse(startAt), linearizations,
+				linearizationKey);
+	}
+
+	/**
+	 * @return the cached linearized class hierarchy starting at the given
+	 *         class or null if it is not cached yet. The returned array is
+	 *         shared and must not be modified.
+	 */
+	Class<?>[] getCachedLinearization(Class<?> startAt) {
+		if (linearizationKey == null) {
+			return null;
+		}
+		return LINEARIZATIONS.get(startAt).get(linearizationKey);
+	}
+
+	private int getCharacteristics() {
+		int characteristics = Spliterator.ORDERED | Spliterator.NONNULL
+				| Spliterator.IMMUTABLE;
+		if (traverseClassesUniquely) {
+			characteristics |= Spliterator.DISTINCT;
+		}
+		return characteristics;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	Iterator<Class<?>> traverse(Class<?> startAt) {
+		ClassNode rootNode = new ClassNode(startAt, classTypes);
+
+		rootNode.setInterfacesOrder(interfacesComparator);
+		rootNode.setInnerClassesOrder(innerClassesComparator);
+
+		Iterator<Node> classNodeIterator = null;
+		Iterator classesIterator = null;
+		if (separatedClassTypeTraversal) {
+			NodeIterateStrategy nodeIterateStrategy = NodeIterateStrategy
+					.valueOf(traverseStrategy.name());
+			Predicate[] nodeIteratePredicates = new Predicate[classTypes.length];
+			Node2ClassTransformer node2ClassTransformer = new Node2ClassTransformer();
+			for (int i = 0; i < classTypes.length; i++) {
+				ClassType classType = classTypes[i];
+				ClassTypePredicate classTypePredicate = new ClassTypePredicate(
+						classType);
+				TransformedPredicate transformedPredicate = new TransformedPredicate(
+						node2ClassTransformer, classTypePredicate);
+				nodeIteratePredicates[i] = transformedPredicate;
+			}
+			classNodeIterator = GraphFacade.perPredicateNodeIterator(
+					nodeIterateStrategy, rootNode, traverseClassesUniquely,
+					nodeIteratePredicates);
+			classesIterator = IteratorUtils.transformedIterator(
+					classNodeIterator, node2ClassTransformer);
+		} else {
+			switch (traverseStrategy) {
+			case BREADTH_FIRST:
+				classNodeIterator = new BreadthFirstNodeIterator(rootNode,
+						traverseClassesUniquely);
+				break;
+			case DEPTH_FIRST:
+				classNodeIterator = new DepthFirstNodeIterator(rootNode,
+						traverseClassesUniquely);
+				break;
+			}
+			classesIterator = IteratorUtils.transformedIterator(
+					classNodeIterator, new Node2ClassTransformer());
+		}
+
+		ClassTypePredicate classTypePredicate = new ClassTypePredicate(
+				classTypes);
+		classesIterator = IteratorUtils.filteredIterator(classesIterator,
+				classTypePredicate);
+
+		classesIterator = applyTraverseClassesUniquely(classesIterator);
+
+		return classesIterator;
+	}
+
+	@SuppressWarnings("unchecked")
+	Iterator<Class<?>> applyTraverseClassesUniquely(Iterator<Class<?>> iterator) {
+		if (traverseClassesUniquely) {
+			iterator = IteratorUtils.filteredIterator(iterator,
+					UniquePredicate.uniquePredicate());
+		}
+		return iterator;
+	}
+
+	@SuppressWarnings("unchecked")
+	static Iterator<Class<?>> applyStopAtFilter(Iterator<Class<?>> iterator,
+			Class<?> stopAt) {
+		if (stopAt != null) {
+			Predicate stopPredicate = ReflectFacade
+					.getIsAssignablePredicate(stopAt);
+			iterator = IteratorUtils.filteredIterator(iterator, stopPredicate);
+		}
+		return iterator;
+	}
+
+	/**
+	 * @return the interfaces iteration order comparator or null.
+	 * @since 1.2.0.6
+	 */
+	Comparator<Class<?>> getInterfacesComparator() {
+		return interfacesComparator;
+	}
+
+	private static class Node2ClassTransformer implements Transformer {
+
+		public Object transform(Object input) {
+			Node node = Node.class.cast(input);
+			Object userObject = node.getUserObject();
+			Class<?> clazz = Class.class.cast(userObject);
+			return clazz;
+		}
+
+	}
+
+	private static class ClassTypePredicate implements Predicate {
+
+		private ClassType[] classTypes;
+
+		public ClassTypePredicate(ClassType... classTypes) {
+			this.classTypes = classTypes;
+		}
+
+		public boolean evaluate(Object object) {
+			Class<?> clazz = Class.class.cast(object);
+			boolean filterMatch = false;
+
+			for (int i = 0; i < classTypes.length; i++) {
+				ClassType classType = classTypes[i];
+				switch (classType) {
+				case INNER_CLASSES:
+					filterMatch = clazz.getEnclosingClass() != null;
+					break;
+				case CLASSES:
+					filterMatch = !clazz.isInterface()
+							&& clazz.getEnclosingClass() == null;
+					break;
+				case INTERFACES:
+					filterMatch = clazz.isInterface();
+				}
+				if (filterMatch) {
+					break;
+				}
+			}
+			return filterMatch;
+		}
+	}
+
+	/**
+	 * Identifies a linearization of a class hierarchy. Two queries that have
+	 * equal {@link LinearizationKey}s produce the same class order for the
+	 * same start class.
+	 */
+	private static class LinearizationKey {
+
+		private final ClassType[] classTypes;
+		private final TraverseStrategy traverseStrategy;
+		private final boolean separatedClassTypeTraversal;
+		private final boolean traverseClassesUniquely;
+		private final Comparator<Class<?>> interfacesComparator;
+		private final Comparator<Class<?>> innerClassesComparator;
+		private final int hashCode;
+
+		public LinearizationKey(ClassType[] classTypes,
+				TraverseStrategy traverseStrategy,
+				boolean separatedClassTypeTraversal,
+				boolean traverseClassesUniquely,
+				Comparator<Class<?>> interfacesComparator,
+				Comparator<Class<?>> innerClassesComparator) {
+			this.classTypes = classTypes;
+			this.traverseStrategy = traverseStrategy;
+			this.separatedClassTypeTraversal = separatedClassTypeTraversal;
+			this.traverseClassesUniquely = traverseClassesUniquely;
+			this.interfacesComparator = interfacesComparator;
+			this.innerClassesComparator = innerClassesComparator;
+
+			int hash = Arrays.hashCode(classTypes);
+			hash = 31 * hash + traverseStrategy.hashCode();
+			hash = 31 * hash + (separatedClassTypeTraversal ? 1 : 0);
+			hash = 31 * hash + (traverseClassesUniquely ? 1 : 0);
+			hash = 31 * hash + System.identityHashCode(interfacesComparator);
+			hash = 31 * hash + System.identityHashCode(innerClassesComparator);
+			this.hashCode = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof LinearizationKey)) {
+				return false;
+			}
+			LinearizationKey other = (LinearizationKey) obj;
+			return traverseStrategy == other.traverseStrategy
+					&& separatedClassTypeTraversal == other.separatedClassTypeTraversal
+					&& traverseClassesUniquely == other.traverseClassesUniquely
+					&& interfacesComparator == other.interfacesComparator
+					&& innerClassesComparator == other.innerClassesComparator
+					&& Arrays.equals(classTypes, other.classTypes);
+		}
+	}
+
+	/**
+	 * Records the classes of a traversal and caches them as a linearization
+	 * when the traversal has been completely iterated. Traversals that are not
+	 * iterated to the end, e.g. because only the first element is selected,
+	 * do not populate the cache.
+	 */
+	private static class LinearizationRecorder implements Iterator<Class<?>> {
+
+		private final Iterator<Class<?>> traversal;
+		private final ConcurrentMap<LinearizationKey, Class<?>[]> linearizations;
+		private final LinearizationKey linearizationKey;
+		private List<Class<?>> recorded = new ArrayList<Class<?>>();
+
+		public LinearizationRecorder(Iterator<Class<?>> traversal,
+				ConcurrentMap<LinearizationKey, Class<?>[]> linearizations,
+				LinearizationKey linearizationKey) {
+			this.traversal = traversal;
+			this.linearizations = linearizations;
+			this.linearizationKey = linearizationKey;
+		}
+
+		public boolean hasNext() {
+			boolean hasNext = traversal.hasNext();
+			if (!hasNext && recorded != null) {
+				Class<?>[] linearization = recorded
+						.toArray(new Class<?>[recorded.size()]);
+				linearizations.putIfAbsent(linearizationKey, linearization);
+				recorded = null;
+			}
+			return hasNext;
+		}
+
+		public Class<?> next() {
+			Class<?> next = traversal.next();
+			recorded.add(next);
+			return next;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -18,7 +18,6 @@ package com.link_intersystems.lang.reflect.criteria;
 import java.io.Serializable;
 import java.util.Iterator;
 
-import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.collections4.Predicate;
 import org.apache.commons.collections4.functors.AndPredicate;
 
@@ -28,18 +27,19 @@ import com.link_intersystems.util.SerializableTemplateObjectFactory;
 
 /**
  * An {@link ElementCriteria} provides selection, and filtering capabilities for
- * concrete critirias. Every criteria must be {@link Serializable} to be able to
- * freeze it's state at any time (done via
- * {@link SerializableTemplateObjectFactory}). This is necessary to ensure that
- * criterias will not alter their behavior when they are in use. All
- * {@link ElementCriteria}s provide methods to obtain an {@link Iterable}. After
- * the {@link Iterable} is constructed it ensures that all {@link Iterator}s
- * that it constructs behave in the way the criteria was specified at
- * construction time of the {@link Iterable}.
+ * concrete critirias. An {@link ElementCriteria} is a builder that can be
+ * compiled into an immutable {@link ElementQuery} at any time. This is
+ * necessary to ensure that criterias will not alter their behavior when they
+ * are in use. All {@link ElementCriteria}s provide methods to obtain an
+ * {@link Iterable}. After the {@link Iterable} is constructed it ensures that
+ * all {@link Iterator}s that it constructs behave in the way the criteria was
+ * specified at construction time of the {@link Iterable}. If the same criteria
+ * is executed often, compile it once and reuse the {@link ElementQuery}.
  * <p>
- * {@link Serializable} is a way to freeze an object's state at any time.
- * Furthermore the use of the serializable strategy also empowers
- * {@link ElementCriteria}s to be transferred in a distributed environment, used
+ * Every criteria must be {@link Serializable} so that it's state can also be
+ * frozen using a {@link SerializableTemplateObjectFactory}. Furthermore the
+ * use of the serializable strategy also empowers {@link ElementCriteria}s to be
+ * transferred in a distributed environment, used
  * in permanent caches, web environment (session etc.) and so on. If you want to
  * add a Predicate that must hold a reference to an object that is not
  * serializable but can be reconstructed on other information (canoncial name,
@@ -85,6 +85,16 @@ public abstract class ElementCriteria<T> implements Serializable {
 
 	private Result select = Result.ALL;
 
+	private int skip = 0;
+
+	/*
+	 * The limit is only valid if limited is true. Thus criteria that were
+	 * serialized before the limit existed deserialize with no limit.
+	 */
+	private boolean limited;
+
+	private int limit;
+
 	public ElementCriteria() {
 	}
 
@@ -137,12 +147,8 @@ public abstract class ElementCriteria<T> implements Serializable {
 	 * @since 1.0.0.0
 	 */
 	protected Iterator<T> applyElementFilter(Iterator<T> iterator) {
-		if (elementFilterPredicate == null) {
-			return iterator;
-		} else {
-			return IteratorUtils.filteredIterator(iterator,
-					elementFilterPredicate);
-		}
+		return ElementQuery.applyElementFilter(iterator,
+				elementFilterPredicate);
 	}
 
 	/**
@@ -159,38 +165,8 @@ public abstract class ElementCriteria<T> implements Serializable {
 	 * @since 1.0.0.0
 	 */
 	protected Iterator<T> applySelectionFilter(final Iterator<T> iterator) {
-		Iterator<T> result = null;
-		switch (select) {
-		case FIRST:
-			Predicate<Object> firstPredicate = new Predicate<Object>() {
-
-				private boolean first = true;
-
-				public boolean evaluate(Object object) {
-					if (first) {
-						first = false;
-						return true;
-					}
-					return false;
-				}
-			};
-			result = IteratorUtils.filteredIterator(iterator, firstPredicate);
-			break;
-		case LAST:
-			Predicate<Object> lastElementPredicate = new Predicate<Object>() {
-
-				public boolean evaluate(Object object) {
-					return !iterator.hasNext();
-				}
-			};
-			result = IteratorUtils.filteredIterator(iterator,
-					lastElementPredicate);
-			break;
-		case ALL:
-			result = iterator;
-			break;
-		}
-		return result;
+		return ElementQuery.applySelectionFilter(iterator, select, skip,
+				getLimit());
 	}
 
 	/**
@@ -205,4 +181,72 @@ public abstract class ElementCriteria<T> implements Serializable {
 		Assert.notNull("select", select);
 		this.select = select;
 	}
+
+	/**
+	 * Skips the first n elements that match this criteria. The {@link Result}
+	 * selection is applied to the elements that remain.
+	 *
+	 * @param skip
+	 *            the number of matching elements to skip. Defaults to 0.
+	 * @since 1.2.0.6
+	 */
+	public void setSkip(int skip) {
+		if (skip < 0) {
+			throw new IllegalArgumentException("skip must be 0 or greater");
+		}
+		this.skip = skip;
+	}
+
+	/**
+	 * Selects at most n of the elements that match this criteria. The
+	 * traversal stops as soon as the limit is reached. The {@link Result}
+	 * selection is applied to the limited elements, e.g. {@link Result#LAST}
+	 * selects the n-th matching element.
+	 *
+	 * @param limit
+	 *            the maximum number of elements to select. Defaults to no
+	 *            limit.
+	 * @since 1.2.0.6
+	 */
+	public void setLimit(int limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("limit must be 0 or greater");
+		}
+		this.limit = limit;
+		this.limited = true;
+	}
+
+	/**
+	 * @return the number of elements to skip as set by {@link #setSkip(int)}.
+	 * @since 1.2.0.6
+	 */
+	int getSkip() {
+		return skip;
+	}
+
+	/**
+	 * @return the maximum number of elements to select as set by
+	 *         {@link #setLimit(int)} or {@link ElementQuery#NO_LIMIT}.
+	 * @since 1.2.0.6
+	 */
+	int getLimit() {
+		return limited ? limit : ElementQuery.NO_LIMIT;
+	}
+
+	/**
+	 * @return the {@link Result} selection set by {@link #setResult(Result)}.
+	 * @since 1.2.0.6
+	 */
+	Result getResult() {
+		return select;
+	}
+
+	/**
+	 * @return the predicate that combines all predicates added by
+	 *         {@link #add(Predicate)} or null if no predicate was added.
+	 * @since 1.2.0.6
+	 */
+	Predicate<T> getElementFilterPredicate() {
+		return elementFilterPredicate;
+	}
 }
@@ -0,0 +1,351 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.apache.commons.collections4.Predicate;
+
+/**
+ * An {@link ElementQuery} is the compiled, immutable form of an
+ * {@link ElementCriteria}. While an {@link ElementCriteria} is a builder that
+ * can be changed at any time, an {@link ElementQuery} reflects the state of
+ * the {@link ElementCriteria} at the time it was compiled. Therefore an
+ * {@link ElementQuery} can be shared between threads and executed as often as
+ * needed without copying the criteria.
+ * <p>
+ * The {@link Predicate}s that were added to the {@link ElementCriteria} are
+ * shared by all iterators that an {@link ElementQuery} creates. Thus if an
+ * {@link ElementQuery} is used by multiple threads the {@link Predicate}s must
+ * be thread-safe.
+ * </p>
+ * <p>
+ * The selection of an {@link ElementQuery}, i.e. skip, limit and
+ * {@link Result#FIRST}, is short-circuiting. Once the selected elements are
+ * known the underlying traversal is not continued.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public abstract class ElementQuery<T> {
+
+	/**
+	 * The limit of a query that selects all elements.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public static final int NO_LIMIT = -1;
+
+	private final Predicate<T> elementFilterPredicate;
+
+	private final Result result;
+
+	private final int skip;
+
+	private final int limit;
+
+	private volatile QueryFingerprint fingerprint;
+
+	ElementQuery(ElementCriteria<T> elementCriteria) {
+		this.elementFilterPredicate = elementCriteria
+				.getElementFilterPredicate();
+		this.result = elementCriteria.getResult();
+		this.skip = elementCriteria.getSkip();
+		this.limit = elementCriteria.getLimit();
+	}
+
+	/**
+	 * @return the {@link Result} selection of this {@link ElementQuery}.
+	 * @since 1.2.0.6
+	 */
+	public Result getResult() {
+		return result;
+	}
+
+	/**
+	 * @return the number of matching elements that this {@link ElementQuery}
+	 *         skips.
+	 * @since 1.2.0.6
+	 */
+	public int getSkip() {
+		return skip;
+	}
+
+	/**
+	 * @return the maximum number of matching elements that this
+	 *         {@link ElementQuery} selects or {@link #NO_LIMIT}.
+	 * @since 1.2.0.6
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Takes the iterator and wraps it into a filtering iterator that applies
+	 * the {@link Predicate}s of this {@link ElementQuery}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	protected Iterator<T> applyElementFilter(Iterator<T> iterator) {
+		return applyElementFilter(iterator, elementFilterPredicate);
+	}
+
+	/**
+	 * Takes the iterator and wraps it into a filtering iterator that applies
+	 * the {@link Result} selection of this {@link ElementQuery}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	protected Iterator<T> applySelectionFilter(Iterator<T> iterator) {
+		return applySelectionFilter(iterator, result, skip, limit);
+	}
+
+	/**
+	 * Takes the {@link Stream} and filters it by the {@link Predicate}s of this
+	 * {@link ElementQuery}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	protected Stream<T> applyElementFilter(Stream<T> stream) {
+		if (elementFilterPredicate == null) {
+			return stream;
+		}
+		return stream.filter(new java.util.function.Predicate<T>() {
+
+			public boolean test(T element) {
+				return accept(element);
+			}
+		});
+	}
+
+	/**
+	 * Takes the {@link Stream} and applies the {@link Result} selection of this
+	 * {@link ElementQuery}. The selection is lazy, i.e. the {@link Stream} is
+	 * not consumed before a terminal operation is invoked on the returned
+	 * {@link Stream}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	protected Stream<T> applySelectionFilter(Stream<T> stream) {
+		if (skip > 0) {
+			stream = stream.skip(skip);
+		}
+		if (limit != NO_LIMIT) {
+			stream = stream.limit(limit);
+		}
+		switch (result) {
+		case FIRST:
+			return stream.limit(1);
+		case LAST:
+			/*
+			 * The reduction must not run before the returned stream is
+			 * consumed. Thus it is deferred by a flat map of the stream.
+			 */
+			final Stream<T> source = stream;
+			return Stream.of(source).flatMap(new LastElementFunction<T>())
+					.onClose(new Runnable() {
+
+						public void run() {
+							source.close();
+						}
+					});
+		default:
+			return stream;
+		}
+	}
+
+	/**
+	 * @return the {@link QueryFingerprint} of this {@link ElementQuery}.
+	 */
+	QueryFingerprint getFingerprint() {
+		QueryFingerprint fingerprint = this.fingerprint;
+		if (fingerprint == null) {
+			List<Object> components = new ArrayList<Object>();
+			components.add(getClass());
+			addFingerprintComponents(components);
+			fingerprint = new QueryFingerprint(components);
+			this.fingerprint = fingerprint;
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Adds the settings of this {@link ElementQuery} that define the selected
+	 * elements to the fingerprint components. Subclasses must add their
+	 * settings too.
+	 */
+	void addFingerprintComponents(List<Object> components) {
+		components.add(result);
+		components.add(skip);
+		components.add(limit);
+		components.add(QueryFingerprint
+				.getPredicateComponents(elementFilterPredicate));
+	}
+
+	/**
+	 * @return true if the element is accepted by the {@link Predicate}s of this
+	 *         {@link ElementQuery}.
+	 * @since 1.2.0.6
+	 */
+	boolean accept(T element) {
+		return elementFilterPredicate == null
+				|| elementFilterPredicate.evaluate(element);
+	}
+
+	static <T> Iterator<T> applyElementFilter(Iterator<T> iterator,
+			Predicate<T> elementFilterPredicate) {
+		if (elementFilterPredicate == null) {
+			return iterator;
+		} else {
+			return IteratorUtils.filteredIterator(iterator,
+					elementFilterPredicate);
+		}
+	}
+
+	static <T> Iterator<T> applySelectionFilter(Iterator<T> iterator,
+			Result select, int skip, int limit) {
+		if (select == Result.FIRST) {
+			limit = limit == NO_LIMIT ? 1 : Math.min(limit, 1);
+		}
+		if (skip > 0 || limit != NO_LIMIT) {
+			iterator = new SelectionIterator<T>(iterator, skip, limit);
+		}
+		if (select == Result.LAST) {
+			iterator = new LastElementIterator<T>(iterator);
+		}
+		return iterator;
+	}
+
+	/**
+	 * Skips and limits the elements of an {@link Iterator}. Once the limit is
+	 * reached the underlying {@link Iterator} is not asked for more elements.
+	 */
+	private static class SelectionIterator<T> implements Iterator<T> {
+
+		private final Iterator<T> iterator;
+
+		private int skip;
+
+		private int remaining;
+
+		public SelectionIterator(Iterator<T> iterator, int skip, int limit) {
+			this.iterator = iterator;
+			this.skip = skip;
+			this.remaining = limit;
+		}
+
+		public boolean hasNext() {
+			if (remaining == 0) {
+				return false;
+			}
+			while (skip > 0 && iterator.hasNext()) {
+				iterator.next();
+				skip--;
+			}
+			return iterator.hasNext();
+		}
+
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if (remaining > 0) {
+				remaining--;
+			}
+			return iterator.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Reduces a {@link Stream} to a {@link Stream} of its last element.
+	 */
+	private static class LastElementFunction<T> implements
+			Function<Stream<T>, Stream<T>> {
+
+		public Stream<T> apply(Stream<T> stream) {
+			Optional<T> last = stream.reduce(new BinaryOperator<T>() {
+
+				public T apply(T element1, T element2) {
+					return element2;
+				}
+			});
+			if (last.isPresent()) {
+				return Stream.of(last.get());
+			}
+			return Stream.empty();
+		}
+	}
+
+	/**
+	 * Selects the last element of an {@link Iterator}. The underlying
+	 * {@link Iterator} is consumed on the first call to {@link #hasNext()} or
+	 * {@link #next()}.
+	 */
+	private static class LastElementIterator<T> implements Iterator<T> {
+
+		private final Iterator<T> iterator;
+
+		private boolean consumed;
+
+		private boolean hasLast;
+
+		private T last;
+
+		public LastElementIterator(Iterator<T> iterator) {
+			this.iterator = iterator;
+		}
+
+		public boolean hasNext() {
+			if (!consumed) {
+				while (iterator.hasNext()) {
+					last = iterator.next();
+					hasLast = true;
+				}
+				consumed = true;
+			}
+			return hasLast;
+		}
+
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T next = last;
+			last = null;
+			hasLast = false;
+			return next;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -48,7 +48,7 @@ abstract class JavaElementTraverseStrategies {
 		private static final long serialVersionUID = -7099719523945697068L;
 
 		public Iterator<?> getIterator(Class<?> currentClass,
-				ElementCriteria elementCriteria) {
+				ElementQuery<?> elementQuery) {
 			SuperclassIterator superclassIterator = new SuperclassIterator(
 					currentClass);
 
@@ -66,7 +66,7 @@ abstract class JavaElementTraverseStrategies {
 		private static final long serialVersionUID = 8917510401196634162L;
 
 		public Iterator<?> getIterator(Class<?> currentClass,
-				ElementCriteria elementCriteria) {
+				ElementQuery<?> elementQuery) {
 			return IteratorUtils.singletonIterator(currentClass.getPackage());
 		}
 	}
@@ -90,7 +90,7 @@ abstract class JavaElementTraverseStrategies {
 
 		@SuppressWarnings("unchecked")
 		public Iterator<?> getIterator(Class<?> currentClass,
-				ElementCriteria elementCriteria) {
+				ElementQuery<?> elementQuery) {
 			if (interfacesOnly) {
 				if (currentClass.isInterface()) {
 					Iterator currentIterator = IteratorUtils
@@ -116,13 +116,12 @@ abstract class JavaElementTraverseStrategies {
 		private static final long serialVersionUID = -8550106254098361926L;
 
 		public Iterator<?> getIterator(Class<?> currentClass,
-				ElementCriteria elementCriteria) {
+				ElementQuery<?> elementQuery) {
 			Comparator<Class<?>> interfacesComparator = null;
 
-			if (elementCriteria instanceof ClassCriteria) {
-				ClassCriteria classCriteria = ClassCriteria.class
-						.cast(elementCriteria);
-				interfacesComparator = classCriteria.getInterfacesComparator();
+			if (elementQuery instanceof ClassQuery) {
+				ClassQuery classQuery = ClassQuery.class.cast(elementQuery);
+				interfacesComparator = classQuery.getInterfacesComparator();
 			}
 
 			InterfacesIterator interfacesIterator = new InterfacesIterator(
@@ -141,22 +140,25 @@ abstract class JavaElementTraverseStrategies {
 		 */
 		private static final long serialVersionUID = 6115298421487915686L;
 
+		@SuppressWarnings({ "unchecked", "rawtypes" })
 		public Iterator<?> getIterator(Class<?> currentClass,
-				ElementCriteria elementCriteria) {
-			if (elementCriteria instanceof MemberCriteria) {
-				MemberCriteria memberCriteria = MemberCriteria.class
-						.cast(elementCriteria);
+				ElementQuery<?> elementQuery) {
+			if (elementQuery instanceof MemberQuery) {
+				MemberQuery memberQuery = MemberQuery.class.cast(elementQuery);
 
-				List<Member> memberList = memberCriteria
-						.getSortedMembers(currentClass);
+				Member[] candidateMembers = memberQuery
+						.getCandidateMembers(currentClass);
 				/*
-				 * only iterate the class's members
+				 * only iterate the class's members. The selection is applied
+				 * per class, because the annotated elements of other classes,
+				 * packages and members are interleaved.
 				 */
-				Iterator<?> memberIterator = memberList.iterator();
-				memberIterator = elementCriteria
-						.applyElementFilter(memberIterator);
-				memberIterator = elementCriteria
+				Iterator memberIterator = IteratorUtils
+						.arrayIterator(candidateMembers);
+				memberIterator = memberQuery.applyElementFilter(memberIterator);
+				memberIterator = memberQuery
 						.applySelectionFilter(memberIterator);
+				memberIterator = memberQuery.applyMemberCopier(memberIterator);
 				return memberIterator;
 			}
 
@@ -181,12 +183,12 @@ class CompositeJavaElementTraverseStrategy implements
 	}
 
 	public Iterator<?> getIterator(Class<?> currentClass,
-			ElementCriteria elementCriteria) {
+			ElementQuery<?> elementQuery) {
 		List<Iterator<?>> iterators = new ArrayList<Iterator<?>>();
 		for (int i = 0; i < javaElementTraverseStrategies.length; i++) {
 			JavaElementTraverseStrategy javaElementTraverseStrategy = javaElementTraverseStrategies[i];
 			Iterator<?> iterator = javaElementTraverseStrategy.getIterator(
-					currentClass, elementCriteria);
+					currentClass, elementQuery);
 			iterators.add(iterator);
 		}
 		return IteratorUtils.chainedIterator(iterators);
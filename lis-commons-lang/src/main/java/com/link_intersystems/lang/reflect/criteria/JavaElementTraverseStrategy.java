@@ -20,7 +20,6 @@ import java.util.Iterator;
 
 interface JavaElementTraverseStrategy extends Serializable {
 
-	Iterator<?> getIterator(Class<?> currentClass,
-			ElementCriteria elementCriteria);
+	Iterator<?> getIterator(Class<?> currentClass, ElementQuery<?> elementQuery);
 
 }
\ No newline at end of file
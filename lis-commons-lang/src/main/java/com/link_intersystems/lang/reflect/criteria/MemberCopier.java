@@ -0,0 +1,98 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.collections4.Transformer;
+
+/**
+ * Copies the cached {@link Member}s of the {@link MemberQuery}s before they
+ * are handed out to clients. A {@link Member} is mutable, e.g. by
+ * {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)}, and
+ * therefore the cached instances must not be shared with clients.
+ * <p>
+ * The copy of a member is the equal member of a new
+ * {@link Class#getDeclaredMethods()}, {@link Class#getDeclaredFields()} or
+ * {@link Class#getDeclaredConstructors()} array of the member's declaring
+ * class. A {@link MemberCopier} looks up these arrays only once as long as it
+ * copies members of the same class one after another. Thus a query that
+ * iterates class by class looks up the declared members of the classes that
+ * it returns members of once at most, like an uncached query does.
+ * </p>
+ * <p>
+ * A {@link MemberCopier} is not thread-safe. Every iterator uses its own.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+class MemberCopier implements Transformer<Member, Member> {
+
+	private final Map<Member, Member> copies = new HashMap<Member, Member>();
+
+	private Class<?> declaringClass;
+
+	private int copiedMemberTypeBits;
+
+	public Member transform(Member member) {
+		return copy(member);
+	}
+
+	/**
+	 * @return a new {@link Member} that is equal to the given member.
+	 */
+	@SuppressWarnings("unchecked")
+	<T extends Member> T copy(T member) {
+		Class<?> memberDeclaringClass = member.getDeclaringClass();
+		if (memberDeclaringClass != declaringClass) {
+			declaringClass = memberDeclaringClass;
+			copies.clear();
+			copiedMemberTypeBits = 0;
+		}
+
+		int memberTypeBit = MemberIndex.getMemberTypeBit(member.getClass());
+		if ((copiedMemberTypeBits & memberTypeBit) == 0) {
+			copiedMemberTypeBits |= memberTypeBit;
+			for (Member declaredMember : getDeclaredMembers(member)) {
+				copies.put(declaredMember, declaredMember);
+			}
+		}
+
+		Member copy = copies.get(member);
+		if (copy == null) {
+			throw new IllegalStateException(member
+					+ " is not declared by its declaring class");
+		}
+		return (T) copy;
+	}
+
+	private static Member[] getDeclaredMembers(Member member) {
+		Class<?> declaringClass = member.getDeclaringClass();
+		if (member instanceof Method) {
+			return declaringClass.getDeclaredMethods();
+		} else if (member instanceof Field) {
+			return declaringClass.getDeclaredFields();
+		}
+		return declaringClass.getDeclaredConstructors();
+	}
+}
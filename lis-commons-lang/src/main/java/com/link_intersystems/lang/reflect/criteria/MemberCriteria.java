@@ -29,18 +29,13 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.collections4.Predicate;
-import org.apache.commons.collections4.Transformer;
-import org.apache.commons.collections4.functors.AllPredicate;
-import org.apache.commons.collections4.functors.NotPredicate;
-import org.apache.commons.collections4.functors.OrPredicate;
 
 import com.link_intersystems.lang.Assert;
 import com.link_intersystems.lang.reflect.AccessType;
-import com.link_intersystems.lang.reflect.MemberModifierPredicate;
-import com.link_intersystems.lang.reflect.MemberModifierPredicate.Match;
 import com.link_intersystems.lang.reflect.ReflectFacade;
 import com.link_intersystems.util.ObjectFactory;
 import com.link_intersystems.util.SerializableTemplateObjectFactory;
@@ -214,7 +209,7 @@ public class MemberCriteria<T extends Member> extends ElementCriteria<T> {
 			}
 		}
 
-		private JavaElementTraverseStrategy getJavaElementTraverseStrategy() {
+		JavaElementTraverseStrategy getJavaElementTraverseStrategy() {
 			return javaElementTraverseStrategy;
 		}
 
@@ -241,6 +236,13 @@ public class MemberCriteria<T extends Member> extends ElementCriteria<T> {
 	 * The {@link Predicate} must handle {@link Method} objects in it's
 	 * {@link Predicate#evaluate(Object)} method.
 	 * </p>
+	 * <p>
+	 * The {@link Predicate} is evaluated against the cached {@link Member}s
+	 * that are shared by all queries. Only the selected members are copied
+	 * before they are returned. Thus the {@link Predicate} must not change
+	 * the evaluated members, e.g. by
+	 * {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)}.
+	 * </p>
 	 *
 	 * @since 1.0.0.0
 	 */
@@ -285,24 +287,11 @@ public class MemberCriteria<T extends Member> extends ElementCriteria<T> {
 	}
 
 	protected List<Member> getSortedMembers(Class<?> currentClass) {
-		List<Member> memberList = new ArrayList<Member>();
-		for (Class<?> memberType : memberTypes) {
-			Member[] members = null;
-			if (Constructor.class.equals(memberType)) {
-				members = currentClass.getDeclaredConstructors();
-			} else if (Method.class.equals(memberType)) {
-				members = currentClass.getDeclaredMethods();
-			} else if (Field.class.equals(memberType)) {
-				members = currentClass.getDeclaredFields();
-			}
-			if (members != null) {
-				List<Member> asList = Arrays.asList(members);
-				memberList.addAll(asList);
-			}
-		}
-
-		Collections.sort(memberList, iterateOrderComparator);
-		return memberList;
+		MemberQuery<T> memberQuery = compile();
+		List<Member> sortedMembers = memberQuery.getSortedMembers(currentClass);
+		Iterator<Member> memberIterator = memberQuery
+				.applyMemberCopier(sortedMembers.iterator());
+		return IteratorUtils.toList(memberIterator, sortedMembers.size());
 	}
 
 	/**
@@ -402,14 +391,16 @@ public class MemberCriteria<T extends Member> extends ElementCriteria<T> {
 	 *            elements that the selected {@link Member}s are declared on.
 	 * @return an {@link Iterable} that creates {@link Iterator}s that iterate
 	 *         through {@link AnnotatedElement}s as defined by this
-	 *         {@link MemberCriteria} using the given iterate strategy.
+	 *         {@link MemberCriteria} using the given iterate strategy. In
+	 *         contrast to {@link #getIterable(Iterable)} the {@link Result},
+	 *         skip and limit settings select the {@link Member}s of each
+	 *         class, e.g. {@link Result#FIRST} selects the first matching
+	 *         member of every class.
 	 * @since 1.0.0.0
 	 */
 	public Iterable<? extends AnnotatedElement> getAnnotatedElementIterable(Iterable<Class<?>> classIterable,
 			IterateStrategy iterateStrategy) {
-		AnnotatedElementIterable annotatedElementIterable = new AnnotatedElementIterable(classIterable, iterateStrategy,
-				getObjectFactory());
-		return annotatedElementIterable;
+		return compile().getAnnotatedElementIterable(classIterable, iterateStrategy);
 	}
 
 	/**
@@ -423,65 +414,44 @@ public class MemberCriteria<T extends Member> extends ElementCriteria<T> {
 	 * @since 1.0.0.0
 	 */
 	public Iterable<Member> getIterable(Iterable<Class<?>> classIterable) {
-		return new MemberIterableWithClassIterable(classIterable, getObjectFactory());
+		return compile().getIterable(classIterable);
+	}
+
+	/**
+	 * @param classIterable
+	 *            the classes that are searched for members that match this
+	 *            {@link MemberCriteria}.
+	 * @return a {@link Stream} of the {@link Member}s as defined by this
+	 *         {@link MemberCriteria}.
+	 * @since 1.2.0.6
+	 * @see MemberQuery#stream(Iterable)
+	 */
+	public Stream<T> stream(Iterable<Class<?>> classIterable) {
+		return compile().stream(classIterable);
+	}
+
+	/**
+	 * Compiles this {@link MemberCriteria} into an immutable
+	 * {@link MemberQuery} that reflects the current state of this criteria.
+	 * Changes to this criteria after compilation have no effect on the
+	 * returned {@link MemberQuery}. A {@link MemberQuery} can be shared
+	 * between threads and should be reused if the same criteria is executed
+	 * often.
+	 *
+	 * @return a {@link MemberQuery} for the current state of this criteria.
+	 * @since 1.2.0.6
+	 */
+	public MemberQuery<T> compile() {
+		return new MemberQuery<T>(this);
 	}
 
 	@Override
 	protected Iterator<T> applyElementFilter(Iterator<T> iterator) {
-		iterator = super.applyElementFilter(iterator);
-		iterator = applyAccessAndNamePredicates(iterator);
-		return iterator;
+		return compile().applyElementFilter(iterator);
 	}
 
-	@SuppressWarnings("unchecked")
 	protected Iterator<T> applyAccessAndNamePredicates(Iterator<T> iterator) {
-		Collection<Predicate<T>> predicates = new ArrayList<Predicate<T>>();
-
-		int accessModifiers = 0;
-		Collection<AccessType> accesses = getAccesses();
-		for (AccessType access : accesses) {
-			switch (access) {
-			case PUBLIC:
-				accessModifiers |= Modifier.PUBLIC;
-				break;
-			case PRIVATE:
-				accessModifiers |= Modifier.PRIVATE;
-				break;
-			case PROTECTED:
-				accessModifiers |= Modifier.PROTECTED;
-				break;
-			default:
-				break;
-			}
-		}
-		Predicate<Member> accessModifierPredicate = new MemberModifierPredicate(accessModifiers, Match.AT_LEAST_ONE);
-
-		if (accesses.contains(AccessType.DEFAULT)) {
-			accessModifierPredicate = OrPredicate.orPredicate(accessModifierPredicate,
-					NotPredicate.notPredicate(new MemberModifierPredicate(
-							Modifier.PRIVATE | Modifier.PUBLIC | Modifier.PROTECTED, Match.AT_LEAST_ONE)));
-		}
-
-		predicates.add((Predicate<T>) accessModifierPredicate);
-
-		int modifiers = getModifiers();
-		if (modifiers != 0) {
-			predicates.add((Predicate<T>) new MemberModifierPredicate(modifiers, Match.AT_LEAST_ALL));
-		}
-
-		String name = getName();
-		if (name != null) {
-			predicates.add(ReflectFacade.getMemberNamePredicate(name));
-		}
-
-		Pattern pattern = getPattern();
-		if (pattern != null) {
-			predicates.add(ReflectFacade.getMemberNamePatternPredicate(pattern));
-		}
-		Collection<? extends Predicate<T>> allPredicates = (Collection<? extends Predicate<T>>) predicates;
-		Predicate<T> allPredicate = AllPredicate.allPredicate(allPredicates);
-		iterator = IteratorUtils.filteredIterator(iterator, allPredicate);
-		return iterator;
+		return compile().applyAccessAndNamePredicates(iterator);
 	}
 
 	/**
@@ -508,130 +478,8 @@ public class MemberCriteria<T extends Member> extends ElementCriteria<T> {
 		return memberTypes;
 	}
 
-	private abstract static class AbstractCriteriaTransformer implements Transformer<Object, Object> {
-
-		private final MemberCriteria<Member> memberCriteria;
-
-		public AbstractCriteriaTransformer(MemberCriteria<Member> memberCriteria) {
-			this.memberCriteria = memberCriteria;
-		}
-
-		protected MemberCriteria<Member> getMemberCriteria() {
-			return memberCriteria;
-		}
-
-	}
-
-	private static class MemberIteratorTransformer extends AbstractCriteriaTransformer {
-
-		public MemberIteratorTransformer(MemberCriteria<Member> memberCriteria) {
-			super(memberCriteria);
-		}
-
-		public Object transform(Object input) {
-			if (input instanceof Class<?>) {
-				final Class<?> currentClass = (Class<?>) input;
-				List<Member> memberList = getMemberCriteria().getSortedMembers(currentClass);
-				return memberList.iterator();
-			}
-			return input;
-		}
-
-	}
-
-	private static class MemberIterableWithClassIterable implements Iterable<Member> {
-
-		private final Iterable<Class<?>> classIterable;
-		private final ObjectFactory<MemberCriteria<Member>> templateObjectFactory;
-
-		public MemberIterableWithClassIterable(Iterable<Class<?>> classIterable,
-				ObjectFactory<MemberCriteria<Member>> templateObjectFactory) {
-			this.classIterable = classIterable;
-			this.templateObjectFactory = templateObjectFactory;
-		}
-
-		@SuppressWarnings("unchecked")
-		public Iterator<Member> iterator() {
-			Iterator<Class<?>> classIterator = classIterable.iterator();
-			MemberCriteria<Member> memberCriteria = templateObjectFactory.getObject();
-			Transformer memberIteratorTransformer = new MemberIteratorTransformer(memberCriteria);
-			Iterator<Member> memberIterator = IteratorUtils.objectGraphIterator(classIterator,
-					memberIteratorTransformer);
-			memberIterator = memberCriteria.applyElementFilter(memberIterator);
-			memberIterator = memberCriteria.applySelectionFilter(memberIterator);
-			return memberIterator;
-		}
-
-	}
-
-	private static class AnnotatedElementIterable implements Iterable<AnnotatedElement> {
-
-		private final Iterable<Class<?>> classIterable;
-		private final ObjectFactory<MemberCriteria<Member>> templateObjectFactory;
-		private final IterateStrategy traverseStrategy;
-
-		public AnnotatedElementIterable(Iterable<Class<?>> classIterable, IterateStrategy traverseStrategy,
-				ObjectFactory<MemberCriteria<Member>> templateObjectFactory) {
-			this.classIterable = classIterable;
-			this.traverseStrategy = traverseStrategy;
-			this.templateObjectFactory = templateObjectFactory;
-		}
-
-		@SuppressWarnings("unchecked")
-		public Iterator<AnnotatedElement> iterator() {
-			Iterator<Class<?>> classIterator = classIterable.iterator();
-			MemberCriteria<Member> memberCriteria = templateObjectFactory.getObject();
-
-			Transformer memberIteratorTransformer = new AnnotatedElementIteratorTransformer(traverseStrategy,
-					memberCriteria);
-			Iterator<AnnotatedElement> iterator = IteratorUtils.objectGraphIterator(classIterator,
-					memberIteratorTransformer);
-			return iterator;
-		}
-
-	}
-
-	private static class AnnotatedElementIteratorTransformer extends AbstractCriteriaTransformer {
-
-		private final IterateStrategy traverseStrategy;
-
-		private final Collection<Class<?>> transformed = new ArrayList<Class<?>>();
-
-		public AnnotatedElementIteratorTransformer(IterateStrategy traverseStrategy, MemberCriteria memberCriteria) {
-			super(memberCriteria);
-			this.traverseStrategy = traverseStrategy;
-		}
-
-		public Object transform(Object input) {
-			if (input instanceof Class<?>) {
-				final Class<?> currentClass = (Class<?>) input;
-				boolean hasBeenTransformed = transformed.remove(currentClass);
-				if (hasBeenTransformed) {
-					switch (traverseStrategy) {
-					case MEMBERS_ONLY:
-					case PACKAGES_ONLY:
-						return IteratorUtils.EMPTY_ITERATOR;
-					default:
-						return currentClass;
-					}
-				}
-
-				transformed.add(currentClass);
-
-				MemberCriteria memberCriteria = getMemberCriteria();
-
-				JavaElementTraverseStrategy javaElementTraverseStrategy = traverseStrategy
-						.getJavaElementTraverseStrategy();
-
-				Iterator<?> iterator = javaElementTraverseStrategy.getIterator(currentClass, memberCriteria);
-
-				return iterator;
-			} else if (input instanceof Package) {
-				return input;
-			} else {
-				return input;
-			}
-		}
+	Comparator<Member> getIterateOrderComparator() {
+		return iterateOrderComparator;
 	}
 
 	/**
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A per class index of the declared members that serves the selective
+ * conditions of a {@link MemberQuery} by lookups instead of scans:
+ * <ul>
+ * <li>member name to members</li>
+ * <li>(member types, access types, modifiers) to members</li>
+ * </ul>
+ * All lookups return the members in the order of the shared sorted member
+ * array of the class, i.e. in member name order. The index parts are built
+ * lazily when they are first requested and cached per class. The returned
+ * arrays are shared and must not be modified.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+final class MemberIndex {
+
+	static final int CONSTRUCTOR = 1;
+	static final int METHOD = 2;
+	static final int FIELD = 4;
+	static final int ALL_MEMBER_TYPES = CONSTRUCTOR | METHOD | FIELD;
+
+	static final int PUBLIC_ACCESS = 1;
+	static final int PROTECTED_ACCESS = 2;
+	static final int PRIVATE_ACCESS = 4;
+	static final int DEFAULT_ACCESS = 8;
+
+	private static final Member[] NO_MEMBERS = new Member[0];
+
+	private static final MemberQuery<Member> ALL_MEMBERS = new MemberCriteria<Member>()
+			.compile();
+
+	private static final ClassValue<MemberIndex> MEMBER_INDEXES = new ClassValue<MemberIndex>() {
+
+		@Override
+		protected MemberIndex computeValue(Class<?> type) {
+			return new MemberIndex(ALL_MEMBERS.getSortedMemberArray(type));
+		}
+	};
+
+	/**
+	 * @return the cached {@link MemberIndex} of the given class.
+	 */
+	static MemberIndex get(Class<?> clazz) {
+		return MEMBER_INDEXES.get(clazz);
+	}
+
+	/**
+	 * @return the member type bit of the given member type or 0 if it is not
+	 *         a member type.
+	 */
+	static int getMemberTypeBit(Class<?> memberType) {
+		if (Constructor.class.equals(memberType)) {
+			return CONSTRUCTOR;
+		} else if (Method.class.equals(memberType)) {
+			return METHOD;
+		} else if (Field.class.equals(memberType)) {
+			return FIELD;
+		}
+		return 0;
+	}
+
+	private static int getMemberTypeBit(Member member) {
+		if (member instanceof Method) {
+			return METHOD;
+		} else if (member instanceof Field) {
+			return FIELD;
+		}
+		return CONSTRUCTOR;
+	}
+
+	/**
+	 * @return the access bit of a member with the given modifiers.
+	 */
+	static int getAccessBit(int modifiers) {
+		if (Modifier.isPublic(modifiers)) {
+			return PUBLIC_ACCESS;
+		} else if (Modifier.isProtected(modifiers)) {
+			return PROTECTED_ACCESS;
+		} else if (Modifier.isPrivate(modifiers)) {
+			return PRIVATE_ACCESS;
+		}
+		return DEFAULT_ACCESS;
+	}
+
+	private final Member[] members;
+
+	private volatile Map<String, Member[]> membersByName;
+
+	private final ConcurrentMap<Long, Member[]> membersByKind = new ConcurrentHashMap<Long, Member[]>(
+			4);
+
+	private MemberIndex(Member[] members) {
+		this.members = members;
+	}
+
+	/**
+	 * @return all declared members.
+	 */
+	Member[] getMembers() {
+		return members;
+	}
+
+	/**
+	 * @return the members with the given name and one of the given member
+	 *         types.
+	 */
+	Member[] getMembers(String name, int memberTypeBits) {
+		Map<String, Member[]> membersByName = this.membersByName;
+		if (membersByName == null) {
+			membersByName = indexByName();
+			this.membersByName = membersByName;
+		}
+		Member[] namedMembers = membersByName.get(name);
+		if (namedMembers == null) {
+			return NO_MEMBERS;
+		}
+		if ((memberTypeBits & ALL_MEMBER_TYPES) == ALL_MEMBER_TYPES) {
+			return namedMembers;
+		}
+		List<Member> typedMembers = new ArrayList<Member>(namedMembers.length);
+		for (Member member : namedMembers) {
+			if ((getMemberTypeBit(member) & memberTypeBits) != 0) {
+				typedMembers.add(member);
+			}
+		}
+		return typedMembers.toArray(new Member[typedMembers.size()]);
+	}
+
+	/**
+	 * @param memberTypeBits
+	 *            the member type bits of which a member must have one.
+	 * @param accessBits
+	 *            the access bits of which a member must have one.
+	 * @param modifiers
+	 *            the modifiers that a member must all have.
+	 * @return the members that have one of the member types, one of the
+	 *         access types and all modifiers.
+	 */
+	Member[] getMembers(int memberTypeBits, int accessBits, int modifiers) {
+		long key = ((long) modifiers << 8) | (accessBits << 4)
+				| memberTypeBits;
+		Member[] kindMembers = membersByKind.get(key);
+		if (kindMembers == null) {
+			List<Member> matchingMembers = new ArrayList<Member>();
+			for (Member member : members) {
+				int memberModifiers = member.getModifiers();
+				if ((getMemberTypeBit(member) & memberTypeBits) != 0
+						&& (getAccessBit(memberModifiers) & accessBits) != 0
+						&& (memberModifiers & modifiers) == modifiers) {
+					matchingMembers.add(member);
+				}
+			}
+			kindMembers = matchingMembers.toArray(new Member[matchingMembers
+					.size()]);
+			Member[] cachedMembers = membersByKind.putIfAbsent(key,
+					kindMembers);
+			if (cachedMembers != null) {
+				kindMembers = cachedMembers;
+			}
+		}
+		return kindMembers;
+	}
+
+	private Map<String, Member[]> indexByName() {
+		Map<String, List<Member>> memberListsByName = new HashMap<String, List<Member>>();
+		for (Member member : members) {
+			List<Member> namedMembers = memberListsByName.get(member.getName());
+			if (namedMembers == null) {
+				namedMembers = new ArrayList<Member>(1);
+				memberListsByName.put(member.getName(), namedMembers);
+			}
+			namedMembers.add(member);
+		}
+		Map<String, Member[]> membersByName = new HashMap<String, Member[]>(
+				(int) (memberListsByName.size() / 0.75f) + 1);
+		for (Map.Entry<String, List<Member>> entry : memberListsByName
+				.entrySet()) {
+			List<Member> namedMembers = entry.getValue();
+			membersByName.put(entry.getKey(),
+					namedMembers.toArray(new Member[namedMembers.size()]));
+		}
+		return membersByName;
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.io.Serializable;
+import java.lang.reflect.Member;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import org.apache.commons.collections4.Predicate;
+
+import com.link_intersystems.lang.reflect.AccessType;
+
+/**
+ * The compiled access, modifier and name criteria of a {@link MemberQuery}. A
+ * {@link MemberMatcher} evaluates all criteria with a single modifier
+ * bitmask test, a direct name comparison and a precompiled {@link Pattern}.
+ * It neither uses reflection nor nested {@link Predicate}s and is
+ * thread-safe. It is {@link Serializable}, because it is part of the
+ * {@link QueryFingerprint.Value value form} of a {@link MemberQuery}.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+final class MemberMatcher implements Predicate<Member>, Serializable {
+
+	private static final long serialVersionUID = 2861574920584217463L;
+
+	private static final int ACCESS_MODIFIERS = Modifier.PUBLIC
+			| Modifier.PROTECTED | Modifier.PRIVATE;
+
+	private final int accessModifiers;
+
+	private final boolean defaultAccess;
+
+	private final int modifiers;
+
+	private final String name;
+
+	private final Pattern pattern;
+
+	/**
+	 * @param accesses
+	 *            the {@link AccessType}s of which a {@link Member} must have
+	 *            at least one.
+	 * @param modifiers
+	 *            the modifiers that a {@link Member} must all have or 0.
+	 * @param name
+	 *            the name that a {@link Member} must have or null.
+	 * @param pattern
+	 *            the {@link Pattern} that a {@link Member}'s name must match
+	 *            or null.
+	 */
+	MemberMatcher(Collection<AccessType> accesses, int modifiers, String name,
+			Pattern pattern) {
+		int accessModifiers = 0;
+		for (AccessType access : accesses) {
+			switch (access) {
+			case PUBLIC:
+				accessModifiers |= Modifier.PUBLIC;
+				break;
+			case PRIVATE:
+				accessModifiers |= Modifier.PRIVATE;
+				break;
+			case PROTECTED:
+				accessModifiers |= Modifier.PROTECTED;
+				break;
+			default:
+				break;
+			}
+		}
+		this.accessModifiers = accessModifiers;
+		this.defaultAccess = accesses.contains(AccessType.DEFAULT);
+		this.modifiers = modifiers;
+		this.name = name;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @return true if the {@link Member} has one of the access types, all
+	 *         modifiers and a matching name.
+	 * @since 1.2.0.6
+	 */
+	public boolean evaluate(Member member) {
+		return matches(member.getModifiers(), member.getName());
+	}
+
+	/**
+	 * @return true if a member with the given modifiers and name has one of
+	 *         the access types, all modifiers and a matching name.
+	 * @since 1.2.0.6
+	 */
+	boolean matches(int memberModifiers, String memberName) {
+		/*
+		 * The conditions are ordered by their estimated selectivity and cost.
+		 * A name is the most selective condition and the pattern is the most
+		 * expensive one.
+		 */
+		if (name != null && !name.equals(memberName)) {
+			return false;
+		}
+		int memberAccess = memberModifiers & ACCESS_MODIFIERS;
+		if ((memberAccess & accessModifiers) == 0
+				&& !(defaultAccess && memberAccess == 0)) {
+			return false;
+		}
+		if ((memberModifiers & modifiers) != modifiers) {
+			return false;
+		}
+		return pattern == null || pattern.matcher(memberName).matches();
+	}
+
+	/**
+	 * @return the name that a member must have or null.
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the modifiers that a member must all have.
+	 */
+	int getModifiers() {
+		return modifiers;
+	}
+
+	/**
+	 * @return the {@link MemberIndex} access bits of the access types of which
+	 *         a member must have one.
+	 */
+	int getAccessBits() {
+		int accessBits = 0;
+		if ((accessModifiers & Modifier.PUBLIC) != 0) {
+			accessBits |= MemberIndex.PUBLIC_ACCESS;
+		}
+		if ((accessModifiers & Modifier.PROTECTED) != 0) {
+			accessBits |= MemberIndex.PROTECTED_ACCESS;
+		}
+		if ((accessModifiers & Modifier.PRIVATE) != 0) {
+			accessBits |= MemberIndex.PRIVATE_ACCESS;
+		}
+		if (defaultAccess) {
+			accessBits |= MemberIndex.DEFAULT_ACCESS;
+		}
+		return accessBits;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = accessModifiers;
+		hash = 31 * hash + (defaultAccess ? 1 : 0);
+		hash = 31 * hash + modifiers;
+		hash = 31 * hash + (name == null ? 0 : name.hashCode());
+		hash = 31 * hash + (pattern == null ? 0 : pattern.pattern().hashCode());
+		return hash;
+	}
+
+	/**
+	 * Two {@link MemberMatcher}s are equal if they match the same members.
+	 * {@link Pattern}s are compared by their regular expression and flags.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof MemberMatcher)) {
+			return false;
+		}
+		MemberMatcher other = (MemberMatcher) obj;
+		return accessModifiers == other.accessModifiers
+				&& defaultAccess == other.defaultAccess
+				&& modifiers == other.modifiers
+				&& (name == null ? other.name == null : name.equals(other.name))
+				&& patternEquals(pattern, other.pattern);
+	}
+
+	private static boolean patternEquals(Pattern pattern1, Pattern pattern2) {
+		if (pattern1 == null || pattern2 == null) {
+			return pattern1 == pattern2;
+		}
+		return pattern1.pattern().equals(pattern2.pattern())
+				&& pattern1.flags() == pattern2.flags();
+	}
+}
@@ -0,0 +1,485 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.collections4.IteratorUtils;
+import org.apache.commons.collections4.Predicate;
+import org.apache.commons.collections4.Transformer;
+
+import com.link_intersystems.lang.reflect.ReflectFacade;
+import com.link_intersystems.lang.reflect.criteria.MemberCriteria.IterateStrategy;
+
+/**
+ * The compiled, immutable form of a {@link MemberCriteria}. A
+ * {@link MemberQuery} is created by {@link MemberCriteria#compile()} and can be
+ * shared between threads.
+ * <p>
+ * The sorted members of a class are cached per member types and member
+ * iterate order and shared by all {@link MemberQuery}s. Members are only
+ * cached if the member iterate order is the default
+ * {@link ReflectFacade#getMemberNameComparator()}. The cached {@link Member}
+ * objects never leave a {@link MemberQuery}. Every returned {@link Member} is
+ * a copy, so that clients can change its accessibility, e.g. via
+ * {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)}, without
+ * affecting other clients.
+ * </p>
+ * <p>
+ * For such queries the candidate members of a class are looked up in a per
+ * class {@link MemberIndex}. If a name is defined only the members with that
+ * name are looked up. Otherwise the members are looked up by member types,
+ * access types and modifiers. Only the remaining conditions (name pattern
+ * and {@link Predicate}s) are evaluated against the candidates.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public final class MemberQuery<T extends Member> extends ElementQuery<T> {
+
+	private static final ClassValue<ConcurrentMap<SortedMembersKey, Member[]>> SORTED_MEMBERS = new ClassValue<ConcurrentMap<SortedMembersKey, Member[]>>() {
+
+		@Override
+		protected ConcurrentMap<SortedMembersKey, Member[]> computeValue(
+				Class<?> type) {
+			return new ConcurrentHashMap<SortedMembersKey, Member[]>(4);
+		}
+	};
+
+	private final List<Class<?>> memberTypes;
+
+	private final Comparator<Member> iterateOrderComparator;
+
+	private final SortedMembersKey sortedMembersKey;
+
+	private final MemberMatcher memberMatcher;
+
+	private final boolean indexed;
+
+	private final int memberTypeBits;
+
+	MemberQuery(MemberCriteria<T> memberCriteria) {
+		super(memberCriteria);
+		this.memberTypes = Collections.unmodifiableList(new ArrayList<Class<?>>(
+				memberCriteria.getMemberTypes()));
+		this.iterateOrderComparator = memberCriteria
+				.getIterateOrderComparator();
+		if (iterateOrderComparator == ReflectFacade.getMemberNameComparator()) {
+			this.sortedMembersKey = new SortedMembersKey(memberTypes,
+					iterateOrderComparator);
+		} else {
+			this.sortedMembersKey = null;
+		}
+		this.memberMatcher = new MemberMatcher(memberCriteria.getAccesses(),
+				memberCriteria.getModifiers(), memberCriteria.getName(),
+				memberCriteria.getPattern());
+
+		int memberTypeBits = 0;
+		for (Class<?> memberType : memberTypes) {
+			memberTypeBits |= MemberIndex.getMemberTypeBit(memberType);
+		}
+		this.memberTypeBits = memberTypeBits;
+		this.indexed = sortedMembersKey != null
+				&& isIndexOrder(memberTypes);
+	}
+
+	/**
+	 * The {@link MemberIndex} orders members of the same name in the order of
+	 * the {@link MemberCriteria#DEFAULT_MEMBER_TYPES}. Thus it can only be
+	 * used if the member types of this query are in the same order.
+	 */
+	private static boolean isIndexOrder(List<Class<?>> memberTypes) {
+		int lastIndex = -1;
+		for (Class<?> memberType : memberTypes) {
+			int index = MemberCriteria.DEFAULT_MEMBER_TYPES.indexOf(memberType);
+			if (index <= lastIndex) {
+				return false;
+			}
+			lastIndex = index;
+		}
+		return true;
+	}
+
+	/**
+	 * @param classIterable
+	 *            the class {@link Iterable} that defines the classes that are
+	 *            iterated to look for members that match this
+	 *            {@link MemberQuery}
+	 * @return an {@link Iterable} that creates {@link Iterator}s that iterate
+	 *         through {@link Member}s as defined by this {@link MemberQuery}.
+	 * @since 1.2.0.6
+	 */
+	public Iterable<Member> getIterable(final Iterable<Class<?>> classIterable) {
+		return new Iterable<Member>() {
+
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			public Iterator<Member> iterator() {
+				Iterator<Class<?>> classIterator = classIterable.iterator();
+				Transformer memberIteratorTransformer = new MemberIteratorTransformer();
+				Iterator memberIterator = IteratorUtils.objectGraphIterator(
+						classIterator, memberIteratorTransformer);
+				memberIterator = applyElementFilter(memberIterator);
+				memberIterator = applySelectionFilter(memberIterator);
+				memberIterator = applyMemberCopier(memberIterator);
+				return memberIterator;
+			}
+		};
+	}
+
+	/**
+	 * @param classIterable
+	 *            the classes that are searched for members that match this
+	 *            {@link MemberQuery}. The classes are collected when the
+	 *            terminal operation of the returned {@link Stream} starts.
+	 * @return a {@link Stream} of the {@link Member}s as defined by this
+	 *         {@link MemberQuery}. The {@link Stream} is backed by a
+	 *         {@link MemberSpliterator} that splits by classes and members.
+	 *         Thus it can be used as a {@link Stream#parallel() parallel}
+	 *         stream and stops early on short-circuiting operations like
+	 *         {@link Stream#findFirst()} or {@link Stream#anyMatch}.
+	 * @since 1.2.0.6
+	 */
+	public Stream<T> stream(final Iterable<Class<?>> classIterable) {
+		Supplier<Spliterator<T>> spliteratorSupplier = new Supplier<Spliterator<T>>() {
+
+			public Spliterator<T> get() {
+				List<Class<?>> classList = new ArrayList<Class<?>>();
+				for (Class<?> clazz : classIterable) {
+					classList.add(clazz);
+				}
+				Class<?>[] classes = classList.toArray(new Class<?>[classList
+						.size()]);
+				return new MemberSpliterator<T>(MemberQuery.this, classes);
+			}
+		};
+		Stream<T> stream = StreamSupport.stream(spliteratorSupplier,
+				MemberSpliterator.CHARACTERISTICS, false);
+		return applySelectionFilter(stream);
+	}
+
+	/**
+	 * @param classIterable
+	 *            the class {@link Iterable} that defines the classes that are
+	 *            iterated to look for members that match this
+	 *            {@link MemberQuery}.
+	 * @return an {@link Iterable} that creates {@link Iterator}s that iterate
+	 *         through {@link AnnotatedElement}s as defined by this
+	 *         {@link MemberQuery} using the default {@link IterateStrategy} (
+	 *         {@link IterateStrategy#MEMBERS_CLASS_PACKAGE} ).
+	 * @since 1.2.0.6
+	 */
+	public Iterable<? extends AnnotatedElement> getAnnotatedElementIterable(
+			Iterable<Class<?>> classIterable) {
+		return getAnnotatedElementIterable(classIterable,
+				IterateStrategy.MEMBERS_CLASS_PACKAGE);
+	}
+
+	/**
+	 * @param classIterable
+	 *            the class {@link Iterable} that defines the classes that are
+	 *            iterated to look for members that match this
+	 *            {@link MemberQuery}.
+	 * @param iterateStrategy
+	 *            the order in which the {@link AnnotatedElement} types selected
+	 *            by this {@link MemberQuery} are iterated through.
+	 * @return an {@link Iterable} that creates {@link Iterator}s that iterate
+	 *         through {@link AnnotatedElement}s as defined by this
+	 *         {@link MemberQuery} using the given iterate strategy. In
+	 *         contrast to {@link #getIterable(Iterable)} the {@link Result},
+	 *         skip and limit settings select the {@link Member}s of each
+	 *         class, e.g. {@link Result#FIRST} selects the first matching
+	 *         member of every class.
+	 * @since 1.2.0.6
+	 */
+	public Iterable<? extends AnnotatedElement> getAnnotatedElementIterable(
+			final Iterable<Class<?>> classIterable,
+			final IterateStrategy iterateStrategy) {
+		return new Iterable<AnnotatedElement>() {
+
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			public Iterator<AnnotatedElement> iterator() {
+				Iterator<Class<?>> classIterator = classIterable.iterator();
+				Transformer annotatedElementIteratorTransformer = new AnnotatedElementIteratorTransformer(
+						iterateStrategy);
+				return IteratorUtils.objectGraphIterator(classIterator,
+						annotatedElementIteratorTransformer);
+			}
+		};
+	}
+
+	/**
+	 * @return an unmodifiable list of the members of the given class that have
+	 *         one of the member types of this {@link MemberQuery} in the
+	 *         member iterate order.
+	 * @since 1.2.0.6
+	 */
+	List<Member> getSortedMembers(Class<?> currentClass) {
+		Member[] sortedMembers = getSortedMemberArray(currentClass);
+		return Collections.unmodifiableList(Arrays.asList(sortedMembers));
+	}
+
+	@Override
+	void addFingerprintComponents(List<Object> components) {
+		super.addFingerprintComponents(components);
+		components.add(memberTypes);
+		components.add(iterateOrderComparator);
+		components.add(memberMatcher);
+	}
+
+	/**
+	 * @return the members of the given class that might match this
+	 *         {@link MemberQuery} in the member iterate order. The candidates
+	 *         are looked up in the class's {@link MemberIndex} if possible.
+	 *         Candidates must still be checked with {@link #accept(Member)}.
+	 *         The returned array might be shared and must not be modified.
+	 */
+	Member[] getCandidateMembers(Class<?> currentClass) {
+		if (!indexed) {
+			return getSortedMemberArray(currentClass);
+		}
+		MemberIndex memberIndex = MemberIndex.get(currentClass);
+		String name = memberMatcher.getName();
+		if (name != null) {
+			return memberIndex.getMembers(name, memberTypeBits);
+		}
+		return memberIndex.getMembers(memberTypeBits,
+				memberMatcher.getAccessBits(), memberMatcher.getModifiers());
+	}
+
+	/**
+	 * @return the members of the given class that have one of the member types
+	 *         of this {@link MemberQuery} in the member iterate order. The
+	 *         returned array might be shared and must not be modified.
+	 */
+	Member[] getSortedMemberArray(Class<?> currentClass) {
+		Member[] sortedMembers = null;
+		if (sortedMembersKey == null) {
+			sortedMembers = sortMembers(currentClass);
+		} else {
+			ConcurrentMap<SortedMembersKey, Member[]> sortedMembersByKey = SORTED_MEMBERS
+					.get(currentClass);
+			sortedMembers = sortedMembersByKey.get(sortedMembersKey);
+			if (sortedMembers == null) {
+				sortedMembers = sortMembers(currentClass);
+				Member[] cachedMembers = sortedMembersByKey.putIfAbsent(
+						sortedMembersKey, sortedMembers);
+				if (cachedMembers != null) {
+					sortedMembers = cachedMembers;
+				}
+			}
+		}
+		return sortedMembers;
+	}
+
+	private Member[] sortMembers(Class<?> currentClass) {
+		List<Member> memberList = new ArrayList<Member>();
+		for (Class<?> memberType : memberTypes) {
+			Member[] members = null;
+			if (Constructor.class.equals(memberType)) {
+				members = currentClass.getDeclaredConstructors();
+			} else if (Method.class.equals(memberType)) {
+				members = currentClass.getDeclaredMethods();
+			} else if (Field.class.equals(memberType)) {
+				members = currentClass.getDeclaredFields();
+			}
+			if (members != null) {
+				List<Member> asList = Arrays.asList(members);
+				memberList.addAll(asList);
+			}
+		}
+
+		Member[] sortedMembers = memberList.toArray(new Member[memberList
+				.size()]);
+		Arrays.sort(sortedMembers, iterateOrderComparator);
+		return sortedMembers;
+	}
+
+	/**
+	 * @return true if the members that this {@link MemberQuery} iterates are
+	 *         cached and shared with other {@link MemberQuery}s. Shared
+	 *         members must be copied by a {@link MemberCopier} before they are
+	 *         returned to clients.
+	 */
+	boolean isSharingMembers() {
+		return sortedMembersKey != null;
+	}
+
+	/**
+	 * @return an {@link Iterator} over copies of the given iterator's members
+	 *         if this {@link MemberQuery} shares its members.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	<E> Iterator<E> applyMemberCopier(Iterator<E> iterator) {
+		if (!isSharingMembers()) {
+			return iterator;
+		}
+		Transformer memberCopier = new MemberCopier();
+		return IteratorUtils.transformedIterator(iterator, memberCopier);
+	}
+
+	@Override
+	protected Iterator<T> applyElementFilter(Iterator<T> iterator) {
+		iterator = applyAccessAndNamePredicates(iterator);
+		iterator = super.applyElementFilter(iterator);
+		return iterator;
+	}
+
+	/**
+	 * Evaluates the member type, access, modifier and name criteria of this
+	 * {@link MemberQuery} against a member description. This method can be
+	 * used to pre-select members before they are resolved via reflection,
+	 * e.g. when class files are parsed. The {@link Predicate}s of this query
+	 * are not evaluated, because they need a {@link Member} object.
+	 *
+	 * @param memberType
+	 *            the member's type, e.g. {@link Method}.
+	 * @param modifiers
+	 *            the member's modifiers as defined by
+	 *            {@link Member#getModifiers()}.
+	 * @param name
+	 *            the member's name as defined by {@link Member#getName()}.
+	 * @return true if a member with the given type, modifiers and name
+	 *         might match this {@link MemberQuery}.
+	 * @since 1.2.0.6
+	 */
+	public boolean isCandidate(Class<? extends Member> memberType,
+			int modifiers, String name) {
+		return memberTypes.contains(memberType)
+				&& memberMatcher.matches(modifiers, name);
+	}
+
+	/**
+	 * @return true if the member matches the access, modifier and name
+	 *         criteria and the {@link Predicate}s of this {@link MemberQuery}.
+	 */
+	@Override
+	boolean accept(T member) {
+		return memberMatcher.evaluate(member) && super.accept(member);
+	}
+
+	@SuppressWarnings("unchecked")
+	Iterator<T> applyAccessAndNamePredicates(Iterator<T> iterator) {
+		Predicate<T> predicate = (Predicate<T>) memberMatcher;
+		return IteratorUtils.filteredIterator(iterator, predicate);
+	}
+
+	private class MemberIteratorTransformer implements
+			Transformer<Object, Object> {
+
+		public Object transform(Object input) {
+			if (input instanceof Class<?>) {
+				final Class<?> currentClass = (Class<?>) input;
+				Member[] candidateMembers = getCandidateMembers(currentClass);
+				return IteratorUtils.arrayIterator(candidateMembers);
+			}
+			return input;
+		}
+
+	}
+
+	private class AnnotatedElementIteratorTransformer implements
+			Transformer<Object, Object> {
+
+		private final IterateStrategy traverseStrategy;
+
+		private final Collection<Class<?>> transformed = new ArrayList<Class<?>>();
+
+		public AnnotatedElementIteratorTransformer(
+				IterateStrategy traverseStrategy) {
+			this.traverseStrategy = traverseStrategy;
+		}
+
+		public Object transform(Object input) {
+			if (input instanceof Class<?>) {
+				final Class<?> currentClass = (Class<?>) input;
+				boolean hasBeenTransformed = transformed.remove(currentClass);
+				if (hasBeenTransformed) {
+					switch (traverseStrategy) {
+					case MEMBERS_ONLY:
+					case PACKAGES_ONLY:
+						return IteratorUtils.EMPTY_ITERATOR;
+					default:
+						return currentClass;
+					}
+				}
+
+				transformed.add(currentClass);
+
+				JavaElementTraverseStrategy javaElementTraverseStrategy = traverseStrategy
+						.getJavaElementTraverseStrategy();
+
+				return javaElementTraverseStrategy.getIterator(currentClass,
+						MemberQuery.this);
+			}
+			return input;
+		}
+	}
+
+	/**
+	 * Identifies the sorted members of a class by the member types and the
+	 * member iterate order.
+	 */
+	private static class SortedMembersKey {
+
+		private final List<Class<?>> memberTypes;
+		private final Comparator<Member> iterateOrderComparator;
+
+		public SortedMembersKey(List<Class<?>> memberTypes,
+				Comparator<Member> iterateOrderComparator) {
+			this.memberTypes = memberTypes;
+			this.iterateOrderComparator = iterateOrderComparator;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * memberTypes.hashCode()
+					+ System.identityHashCode(iterateOrderComparator);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof SortedMembersKey)) {
+				return false;
+			}
+			SortedMembersKey other = (SortedMembersKey) obj;
+			return iterateOrderComparator == other.iterateOrderComparator
+					&& memberTypes.equals(other.memberTypes);
+		}
+	}
+}
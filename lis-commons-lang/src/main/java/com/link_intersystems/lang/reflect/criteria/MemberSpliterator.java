@@ -0,0 +1,169 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.lang.reflect.Member;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over the {@link Member}s of a sequence of classes that
+ * match a {@link MemberQuery}. The classes' members are resolved lazily when
+ * the {@link MemberSpliterator} advances to a class. Therefore short-circuiting
+ * stream operations only resolve the members of the classes they reach.
+ * <p>
+ * A {@link MemberSpliterator} splits by classes as long as it covers more than
+ * one class. Once it covers only the members of one class it splits the
+ * members of that class.
+ * </p>
+ * <p>
+ * The {@link Member}s of a {@link MemberQuery} that
+ * {@link MemberQuery#isSharingMembers() shares} its members are copied before
+ * they are passed to the action. Every split {@link MemberSpliterator} uses
+ * its own {@link MemberCopier}.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+class MemberSpliterator<T extends Member> implements Spliterator<T> {
+
+	/**
+	 * The characteristics of every {@link MemberSpliterator}.
+	 */
+	static final int CHARACTERISTICS = ORDERED | NONNULL | IMMUTABLE;
+
+	/**
+	 * The estimated number of members per class that is used to estimate the
+	 * size of classes whose members are not resolved yet.
+	 */
+	private static final int ESTIMATED_MEMBERS_PER_CLASS = 16;
+
+	private final MemberQuery<T> memberQuery;
+
+	private final Class<?>[] classes;
+
+	private int classIndex;
+
+	private final int classFence;
+
+	private Member[] members;
+
+	private int memberIndex;
+
+	private int memberFence;
+
+	private MemberCopier memberCopier;
+
+	MemberSpliterator(MemberQuery<T> memberQuery, Class<?>[] classes) {
+		this(memberQuery, classes, 0, classes.length, null, 0, 0);
+	}
+
+	private MemberSpliterator(MemberQuery<T> memberQuery, Class<?>[] classes,
+			int classIndex, int classFence, Member[] members, int memberIndex,
+			int memberFence) {
+		this.memberQuery = memberQuery;
+		this.classes = classes;
+		this.classIndex = classIndex;
+		this.classFence = classFence;
+		this.members = members;
+		this.memberIndex = memberIndex;
+		this.memberFence = memberFence;
+	}
+
+	@SuppressWarnings("unchecked")
+	public boolean tryAdvance(Consumer<? super T> action) {
+		while (true) {
+			if (memberIndex < memberFence) {
+				T member = (T) members[memberIndex++];
+				if (memberQuery.accept(member)) {
+					if (memberQuery.isSharingMembers()) {
+						member = getMemberCopier().copy(member);
+					}
+					action.accept(member);
+					return true;
+				}
+			} else if (classIndex < classFence) {
+				openNextClass();
+			} else {
+				return false;
+			}
+		}
+	}
+
+	private MemberCopier getMemberCopier() {
+		if (memberCopier == null) {
+			memberCopier = new MemberCopier();
+		}
+		return memberCopier;
+	}
+
+	private void openNextClass() {
+		members = memberQuery.getCandidateMembers(classes[classIndex++]);
+		memberIndex = 0;
+		memberFence = members.length;
+	}
+
+	public Spliterator<T> trySplit() {
+		int remainingClasses = classFence - classIndex;
+		if (remainingClasses > 1) {
+			int middle = (classIndex + classFence) >>> 1;
+			MemberSpliterator<T> prefix = new MemberSpliterator<T>(
+					memberQuery, classes, classIndex, middle, members,
+					memberIndex, memberFence);
+			classIndex = middle;
+			members = null;
+			memberIndex = 0;
+			memberFence = 0;
+			return prefix;
+		}
+
+		if (remainingClasses == 1) {
+			if (memberIndex < memberFence) {
+				MemberSpliterator<T> prefix = new MemberSpliterator<T>(
+						memberQuery, classes, classIndex, classIndex, members,
+						memberIndex, memberFence);
+				members = null;
+				memberIndex = 0;
+				memberFence = 0;
+				return prefix;
+			}
+			openNextClass();
+		}
+
+		int remainingMembers = memberFence - memberIndex;
+		if (remainingMembers > 1) {
+			int middle = (memberIndex + memberFence) >>> 1;
+			MemberSpliterator<T> prefix = new MemberSpliterator<T>(
+					memberQuery, classes, classFence, classFence, members,
+					memberIndex, middle);
+			memberIndex = middle;
+			return prefix;
+		}
+		return null;
+	}
+
+	public long estimateSize() {
+		return (memberFence - memberIndex) + (long) (classFence - classIndex)
+				* ESTIMATED_MEMBERS_PER_CLASS;
+	}
+
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.collections4.Predicate;
+import org.apache.commons.collections4.functors.AndPredicate;
+
+/**
+ * A stable fingerprint of a compiled {@link ElementQuery}. Two queries that
+ * have equal fingerprints select the same elements for the same start and
+ * stop classes, even if they were compiled from different criteria objects.
+ * <p>
+ * The fingerprint consists of the settings of a query and of the
+ * {@link Predicate}s that were added to the criteria. The {@link Predicate}s
+ * are compared by their {@link Object#equals(Object)} method. Thus
+ * {@link Predicate}s that do not implement it only match themselves.
+ * </p>
+ * <p>
+ * A {@link QueryFingerprint} references the settings and {@link Predicate}s
+ * of its query. Caches that outlive the query use its {@link #getValue()
+ * value} form instead.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+final class QueryFingerprint {
+
+	private final Object[] components;
+
+	private final int hashCode;
+
+	private volatile Value value;
+
+	QueryFingerprint(List<Object> components) {
+		this.components = components.toArray();
+		this.hashCode = Arrays.hashCode(this.components);
+	}
+
+	/**
+	 * @return the {@link Predicate}s that the given predicate is composed of.
+	 *         {@link AndPredicate}s, that {@link ElementCriteria#add(Predicate)}
+	 *         creates, are resolved to the {@link Predicate}s that they
+	 *         combine.
+	 */
+	static List<Predicate<?>> getPredicateComponents(Predicate<?> predicate) {
+		List<Predicate<?>> predicateComponents = new ArrayList<Predicate<?>>();
+		if (predicate != null) {
+			addPredicateComponents(predicate, predicateComponents);
+		}
+		return predicateComponents;
+	}
+
+	private static void addPredicateComponents(Predicate<?> predicate,
+			List<Predicate<?>> predicateComponents) {
+		if (predicate instanceof AndPredicate) {
+			AndPredicate<?> andPredicate = (AndPredicate<?>) predicate;
+			for (Predicate<?> andedPredicate : andPredicate.getPredicates()) {
+				addPredicateComponents(andedPredicate, predicateComponents);
+			}
+		} else {
+			predicateComponents.add(predicate);
+		}
+	}
+
+	/**
+	 * @return the value form of this fingerprint or null if the components of
+	 *         this fingerprint can not be serialized.
+	 */
+	Value getValue() {
+		Value value = this.value;
+		if (value == null) {
+			try {
+				value = new Value(components);
+			} catch (IOException e) {
+				return null;
+			}
+			this.value = value;
+		}
+		return value;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof QueryFingerprint)) {
+			return false;
+		}
+		QueryFingerprint other = (QueryFingerprint) obj;
+		return hashCode == other.hashCode
+				&& Arrays.equals(components, other.components);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(components);
+	}
+
+	/**
+	 * The value form of a {@link QueryFingerprint}. It consists of the
+	 * serialized components of the fingerprint and does not reference the
+	 * query's settings or {@link Predicate}s. Only the classes that are
+	 * written while the components are serialized, e.g. the stop class or the
+	 * classes that a {@link Predicate} references, and the objects that are
+	 * not {@link Serializable} are referenced, but only weakly. Thus a
+	 * {@link Value} can be held by a cache without preventing any class loader
+	 * from being garbage collected.
+	 * <p>
+	 * Two values are equal if the serialized components are equal and the
+	 * same classes and non-serializable objects are referenced. A value whose
+	 * references were cleared is stale and only equals itself.
+	 * </p>
+	 */
+	static final class Value {
+
+		private final byte[] serializedComponents;
+
+		private final Reference<?>[] references;
+
+		private final int hashCode;
+
+		private Value(Object[] components) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ValueOutputStream out = new ValueOutputStream(bytes);
+			out.writeObject(components);
+			out.close();
+			this.serializedComponents = bytes.toByteArray();
+
+			List<Object> referents = out.getReferents();
+			this.references = new Reference<?>[referents.size()];
+			int hash = Arrays.hashCode(serializedComponents);
+			for (int i = 0; i < references.length; i++) {
+				Object referent = referents.get(i);
+				references[i] = new WeakReference<Object>(referent);
+				hash = 31 * hash + System.identityHashCode(referent);
+			}
+			this.hashCode = hash;
+		}
+
+		/**
+		 * @return the objects that this value references or null if one of
+		 *         them was garbage collected.
+		 */
+		Object[] getReferents() {
+			Object[] referents = new Object[references.length];
+			for (int i = 0; i < references.length; i++) {
+				Object referent = references[i].get();
+				if (referent == null) {
+					return null;
+				}
+				referents[i] = referent;
+			}
+			return referents;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Value)) {
+				return false;
+			}
+			Value other = (Value) obj;
+			if (hashCode != other.hashCode
+					|| !Arrays.equals(serializedComponents,
+							other.serializedComponents)
+					|| references.length != other.references.length) {
+				return false;
+			}
+			for (int i = 0; i < references.length; i++) {
+				Object referent = references[i].get();
+				if (referent == null || referent != other.references[i].get()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Serializes the components of a {@link QueryFingerprint} and collects the
+	 * classes and the non-serializable objects instead of writing them.
+	 */
+	private static class ValueOutputStream extends ObjectOutputStream {
+
+		private final List<Object> referents = new ArrayList<Object>();
+
+		public ValueOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		public List<Object> getReferents() {
+			return referents;
+		}
+
+		@Override
+		protected void annotateClass(Class<?> cl) throws IOException {
+			referents.add(cl);
+		}
+
+		@Override
+		protected void annotateProxyClass(Class<?> cl) throws IOException {
+			referents.add(cl);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof Serializable) {
+				return obj;
+			}
+			referents.add(obj);
+			return new ReferentPlaceholder();
+		}
+	}
+
+	/**
+	 * Is written instead of an object that is not {@link Serializable}.
+	 */
+	private static class ReferentPlaceholder implements Serializable {
+
+		private static final long serialVersionUID = -2419367301553916084L;
+	}
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * An opt-in cache for the results of {@link ClassQuery}s and
+ * {@link MemberQuery}s. Applications that execute the same queries against
+ * the same classes again and again, e.g. "all public setters up to
+ * {@link Object}", can use a {@link QueryResultCache} to execute each query
+ * only once per start and stop class.
+ * <p>
+ * The results are cached by the {@link QueryFingerprint.Value value form} of
+ * the queries' fingerprints and the stop class. The value form consists of
+ * the serialized settings and
+ * {@link org.apache.commons.collections4.Predicate}s of a query. Thus queries
+ * that are compiled from equal criteria share their results, even if a query
+ * is compiled anew for every lookup and garbage collected in between. The
+ * {@link org.apache.commons.collections4.Predicate}s are compared by their
+ * serialized state and need not implement {@link Object#equals(Object)}.
+ * </p>
+ * <p>
+ * The results are stored as immutable arrays in a {@link ClassValue} of the
+ * start class. Thus they do not prevent the class loader of the start class
+ * from being garbage collected and are evicted together with it. The stop
+ * class and the classes that the queries reference, e.g. the classes of the
+ * {@link org.apache.commons.collections4.Predicate}s, are only weakly
+ * referenced, because they might belong to other class loaders. A result is
+ * evicted by the next lookup after one of these classes was garbage
+ * collected. The returned lists of classes are unmodifiable views of the
+ * cached arrays.
+ * </p>
+ * <p>
+ * The cached {@link Member} instances are not handed out. Every call of
+ * {@link #getMembers(MemberQuery, ClassQuery, Class)} returns copies of them,
+ * so that a caller can change their accessibility, e.g. via
+ * {@link java.lang.reflect.AccessibleObject#setAccessible(boolean)}, without
+ * affecting other callers.
+ * </p>
+ * <p>
+ * A {@link QueryResultCache} is thread-safe. The cached results are only
+ * valid as long as the {@link org.apache.commons.collections4.Predicate}s of
+ * the queries are stateless.
+ * </p>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public final class QueryResultCache {
+
+	private volatile ClassValue<ConcurrentMap<ResultKey, Object[]>> results = createResults();
+
+	private final ReferenceQueue<Object> clearedReferences = new ReferenceQueue<Object>();
+
+	private static ClassValue<ConcurrentMap<ResultKey, Object[]>> createResults() {
+		return new ClassValue<ConcurrentMap<ResultKey, Object[]>>() {
+
+			@Override
+			protected ConcurrentMap<ResultKey, Object[]> computeValue(
+					Class<?> type) {
+				return new ConcurrentHashMap<ResultKey, Object[]>(4);
+			}
+		};
+	}
+
+	/**
+	 * @return the classes that the {@link ClassQuery} selects starting at the
+	 *         given class and stopping at the query's stop class.
+	 * @since 1.2.0.6
+	 * @see ClassQuery#getIterable(Class)
+	 */
+	public List<Class<?>> getClasses(ClassQuery classQuery, Class<?> startAt) {
+		Assert.notNull("classQuery", classQuery);
+		return getClasses(classQuery, startAt, classQuery.getStopClass());
+	}
+
+	/**
+	 * @return the classes that the {@link ClassQuery} selects starting at the
+	 *         given class and stopping at the given class.
+	 * @since 1.2.0.6
+	 * @see ClassQuery#getIterable(Class, Class)
+	 */
+	public List<Class<?>> getClasses(ClassQuery classQuery, Class<?> startAt,
+			Class<?> stopAt) {
+		Assert.notNull("classQuery", classQuery);
+		Assert.notNull("startAt", startAt);
+		expungeStaleResults();
+		ResultKey resultKey = ResultKey.create(classQuery, null, stopAt);
+		ConcurrentMap<ResultKey, Object[]> resultsByKey = results.get(startAt);
+		Object[] result = resultKey == null ? null : resultsByKey
+				.get(resultKey);
+		if (result == null) {
+			Iterable<Class<?>> classes = classQuery.getIterable(startAt, stopAt);
+			result = cache(resultsByKey, resultKey, toArray(classes));
+		}
+		return asList(result);
+	}
+
+	/**
+	 * @return the members that the {@link MemberQuery} selects from the
+	 *         classes that the {@link ClassQuery} selects starting at the given
+	 *         class and stopping at the query's stop class.
+	 * @since 1.2.0.6
+	 * @see MemberQuery#getIterable(Iterable)
+	 */
+	public <T extends Member> List<T> getMembers(MemberQuery<T> memberQuery,
+			ClassQuery classQuery, Class<?> startAt) {
+		Assert.notNull("classQuery", classQuery);
+		return getMembers(memberQuery, classQuery, startAt,
+				classQuery.getStopClass());
+	}
+
+	/**
+	 * @return the members that the {@link MemberQuery} selects from the
+	 *         classes that the {@link ClassQuery} selects starting at the given
+	 *         class and stopping at the given class.
+	 * @since 1.2.0.6
+	 * @see MemberQuery#getIterable(Iterable)
+	 */
+	public <T extends Member> List<T> getMembers(MemberQuery<T> memberQuery,
+			ClassQuery classQuery, Class<?> startAt, Class<?> stopAt) {
+		Assert.notNull("memberQuery", memberQuery);
+		Assert.notNull("classQuery", classQuery);
+		Assert.notNull("startAt", startAt);
+		expungeStaleResults();
+		ResultKey resultKey = ResultKey.create(classQuery, memberQuery, stopAt);
+		ConcurrentMap<ResultKey, Object[]> resultsByKey = results.get(startAt);
+		Object[] result = resultKey == null ? null : resultsByKey
+				.get(resultKey);
+		if (result == null) {
+			Iterable<Class<?>> classes = classQuery.getIterable(startAt, stopAt);
+			Iterable<Member> members = memberQuery.getIterable(classes);
+			result = cache(resultsByKey, resultKey, toArray(members));
+		}
+		return copyMembers(result);
+	}
+
+	/**
+	 * Removes all cached results.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void clear() {
+		results = createResults();
+	}
+
+	/**
+	 * Caches the result unless the result key is null, i.e. the queries can
+	 * not be cached, or one of the objects that the key references was
+	 * already garbage collected.
+	 */
+	private Object[] cache(ConcurrentMap<ResultKey, Object[]> resultsByKey,
+			ResultKey resultKey, Object[] result) {
+		if (resultKey == null) {
+			return result;
+		}
+		Object[] cachedResult = resultsByKey.putIfAbsent(resultKey, result);
+		if (cachedResult != null) {
+			return cachedResult;
+		}
+		if (!resultKey.evictOnClear(resultsByKey, result, clearedReferences)) {
+			resultsByKey.remove(resultKey, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Removes the results whose keys reference objects that were garbage
+	 * collected. Such keys can not be looked up anymore.
+	 */
+	private void expungeStaleResults() {
+		Reference<?> clearedReference;
+		while ((clearedReference = clearedReferences.poll()) != null) {
+			((EvictingReference) clearedReference).evict();
+		}
+	}
+
+	private static Object[] toArray(Iterable<?> iterable) {
+		List<Object> elements = new ArrayList<Object>();
+		for (Object element : iterable) {
+			elements.add(element);
+		}
+		return elements.toArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> copyMembers(Object[] result) {
+		MemberCopier memberCopier = new MemberCopier();
+		Object[] copies = new Object[result.length];
+		for (int i = 0; i < result.length; i++) {
+			copies[i] = memberCopier.copy((Member) result[i]);
+		}
+		return (List<T>) Collections.unmodifiableList(Arrays.asList(copies));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> asList(Object[] result) {
+		return (List<T>) Collections.unmodifiableList(Arrays.asList(result));
+	}
+
+	/**
+	 * Identifies a cached result of a start class. The results are cached in a
+	 * {@link ClassValue} of the start class, but the stop class and the
+	 * queries might reference classes of other class loaders, e.g. the class
+	 * that a predicate tests assignability to. Thus a key is made of the
+	 * {@link QueryFingerprint.Value value forms} of the queries' fingerprints
+	 * that only weakly reference these classes, and the stop class is only
+	 * weakly referenced too. A key whose references were cleared is stale and
+	 * only equals itself.
+	 */
+	private static class ResultKey {
+
+		private final QueryFingerprint.Value classQueryValue;
+		private final QueryFingerprint.Value memberQueryValue;
+		private final Reference<Class<?>> stopAt;
+		private final int hashCode;
+
+		/*
+		 * Keeps the evicting references reachable as long as the result is
+		 * cached.
+		 */
+		@SuppressWarnings("unused")
+		private List<EvictingReference> evictingReferences;
+
+		/**
+		 * @return the key of the result of the given queries or null if the
+		 *         queries have no value form.
+		 */
+		public static ResultKey create(ClassQuery classQuery,
+				MemberQuery<?> memberQuery, Class<?> stopAt) {
+			QueryFingerprint.Value classQueryValue = classQuery
+					.getFingerprint().getValue();
+			QueryFingerprint.Value memberQueryValue = null;
+			if (memberQuery != null) {
+				memberQueryValue = memberQuery.getFingerprint().getValue();
+				if (memberQueryValue == null) {
+					return null;
+				}
+			}
+			if (classQueryValue == null) {
+				return null;
+			}
+			return new ResultKey(classQueryValue, memberQueryValue, stopAt);
+		}
+
+		private ResultKey(QueryFingerprint.Value classQueryValue,
+				QueryFingerprint.Value memberQueryValue, Class<?> stopAt) {
+			this.classQueryValue = classQueryValue;
+			this.memberQueryValue = memberQueryValue;
+			this.stopAt = stopAt == null ? null
+					: new WeakReference<Class<?>>(stopAt);
+
+			int hash = classQueryValue.hashCode();
+			hash = 31
+					* hash
+					+ (memberQueryValue == null ? 0 : memberQueryValue
+							.hashCode());
+			hash = 31 * hash + (stopAt == null ? 0 : stopAt.hashCode());
+			this.hashCode = hash;
+		}
+
+		/**
+		 * Registers the objects that this key references with the queue, so
+		 * that the result is evicted once one of them is garbage collected.
+		 *
+		 * @return false if one of the objects was already garbage collected.
+		 */
+		public boolean evictOnClear(
+				ConcurrentMap<ResultKey, Object[]> resultsByKey,
+				Object[] result, ReferenceQueue<Object> queue) {
+			List<Object> referents = new ArrayList<Object>();
+			if (!addReferents(referents, classQueryValue)
+					|| !addReferents(referents, memberQueryValue)) {
+				return false;
+			}
+			if (stopAt != null) {
+				Class<?> stopClass = stopAt.get();
+				if (stopClass == null) {
+					return false;
+				}
+				referents.add(stopClass);
+			}
+			List<EvictingReference> evictingReferences = new ArrayList<EvictingReference>(
+					referents.size());
+			for (Object referent : referents) {
+				evictingReferences.add(new EvictingReference(referent, queue,
+						resultsByKey, this, result));
+			}
+			this.evictingReferences = evictingReferences;
+			return true;
+		}
+
+		private static boolean addReferents(List<Object> referents,
+				QueryFingerprint.Value value) {
+			if (value == null) {
+				return true;
+			}
+			Object[] valueReferents = value.getReferents();
+			if (valueReferents == null) {
+				return false;
+			}
+			referents.addAll(Arrays.asList(valueReferents));
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ResultKey)) {
+				return false;
+			}
+			ResultKey other = (ResultKey) obj;
+			return hashCode == other.hashCode
+					&& stopAtEquals(other)
+					&& classQueryValue.equals(other.classQueryValue)
+					&& (memberQueryValue == null ? other.memberQueryValue == null
+							: memberQueryValue.equals(other.memberQueryValue));
+		}
+
+		private boolean stopAtEquals(ResultKey other) {
+			if (stopAt == null || other.stopAt == null) {
+				return stopAt == other.stopAt;
+			}
+			Class<?> stopClass = stopAt.get();
+			return stopClass != null && stopClass == other.stopAt.get();
+		}
+	}
+
+	/**
+	 * Evicts a cached result when an object that its key references is
+	 * garbage collected.
+	 */
+	private static class EvictingReference extends WeakReference<Object> {
+
+		private final ConcurrentMap<ResultKey, Object[]> resultsByKey;
+		private final ResultKey resultKey;
+		private final Object[] result;
+
+		public EvictingReference(Object referent,
+				ReferenceQueue<Object> queue,
+				ConcurrentMap<ResultKey, Object[]> resultsByKey,
+				ResultKey resultKey, Object[] result) {
+			super(referent, queue);
+			this.resultsByKey = resultsByKey;
+			this.resultKey = resultKey;
+			this.result = result;
+		}
+
+		public void evict() {
+			resultsByKey.remove(resultKey, result);
+		}
+	}
+}
@@ -15,17 +15,29 @@
  */
 package com.link_intersystems.util.graph;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Set;
 
 import com.link_intersystems.lang.Assert;
 
 /**
  * Iterator that implements the breadth first traversal strategy for iterating
  * {@link Node}s.
+ * <p>
+ * By default a {@link Node} is returned every time it is reached. Thus a
+ * {@link Node} that is referenced by multiple {@link Node}s is returned
+ * multiple times and a cyclic graph is traversed endlessly. If the iterator is
+ * constructed to visit {@link Node}s only once it tracks the visited
+ * {@link Node}s by identity and enqueues every {@link Node} only once. Such
+ * an iterator terminates on cyclic graphs and traverses a graph in linear
+ * time.
+ * </p>
  *
  * @author René Link <a
  *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
@@ -34,7 +46,9 @@ import com.link_intersystems.lang.Assert;
  */
 public class BreadthFirstNodeIterator implements Iterator<Node> {
 
-	private Queue<Node> queue = new LinkedList<Node>();
+	private final Queue<Node> queue = new ArrayDeque<Node>();
+
+	private final Set<Node> visited;
 
 	/**
 	 * New iterator that starts at the given {@link Node}.
@@ -44,7 +58,29 @@ public class BreadthFirstNodeIterator implements Iterator<Node> {
 	 * @since 1.0.0.0
 	 */
 	public BreadthFirstNodeIterator(Node startNode) {
+		this(startNode, false);
+	}
+
+	/**
+	 * New iterator that starts at the given {@link Node}.
+	 *
+	 * @param startNode
+	 *            the node to start the breadth first traversal from.
+	 * @param visitNodesOnce
+	 *            if true every {@link Node} is returned only once, even if it
+	 *            is referenced by multiple {@link Node}s or the graph is
+	 *            cyclic.
+	 * @since 1.2.0.6
+	 */
+	public BreadthFirstNodeIterator(Node startNode, boolean visitNodesOnce) {
 		Assert.notNull("startNode", startNode);
+		if (visitNodesOnce) {
+			visited = Collections
+					.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+			visited.add(startNode);
+		} else {
+			visited = null;
+		}
 		queue.offer(startNode);
 	}
 
@@ -66,7 +102,15 @@ public class BreadthFirstNodeIterator implements Iterator<Node> {
 		if (hasNext()) {
 			Node next = queue.poll();
 			Collection<Node> references = next.getReferences();
-			queue.addAll(references);
+			if (visited == null) {
+				queue.addAll(references);
+			} else {
+				for (Node reference : references) {
+					if (visited.add(reference)) {
+						queue.offer(reference);
+					}
+				}
+			}
 			return next;
 		} else {
 			throw new NoSuchElementException();
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * An immutable graph in compressed sparse row format. The nodes of a
+ * {@link CompactGraph} are identified by int ids from 0 to
+ * {@link #getNodeCount()} - 1 and the references of all nodes are stored in a
+ * single int array. Thus a {@link CompactGraph} needs only a few bytes per
+ * node and edge and can be traversed without pointer chasing.
+ *
+ * <pre>
+ * offsets:    [0, 2, 3, 3]       node i references the targets
+ * targets:    [1, 2, 2]          offsets[i] until offsets[i + 1]
+ * </pre>
+ *
+ * A {@link CompactGraph} is created from a {@link Node} graph by
+ * {@link #of(Node)} and can be adapted back to the {@link Node} interface by
+ * {@link #getNode(int)}, e.g. to use it with the {@link GraphFacade}
+ * algorithms. The {@link Node} views are created on demand and every id is
+ * represented by exactly one view. Thus they can be traversed by iterators
+ * that track visited nodes by identity.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public final class CompactGraph {
+
+	private final int[] offsets;
+
+	private final int[] targets;
+
+	private final Object[] userObjects;
+
+	private volatile AtomicReferenceArray<Node> nodes;
+
+	private CompactGraph(int[] offsets, int[] targets, Object[] userObjects) {
+		this.offsets = offsets;
+		this.targets = targets;
+		this.userObjects = userObjects;
+	}
+
+	/**
+	 * Creates a {@link CompactGraph} of all {@link Node}s that are reachable
+	 * from the start {@link Node}. The {@link Node}s are identified by
+	 * identity and get their ids in breadth first order. Thus the start
+	 * {@link Node} has the id 0. The order of the references of every
+	 * {@link Node} is preserved. {@link Node#getReferences()} is called only
+	 * once per {@link Node}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public static CompactGraph of(Node startNode) {
+		return of(startNode, null);
+	}
+
+	/**
+	 * Same as {@link #of(Node)}, but adds the {@link Node}s to the given list
+	 * in the order of their ids, if the list is not null.
+	 */
+	static CompactGraph of(Node startNode, List<Node> nodes) {
+		Assert.notNull("startNode", startNode);
+		return of(Collections.singletonList(startNode), nodes);
+	}
+
+	/**
+	 * Same as {@link #of(Node, List)}, but creates the {@link CompactGraph} of
+	 * all {@link Node}s that are reachable from any of the start {@link Node}
+	 * s. The start {@link Node}s get the first ids in the order they are
+	 * given.
+	 */
+	static CompactGraph of(Collection<? extends Node> startNodes,
+			List<Node> nodes) {
+		Assert.notNull("startNodes", startNodes);
+		Map<Node, Integer> ids = new IdentityHashMap<Node, Integer>();
+		List<Object> userObjects = new ArrayList<Object>();
+		Queue<Node> queue = new ArrayDeque<Node>();
+		for (Node startNode : startNodes) {
+			Assert.notNull("startNode", startNode);
+			if (ids.containsKey(startNode)) {
+				continue;
+			}
+			ids.put(startNode, ids.size());
+			userObjects.add(startNode.getUserObject());
+			queue.offer(startNode);
+			if (nodes != null) {
+				nodes.add(startNode);
+			}
+		}
+
+		IntArray offsets = new IntArray();
+		IntArray targets = new IntArray();
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			offsets.add(targets.size());
+			Collection<Node> references = node.getReferences();
+			for (Node reference : references) {
+				Integer id = ids.get(reference);
+				if (id == null) {
+					id = ids.size();
+					ids.put(reference, id);
+					userObjects.add(reference.getUserObject());
+					queue.offer(reference);
+					if (nodes != null) {
+						nodes.add(reference);
+					}
+				}
+				targets.add(id);
+			}
+		}
+		offsets.add(targets.size());
+		return new CompactGraph(offsets.toArray(), targets.toArray(),
+				userObjects.toArray());
+	}
+
+	/**
+	 * @return the number of nodes of this graph.
+	 * @since 1.2.0.6
+	 */
+	public int getNodeCount() {
+		return userObjects.length;
+	}
+
+	/**
+	 * @return the number of edges (references) of this graph.
+	 * @since 1.2.0.6
+	 */
+	public int getEdgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * @return the number of references of the node with the given id.
+	 * @since 1.2.0.6
+	 */
+	public int getReferenceCount(int node) {
+		checkNode(node);
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * @return the id of the index-th reference of the node with the given id.
+	 * @since 1.2.0.6
+	 */
+	public int getReference(int node, int index) {
+		int referenceCount = getReferenceCount(node);
+		if (index < 0 || index >= referenceCount) {
+			throw new IndexOutOfBoundsException("index " + index
+					+ " is not between 0 and " + referenceCount);
+		}
+		return targets[offsets[node] + index];
+	}
+
+	/**
+	 * @return the ids of the references of the node with the given id in
+	 *         their order. The returned array is a copy.
+	 * @since 1.2.0.6
+	 */
+	public int[] getReferences(int node) {
+		checkNode(node);
+		return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+	}
+
+	/**
+	 * @return the user object of the node with the given id.
+	 * @since 1.2.0.6
+	 */
+	public Object getUserObject(int node) {
+		checkNode(node);
+		return userObjects[node];
+	}
+
+	/**
+	 * @return the {@link Node} view of the node with the given id. The same
+	 *         view is returned for the same id. The views do not support
+	 *         {@link Node#addReference(Node)}.
+	 * @since 1.2.0.6
+	 */
+	public Node getNode(int node) {
+		checkNode(node);
+		AtomicReferenceArray<Node> nodes = this.nodes;
+		if (nodes == null) {
+			synchronized (this) {
+				nodes = this.nodes;
+				if (nodes == null) {
+					nodes = new AtomicReferenceArray<Node>(userObjects.length);
+					this.nodes = nodes;
+				}
+			}
+		}
+		Node compactNode = nodes.get(node);
+		if (compactNode == null) {
+			nodes.compareAndSet(node, null, new CompactNode(node));
+			compactNode = nodes.get(node);
+		}
+		return compactNode;
+	}
+
+	/**
+	 * The offsets of the references of all nodes. The references of node i
+	 * are stored in {@link #getTargets()} from offsets[i] until offsets[i +
+	 * 1]. The returned array is shared and must not be modified.
+	 */
+	int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * The references of all nodes. The returned array is shared and must not
+	 * be modified.
+	 *
+	 * @see #getOffsets()
+	 */
+	int[] getTargets() {
+		return targets;
+	}
+
+	private void checkNode(int node) {
+		if (node < 0 || node >= userObjects.length) {
+			throw new IndexOutOfBoundsException("node " + node
+					+ " is not between 0 and " + userObjects.length);
+		}
+	}
+
+	/**
+	 * A {@link Node} view of a node of a {@link CompactGraph}.
+	 */
+	private class CompactNode implements Node {
+
+		private final int id;
+
+		public CompactNode(int id) {
+			this.id = id;
+		}
+
+		public Collection<Node> getReferences() {
+			return new AbstractList<Node>() {
+
+				@Override
+				public Node get(int index) {
+					return getNode(getReference(id, index));
+				}
+
+				@Override
+				public int size() {
+					return offsets[id + 1] - offsets[id];
+				}
+			};
+		}
+
+		public Object getUserObject() {
+			return userObjects[id];
+		}
+
+		public void addReference(Node node) {
+			throw new UnsupportedOperationException(
+					"a compact graph is immutable");
+		}
+
+		@Override
+		public String toString() {
+			return id + ":" + userObjects[id];
+		}
+	}
+
+	/**
+	 * A growable int array.
+	 */
+	private static class IntArray {
+
+		private int[] values = new int[16];
+
+		private int size;
+
+		public void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size << 1);
+			}
+			values[size++] = value;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import java.util.Arrays;
+
+/**
+ * Iterative graph algorithms on the int ids of a {@link CompactGraph}. None of
+ * the algorithms recurses, thus they can not overflow the call stack, and all
+ * of them run in O(nodes + edges) time with a few int arrays of node count
+ * length.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+class CompactGraphAlgorithms {
+
+	private static final int WHITE = 0;
+
+	private static final int GRAY = 1;
+
+	private static final int BLACK = 2;
+
+	/**
+	 * Computes the strongly connected components with Tarjan's algorithm. The
+	 * recursion is replaced by an explicit call stack that holds the next edge
+	 * to process for every node on it.
+	 *
+	 * @return the strongly connected components in reverse topological
+	 *         order, i.e. a component is returned before the components that
+	 *         reference it.
+	 */
+	static int[][] stronglyConnectedComponents(CompactGraph compactGraph) {
+		int[] offsets = compactGraph.getOffsets();
+		int[] targets = compactGraph.getTargets();
+		int nodeCount = compactGraph.getNodeCount();
+
+		int[] index = new int[nodeCount];
+		Arrays.fill(index, -1);
+		int[] lowLink = new int[nodeCount];
+		boolean[] onStack = new boolean[nodeCount];
+		int[] componentStack = new int[nodeCount];
+		int componentStackSize = 0;
+		int[] callStack = new int[nodeCount];
+		int[] nextEdge = new int[nodeCount];
+		int nextIndex = 0;
+
+		int[][] components = new int[nodeCount][];
+		int componentCount = 0;
+
+		for (int root = 0; root < nodeCount; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			int callStackSize = 0;
+			index[root] = lowLink[root] = nextIndex++;
+			componentStack[componentStackSize++] = root;
+			onStack[root] = true;
+			nextEdge[root] = offsets[root];
+			callStack[callStackSize++] = root;
+
+			while (callStackSize > 0) {
+				int node = callStack[callStackSize - 1];
+				if (nextEdge[node] < offsets[node + 1]) {
+					int reference = targets[nextEdge[node]++];
+					if (index[reference] == -1) {
+						index[reference] = lowLink[reference] = nextIndex++;
+						componentStack[componentStackSize++] = reference;
+						onStack[reference] = true;
+						nextEdge[reference] = offsets[reference];
+						callStack[callStackSize++] = reference;
+					} else if (onStack[reference]) {
+						lowLink[node] = Math.min(lowLink[node], index[reference]);
+					}
+					continue;
+				}
+
+				callStackSize--;
+				if (callStackSize > 0) {
+					int caller = callStack[callStackSize - 1];
+					lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+				}
+				if (lowLink[node] == index[node]) {
+					int componentStart = componentStackSize;
+					do {
+						componentStart--;
+						onStack[componentStack[componentStart]] = false;
+					} while (componentStack[componentStart] != node);
+					components[componentCount++] = Arrays.copyOfRange(
+							componentStack, componentStart, componentStackSize);
+					componentStackSize = componentStart;
+				}
+			}
+		}
+		return Arrays.copyOf(components, componentCount);
+	}
+
+	/**
+	 * Sorts the nodes topologically with Kahn's algorithm. Nodes that have no
+	 * order relation keep their id order.
+	 *
+	 * @return the node ids so that every node comes before the nodes it
+	 *         references or null if the graph is cyclic.
+	 */
+	static int[] topologicalOrder(CompactGraph compactGraph) {
+		int[] offsets = compactGraph.getOffsets();
+		int[] targets = compactGraph.getTargets();
+		int nodeCount = compactGraph.getNodeCount();
+
+		int[] inDegree = new int[nodeCount];
+		for (int target : targets) {
+			inDegree[target]++;
+		}
+		/*
+		 * The order array is used as the queue of the nodes whose in degree
+		 * dropped to 0.
+		 */
+		int[] order = new int[nodeCount];
+		int tail = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			if (inDegree[node] == 0) {
+				order[tail++] = node;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			int node = order[head];
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+				int reference = targets[edge];
+				if (--inDegree[reference] == 0) {
+					order[tail++] = reference;
+				}
+			}
+		}
+		if (tail < nodeCount) {
+			return null;
+		}
+		return order;
+	}
+
+	/**
+	 * Searches a cycle with an iterative depth first search that detects back
+	 * edges, i.e. edges to a node that is on the current path.
+	 *
+	 * @return the node ids of the first cycle found in reference order or null
+	 *         if the graph is acyclic.
+	 */
+	static int[] findCycle(CompactGraph compactGraph) {
+		int[] offsets = compactGraph.getOffsets();
+		int[] targets = compactGraph.getTargets();
+		int nodeCount = compactGraph.getNodeCount();
+
+		int[] color = new int[nodeCount];
+		int[] pathPosition = new int[nodeCount];
+		int[] path = new int[nodeCount];
+		int[] nextEdge = new int[nodeCount];
+
+		for (int root = 0; root < nodeCount; root++) {
+			if (color[root] != WHITE) {
+				continue;
+			}
+			int pathSize = 0;
+			color[root] = GRAY;
+			nextEdge[root] = offsets[root];
+			pathPosition[root] = pathSize;
+			path[pathSize++] = root;
+
+			while (pathSize > 0) {
+				int node = path[pathSize - 1];
+				if (nextEdge[node] < offsets[node + 1]) {
+					int reference = targets[nextEdge[node]++];
+					if (color[reference] == GRAY) {
+						return Arrays.copyOfRange(path,
+								pathPosition[reference], pathSize);
+					}
+					if (color[reference] == WHITE) {
+						color[reference] = GRAY;
+						nextEdge[reference] = offsets[reference];
+						pathPosition[reference] = pathSize;
+						path[pathSize++] = reference;
+					}
+					continue;
+				}
+				color[node] = BLACK;
+				pathSize--;
+			}
+		}
+		return null;
+	}
+}
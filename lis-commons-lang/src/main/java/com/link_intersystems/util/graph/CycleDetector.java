@@ -26,6 +26,12 @@ import org.apache.commons.collections4.Closure;
 /**
  * A {@link Closure} that detects cycles when iterating a {@link Node} structure
  * and throws a {@link CyclicGraphException} if a cycle is detected.
+ * <p>
+ * The {@link CycleDetector} considers every {@link Node} that is visited twice
+ * as a cycle. Thus it also reports {@link Node}s that are reachable on
+ * multiple paths of an acyclic graph. Use {@link GraphFacade#findCycle(Node)}
+ * to detect real cycles.
+ * </p>
  *
  * @author René Link <a
  *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
@@ -15,9 +15,11 @@
  */
 package com.link_intersystems.util.graph;
 
-import com.link_intersystems.lang.Assert;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import com.link_intersystems.lang.Assert;
 
 /**
  * This exception signals a cycle condition in a {@link Node} graph.
@@ -34,8 +36,12 @@ public class CyclicGraphException extends RuntimeException {
 	 */
 	private static final long serialVersionUID = 3855192734786019116L;
 
+	private static final int MAX_NODES_IN_MESSAGE = 5;
+
 	private final Node node;
 
+	private final List<Node> cycle;
+
 	/**
 	 *
 	 * @param node
@@ -45,6 +51,50 @@ public class CyclicGraphException extends RuntimeException {
 	public CyclicGraphException(Node node) {
 		Assert.notNull("node", node);
 		this.node = node;
+		this.cycle = Collections.emptyList();
+	}
+
+	/**
+	 *
+	 * @param cycle
+	 *            the nodes of the cycle in reference order. The last node
+	 *            references the first one.
+	 * @since 1.2.0.6
+	 */
+	public CyclicGraphException(List<Node> cycle) {
+		super(createMessage(cycle));
+		Assert.notNull("cycle", cycle);
+		if (cycle.isEmpty()) {
+			throw new IllegalArgumentException("cycle must not be empty");
+		}
+		this.node = cycle.get(0);
+		this.cycle = Collections.unmodifiableList(new ArrayList<Node>(cycle));
+	}
+
+	/**
+	 * Creates a message that contains the length of the cycle and its first
+	 * nodes only, because a cycle can contain many nodes whose
+	 * {@link Object#toString()} can be expensive.
+	 */
+	private static String createMessage(List<Node> cycle) {
+		if (cycle == null) {
+			return null;
+		}
+		StringBuilder message = new StringBuilder();
+		message.append("cycle of ").append(cycle.size())
+				.append(" nodes detected: [");
+		int nodesInMessage = Math.min(cycle.size(), MAX_NODES_IN_MESSAGE);
+		for (int i = 0; i < nodesInMessage; i++) {
+			if (i > 0) {
+				message.append(", ");
+			}
+			message.append(cycle.get(i));
+		}
+		if (nodesInMessage < cycle.size()) {
+			message.append(", ...");
+		}
+		message.append("]");
+		return message.toString();
 	}
 
 	/**
@@ -55,4 +105,14 @@ public class CyclicGraphException extends RuntimeException {
 	public Node getCycleCause() {
 		return node;
 	}
+
+	/**
+	 *
+	 * @return the nodes of the cycle in reference order if they are known,
+	 *         otherwise an empty list.
+	 * @since 1.2.0.6
+	 */
+	public List<Node> getCycle() {
+		return cycle;
+	}
 }
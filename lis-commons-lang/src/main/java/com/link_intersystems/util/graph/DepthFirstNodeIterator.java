@@ -15,16 +15,29 @@
  */
 package com.link_intersystems.util.graph;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.Stack;
+import java.util.Set;
 
 import com.link_intersystems.lang.Assert;
 
 /**
  * Iterator that implements the depth first traversal strategy for iterating
  * {@link Node}s.
+ * <p>
+ * By default a {@link Node} is returned every time it is reached. Thus a
+ * {@link Node} that is referenced by multiple {@link Node}s is returned
+ * multiple times and a cyclic graph is traversed endlessly. If the iterator is
+ * constructed to visit {@link Node}s only once it tracks the visited
+ * {@link Node}s by identity and skips them when they are reached again. Such
+ * an iterator terminates on cyclic graphs and traverses a graph in linear
+ * time.
+ * </p>
  *
  * @author René Link <a
  *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
@@ -33,7 +46,13 @@ import com.link_intersystems.lang.Assert;
  */
 public class DepthFirstNodeIterator implements Iterator<Node> {
 
-	private Stack<Object> stack = new Stack<Object>();
+	/*
+	 * The stack holds the iterators of the references of the nodes on the
+	 * current path. Thus every node is pushed and popped in constant time.
+	 */
+	private final Deque<Iterator<Node>> stack = new ArrayDeque<Iterator<Node>>();
+
+	private final Set<Node> visited;
 
 	private Node next;
 
@@ -45,8 +64,29 @@ public class DepthFirstNodeIterator implements Iterator<Node> {
 	 * @since 1.0.0.0
 	 */
 	public DepthFirstNodeIterator(Node startNode) {
+		this(startNode, false);
+	}
+
+	/**
+	 * New iterator that starts at the given {@link Node}.
+	 *
+	 * @param startNode
+	 *            the node to start the depth first traversal from.
+	 * @param visitNodesOnce
+	 *            if true every {@link Node} is returned only once, even if it
+	 *            is referenced by multiple {@link Node}s or the graph is
+	 *            cyclic.
+	 * @since 1.2.0.6
+	 */
+	public DepthFirstNodeIterator(Node startNode, boolean visitNodesOnce) {
 		Assert.notNull("startNode", startNode);
-		stack.push(startNode);
+		stack.push(Collections.singleton(startNode).iterator());
+		if (visitNodesOnce) {
+			visited = Collections
+					.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		} else {
+			visited = null;
+		}
 	}
 
 	/**
@@ -54,25 +94,21 @@ public class DepthFirstNodeIterator implements Iterator<Node> {
 	 *
 	 * @since 1.0.0.0
 	 */
-	@SuppressWarnings("unchecked")
 	public boolean hasNext() {
 		while (next == null && !stack.isEmpty()) {
-			Object pop = stack.pop();
-			if (pop instanceof Collection) {
-				Collection<Node> collection = (Collection<Node>) pop;
-				Iterator<Node> iterator = collection.iterator();
-				int size = stack.size();
-				stack.ensureCapacity(size + collection.size());
-				while (iterator.hasNext()) {
-					Node reference = iterator.next();
-					stack.add(size, reference);
-				}
+			Iterator<Node> references = stack.peek();
+			if (!references.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			Node reference = references.next();
+			if (visited != null && !visited.add(reference)) {
 				continue;
 			}
-			next = (Node) pop;
-			Collection<Node> references = next.getReferences();
-			if (!references.isEmpty()) {
-				stack.push(references);
+			next = reference;
+			Collection<Node> nextReferences = next.getReferences();
+			if (!nextReferences.isEmpty()) {
+				stack.push(nextReferences.iterator());
 			}
 		}
 		return next != null;
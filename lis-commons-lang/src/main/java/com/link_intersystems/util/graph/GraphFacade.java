@@ -15,13 +15,23 @@
  */
 package com.link_intersystems.util.graph;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 
 import org.apache.commons.collections4.Closure;
-import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.collections4.Predicate;
 import org.apache.commons.collections4.functors.NOPClosure;
 
+import com.link_intersystems.lang.Assert;
+import com.link_intersystems.util.graph.NodeVisitor.VisitResult;
+
 /**
  * Facade to ease the use of components within the graph package.
  *
@@ -67,6 +77,203 @@ public abstract class GraphFacade {
 		forAllDo(objectGraphTransformer, nodeProcessor);
 	}
 
+	/**
+	 * Traverses the graph using a parallel, level-synchronous breadth first
+	 * traversal on the {@link java.util.concurrent.ForkJoinPool#commonPool()}
+	 * . Starting at the given {@link Node} the {@link Closure} is applied on
+	 * every reachable {@link Node} once in breadth first order.
+	 * {@link Node#getReferences()} is called by multiple threads, the
+	 * {@link Closure} only by the calling thread.
+	 *
+	 * @param start
+	 *            the {@link Node} to start the traversal from.
+	 * @param nodeProcessor
+	 *            the closure that should be applied to every node.
+	 * @see ParallelBreadthFirstTraversal
+	 * @since 1.2.0.6
+	 */
+	@SuppressWarnings("unchecked")
+	public static void traverseBreadthFirstParallel(Node start,
+			Closure nodeProcessor) {
+		new ParallelBreadthFirstTraversal(start).traverse(nodeProcessor);
+	}
+
+	/**
+	 * Traverses the graph starting at the given {@link Node} using the given
+	 * strategy and lets the {@link NodeVisitor} control the traversal.
+	 *
+	 * @return {@link VisitResult#TERMINATE} if the {@link NodeVisitor}
+	 *         terminated the traversal, otherwise {@link VisitResult#CONTINUE}.
+	 * @see NodeTraversal
+	 * @since 1.2.0.6
+	 */
+	public static VisitResult traverse(Node start,
+			NodeIterateStrategy nodeIterateStrategy, NodeVisitor nodeVisitor) {
+		NodeTraversal nodeTraversal = new NodeTraversal(start);
+		nodeTraversal.setNodeIterateStrategy(nodeIterateStrategy);
+		return nodeTraversal.traverse(nodeVisitor);
+	}
+
+	/**
+	 * Computes the strongly connected components of the graph that is
+	 * reachable from the given {@link Node}. Two {@link Node}s are in the same
+	 * component if they reference each other directly or indirectly. The
+	 * computation is iterative and runs in linear time.
+	 *
+	 * @return the components in reverse topological order, i.e. a component
+	 *         comes before the components that reference it. A {@link Node}
+	 *         that is not part of a cycle is a component of its own.
+	 * @since 1.2.0.6
+	 */
+	public static List<List<Node>> stronglyConnectedComponents(Node start) {
+		List<Node> nodes = new ArrayList<Node>();
+		CompactGraph compactGraph = CompactGraph.of(start, nodes);
+		int[][] components = CompactGraphAlgorithms
+				.stronglyConnectedComponents(compactGraph);
+		List<List<Node>> componentNodes = new ArrayList<List<Node>>(
+				components.length);
+		for (int[] component : components) {
+			componentNodes.add(toNodes(component, nodes));
+		}
+		return componentNodes;
+	}
+
+	/**
+	 * Sorts the graph that is reachable from the given {@link Node}
+	 * topologically using Kahn's algorithm. E.g. if a {@link Node} references
+	 * the {@link Node}s it depends on, the reverse of the returned list is a
+	 * valid load order.
+	 *
+	 * @return the reachable {@link Node}s so that every {@link Node} comes
+	 *         before the {@link Node}s it references.
+	 * @throws CyclicGraphException
+	 *             if the graph contains a cycle.
+	 *             {@link CyclicGraphException#getCycle()} returns the
+	 *             {@link Node}s of one cycle.
+	 * @since 1.2.0.6
+	 */
+	public static List<Node> topologicalSort(Node start) {
+		List<Node> nodes = new ArrayList<Node>();
+		CompactGraph compactGraph = CompactGraph.of(start, nodes);
+		int[] order = CompactGraphAlgorithms.topologicalOrder(compactGraph);
+		if (order == null) {
+			int[] cycle = CompactGraphAlgorithms.findCycle(compactGraph);
+			throw new CyclicGraphException(toNodes(cycle, nodes));
+		}
+		return toNodes(order, nodes);
+	}
+
+	/**
+	 * Searches a cycle in the graph that is reachable from the given
+	 * {@link Node}. In contrast to the {@link CycleDetector} only real cycles
+	 * are detected, i.e. back edges to a {@link Node} on the current path.
+	 * {@link Node}s that are reachable on multiple paths, like in a diamond,
+	 * are not reported.
+	 *
+	 * @return the {@link Node}s of the first cycle found in reference order
+	 *         (the last {@link Node} references the first) or an empty list
+	 *         if the graph is acyclic.
+	 * @since 1.2.0.6
+	 */
+	public static List<Node> findCycle(Node start) {
+		List<Node> nodes = new ArrayList<Node>();
+		CompactGraph compactGraph = CompactGraph.of(start, nodes);
+		int[] cycle = CompactGraphAlgorithms.findCycle(compactGraph);
+		if (cycle == null) {
+			return Collections.emptyList();
+		}
+		return toNodes(cycle, nodes);
+	}
+
+	/**
+	 * @return true if the target {@link Node} is reachable from the source
+	 *         {@link Node}. Every {@link Node} is reachable from itself. The
+	 *         graph is searched breadth first and the search stops as soon as
+	 *         the target is found. Use a {@link GraphReachability} if multiple
+	 *         queries are made against the same graph.
+	 * @see GraphReachability#isReachable(Node, Node)
+	 * @since 1.2.0.6
+	 */
+	public static boolean isReachable(Node source, Node target) {
+		return searchBreadthFirst(source, target) != null;
+	}
+
+	/**
+	 * @return the {@link Node}s of a shortest path from the source to the
+	 *         target {@link Node} or an empty list if the target is not
+	 *         reachable. The graph is searched breadth first and the search
+	 *         stops as soon as the target is found. Use a
+	 *         {@link GraphReachability} if multiple queries are made against
+	 *         the same graph.
+	 * @see GraphReachability#getShortestPath(Node, Node)
+	 * @since 1.2.0.6
+	 */
+	public static List<Node> shortestPath(Node source, Node target) {
+		Map<Node, Node> predecessors = searchBreadthFirst(source, target);
+		if (predecessors == null) {
+			return Collections.emptyList();
+		}
+		List<Node> path = new ArrayList<Node>();
+		for (Node node = target; node != null; node = predecessors.get(node)) {
+			path.add(node);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Visits every {@link Node} that is reachable from the source once in
+	 * breadth first order until the target is found.
+	 *
+	 * @return the predecessor of every visited {@link Node} on a shortest path
+	 *         from the source, or null if the target is not reachable. The
+	 *         source has no predecessor.
+	 */
+	private static Map<Node, Node> searchBreadthFirst(Node source, Node target) {
+		Assert.notNull("source", source);
+		Assert.notNull("target", target);
+		Map<Node, Node> predecessors = new IdentityHashMap<Node, Node>();
+		predecessors.put(source, null);
+		Queue<Node> queue = new ArrayDeque<Node>();
+		queue.offer(source);
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			if (node == target) {
+				return predecessors;
+			}
+			for (Node reference : node.getReferences()) {
+				if (!predecessors.containsKey(reference)) {
+					predecessors.put(reference, node);
+					if (reference == target) {
+						return predecessors;
+					}
+					queue.offer(reference);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return all {@link Node}s that are reachable from any of the source
+	 *         {@link Node}s, including the sources. Use a
+	 *         {@link GraphReachability} if multiple queries are made against
+	 *         the same graph.
+	 * @see GraphReachability#getReachableNodes(Collection)
+	 * @since 1.2.0.6
+	 */
+	public static List<Node> reachableNodes(Collection<? extends Node> sources) {
+		return new GraphReachability(sources).getReachableNodes(sources);
+	}
+
+	private static List<Node> toNodes(int[] ids, List<Node> nodes) {
+		List<Node> idNodes = new ArrayList<Node>(ids.length);
+		for (int id : ids) {
+			idNodes.add(nodes.get(id));
+		}
+		return idNodes;
+	}
+
 	static void forAllDo(Iterator<?> iterator, Closure closure) {
 		while (iterator.hasNext()) {
 			Object next = iterator.next();
@@ -127,28 +334,45 @@ public abstract class GraphFacade {
 	 * @param nodeIterateOrderPredicates
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	public static Iterator<Node> perPredicateNodeIterator(
 			NodeIterateStrategy nodeIterateStrategy, Node startNode,
 			Predicate... nodeIterateOrderPredicates) {
-		Iterator<Node> iterator = IteratorUtils.EMPTY_ITERATOR;
-		for (int i = 0; i < nodeIterateOrderPredicates.length; i++) {
-			Predicate predicate = nodeIterateOrderPredicates[i];
-			Iterator<Node> nodeStrategyIterator = null;
-			switch (nodeIterateStrategy) {
-			case BREADTH_FIRST:
-				nodeStrategyIterator = new BreadthFirstNodeIterator(startNode);
-				break;
-			case DEPTH_FIRST:
-				nodeStrategyIterator = new DepthFirstNodeIterator(startNode);
-				break;
-			}
-			Iterator<Node> predicateFilterIterator = IteratorUtils
-					.filteredIterator(nodeStrategyIterator, predicate);
-			iterator = IteratorUtils.chainedIterator(iterator,
-					predicateFilterIterator);
+		return perPredicateNodeIterator(nodeIterateStrategy, startNode, false,
+				nodeIterateOrderPredicates);
+	}
+
+	/**
+	 * Same as
+	 * {@link #perPredicateNodeIterator(NodeIterateStrategy, Node, Predicate...)}
+	 * , but the traversal of each {@link Predicate} returns every {@link Node}
+	 * only once if visitNodesOnce is true.
+	 * <p>
+	 * The node structure is traversed only once for all {@link Predicate}s.
+	 * The {@link Node}s that match the first {@link Predicate} are returned
+	 * while the traversal proceeds. The {@link Node}s that match the following
+	 * {@link Predicate}s are buffered until the traversal has finished.
+	 * </p>
+	 *
+	 * @see DepthFirstNodeIterator#DepthFirstNodeIterator(Node, boolean)
+	 * @see BreadthFirstNodeIterator#BreadthFirstNodeIterator(Node, boolean)
+	 * @since 1.2.0.6
+	 */
+	public static Iterator<Node> perPredicateNodeIterator(
+			NodeIterateStrategy nodeIterateStrategy, Node startNode,
+			boolean visitNodesOnce, Predicate... nodeIterateOrderPredicates) {
+		Iterator<Node> nodeStrategyIterator = null;
+		switch (nodeIterateStrategy) {
+		case BREADTH_FIRST:
+			nodeStrategyIterator = new BreadthFirstNodeIterator(startNode,
+					visitNodesOnce);
+			break;
+		case DEPTH_FIRST:
+			nodeStrategyIterator = new DepthFirstNodeIterator(startNode,
+					visitNodesOnce);
+			break;
 		}
-		return iterator;
+		return new PerPredicateNodeIterator(nodeStrategyIterator,
+				nodeIterateOrderPredicates);
 	}
 
 }
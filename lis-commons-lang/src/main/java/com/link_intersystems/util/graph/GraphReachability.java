@@ -0,0 +1,309 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * Answers reachability and shortest path queries for all {@link Node}s that
+ * are reachable from a set of root {@link Node}s. The graph is indexed once as
+ * a {@link CompactGraph} and the queries work on its int ids. Visited sets are
+ * long[] bitsets, i.e. one bit per {@link Node}.
+ * <p>
+ * The set of {@link Node}s that is reachable from a {@link Node} (its
+ * transitive closure) is computed on the first query and cached. All
+ * {@link Node}s of a strongly connected component have the same closure and
+ * therefore share one cache entry. A closure computation stops at every
+ * {@link Node} whose closure is already cached and merges the cached bitset.
+ * Thus repeated queries against the same graph get cheaper the more closures
+ * are known. The closure cache is not bounded. Every component's closure is
+ * a bitset of all indexed {@link Node}s, thus the cache takes up to N&sup2;/8
+ * bytes for N {@link Node}s if every {@link Node} is its own component, e.g.
+ * about 1.25 GB for 100,000 {@link Node}s of an acyclic graph. Single
+ * queries should therefore use {@link GraphFacade#isReachable(Node, Node)}
+ * or {@link GraphFacade#shortestPath(Node, Node)}, which search the graph
+ * directly and cache nothing.
+ * </p>
+ * <p>
+ * A {@link GraphReachability} reflects the {@link Node} structure at the time
+ * it was created. It is thread-safe.
+ * </p>
+ *
+ * <pre>
+ * GraphReachability reachability = new GraphReachability(root);
+ * if (reachability.isReachable(moduleA, moduleB)) {
+ * 	List&lt;Node&gt; path = reachability.getShortestPath(moduleA, moduleB);
+ * }
+ * </pre>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public class GraphReachability {
+
+	private final CompactGraph compactGraph;
+
+	private final List<Node> nodes;
+
+	private final Map<Node, Integer> ids;
+
+	private final int[] componentOf;
+
+	private final int[][] components;
+
+	private final AtomicReferenceArray<long[]> closures;
+
+	private final int words;
+
+	/**
+	 * Indexes all {@link Node}s that are reachable from the given root
+	 * {@link Node}s.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public GraphReachability(Node... roots) {
+		this(Arrays.asList(roots));
+	}
+
+	/**
+	 * Indexes all {@link Node}s that are reachable from the given root
+	 * {@link Node}s.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public GraphReachability(Collection<? extends Node> roots) {
+		nodes = new ArrayList<Node>();
+		compactGraph = CompactGraph.of(roots, nodes);
+		int nodeCount = compactGraph.getNodeCount();
+		ids = new IdentityHashMap<Node, Integer>(nodeCount);
+		for (int i = 0; i < nodeCount; i++) {
+			ids.put(nodes.get(i), i);
+		}
+		components = CompactGraphAlgorithms
+				.stronglyConnectedComponents(compactGraph);
+		componentOf = new int[nodeCount];
+		for (int component = 0; component < components.length; component++) {
+			for (int node : components[component]) {
+				componentOf[node] = component;
+			}
+		}
+		closures = new AtomicReferenceArray<long[]>(components.length);
+		words = (nodeCount + 63) >>> 6;
+	}
+
+	/**
+	 * @return the {@link CompactGraph} that this {@link GraphReachability}
+	 *         works on.
+	 * @since 1.2.0.6
+	 */
+	public CompactGraph getCompactGraph() {
+		return compactGraph;
+	}
+
+	/**
+	 * @return true if there is a path from the source to the target
+	 *         {@link Node}. Every {@link Node} is reachable from itself. A
+	 *         target that is not part of this {@link GraphReachability} is
+	 *         not reachable.
+	 * @throws IllegalArgumentException
+	 *             if the source is not part of this {@link GraphReachability}.
+	 * @since 1.2.0.6
+	 */
+	public boolean isReachable(Node source, Node target) {
+		int sourceId = getId(source);
+		Integer targetId = ids.get(target);
+		if (targetId == null) {
+			return false;
+		}
+		return isSet(getClosure(sourceId), targetId);
+	}
+
+	/**
+	 * @return all {@link Node}s that are reachable from any of the source
+	 *         {@link Node}s, including the sources, in the id order of the
+	 *         {@link CompactGraph}.
+	 * @throws IllegalArgumentException
+	 *             if a source is not part of this {@link GraphReachability}.
+	 * @since 1.2.0.6
+	 */
+	public List<Node> getReachableNodes(Node... sources) {
+		return getReachableNodes(Arrays.asList(sources));
+	}
+
+	/**
+	 * @return all {@link Node}s that are reachable from any of the source
+	 *         {@link Node}s, including the sources, in the id order of the
+	 *         {@link CompactGraph}.
+	 * @throws IllegalArgumentException
+	 *             if a source is not part of this {@link GraphReachability}.
+	 * @since 1.2.0.6
+	 */
+	public List<Node> getReachableNodes(Collection<? extends Node> sources) {
+		long[] reachable = new long[words];
+		for (Node source : sources) {
+			long[] closure = getClosure(getId(source));
+			for (int i = 0; i < words; i++) {
+				reachable[i] |= closure[i];
+			}
+		}
+		List<Node> reachableNodes = new ArrayList<Node>();
+		for (int i = 0; i < words; i++) {
+			long word = reachable[i];
+			while (word != 0) {
+				int bit = Long.numberOfTrailingZeros(word);
+				reachableNodes.add(nodes.get((i << 6) + bit));
+				word &= word - 1;
+			}
+		}
+		return reachableNodes;
+	}
+
+	/**
+	 * Searches a shortest path from the source to the target {@link Node}
+	 * using a breadth first search that stops as soon as the target is found.
+	 * The length of a path is the number of references it follows.
+	 *
+	 * @return the {@link Node}s of a shortest path starting with the source
+	 *         and ending with the target or an empty list if the target is
+	 *         not reachable.
+	 * @throws IllegalArgumentException
+	 *             if the source is not part of this {@link GraphReachability}.
+	 * @since 1.2.0.6
+	 */
+	public List<Node> getShortestPath(Node source, Node target) {
+		int sourceId = getId(source);
+		Integer targetId = ids.get(target);
+		if (targetId == null) {
+			return Collections.emptyList();
+		}
+		long[] cachedClosure = closures.get(componentOf[sourceId]);
+		if (cachedClosure != null && !isSet(cachedClosure, targetId)) {
+			return Collections.emptyList();
+		}
+
+		int[] offsets = compactGraph.getOffsets();
+		int[] targets = compactGraph.getTargets();
+		int[] predecessors = new int[compactGraph.getNodeCount()];
+		int[] queue = new int[compactGraph.getNodeCount()];
+		long[] visited = new long[words];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = sourceId;
+		set(visited, sourceId);
+		predecessors[sourceId] = -1;
+		while (head < tail && !isSet(visited, targetId)) {
+			int node = queue[head++];
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+				int reference = targets[edge];
+				if (!isSet(visited, reference)) {
+					set(visited, reference);
+					predecessors[reference] = node;
+					queue[tail++] = reference;
+				}
+			}
+		}
+		if (!isSet(visited, targetId)) {
+			return Collections.emptyList();
+		}
+
+		List<Node> path = new ArrayList<Node>();
+		for (int node = targetId; node != -1; node = predecessors[node]) {
+			path.add(nodes.get(node));
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	private int getId(Node node) {
+		Integer id = ids.get(node);
+		if (id == null) {
+			throw new IllegalArgumentException(node
+					+ " is not reachable from the roots of this "
+					+ GraphReachability.class.getSimpleName());
+		}
+		return id;
+	}
+
+	/**
+	 * @return the bitset of the node ids that are reachable from the given
+	 *         node. The returned bitset is shared and must not be modified.
+	 */
+	private long[] getClosure(int node) {
+		int component = componentOf[node];
+		long[] closure = closures.get(component);
+		if (closure == null) {
+			closure = computeClosure(component);
+			/*
+			 * Concurrent computations of the same closure have the same
+			 * result. Thus it doesn't matter which one wins.
+			 */
+			closures.compareAndSet(component, null, closure);
+		}
+		return closure;
+	}
+
+	private long[] computeClosure(int component) {
+		int[] offsets = compactGraph.getOffsets();
+		int[] targets = compactGraph.getTargets();
+		long[] closure = new long[words];
+		int[] queue = new int[compactGraph.getNodeCount()];
+		int head = 0;
+		int tail = 0;
+		for (int node : components[component]) {
+			set(closure, node);
+			queue[tail++] = node;
+		}
+		while (head < tail) {
+			int node = queue[head++];
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+				int reference = targets[edge];
+				if (isSet(closure, reference)) {
+					continue;
+				}
+				long[] referenceClosure = closures
+						.get(componentOf[reference]);
+				if (referenceClosure != null) {
+					for (int i = 0; i < words; i++) {
+						closure[i] |= referenceClosure[i];
+					}
+				} else {
+					set(closure, reference);
+					queue[tail++] = reference;
+				}
+			}
+		}
+		return closure;
+	}
+
+	private static boolean isSet(long[] bitset, int index) {
+		return (bitset[index >>> 6] & (1L << index)) != 0;
+	}
+
+	private static void set(long[] bitset, int index) {
+		bitset[index >>> 6] |= 1L << index;
+	}
+}
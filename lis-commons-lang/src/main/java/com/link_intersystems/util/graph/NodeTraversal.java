@@ -0,0 +1,310 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.apache.commons.collections4.Predicate;
+
+import com.link_intersystems.lang.Assert;
+import com.link_intersystems.util.graph.GraphFacade.NodeIterateStrategy;
+import com.link_intersystems.util.graph.NodeVisitor.VisitResult;
+
+/**
+ * A traversal of a {@link Node} graph that is controlled by a
+ * {@link NodeVisitor}. In contrast to the node iterators a
+ * {@link NodeTraversal} can prune the graph. The references of a
+ * {@link Node} are not traversed, and {@link Node#getReferences()} is not
+ * called, if
+ * <ul>
+ * <li>the {@link NodeVisitor} returns {@link VisitResult#SKIP_SUBTREE},</li>
+ * <li>the {@link Node} is at the maximum depth or</li>
+ * <li>the descend {@link Predicate} does not match the {@link Node}.</li>
+ * </ul>
+ * The {@link NodeVisitor} can stop the whole traversal by returning
+ * {@link VisitResult#TERMINATE}.
+ *
+ * <pre>
+ * NodeTraversal traversal = new NodeTraversal(startNode);
+ * traversal.setMaxDepth(2);
+ * traversal.traverse(nodeVisitor);
+ * </pre>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public class NodeTraversal {
+
+	/**
+	 * The max depth of a traversal that is not limited.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public static final int UNLIMITED_DEPTH = -1;
+
+	private final Node startNode;
+
+	private NodeIterateStrategy nodeIterateStrategy = NodeIterateStrategy.DEPTH_FIRST;
+
+	private int maxDepth = UNLIMITED_DEPTH;
+
+	private Predicate<? super Node> visitPredicate;
+
+	private Predicate<? super Node> descendPredicate;
+
+	private boolean visitNodesOnce;
+
+	/**
+	 * @param startNode
+	 *            the node to start the traversal from.
+	 * @since 1.2.0.6
+	 */
+	public NodeTraversal(Node startNode) {
+		Assert.notNull("startNode", startNode);
+		this.startNode = startNode;
+	}
+
+	/**
+	 * Sets the traversal strategy. Default is
+	 * {@link NodeIterateStrategy#DEPTH_FIRST}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setNodeIterateStrategy(NodeIterateStrategy nodeIterateStrategy) {
+		Assert.notNull("nodeIterateStrategy", nodeIterateStrategy);
+		this.nodeIterateStrategy = nodeIterateStrategy;
+	}
+
+	/**
+	 * Sets the maximum depth of the visited {@link Node}s. The start
+	 * {@link Node} has the depth 0. Default is {@link #UNLIMITED_DEPTH}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setMaxDepth(int maxDepth) {
+		if (maxDepth < 0 && maxDepth != UNLIMITED_DEPTH) {
+			throw new IllegalArgumentException(
+					"maxDepth must be 0 or greater or UNLIMITED_DEPTH");
+		}
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Sets the {@link Predicate} that selects the {@link Node}s that are
+	 * passed to the {@link NodeVisitor}. The references of {@link Node}s that
+	 * do not match are traversed nevertheless. Default is null, i.e. all
+	 * {@link Node}s are visited.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setVisitPredicate(Predicate<? super Node> visitPredicate) {
+		this.visitPredicate = visitPredicate;
+	}
+
+	/**
+	 * Sets the {@link Predicate} that selects the {@link Node}s whose
+	 * references are traversed. Default is null, i.e. the references of all
+	 * {@link Node}s are traversed.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setDescendPredicate(Predicate<? super Node> descendPredicate) {
+		this.descendPredicate = descendPredicate;
+	}
+
+	/**
+	 * @param visitNodesOnce
+	 *            if true every {@link Node} is visited only once, even if it
+	 *            is referenced by multiple {@link Node}s or the graph is
+	 *            cyclic. Default is false. A depth first traversal visits a
+	 *            {@link Node} at the depth at which it is reached first. If
+	 *            the maximum depth is limited and the {@link Node} is reached
+	 *            again on a shorter path, its references are traversed again
+	 *            from the smaller depth, but the {@link Node} is not visited
+	 *            again. Thus every {@link Node} within the maximum depth is
+	 *            visited.
+	 * @since 1.2.0.6
+	 */
+	public void setVisitNodesOnce(boolean visitNodesOnce) {
+		this.visitNodesOnce = visitNodesOnce;
+	}
+
+	/**
+	 * Traverses the graph and calls the {@link NodeVisitor} for every visited
+	 * {@link Node}.
+	 *
+	 * @return {@link VisitResult#TERMINATE} if the {@link NodeVisitor}
+	 *         terminated the traversal, otherwise {@link VisitResult#CONTINUE}.
+	 * @since 1.2.0.6
+	 */
+	public VisitResult traverse(NodeVisitor nodeVisitor) {
+		Assert.notNull("nodeVisitor", nodeVisitor);
+		switch (nodeIterateStrategy) {
+		case BREADTH_FIRST:
+			return traverseBreadthFirst(nodeVisitor);
+		default:
+			return traverseDepthFirst(nodeVisitor);
+		}
+	}
+
+	private VisitResult traverseDepthFirst(NodeVisitor nodeVisitor) {
+		/*
+		 * The smallest depth at which a visited node's references were
+		 * traversed. A node that is reached again on a shorter path must be
+		 * expanded again, because the max depth might have cut off nodes
+		 * that are within the max depth on the shorter path.
+		 */
+		Map<Node, Integer> expandedDepths = null;
+		if (visitNodesOnce) {
+			expandedDepths = new IdentityHashMap<Node, Integer>();
+		}
+		Deque<Level> stack = new ArrayDeque<Level>();
+		stack.push(new Level(Collections.singleton(startNode), 0));
+		while (!stack.isEmpty()) {
+			Level level = stack.peek();
+			if (!level.nodes.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			Node node = level.nodes.next();
+			int depth = level.depth;
+			if (expandedDepths != null) {
+				Integer expandedDepth = expandedDepths.get(node);
+				if (expandedDepth != null) {
+					if (maxDepth != UNLIMITED_DEPTH && depth < expandedDepth) {
+						expandedDepths.put(node, depth);
+						descend(stack, node, depth);
+					}
+					continue;
+				}
+			}
+			VisitResult visitResult = visit(nodeVisitor, node, depth);
+			if (visitResult == VisitResult.TERMINATE) {
+				return VisitResult.TERMINATE;
+			}
+			if (visitResult == VisitResult.CONTINUE) {
+				if (expandedDepths != null) {
+					expandedDepths.put(node, depth);
+				}
+				descend(stack, node, depth);
+			} else if (expandedDepths != null) {
+				// the skipped subtree is never traversed
+				expandedDepths.put(node, Integer.MIN_VALUE);
+			}
+		}
+		return VisitResult.CONTINUE;
+	}
+
+	private void descend(Deque<Level> stack, Node node, int depth) {
+		if (isDescending(node, depth)) {
+			Collection<Node> references = node.getReferences();
+			if (!references.isEmpty()) {
+				stack.push(new Level(references, depth + 1));
+			}
+		}
+	}
+
+	private VisitResult traverseBreadthFirst(NodeVisitor nodeVisitor) {
+		Set<Node> visited = null;
+		if (visitNodesOnce) {
+			visited = Collections
+					.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		}
+		Queue<Level> queue = new ArrayDeque<Level>();
+		queue.offer(new Level(Collections.singleton(startNode), 0));
+		if (visited != null) {
+			visited.add(startNode);
+		}
+		while (!queue.isEmpty()) {
+			Level level = queue.poll();
+			while (level.nodes.hasNext()) {
+				Node node = level.nodes.next();
+				VisitResult visitResult = visit(nodeVisitor, node, level.depth);
+				if (visitResult == VisitResult.TERMINATE) {
+					return VisitResult.TERMINATE;
+				}
+				if (visitResult == VisitResult.CONTINUE
+						&& isDescending(node, level.depth)) {
+					Collection<Node> references = node.getReferences();
+					if (visited != null) {
+						references = unvisited(references, visited);
+					}
+					if (!references.isEmpty()) {
+						queue.offer(new Level(references, level.depth + 1));
+					}
+				}
+			}
+		}
+		return VisitResult.CONTINUE;
+	}
+
+	private Collection<Node> unvisited(Collection<Node> references,
+			Set<Node> visited) {
+		Collection<Node> unvisited = new ArrayList<Node>(
+				references.size());
+		for (Node reference : references) {
+			if (visited.add(reference)) {
+				unvisited.add(reference);
+			}
+		}
+		return unvisited;
+	}
+
+	private VisitResult visit(NodeVisitor nodeVisitor, Node node, int depth) {
+		if (visitPredicate != null && !visitPredicate.evaluate(node)) {
+			return VisitResult.CONTINUE;
+		}
+		VisitResult visitResult = nodeVisitor.visit(node, depth);
+		if (visitResult == null) {
+			throw new IllegalStateException(nodeVisitor
+					+ " returned null for " + node);
+		}
+		return visitResult;
+	}
+
+	private boolean isDescending(Node node, int depth) {
+		if (maxDepth != UNLIMITED_DEPTH && depth >= maxDepth) {
+			return false;
+		}
+		return descendPredicate == null || descendPredicate.evaluate(node);
+	}
+
+	/**
+	 * The {@link Node}s of a depth that remain to be visited.
+	 */
+	private static class Level {
+
+		private final Iterator<Node> nodes;
+
+		private final int depth;
+
+		public Level(Collection<Node> nodes, int depth) {
+			this.nodes = nodes.iterator();
+			this.depth = depth;
+		}
+	}
+}
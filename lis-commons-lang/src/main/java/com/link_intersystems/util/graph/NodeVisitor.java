@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+/**
+ * A {@link NodeVisitor} is called by a {@link NodeTraversal} for every visited
+ * {@link Node} and controls how the traversal continues.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ */
+public interface NodeVisitor {
+
+	/**
+	 * Controls how a {@link NodeTraversal} continues after a {@link Node} has
+	 * been visited.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public enum VisitResult {
+		/**
+		 * Continue the traversal with the references of the visited
+		 * {@link Node}.
+		 */
+		CONTINUE,
+		/**
+		 * Continue the traversal, but do not traverse the references of the
+		 * visited {@link Node}. {@link Node#getReferences()} is not called.
+		 */
+		SKIP_SUBTREE,
+		/**
+		 * Stop the traversal.
+		 */
+		TERMINATE;
+	}
+
+	/**
+	 * @param node
+	 *            the visited {@link Node}.
+	 * @param depth
+	 *            the depth of the {@link Node}. The start {@link Node} has the
+	 *            depth 0.
+	 * @return how the traversal should continue.
+	 * @since 1.2.0.6
+	 */
+	public VisitResult visit(Node node, int depth);
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.collections4.Closure;
+
+import com.link_intersystems.lang.Assert;
+
+/**
+ * A level-synchronous breadth first traversal that expands the nodes of each
+ * level (frontier) in parallel on a {@link ForkJoinPool}. Thus
+ * {@link Node#getReferences()} is called by multiple threads and must be
+ * thread-safe. Every {@link Node} is visited only once, even if the graph is
+ * cyclic. Visited {@link Node}s are tracked by identity in a concurrent set.
+ * <p>
+ * If the traversal is ordered (default) the {@link Node}s are returned in the
+ * same order as a {@link BreadthFirstNodeIterator} that visits nodes only
+ * once would return them. Otherwise the {@link Node}s are returned level by
+ * level, but the order within a level is undefined. An unordered traversal
+ * also deduplicates the {@link Node}s in parallel.
+ * </p>
+ *
+ * <pre>
+ * ParallelBreadthFirstTraversal traversal = new ParallelBreadthFirstTraversal(
+ * 		startNode);
+ * traversal.setOrdered(false);
+ * List&lt;Node&gt; reachableNodes = traversal.traverse();
+ * </pre>
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ * @see GraphFacade#traverseBreadthFirstParallel(Node, Closure)
+ */
+public class ParallelBreadthFirstTraversal {
+
+	private static final int EXPAND_THRESHOLD = 64;
+
+	private final Node startNode;
+
+	private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+	private boolean ordered = true;
+
+	/**
+	 * @param startNode
+	 *            the node to start the breadth first traversal from.
+	 * @since 1.2.0.6
+	 */
+	public ParallelBreadthFirstTraversal(Node startNode) {
+		Assert.notNull("startNode", startNode);
+		this.startNode = startNode;
+	}
+
+	/**
+	 * Sets the {@link ForkJoinPool} that expands the levels. Default is the
+	 * {@link ForkJoinPool#commonPool()}.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		Assert.notNull("forkJoinPool", forkJoinPool);
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/**
+	 * @param ordered
+	 *            true if the {@link Node}s should be returned in breadth first
+	 *            order, false if the order within a level does not matter.
+	 *            Default is true.
+	 * @since 1.2.0.6
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	/**
+	 * @return all {@link Node}s that are reachable from the start
+	 *         {@link Node}, including the start {@link Node}.
+	 * @since 1.2.0.6
+	 */
+	public List<Node> traverse() {
+		final List<Node> nodes = new ArrayList<Node>();
+		traverse(new Closure<Node>() {
+
+			public void execute(Node node) {
+				nodes.add(node);
+			}
+		});
+		return nodes;
+	}
+
+	/**
+	 * Traverses the graph and applies the {@link Closure} to every reachable
+	 * {@link Node}. The {@link Closure} is executed by the calling thread
+	 * after a level has been expanded. Thus it needs not be thread-safe.
+	 *
+	 * @since 1.2.0.6
+	 */
+	public void traverse(Closure<? super Node> nodeProcessor) {
+		Assert.notNull("nodeProcessor", nodeProcessor);
+		Set<IdentityKey> visited = Collections
+				.newSetFromMap(new ConcurrentHashMap<IdentityKey, Boolean>());
+		visited.add(new IdentityKey(startNode));
+		List<Node> level = Collections.singletonList(startNode);
+		while (!level.isEmpty()) {
+			for (Node node : level) {
+				nodeProcessor.execute(node);
+			}
+			level = expand(level, visited);
+		}
+	}
+
+	private List<Node> expand(List<Node> level, Set<IdentityKey> visited) {
+		ExpandTask expandTask = new ExpandTask(level, 0, level.size(),
+				ordered ? null : visited);
+		List<Node> references = forkJoinPool.invoke(expandTask);
+		if (!ordered) {
+			return references;
+		}
+		List<Node> nextLevel = new ArrayList<Node>();
+		for (Node reference : references) {
+			if (visited.add(new IdentityKey(reference))) {
+				nextLevel.add(reference);
+			}
+		}
+		return nextLevel;
+	}
+
+	/**
+	 * Collects the references of a range of a level. If a visited set is
+	 * given only the references that have not been visited yet are
+	 * collected, otherwise all references in their order.
+	 */
+	private static class ExpandTask extends RecursiveTask<List<Node>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Node> level;
+
+		private final int from;
+
+		private final int to;
+
+		private final Set<IdentityKey> visited;
+
+		public ExpandTask(List<Node> level, int from, int to,
+				Set<IdentityKey> visited) {
+			this.level = level;
+			this.from = from;
+			this.to = to;
+			this.visited = visited;
+		}
+
+		@Override
+		protected List<Node> compute() {
+			if (to - from > EXPAND_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				ExpandTask lowerHalf = new ExpandTask(level, from, middle,
+						visited);
+				ExpandTask upperHalf = new ExpandTask(level, middle, to,
+						visited);
+				upperHalf.fork();
+				List<Node> references = lowerHalf.compute();
+				references.addAll(upperHalf.join());
+				return references;
+			}
+
+			List<Node> references = new ArrayList<Node>();
+			for (int i = from; i < to; i++) {
+				Collection<Node> nodeReferences = level.get(i).getReferences();
+				if (visited == null) {
+					references.addAll(nodeReferences);
+				} else {
+					for (Node reference : nodeReferences) {
+						if (visited.add(new IdentityKey(reference))) {
+							references.add(reference);
+						}
+					}
+				}
+			}
+			return references;
+		}
+	}
+
+	/**
+	 * Compares {@link Node}s by identity in hash based collections.
+	 */
+	private static class IdentityKey {
+
+		private final Node node;
+
+		public IdentityKey(Node node) {
+			this.node = node;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(node);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IdentityKey
+					&& ((IdentityKey) obj).node == node;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.collections4.Predicate;
+
+/**
+ * Iterates the {@link Node}s of a single traversal per {@link Predicate}. The
+ * traversal is done only once. The {@link Node}s that match the first
+ * {@link Predicate} are returned while the traversal proceeds. The
+ * {@link Node}s that match the other {@link Predicate}s are buffered in a
+ * bucket per {@link Predicate} and returned in {@link Predicate} order after
+ * the traversal has finished. A {@link Node} that matches multiple
+ * {@link Predicate}s is returned once per {@link Predicate}.
+ *
+ * @author René Link <a
+ *         href="mailto:rene.link@link-intersystems.com">[rene.link@link-
+ *         intersystems.com]</a>
+ * @since 1.2.0.6
+ * @see GraphFacade#perPredicateNodeIterator(GraphFacade.NodeIterateStrategy,
+ *      Node, Predicate...)
+ */
+class PerPredicateNodeIterator implements Iterator<Node> {
+
+	private final Iterator<Node> traversal;
+
+	private final Predicate<Node>[] predicates;
+
+	private final List<List<Node>> buckets;
+
+	private int bucketIndex;
+
+	private Iterator<Node> bucketIterator;
+
+	private Node next;
+
+	@SuppressWarnings("unchecked")
+	public PerPredicateNodeIterator(Iterator<Node> traversal,
+			Predicate<?>... predicates) {
+		this.traversal = traversal;
+		this.predicates = (Predicate<Node>[]) predicates;
+		this.buckets = new ArrayList<List<Node>>(predicates.length);
+		for (int i = 0; i < predicates.length; i++) {
+			buckets.add(new ArrayList<Node>());
+		}
+	}
+
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (predicates.length == 0) {
+			return false;
+		}
+		while (bucketIterator == null && traversal.hasNext()) {
+			Node node = traversal.next();
+			for (int i = 1; i < predicates.length; i++) {
+				if (predicates[i].evaluate(node)) {
+					buckets.get(i).add(node);
+				}
+			}
+			if (predicates[0].evaluate(node)) {
+				next = node;
+				return true;
+			}
+		}
+		while (bucketIterator == null || !bucketIterator.hasNext()) {
+			if (bucketIterator != null) {
+				/*
+				 * release the returned bucket
+				 */
+				buckets.set(bucketIndex, null);
+			}
+			bucketIndex++;
+			if (bucketIndex >= buckets.size()) {
+				bucketIterator = null;
+				return false;
+			}
+			bucketIterator = buckets.get(bucketIndex).iterator();
+		}
+		next = bucketIterator.next();
+		return true;
+	}
+
+	public Node next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Node node = next;
+		next = null;
+		return node;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException(
+				"remove operation is not supported.");
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.link_intersystems.lang.BytePatternMatcher.Match;
+
+public class BytePatternMatcherTest {
+
+	private static ByteSequence bytes(String string) {
+		return ByteSequences.wrap(string.getBytes());
+	}
+
+	@Test
+	public void findAll() {
+		BytePatternMatcher matcher = new BytePatternMatcher(bytes("he"),
+				bytes("she"), bytes("his"), bytes("hers"));
+
+		List<Match> matches = matcher.findAll(bytes("ushers"));
+
+		assertEquals(Arrays.asList(new Match(1, 1, 4), new Match(0, 2, 4),
+				new Match(3, 2, 6)), matches);
+	}
+
+	@Test
+	public void find() {
+		BytePatternMatcher matcher = new BytePatternMatcher(bytes("ERROR"),
+				bytes("WARN"));
+		ByteSequence text = bytes("INFO a\nWARN b\nERROR c\n");
+
+		assertEquals(new Match(1, 7, 11), matcher.find(text));
+		assertEquals(new Match(0, 14, 19), matcher.find(text, 8));
+		assertNull(matcher.find(text, 15));
+		assertEquals(2, matcher.getPatternCount());
+	}
+
+	@Test
+	public void noMatches() {
+		BytePatternMatcher matcher = new BytePatternMatcher(bytes("x"));
+		assertTrue(matcher.findAll(bytes("abc")).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyPattern() {
+		new BytePatternMatcher(bytes("a"), bytes(""));
+	}
+
+	@Test
+	public void randomPatterns() {
+		Random random = new Random(4711);
+		byte[] text = new byte[2000];
+		for (int i = 0; i < text.length; i++) {
+			text[i] = (byte) random.nextInt(3);
+		}
+		List<byte[]> patterns = new ArrayList<byte[]>();
+		List<ByteSequence> patternSequences = new ArrayList<ByteSequence>();
+		for (int i = 0; i < 20; i++) {
+			byte[] pattern = new byte[1 + random.nextInt(6)];
+			for (int j = 0; j < pattern.length; j++) {
+				pattern[j] = (byte) random.nextInt(3);
+			}
+			patterns.add(pattern);
+			patternSequences.add(ByteSequences.wrap(pattern));
+		}
+		BytePatternMatcher matcher = new BytePatternMatcher(patternSequences);
+
+		List<Match> matches = matcher.findAll(ByteSequences.wrap(text));
+
+		int expectedMatches = 0;
+		for (int end = 1; end <= text.length; end++) {
+			for (int p = 0; p < patterns.size(); p++) {
+				byte[] pattern = patterns.get(p);
+				int start = end - pattern.length;
+				if (start >= 0
+						&& Arrays.equals(pattern,
+								Arrays.copyOfRange(text, start, end))) {
+					assertTrue(matches.contains(new Match(p, start, end)));
+					expectedMatches++;
+				}
+			}
+		}
+		assertEquals(expectedMatches, matches.size());
+	}
+}
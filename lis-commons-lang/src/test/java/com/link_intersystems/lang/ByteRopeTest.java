@@ -0,0 +1,223 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteRopeTest {
+
+	private Random random;
+
+	private List<ByteSequence> fragments;
+
+	private byte[] expected;
+
+	@Before
+	public void createFragments() {
+		random = new Random(4711);
+		fragments = new ArrayList<ByteSequence>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < 100; i++) {
+			byte[] fragment = new byte[random.nextInt(20)];
+			random.nextBytes(fragment);
+			out.write(fragment, 0, fragment.length);
+			if (i % 2 == 0) {
+				fragments.add(ByteSequences.wrap(fragment));
+			} else {
+				fragments.add(ByteSequences.wrap(ByteBuffer.wrap(fragment)));
+			}
+		}
+		expected = out.toByteArray();
+	}
+
+	@Test
+	public void balancedConcatenation() {
+		ByteRope rope = ByteRope.of(fragments);
+
+		assertContent(expected, rope);
+		assertTrue(rope.getDepth() <= 7);
+	}
+
+	@Test
+	public void appendedConcatenation() {
+		ByteRope rope = ByteRope.of();
+		for (ByteSequence fragment : fragments) {
+			rope = rope.concat(fragment);
+		}
+
+		assertContent(expected, rope);
+		assertTrue(rope.getDepth() <= 14);
+	}
+
+	@Test(timeout = 10000)
+	public void manyAppendedSegments() {
+		int segmentCount = 200000;
+		ByteRope rope = ByteRope.of();
+		for (int i = 0; i < segmentCount; i++) {
+			rope = rope.concat(ByteSequences.wrap(new byte[] { (byte) i }));
+		}
+
+		assertEquals(segmentCount, rope.length());
+		assertEquals(segmentCount, rope.getSegmentCount());
+		assertTrue(rope.getDepth() <= getMaxBalancedDepth(segmentCount));
+		for (int i = 0; i < segmentCount; i += 997) {
+			assertEquals((byte) i, rope.byteAt(i));
+		}
+	}
+
+	@Test
+	public void prependedAndAppendedRopesStayBalanced() {
+		ByteRope rope = ByteRope.of();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < 2000; i++) {
+			ByteSequence fragment = fragments.get(random.nextInt(fragments
+					.size()));
+			ByteRope other = ByteRope.of(fragments.subList(0,
+					random.nextInt(10)));
+			other = other.concat(fragment);
+			byte[] otherBytes = other.toByteArray();
+			if (random.nextBoolean()) {
+				rope = rope.concat(other);
+				out.write(otherBytes, 0, otherBytes.length);
+			} else {
+				rope = other.concat(rope);
+				byte[] ropeBytes = out.toByteArray();
+				out.reset();
+				out.write(otherBytes, 0, otherBytes.length);
+				out.write(ropeBytes, 0, ropeBytes.length);
+			}
+			assertTrue(rope.getDepth() <= getMaxBalancedDepth(rope
+					.getSegmentCount()));
+		}
+		assertContent(out.toByteArray(), rope);
+	}
+
+	/**
+	 * @return the maximum depth of an AVL tree with the given number of
+	 *         leaves.
+	 */
+	private int getMaxBalancedDepth(int segmentCount) {
+		return (int) (1.45 * Math.log(segmentCount + 2) / Math.log(2));
+	}
+
+	@Test
+	public void subSequence() {
+		ByteRope rope = ByteRope.of(fragments);
+		for (int i = 0; i < 200; i++) {
+			int start = random.nextInt(expected.length + 1);
+			int end = start + random.nextInt(expected.length - start + 1);
+			ByteSequence subSequence = rope.subSequence(start, end);
+			assertContent(Arrays.copyOfRange(expected, start, end),
+					subSequence);
+		}
+		assertSame(rope, rope.subSequence(0, rope.length()));
+	}
+
+	@Test
+	public void segmentsAreShared() {
+		byte[] first = new byte[] { 1, 2, 3 };
+		byte[] second = new byte[] { 4, 5 };
+		ByteRope rope = ByteRope.of(ByteSequences.wrap(first),
+				ByteSequences.wrap(new byte[0]), ByteSequences.wrap(second));
+		ByteSequence subSequence = rope.subSequence(1, 4);
+
+		first[2] = 30;
+		second[0] = 40;
+
+		assertEquals(2, rope.getSegmentCount());
+		assertEquals(30, rope.byteAt(2));
+		assertTrue(Arrays.equals(new byte[] { 2, 30, 40 },
+				subSequence.toByteArray()));
+	}
+
+	@Test
+	public void ropesAreSharedAsSubtrees() {
+		ByteRope first = ByteRope.of(fragments.subList(0, 10));
+		ByteRope second = ByteRope.of(fragments.subList(10, 20));
+		ByteRope rope = (ByteRope) ByteSequences.concat(first, second);
+
+		assertEquals(first.getSegmentCount() + second.getSegmentCount(),
+				rope.getSegmentCount());
+		assertEquals(first.getSegments().get(0), rope.getSegments().get(0));
+	}
+
+	@Test
+	public void emptyRope() {
+		ByteRope rope = ByteRope.of();
+		assertEquals(0, rope.length());
+		assertEquals(0, rope.getSegmentCount());
+		assertTrue(rope.getSegments().isEmpty());
+		assertEquals(-1, rope.indexOf((byte) 0));
+		assertEquals(-1, rope.lastIndexOf((byte) 0));
+		try {
+			rope.byteAt(0);
+			fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	private void assertContent(byte[] expectedBytes, ByteSequence byteSequence) {
+		assertEquals(expectedBytes.length, byteSequence.length());
+		for (int i = 0; i < expectedBytes.length; i++) {
+			assertEquals(expectedBytes[i], byteSequence.byteAt(i));
+		}
+		assertTrue(Arrays.equals(expectedBytes, byteSequence.toByteArray()));
+
+		ByteBuffer target = ByteBuffer.allocate(expectedBytes.length);
+		byteSequence.copyTo(0, target, expectedBytes.length);
+		assertTrue(Arrays.equals(expectedBytes, target.array()));
+
+		for (int value = -128; value < 128; value += 37) {
+			byte b = (byte) value;
+			int from = expectedBytes.length / 3;
+			assertEquals(naiveIndexOf(expectedBytes, b, from),
+					byteSequence.indexOf(b, from));
+			assertEquals(naiveLastIndexOf(expectedBytes, b, from),
+					byteSequence.lastIndexOf(b, from));
+		}
+	}
+
+	private int naiveIndexOf(byte[] bytes, byte value, int from) {
+		for (int i = from; i < bytes.length; i++) {
+			if (bytes[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int naiveLastIndexOf(byte[] bytes, byte value, int from) {
+		for (int i = Math.min(from, bytes.length - 1); i >= 0; i--) {
+			if (bytes[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
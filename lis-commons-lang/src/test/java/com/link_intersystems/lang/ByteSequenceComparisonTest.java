@@ -0,0 +1,197 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteSequenceComparisonTest {
+
+	private Random random;
+
+	@Before
+	public void createRandom() {
+		random = new Random(4711);
+	}
+
+	@Test
+	public void xxHash64TestVectors() {
+		assertEquals(0xEF46DB3751D8E999L, bytes("").hash64());
+		assertEquals(0x44BC2CF5AD770999L, bytes("abc").hash64());
+	}
+
+	@Test
+	public void hashIsIndependentOfImplementation() {
+		int[] lengths = { 0, 1, 3, 4, 7, 8, 31, 32, 33, 100, 8191, 8192,
+				8193, 20000 };
+		for (int length : lengths) {
+			byte[] bytes = new byte[length];
+			random.nextBytes(bytes);
+			List<ByteSequence> byteSequences = getImplementations(bytes);
+			long hash = byteSequences.get(0).hash64();
+			for (ByteSequence byteSequence : byteSequences) {
+				assertEquals(hash, byteSequence.hash64());
+			}
+		}
+	}
+
+	@Test
+	public void mismatchAndCompareTo() {
+		for (int i = 0; i < 300; i++) {
+			byte[] bytes1 = new byte[random.nextInt(40)];
+			random.nextBytes(bytes1);
+			byte[] bytes2 = Arrays.copyOf(bytes1, random.nextInt(40));
+			if (bytes2.length > 0 && random.nextBoolean()) {
+				bytes2[random.nextInt(bytes2.length)] = (byte) random
+						.nextInt();
+			}
+			int expectedMismatch = naiveMismatch(bytes1, bytes2);
+			int expectedCompare = Integer.signum(naiveCompare(bytes1, bytes2));
+			for (ByteSequence byteSequence1 : getImplementations(bytes1)) {
+				for (ByteSequence byteSequence2 : getImplementations(bytes2)) {
+					assertEquals(expectedMismatch,
+							byteSequence1.mismatch(byteSequence2));
+					assertEquals(expectedCompare,
+							Integer.signum(byteSequence1
+									.compareTo(byteSequence2)));
+					assertEquals(expectedMismatch == -1,
+							byteSequence1.contentEquals(byteSequence2));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void mismatchInLargeSequences() {
+		byte[] bytes1 = new byte[20000];
+		random.nextBytes(bytes1);
+		byte[] bytes2 = bytes1.clone();
+		bytes2[17001]++;
+		for (ByteSequence byteSequence1 : getImplementations(bytes1)) {
+			for (ByteSequence byteSequence2 : getImplementations(bytes2)) {
+				assertEquals(17001, byteSequence1.mismatch(byteSequence2));
+			}
+		}
+	}
+
+	@Test
+	public void unsignedOrder() {
+		assertTrue(bytes("a").compareTo(
+				ByteSequences.wrap(new byte[] { (byte) 0x80 })) < 0);
+		assertTrue(bytes("ab").compareTo(bytes("abc")) < 0);
+		assertTrue(bytes("abd").compareTo(bytes("abc")) > 0);
+		assertEquals(0, bytes("abc").compareTo(bytes("abc")));
+
+		List<ByteSequence> sorted = new ArrayList<ByteSequence>(Arrays.asList(
+				bytes("b"), bytes("ab"), bytes(""), bytes("a")));
+		Collections.sort(sorted, ByteSequences.getLexicographicComparator());
+		assertEquals(Arrays.asList(bytes(""), bytes("a"), bytes("ab"),
+				bytes("b")), sorted);
+	}
+
+	@Test
+	public void equalsAndHashCode() {
+		byte[] bytes = "hash key".getBytes();
+		Map<ByteSequence, String> map = new HashMap<ByteSequence, String>();
+		List<ByteSequence> implementations = getImplementations(bytes);
+		map.put(implementations.get(0), "value");
+		for (ByteSequence byteSequence : implementations.subList(0, 3)) {
+			assertEquals(implementations.get(0), byteSequence);
+			assertEquals(implementations.get(0).hashCode(),
+					byteSequence.hashCode());
+			assertEquals("value", map.get(byteSequence));
+		}
+		assertFalse(bytes("hash").equals(bytes("hash key")));
+		assertFalse(bytes("hash").equals("hash"));
+	}
+
+	private ByteSequence bytes(String string) {
+		return ByteSequences.wrap(string.getBytes());
+	}
+
+	/**
+	 * @return the array, direct buffer, rope and a byteAt only
+	 *         implementation of the bytes.
+	 */
+	private List<ByteSequence> getImplementations(final byte[] bytes) {
+		List<ByteSequence> byteSequences = new ArrayList<ByteSequence>();
+		byte[] padded = new byte[bytes.length + 5];
+		System.arraycopy(bytes, 0, padded, 5, bytes.length);
+		byteSequences.add(ByteSequences.wrap(padded, 5, bytes.length));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes);
+		direct.flip();
+		byteSequences.add(ByteSequences.wrap(direct));
+
+		List<ByteSequence> segments = new ArrayList<ByteSequence>();
+		for (int start = 0; start < bytes.length; start += 7) {
+			int end = Math.min(start + 7, bytes.length);
+			segments.add(ByteSequences.wrap(bytes, start, end - start));
+		}
+		byteSequences.add(ByteSequences.concat(segments));
+
+		byteSequences.add(new ByteSequence() {
+
+			public int length() {
+				return bytes.length;
+			}
+
+			public byte byteAt(int index) {
+				return bytes[index];
+			}
+
+			public ByteSequence subSequence(int start, int end) {
+				return ByteSequences.wrap(bytes, start, end - start);
+			}
+		});
+		return byteSequences;
+	}
+
+	private int naiveMismatch(byte[] bytes1, byte[] bytes2) {
+		int length = Math.min(bytes1.length, bytes2.length);
+		for (int i = 0; i < length; i++) {
+			if (bytes1[i] != bytes2[i]) {
+				return i;
+			}
+		}
+		return bytes1.length == bytes2.length ? -1 : length;
+	}
+
+	private int naiveCompare(byte[] bytes1, byte[] bytes2) {
+		int index = naiveMismatch(bytes1, bytes2);
+		if (index == -1) {
+			return 0;
+		}
+		if (index == bytes1.length || index == bytes2.length) {
+			return bytes1.length - bytes2.length;
+		}
+		return (bytes1[index] & 0xFF) - (bytes2[index] & 0xFF);
+	}
+}
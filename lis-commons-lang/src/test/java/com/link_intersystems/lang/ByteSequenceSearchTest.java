@@ -0,0 +1,163 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteSequenceSearchTest {
+
+	private Random random;
+
+	private byte[] bytes;
+
+	private List<ByteSequence> byteSequences;
+
+	@Before
+	public void createByteSequences() {
+		random = new Random(4711);
+		bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) ('a' + random.nextInt(4));
+		}
+		bytes[500] = (byte) 0xFF;
+		bytes[7] = 0;
+
+		byteSequences = new ArrayList<ByteSequence>();
+		byte[] padded = new byte[bytes.length + 3];
+		System.arraycopy(bytes, 0, padded, 3, bytes.length);
+		byteSequences.add(ByteSequences.wrap(padded, 3, bytes.length));
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes);
+		direct.flip();
+		byteSequences.add(ByteSequences.wrap(direct));
+		byteSequences.add(new ByteSequence() {
+
+			public int length() {
+				return bytes.length;
+			}
+
+			public byte byteAt(int index) {
+				return bytes[index];
+			}
+
+			public ByteSequence subSequence(int start, int end) {
+				return ByteSequences.wrap(bytes, start, end - start);
+			}
+		});
+	}
+
+	@Test
+	public void indexOfByte() {
+		byte[] values = { 'a', 'b', 'd', 'e', 0, (byte) 0xFF };
+		for (ByteSequence byteSequence : byteSequences) {
+			for (byte value : values) {
+				for (int from = -1; from <= bytes.length + 1; from += 13) {
+					assertEquals(naiveIndexOf(new byte[] { value }, from),
+							byteSequence.indexOf(value, from));
+					assertEquals(naiveLastIndexOf(new byte[] { value }, from),
+							byteSequence.lastIndexOf(value, from));
+				}
+			}
+			assertEquals(500, byteSequence.indexOf((byte) 0xFF));
+			assertEquals(500, byteSequence.lastIndexOf((byte) 0xFF));
+			assertEquals(-1, byteSequence.indexOf((byte) 'x'));
+			assertEquals(-1, byteSequence.lastIndexOf((byte) 'x'));
+		}
+	}
+
+	@Test
+	public void indexOfSubSequence() {
+		for (ByteSequence byteSequence : byteSequences) {
+			for (int i = 0; i < 200; i++) {
+				byte[] pattern;
+				if (i % 2 == 0) {
+					int start = random.nextInt(bytes.length - 10);
+					pattern = new byte[1 + random.nextInt(8)];
+					System.arraycopy(bytes, start, pattern, 0, pattern.length);
+				} else {
+					pattern = new byte[1 + random.nextInt(5)];
+					for (int j = 0; j < pattern.length; j++) {
+						pattern[j] = (byte) ('a' + random.nextInt(4));
+					}
+				}
+				int from = random.nextInt(bytes.length + 2) - 1;
+				ByteSequence patternSequence = ByteSequences.wrap(pattern);
+				assertEquals(naiveIndexOf(pattern, from),
+						byteSequence.indexOf(patternSequence, from));
+				assertEquals(naiveLastIndexOf(pattern, from),
+						byteSequence.lastIndexOf(patternSequence, from));
+				assertEquals(naiveIndexOf(pattern, 0),
+						byteSequence.indexOf(patternSequence));
+				assertEquals(naiveLastIndexOf(pattern, bytes.length),
+						byteSequence.lastIndexOf(patternSequence));
+			}
+		}
+	}
+
+	@Test
+	public void emptyPattern() {
+		ByteSequence empty = ByteSequences.wrap(new byte[0]);
+		for (ByteSequence byteSequence : byteSequences) {
+			assertEquals(0, byteSequence.indexOf(empty));
+			assertEquals(5, byteSequence.indexOf(empty, 5));
+			assertEquals(-1, byteSequence.indexOf(empty, bytes.length + 1));
+			assertEquals(bytes.length, byteSequence.lastIndexOf(empty));
+		}
+	}
+
+	@Test
+	public void patternLongerThanSequence() {
+		ByteSequence shortSequence = ByteSequences.wrap(new byte[] { 1, 2 });
+		ByteSequence pattern = ByteSequences.wrap(new byte[] { 1, 2, 3 });
+		assertEquals(-1, shortSequence.indexOf(pattern));
+		assertEquals(-1, shortSequence.lastIndexOf(pattern));
+	}
+
+	private int naiveIndexOf(byte[] pattern, int from) {
+		for (int i = Math.max(from, 0); i <= bytes.length - pattern.length; i++) {
+			if (matchesAt(pattern, i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int naiveLastIndexOf(byte[] pattern, int from) {
+		for (int i = Math.min(from, bytes.length - pattern.length); i >= 0; i--) {
+			if (matchesAt(pattern, i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean matchesAt(byte[] pattern, int index) {
+		for (int j = 0; j < pattern.length; j++) {
+			if (bytes[index + j] != pattern[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ByteSequencesTest {
+
+	private static final byte[] BYTES = new byte[] { 0, 1, 2, 3, 4, 5, 6, 7,
+			8, 9 };
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void byteArray() {
+		assertByteSequence(ByteSequences.wrap(BYTES.clone()));
+	}
+
+	@Test
+	public void byteArrayRange() {
+		byte[] bytes = new byte[BYTES.length + 4];
+		System.arraycopy(BYTES, 0, bytes, 2, BYTES.length);
+		assertByteSequence(ByteSequences.wrap(bytes, 2, BYTES.length));
+	}
+
+	@Test
+	public void heapByteBuffer() {
+		ByteBuffer buffer = ByteBuffer.allocate(BYTES.length + 1);
+		buffer.put((byte) 99);
+		buffer.put(BYTES);
+		buffer.position(1);
+		ByteSequence byteSequence = ByteSequences.wrap(buffer);
+		buffer.position(0);
+		assertByteSequence(byteSequence);
+	}
+
+	@Test
+	public void directByteBuffer() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BYTES.length);
+		buffer.put(BYTES);
+		buffer.flip();
+		assertByteSequence(ByteSequences.wrap(buffer));
+	}
+
+	@Test
+	public void mappedFile() throws IOException {
+		File file = writeFile(BYTES);
+		assertByteSequence(ByteSequences.map(file));
+	}
+
+	@Test
+	public void mappedRegions() throws IOException {
+		File file = writeFile(BYTES);
+		List<ByteSequence> regions = ByteSequences.mapRegions(file, 4);
+
+		assertEquals(3, regions.size());
+		assertEquals(4, regions.get(0).length());
+		assertEquals(2, regions.get(2).length());
+		assertEquals(8, regions.get(2).byteAt(0));
+		assertTrue(ByteSequences.mapRegions(writeFile(new byte[0]), 4)
+				.isEmpty());
+	}
+
+	@Test
+	public void subSequenceSharesBytes() {
+		byte[] bytes = BYTES.clone();
+		ByteSequence subSequence = ByteSequences.wrap(bytes).subSequence(2, 5);
+		bytes[3] = 42;
+		assertEquals(42, subSequence.byteAt(1));
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		subSequence = ByteSequences.wrap(buffer).subSequence(2, 5);
+		buffer.put(4, (byte) 43);
+		assertEquals(43, subSequence.byteAt(2));
+	}
+
+	@Test
+	public void defaultCopyTo() {
+		ByteSequence byteSequence = new ByteSequence() {
+
+			public int length() {
+				return BYTES.length;
+			}
+
+			public byte byteAt(int index) {
+				return BYTES[index];
+			}
+
+			public ByteSequence subSequence(int start, int end) {
+				return ByteSequences.wrap(BYTES, start, end - start);
+			}
+		};
+		assertByteSequence(byteSequence);
+	}
+
+	private void assertByteSequence(ByteSequence byteSequence) {
+		assertEquals(BYTES.length, byteSequence.length());
+		for (int i = 0; i < BYTES.length; i++) {
+			assertEquals(BYTES[i], byteSequence.byteAt(i));
+		}
+		assertTrue(Arrays.equals(BYTES, byteSequence.toByteArray()));
+
+		ByteSequence subSequence = byteSequence.subSequence(3, 7);
+		assertEquals(4, subSequence.length());
+		assertEquals(3, subSequence.byteAt(0));
+		assertEquals(6, subSequence.byteAt(3));
+		assertEquals(0, subSequence.subSequence(2, 2).length());
+		assertEquals(5, subSequence.subSequence(1, 3).byteAt(1));
+
+		byte[] target = new byte[6];
+		byteSequence.copyTo(2, target, 1, 4);
+		assertTrue(Arrays.equals(new byte[] { 0, 2, 3, 4, 5, 0 }, target));
+
+		ByteBuffer targetBuffer = ByteBuffer.allocate(3);
+		targetBuffer.put((byte) 9);
+		subSequence.copyTo(1, targetBuffer, 2);
+		assertTrue(Arrays.equals(new byte[] { 9, 4, 5 },
+				targetBuffer.array()));
+		assertEquals(3, targetBuffer.position());
+
+		assertIndexOutOfBounds(byteSequence, -1);
+		assertIndexOutOfBounds(byteSequence, BYTES.length);
+		assertIndexOutOfBounds(subSequence, 4);
+		try {
+			byteSequence.subSequence(5, 4);
+			fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			byteSequence.copyTo(8, target, 0, 3);
+			fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	private void assertIndexOutOfBounds(ByteSequence byteSequence, int index) {
+		try {
+			byteSequence.byteAt(index);
+			fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	private File writeFile(byte[] bytes) throws IOException {
+		File file = temporaryFolder.newFile();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+}
@@ -15,14 +15,32 @@
  */
 package com.link_intersystems.lang;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ParentLastURLClassLoaderTest {
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Test
 	public void parentLast() throws ClassNotFoundException {
 		URLClassLoader urlClassLoader = (URLClassLoader) ClassLoader
@@ -93,4 +111,274 @@ public class ParentLastURLClassLoaderTest {
 		ClassLoader classLoader = loadClass.getClassLoader();
 		Assert.assertSame(parentLastURLClassLoader, classLoader);
 	}
+
+	@Test
+	public void notIndexedPackageLoadedByParent() throws ClassNotFoundException {
+		URLClassLoader urlClassLoader = (URLClassLoader) ClassLoader
+				.getSystemClassLoader();
+		URL[] urLs = urlClassLoader.getURLs();
+
+		ParentLastURLClassLoader parentLastURLClassLoader = new ParentLastURLClassLoader(
+				urLs);
+		Class<?> loadClass = parentLastURLClassLoader
+				.loadClass(ArrayList.class.getName());
+		Assert.assertSame(ArrayList.class, loadClass);
+	}
+
+	@Test
+	public void jarPackageIndex() throws Exception {
+		File jar = createTestJar();
+
+		ParentLastURLClassLoader parentLastURLClassLoader = new ParentLastURLClassLoader(
+				new URL[] { jar.toURI().toURL() });
+
+		Class<?> loadClass = parentLastURLClassLoader
+				.loadClass(ParentLastURLClassLoaderTest.class.getName());
+		Assert.assertSame(parentLastURLClassLoader, loadClass.getClassLoader());
+
+		Class<?> stringClass = parentLastURLClassLoader.loadClass(String.class
+				.getName());
+		Assert.assertSame(String.class, stringClass);
+	}
+
+	@Test
+	public void addURLAfterClassNotFound() throws Exception {
+		File classesDir = temporaryFolder.newFolder("classes");
+		String classFileName = getClassFileName(ParentLastURLClassLoaderTest.class);
+		File classFile = new File(classesDir, classFileName);
+		classFile.getParentFile().mkdirs();
+		OutputStream classFileOutputStream = new FileOutputStream(classFile);
+		try {
+			copyClassFile(ParentLastURLClassLoaderTest.class,
+					classFileOutputStream);
+		} finally {
+			classFileOutputStream.close();
+		}
+
+		AddURLParentLastURLClassLoader parentLastURLClassLoader = new AddURLParentLastURLClassLoader();
+		try {
+			parentLastURLClassLoader
+					.loadClass(ParentLastURLClassLoaderTest.class.getName());
+			Assert.fail("class must not be found");
+		} catch (ClassNotFoundException e) {
+		}
+
+		parentLastURLClassLoader.addURL(classesDir.toURI().toURL());
+
+		Class<?> loadClass = parentLastURLClassLoader
+				.loadClass(ParentLastURLClassLoaderTest.class.getName());
+		Assert.assertSame(parentLastURLClassLoader, loadClass.getClassLoader());
+	}
+
+	@Test
+	public void directoryWithSymbolicLinkCycle() throws Exception {
+		File classesDir = temporaryFolder.newFolder("classes");
+		String classFileName = getClassFileName(ParentLastURLClassLoaderTest.class);
+		File classFile = new File(classesDir, classFileName);
+		File packageDir = classFile.getParentFile();
+		packageDir.mkdirs();
+		OutputStream classFileOutputStream = new FileOutputStream(classFile);
+		try {
+			copyClassFile(ParentLastURLClassLoaderTest.class,
+					classFileOutputStream);
+		} finally {
+			classFileOutputStream.close();
+		}
+		try {
+			Files.createSymbolicLink(new File(packageDir, "cycle").toPath(),
+					classesDir.toPath());
+		} catch (UnsupportedOperationException e) {
+			Assume.assumeNoException(e);
+		} catch (IOException e) {
+			Assume.assumeNoException(e);
+		}
+
+		ParentLastURLClassLoader parentLastURLClassLoader = new ParentLastURLClassLoader(
+				new URL[] { classesDir.toURI().toURL() }, ClassLoader
+						.getSystemClassLoader().getParent());
+
+		Class<?> loadClass = parentLastURLClassLoader
+				.loadClass(ParentLastURLClassLoaderTest.class.getName());
+		Assert.assertSame(parentLastURLClassLoader, loadClass.getClassLoader());
+	}
+
+	@Test
+	public void jarEntryCache() throws Exception {
+		File jar = createTestJar();
+		File cacheDirectory = temporaryFolder.newFolder("cache");
+		URL[] urls = new URL[] { jar.toURI().toURL() };
+
+		ParentLastURLClassLoader parentLastURLClassLoader = new ParentLastURLClassLoader(
+				urls, ParentLastURLClassLoaderTest.class.getClassLoader(),
+				cacheDirectory);
+		File[] cacheFiles = cacheDirectory.listFiles();
+		Assert.assertEquals(1, cacheFiles.length);
+		long cacheFileLastModified = cacheFiles[0].lastModified();
+
+		Class<?> loadClass = parentLastURLClassLoader
+				.loadClass(ParentLastURLClassLoaderTest.class.getName());
+		Assert.assertSame(parentLastURLClassLoader, loadClass.getClassLoader());
+		Assert.assertNotNull(loadClass.getPackage());
+
+		URL resource = parentLastURLClassLoader.getResource("test.txt");
+		Assert.assertEquals("jar:" + urls[0] + "!/test.txt",
+				resource.toExternalForm());
+		InputStream resourceInputStream = resource.openStream();
+		try {
+			Assert.assertEquals('A', resourceInputStream.read());
+			Assert.assertEquals('B', resourceInputStream.read());
+			Assert.assertEquals(-1, resourceInputStream.read());
+		} finally {
+			resourceInputStream.close();
+		}
+		parentLastURLClassLoader.close();
+
+		ParentLastURLClassLoader secondParentLastURLClassLoader = new ParentLastURLClassLoader(
+				urls, ParentLastURLClassLoaderTest.class.getClassLoader(),
+				cacheDirectory);
+		cacheFiles = cacheDirectory.listFiles();
+		Assert.assertEquals(1, cacheFiles.length);
+		Assert.assertEquals(cacheFileLastModified, cacheFiles[0].lastModified());
+
+		Class<?> secondLoadClass = secondParentLastURLClassLoader
+				.loadClass(ParentLastURLClassLoaderTest.class.getName());
+		Assert.assertSame(secondParentLastURLClassLoader,
+				secondLoadClass.getClassLoader());
+		secondParentLastURLClassLoader.close();
+	}
+
+	@Test
+	public void corruptJarEntryCacheIsRebuilt() throws Exception {
+		File jar = createTestJar();
+		File cacheDirectory = temporaryFolder.newFolder("cache");
+		URL[] urls = new URL[] { jar.toURI().toURL() };
+
+		new ParentLastURLClassLoader(urls,
+				ParentLastURLClassLoaderTest.class.getClassLoader(),
+				cacheDirectory).close();
+		File[] cacheFiles = cacheDirectory.listFiles();
+		Assert.assertEquals(1, cacheFiles.length);
+		long cacheFileLength = cacheFiles[0].length();
+
+		RandomAccessFile cacheFile = new RandomAccessFile(cacheFiles[0], "rw");
+		try {
+			cacheFile.seek(cacheFile.length() - 4);
+			int tableOffset = cacheFile.readInt();
+			cacheFile.seek(tableOffset + 4);
+			cacheFile.writeInt(Integer.MAX_VALUE - 8);
+		} finally {
+			cacheFile.close();
+		}
+
+		ParentLastURLClassLoader parentLastURLClassLoader = new ParentLastURLClassLoader(
+				urls, ParentLastURLClassLoaderTest.class.getClassLoader(),
+				cacheDirectory);
+		try {
+			Class<?> loadClass = parentLastURLClassLoader
+					.loadClass(ParentLastURLClassLoaderTest.class.getName());
+			Assert.assertSame(parentLastURLClassLoader,
+					loadClass.getClassLoader());
+		} finally {
+			parentLastURLClassLoader.close();
+		}
+
+		cacheFiles = cacheDirectory.listFiles();
+		Assert.assertEquals(1, cacheFiles.length);
+		Assert.assertEquals(cacheFileLength, cacheFiles[0].length());
+		RandomAccessFile rebuiltCacheFile = new RandomAccessFile(
+				cacheFiles[0], "r");
+		try {
+			rebuiltCacheFile.seek(rebuiltCacheFile.length() - 4);
+			rebuiltCacheFile.seek(rebuiltCacheFile.readInt() + 4);
+			Assert.assertTrue(rebuiltCacheFile.readInt() < 1024);
+		} finally {
+			rebuiltCacheFile.close();
+		}
+	}
+
+	@Test
+	public void signedJarManifestClassPath() throws Exception {
+		File libJar = createTestJar();
+		File signedJar = temporaryFolder.newFile("signed.jar");
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION,
+				"1.0");
+		manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH,
+				libJar.getName());
+		JarOutputStream jarOutputStream = new JarOutputStream(
+				new FileOutputStream(signedJar), manifest);
+		try {
+			jarOutputStream.putNextEntry(new JarEntry("META-INF/SIGNER.SF"));
+			jarOutputStream.write("Signature-Version: 1.0\r\n\r\n"
+					.getBytes("UTF-8"));
+			jarOutputStream.closeEntry();
+		} finally {
+			jarOutputStream.close();
+		}
+		File cacheDirectory = temporaryFolder.newFolder("cache");
+
+		ParentLastURLClassLoader parentLastURLClassLoader = new ParentLastURLClassLoader(
+				new URL[] { signedJar.toURI().toURL() },
+				ParentLastURLClassLoaderTest.class.getClassLoader(),
+				cacheDirectory);
+		try {
+			Class<?> loadClass = parentLastURLClassLoader
+					.loadClass(ParentLastURLClassLoaderTest.class.getName());
+			Assert.assertSame(parentLastURLClassLoader,
+					loadClass.getClassLoader());
+		} finally {
+			parentLastURLClassLoader.close();
+		}
+	}
+
+	private File createTestJar() throws IOException {
+		File jar = temporaryFolder.newFile("test.jar");
+		JarOutputStream jarOutputStream = new JarOutputStream(
+				new FileOutputStream(jar));
+		try {
+			String classFileName = getClassFileName(ParentLastURLClassLoaderTest.class);
+			jarOutputStream.putNextEntry(new JarEntry(classFileName));
+			copyClassFile(ParentLastURLClassLoaderTest.class, jarOutputStream);
+			jarOutputStream.closeEntry();
+
+			jarOutputStream.putNextEntry(new JarEntry("test.txt"));
+			jarOutputStream.write(new byte[] { 'A', 'B' });
+			jarOutputStream.closeEntry();
+		} finally {
+			jarOutputStream.close();
+		}
+		return jar;
+	}
+
+	private static String getClassFileName(Class<?> clazz) {
+		return clazz.getName().replace('.', '/') + ".class";
+	}
+
+	private static void copyClassFile(Class<?> clazz, OutputStream outputStream)
+			throws IOException {
+		InputStream classFileInputStream = clazz.getResourceAsStream(clazz
+				.getSimpleName() + ".class");
+		try {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = classFileInputStream.read(buffer)) != -1) {
+				outputStream.write(buffer, 0, read);
+			}
+		} finally {
+			classFileInputStream.close();
+		}
+	}
+
+	private static class AddURLParentLastURLClassLoader extends
+			ParentLastURLClassLoader {
+
+		public AddURLParentLastURLClassLoader() {
+			super(new URL[0], ClassLoader.getSystemClassLoader().getParent());
+		}
+
+		@Override
+		public void addURL(URL url) {
+			super.addURL(url);
+		}
+	}
 }
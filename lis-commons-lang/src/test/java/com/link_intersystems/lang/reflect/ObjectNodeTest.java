@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.link_intersystems.util.graph.DepthFirstNodeIterator;
+import com.link_intersystems.util.graph.Node;
+import com.link_intersystems.util.graph.ParallelBreadthFirstTraversal;
+
+public class ObjectNodeTest {
+
+	@Test
+	public void fieldReferences() {
+		Child child = new Child();
+		child.name = "child";
+		child.parentValue = "parent";
+
+		Collection<Node> references = new ObjectNode(child).getReferences();
+
+		List<Object> userObjects = getUserObjects(references);
+		assertEquals(2, userObjects.size());
+		assertSame(child.parentValue, userObjects.get(0));
+		assertSame(child.name, userObjects.get(1));
+	}
+
+	@Test
+	public void arrayReferences() {
+		Object[] array = new Object[] { "a", null, "b" };
+
+		List<Object> userObjects = getUserObjects(new ObjectNode(array)
+				.getReferences());
+
+		assertEquals(2, userObjects.size());
+		assertSame(array[0], userObjects.get(0));
+		assertSame(array[2], userObjects.get(1));
+	}
+
+	@Test
+	public void primitiveArrayHasNoReferences() {
+		assertTrue(new ObjectNode(new int[] { 1, 2 }).getReferences()
+				.isEmpty());
+	}
+
+	@Test
+	public void oneNodePerObject() {
+		Child child = new Child();
+		child.parentValue = new Object();
+		Child other = new Child();
+		other.parentValue = child;
+		child.next = other;
+
+		DepthFirstNodeIterator iterator = new DepthFirstNodeIterator(
+				new ObjectNode(child), true);
+		List<Object> userObjects = new ArrayList<Object>();
+		while (iterator.hasNext()) {
+			userObjects.add(iterator.next().getUserObject());
+		}
+
+		assertEquals(3, userObjects.size());
+		assertSame(child, userObjects.get(0));
+		assertSame(child.parentValue, userObjects.get(1));
+		assertSame(other, userObjects.get(2));
+	}
+
+	@Test
+	public void oneNodePerObjectInParallelTraversal() {
+		Object[] shared = new Object[100];
+		for (int i = 0; i < shared.length; i++) {
+			shared[i] = new Object();
+		}
+		Object[] root = new Object[1000];
+		for (int i = 0; i < root.length; i++) {
+			root[i] = shared.clone();
+		}
+
+		for (int run = 0; run < 10; run++) {
+			ParallelBreadthFirstTraversal traversal = new ParallelBreadthFirstTraversal(
+					new ObjectNode(root));
+			traversal.setOrdered(false);
+			List<Node> nodes = traversal.traverse();
+			assertEquals(1 + root.length + shared.length, nodes.size());
+		}
+	}
+
+	@Test
+	public void accessibleFieldsAreNotInaccessible() {
+		assertTrue(ObjectNode.getInaccessibleFields(Child.class).isEmpty());
+		assertTrue(ObjectNode.getInaccessibleFields(Object[].class).isEmpty());
+	}
+
+	@Test
+	public void collectionElementsAreReachable() {
+		List<Object> list = new ArrayList<Object>();
+		Object element = new Object();
+		list.add(element);
+
+		DepthFirstNodeIterator iterator = new DepthFirstNodeIterator(
+				new ObjectNode(list), true);
+		boolean elementReached = false;
+		while (iterator.hasNext()) {
+			elementReached |= iterator.next().getUserObject() == element;
+		}
+		assertTrue(elementReached);
+	}
+
+	private List<Object> getUserObjects(Collection<Node> nodes) {
+		List<Object> userObjects = new ArrayList<Object>();
+		for (Node node : nodes) {
+			userObjects.add(node.getUserObject());
+		}
+		return userObjects;
+	}
+
+	static class Parent {
+
+		static Object IGNORED = "static";
+
+		Object parentValue;
+
+		int primitive;
+	}
+
+	static class Child extends Parent {
+
+		String name;
+
+		Child next;
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.collections4.Predicate;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ObjectSizeEstimatorTest {
+
+	private ObjectSizeEstimator estimator;
+
+	@Before
+	public void createEstimator() {
+		estimator = new ObjectSizeEstimator(12, 16, 4, 8);
+	}
+
+	@Test
+	public void shallowSize() {
+		assertEquals(0, estimator.getShallowSize(null));
+		assertEquals(16, estimator.getShallowSize(new Object()));
+		assertEquals(24, estimator.getShallowSize(new Entry(null, null)));
+		assertEquals(32, estimator.getShallowSize(new long[2]));
+		assertEquals(32, estimator.getShallowSize(new Object[3]));
+		assertEquals(16, estimator.getShallowSize(new byte[0]));
+	}
+
+	@Test
+	public void retainedSize() {
+		Object[] value = new Object[3];
+		Entry entry = new Entry(new Object(), value);
+
+		assertEquals(24 + 16 + 32, estimator.getRetainedSize(entry));
+	}
+
+	@Test
+	public void sharedAndCyclicObjectsAreCountedOnce() {
+		Object shared = new Object();
+		Entry entry = new Entry(shared, null);
+		Entry next = new Entry(shared, entry);
+		entry.value = next;
+
+		assertEquals(24 + 24 + 16, estimator.getRetainedSize(entry));
+	}
+
+	@Test
+	public void maxDepth() {
+		Entry entry = new Entry(new Object(), new Entry(new Object(), null));
+		estimator.setMaxDepth(1);
+
+		assertEquals(24 + 16 + 24, estimator.getRetainedSize(entry));
+	}
+
+	@Test
+	public void maxObjects() {
+		Entry entry = new Entry(new Object(), new Entry(new Object(), null));
+		estimator.setMaxObjects(2);
+
+		assertEquals(24 + 16, estimator.getRetainedSize(entry));
+	}
+
+	@Test
+	public void sharedObjectsAreExcluded() {
+		Entry entry = new Entry(TimeUnit.SECONDS, Entry.class);
+
+		assertEquals(24, estimator.getRetainedSize(entry));
+	}
+
+	@Test
+	public void excludePredicate() {
+		final Object excluded = new Object[100];
+		Entry entry = new Entry(excluded, new Object());
+		estimator.setExcludePredicate(new Predicate<Object>() {
+
+			public boolean evaluate(Object object) {
+				return object == excluded;
+			}
+		});
+
+		assertEquals(24 + 16, estimator.getRetainedSize(entry));
+	}
+
+	@Test
+	public void jdkCollection() {
+		Map<String, String> map = new HashMap<String, String>();
+		long stringsSize = 0;
+		for (int i = 0; i < 1000; i++) {
+			String key = "key" + i;
+			String value = "value" + i;
+			map.put(key, value);
+			stringsSize += getMinimumStringSize(key)
+					+ getMinimumStringSize(value);
+		}
+
+		long retainedSize = estimator.getRetainedSize(map);
+		assertTrue(retainedSize >= estimator.getShallowSize(map) + stringsSize);
+	}
+
+	@Test
+	public void longString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			sb.append('x');
+		}
+		String string = sb.toString();
+
+		assertTrue(estimator.getRetainedSize(string) >= getMinimumStringSize(string));
+	}
+
+	@Test
+	public void latin1String() {
+		String latin1 = repeat('\u00e4', 1000);
+		String utf16 = repeat('\u20ac', 1000);
+
+		long latin1Size = estimator.getRetainedSize(latin1);
+		long utf16Size = estimator.getRetainedSize(utf16);
+		if (!ObjectNode.getInaccessibleFields(String.class).isEmpty()) {
+			long shallowSize = estimator.getShallowSize(latin1);
+			assertEquals(shallowSize
+					+ estimator.getShallowSize(new byte[latin1.length()]),
+					latin1Size);
+			assertEquals(shallowSize
+					+ estimator.getShallowSize(new char[utf16.length()]),
+					utf16Size);
+		}
+		assertTrue(latin1Size <= utf16Size);
+	}
+
+	private String repeat(char c, int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the size of a string with 1 byte per character.
+	 */
+	private long getMinimumStringSize(String string) {
+		return estimator.getShallowSize(string)
+				+ estimator.getShallowSize(new byte[string.length()]);
+	}
+
+	@Test
+	public void inaccessibleFields() {
+		Set<Field> inaccessibleFields = new HashSet<Field>();
+		Entry entry = new Entry(new Object(), new Object[3]);
+
+		assertEquals(24 + 16 + 32,
+				estimator.getRetainedSize(entry, inaccessibleFields));
+		assertTrue(inaccessibleFields.isEmpty());
+
+		estimator.getRetainedSize("text", inaccessibleFields);
+		assertEquals(new HashSet<Field>(
+				ObjectNode.getInaccessibleFields(String.class)),
+				inaccessibleFields);
+	}
+
+	static class Entry {
+
+		Object key;
+
+		Object value;
+
+		int hash;
+
+		Entry(Object key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
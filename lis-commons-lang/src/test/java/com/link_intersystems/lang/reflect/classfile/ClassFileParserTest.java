@@ -0,0 +1,201 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ClassFileParserTest {
+
+	private ClassFileParser classFileParser = new ClassFileParser();
+
+	static ClassFile parse(Class<?> clazz) throws IOException {
+		String resourceName = "/" + clazz.getName().replace('.', '/')
+				+ ".class";
+		InputStream classFileInputStream = clazz
+				.getResourceAsStream(resourceName);
+		try {
+			return new ClassFileParser().parse(classFileInputStream);
+		} finally {
+			classFileInputStream.close();
+		}
+	}
+
+	@Test
+	public void classMetadata() throws IOException {
+		ClassFile classFile = parse(ScannedSub.class);
+
+		assertEquals(ScannedSub.class.getName(), classFile.getName());
+		assertEquals(ScannedBase.class.getName(),
+				classFile.getSuperclassName());
+		assertEquals(Arrays.asList(Runnable.class.getName()),
+				classFile.getInterfaceNames());
+		assertEquals(Arrays.asList(Deprecated.class.getName()),
+				classFile.getAnnotationNames());
+		assertTrue(Modifier.isPublic(classFile.getModifiers()));
+		assertFalse(classFile.isInterface());
+	}
+
+	@Test
+	public void modifiersAreClassModifiers() throws IOException {
+		assertModifiers(ScannedSub.class);
+		assertModifiers(ArrayList.class);
+		assertModifiers(Runnable.class);
+		assertModifiers(PrivateStaticNested.class);
+		assertModifiers(ProtectedInner.class);
+		assertModifiers(Thread.State.class);
+	}
+
+	@Test
+	public void superFlagIsNotSynchronized() throws IOException {
+		ClassFile classFile = parse(ScannedSub.class);
+		assertFalse(ClassFilePredicates.withModifiers(Modifier.SYNCHRONIZED)
+				.evaluate(classFile));
+	}
+
+	@Test
+	public void nestedClassModifiers() throws IOException {
+		ClassFile classFile = parse(PrivateStaticNested.class);
+		assertTrue(ClassFilePredicates.withModifiers(
+				Modifier.PRIVATE | Modifier.STATIC).evaluate(classFile));
+
+		classFile = parse(ProtectedInner.class);
+		assertTrue(ClassFilePredicates.withModifiers(Modifier.PROTECTED)
+				.evaluate(classFile));
+		assertFalse(ClassFilePredicates.withModifiers(Modifier.STATIC)
+				.evaluate(classFile));
+	}
+
+	private void assertModifiers(Class<?> clazz) throws IOException {
+		ClassFile classFile = parse(clazz);
+		assertEquals(clazz.getName(), clazz.getModifiers(),
+				classFile.getModifiers());
+	}
+
+	private static class PrivateStaticNested {
+	}
+
+	protected class ProtectedInner {
+	}
+
+	@Test
+	public void annotationWithElementValues() throws IOException {
+		ClassFile classFile = parse(ScannedBase.class);
+		assertEquals(Arrays.asList(ScanMarker.class.getName()),
+				classFile.getAnnotationNames());
+	}
+
+	@Test
+	public void members() throws IOException {
+		ClassFile classFile = parse(ScannedSub.class);
+
+		List<String> memberNames = new ArrayList<String>();
+		for (ClassFileMember member : classFile.getMembers()) {
+			memberNames.add(member.getMemberType().getSimpleName() + " "
+					+ member.getName());
+		}
+		assertTrue(memberNames.contains("Field serialVersionUID"));
+		assertTrue(memberNames.contains("Field RATIO"));
+		assertTrue(memberNames.contains("Method run"));
+		assertTrue(memberNames.contains("Method scanned"));
+		assertTrue(memberNames.contains("Constructor "
+				+ ScannedSub.class.getName()));
+		assertEquals(ScannedSub.class.getDeclaredFields().length
+				+ ScannedSub.class.getDeclaredMethods().length
+				+ ScannedSub.class.getDeclaredConstructors().length,
+				memberNames.size());
+	}
+
+	@Test
+	public void memberMetadata() throws Exception {
+		ClassFile classFile = parse(ScannedSub.class);
+		Method run = ScannedSub.class.getDeclaredMethod("run");
+		Method scanned = ScannedSub.class.getDeclaredMethod("scanned");
+
+		for (ClassFileMember member : classFile.getMembers()) {
+			if ("run".equals(member.getName())) {
+				assertEquals(run.getModifiers(), member.getModifiers());
+				assertEquals("()V", member.getDescriptor());
+				assertEquals(Arrays.asList(ScanMarker.class.getName()),
+						member.getAnnotationNames());
+			} else if ("scanned".equals(member.getName())) {
+				assertEquals(scanned.getModifiers(), member.getModifiers());
+				assertEquals("()Ljava/lang/String;", member.getDescriptor());
+				assertTrue(member.getAnnotationNames().isEmpty());
+			}
+		}
+	}
+
+	@Test
+	public void jdkClass() throws IOException {
+		ClassFile classFile = parse(ArrayList.class);
+		assertEquals(ArrayList.class.getName(), classFile.getName());
+		assertTrue(classFile.getInterfaceNames().contains(
+				Serializable.class.getName()));
+
+		int constructors = 0;
+		int methods = 0;
+		int fields = 0;
+		for (ClassFileMember member : classFile.getMembers()) {
+			Class<? extends Member> memberType = member.getMemberType();
+			if (Constructor.class.equals(memberType)) {
+				constructors++;
+			} else if (Method.class.equals(memberType)) {
+				methods++;
+			} else if (Field.class.equals(memberType)) {
+				fields++;
+			}
+		}
+		assertEquals(ArrayList.class.getDeclaredConstructors().length,
+				constructors);
+		assertEquals(ArrayList.class.getDeclaredMethods().length, methods);
+		assertEquals(ArrayList.class.getDeclaredFields().length, fields);
+	}
+
+	@Test
+	public void objectHasNoSuperclass() throws IOException {
+		ClassFile classFile = parse(Object.class);
+		assertNull(classFile.getSuperclassName());
+	}
+
+	@Test(expected = IOException.class)
+	public void notAClassFile() throws IOException {
+		classFileParser.parse(new ByteArrayInputStream(new byte[] { 1, 2, 3,
+				4, 5, 6, 7, 8 }));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullInputStream() throws IOException {
+		classFileParser.parse(null);
+	}
+}
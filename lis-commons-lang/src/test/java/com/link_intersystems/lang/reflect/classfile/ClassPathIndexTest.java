@@ -0,0 +1,226 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.link_intersystems.lang.reflect.criteria.MemberCriteria;
+
+public class ClassPathIndexTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File indexDirectory;
+
+	private File jar;
+
+	private URL[] urls;
+
+	@Before
+	public void setup() throws IOException {
+		indexDirectory = new File(temporaryFolder.getRoot(), "index");
+		jar = temporaryFolder.newFile("index.jar");
+		writeJar(jar, ScannedBase.class, ScannedSub.class, ScanMarker.class);
+		urls = new URL[] { jar.toURI().toURL() };
+	}
+
+	private ClassPathIndex createClassPathIndex() {
+		return new ClassPathIndex(indexDirectory, urls, getClass()
+				.getClassLoader());
+	}
+
+	private List<String> getNames(List<ClassFile> classFiles) {
+		List<String> names = new ArrayList<String>();
+		for (ClassFile classFile : classFiles) {
+			names.add(classFile.getName());
+		}
+		return names;
+	}
+
+	@Test
+	public void indexOnlyChangedEntries() throws Exception {
+		ClassPathIndex classPathIndex = createClassPathIndex();
+		assertEquals(Arrays.asList(urls), classPathIndex.refresh());
+		assertEquals(Collections.emptyList(), classPathIndex.refresh());
+
+		ClassPathIndex restartedClassPathIndex = createClassPathIndex();
+		assertEquals(Collections.emptyList(), restartedClassPathIndex.refresh());
+		assertEquals(3, restartedClassPathIndex.scan().size());
+
+		writeJar(jar, ScannedBase.class, ScanMarker.class);
+		jar.setLastModified(jar.lastModified() - 10000);
+		assertEquals(Arrays.asList(urls), restartedClassPathIndex.refresh());
+		assertEquals(
+				Arrays.asList(ScanMarker.class.getName(),
+						ScannedBase.class.getName()),
+				getNames(restartedClassPathIndex.scan()));
+	}
+
+	@Test
+	public void touchedButUnchangedEntryIsNotIndexed() throws Exception {
+		ClassPathIndex classPathIndex = createClassPathIndex();
+		classPathIndex.refresh();
+		jar.setLastModified(jar.lastModified() - 10000);
+		assertEquals(Collections.emptyList(), classPathIndex.refresh());
+	}
+
+	@Test
+	public void truncatedIndexFileIsReindexed() throws Exception {
+		ClassPathIndex classPathIndex = createClassPathIndex();
+		classPathIndex.refresh();
+
+		File[] indexFiles = indexDirectory.listFiles();
+		assertEquals(1, indexFiles.length);
+		RandomAccessFile indexFile = new RandomAccessFile(indexFiles[0], "rw");
+		try {
+			indexFile.setLength(40);
+		} finally {
+			indexFile.close();
+		}
+
+		ClassPathIndex restartedClassPathIndex = createClassPathIndex();
+		assertEquals(Arrays.asList(urls), restartedClassPathIndex.refresh());
+		assertEquals(3, restartedClassPathIndex.scan().size());
+	}
+
+	@Test
+	public void reindexedEntryIsWrittenToNewFile() throws Exception {
+		ClassPathIndex classPathIndex = createClassPathIndex();
+		classPathIndex.refresh();
+		File[] indexFiles = indexDirectory.listFiles();
+		assertEquals(1, indexFiles.length);
+		File previousIndexFile = indexFiles[0];
+
+		writeJar(jar, ScannedBase.class, ScanMarker.class);
+		jar.setLastModified(jar.lastModified() - 10000);
+		assertEquals(Arrays.asList(urls), classPathIndex.refresh());
+
+		indexFiles = indexDirectory.listFiles();
+		assertEquals(1, indexFiles.length);
+		assertFalse(previousIndexFile.equals(indexFiles[0]));
+		assertEquals(2, classPathIndex.scan().size());
+	}
+
+	@Test
+	public void classFile() throws Exception {
+		ClassPathIndex classPathIndex = createClassPathIndex();
+		classPathIndex.refresh();
+
+		ClassFile classFile = classPathIndex.getClassFile(ScannedSub.class
+				.getName());
+		assertNotNull(classFile);
+		assertEquals(ScannedBase.class.getName(),
+				classFile.getSuperclassName());
+		assertEquals(Arrays.asList(Runnable.class.getName()),
+				classFile.getInterfaceNames());
+		assertEquals(Arrays.asList(Deprecated.class.getName()),
+				classFile.getAnnotationNames());
+
+		ClassFile parsedClassFile = new ClassFileParser().parse(ScannedSub.class
+				.getResourceAsStream("ScannedSub.class"));
+		assertEquals(parsedClassFile.getMembers().toString(), classFile
+				.getMembers().toString());
+
+		assertNull(classPathIndex.getClassFile("com.example.Unknown"));
+	}
+
+	@Test
+	public void predicates() throws Exception {
+		ClassPathIndex classPathIndex = createClassPathIndex();
+		classPathIndex.refresh();
+
+		assertEquals(Arrays.asList(ScannedBase.class.getName(),
+				ScannedSub.class.getName()),
+				getNames(classPathIndex.scan(ClassFilePredicates
+						.subtypeOf(java.io.Serializable.class))));
+		assertEquals(Arrays.asList(ScannedBase.class.getName()),
+				getNames(classPathIndex.scan(ClassFilePredicates
+						.annotatedWith(ScanMarker.class))));
+
+		MemberCriteria<Method> memberCriteria = new MemberCriteria<Method>();
+		memberCriteria.membersOfType(Method.class);
+		memberCriteria.named("scanned");
+		List<Class<?>> classes = classPathIndex.loadClasses(ClassFilePredicates
+				.declaresMember(memberCriteria));
+		assertEquals(Arrays.<Class<?>> asList(ScannedSub.class), classes);
+	}
+
+	@Test
+	public void indexDirectory() throws Exception {
+		URL testClasses = ScannedBase.class.getProtectionDomain()
+				.getCodeSource().getLocation();
+		ClassPathIndex classPathIndex = new ClassPathIndex(indexDirectory,
+				new URL[] { testClasses }, getClass().getClassLoader());
+		assertEquals(1, classPathIndex.refresh().size());
+		assertEquals(0, classPathIndex.refresh().size());
+		assertTrue(classPathIndex.scan(
+				ClassFilePredicates.subtypeOf(ScannedBase.class)).size() == 2);
+	}
+
+	private void writeJar(File jar, Class<?>... classes) throws IOException {
+		JarOutputStream jarOutputStream = new JarOutputStream(
+				new FileOutputStream(jar));
+		try {
+			for (Class<?> clazz : classes) {
+				String entryName = clazz.getName().replace('.', '/')
+						+ ".class";
+				jarOutputStream.putNextEntry(new JarEntry(entryName));
+				copy(clazz.getResourceAsStream("/" + entryName),
+						jarOutputStream);
+				jarOutputStream.closeEntry();
+			}
+		} finally {
+			jarOutputStream.close();
+		}
+	}
+
+	private void copy(InputStream in, OutputStream out) throws IOException {
+		try {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
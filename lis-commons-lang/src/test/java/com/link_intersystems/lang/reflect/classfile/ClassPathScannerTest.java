@@ -0,0 +1,178 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Pattern;
+
+import org.apache.commons.collections4.Predicate;
+import org.apache.commons.collections4.functors.AndPredicate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.link_intersystems.lang.reflect.criteria.MemberCriteria;
+
+public class ClassPathScannerTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private ClassPathScanner createTestClassesScanner() {
+		URL testClasses = ScannedBase.class.getProtectionDomain()
+				.getCodeSource().getLocation();
+		return new ClassPathScanner(new URL[] { testClasses },
+				ScannedBase.class.getClassLoader());
+	}
+
+	private List<String> getNames(List<ClassFile> classFiles) {
+		List<String> names = new ArrayList<String>();
+		for (ClassFile classFile : classFiles) {
+			names.add(classFile.getName());
+		}
+		return names;
+	}
+
+	@Test
+	public void annotatedWith() throws IOException {
+		ClassPathScanner classPathScanner = createTestClassesScanner();
+		List<ClassFile> classFiles = classPathScanner.scan(ClassFilePredicates
+				.annotatedWith(ScanMarker.class));
+		assertEquals(Arrays.asList(ScannedBase.class.getName()),
+				getNames(classFiles));
+	}
+
+	@Test
+	public void subtypeOf() throws IOException {
+		ClassPathScanner classPathScanner = createTestClassesScanner();
+		Predicate<ClassFile> subtypeOf = ClassFilePredicates
+				.subtypeOf(ScannedBase.class);
+		List<ClassFile> classFiles = classPathScanner.scan(subtypeOf);
+		assertEquals(
+				Arrays.asList(ScannedBase.class.getName(),
+						ScannedSub.class.getName()), getNames(classFiles));
+	}
+
+	@Test
+	public void transitiveSubtypeOfInterfaceOutsideClassPath()
+			throws IOException {
+		ClassPathScanner classPathScanner = createTestClassesScanner();
+		Predicate<ClassFile> predicate = AndPredicate.andPredicate(
+				ClassFilePredicates.named(Pattern.compile(".*\\.Scanned.*")),
+				ClassFilePredicates.subtypeOf(java.io.Serializable.class));
+		List<ClassFile> classFiles = classPathScanner.scan(predicate);
+		assertEquals(
+				Arrays.asList(ScannedBase.class.getName(),
+						ScannedSub.class.getName()), getNames(classFiles));
+	}
+
+	@Test
+	public void declaresMember() throws IOException {
+		ClassPathScanner classPathScanner = createTestClassesScanner();
+		MemberCriteria<Method> memberCriteria = new MemberCriteria<Method>();
+		memberCriteria.membersOfType(Method.class);
+		memberCriteria.named("scanned");
+		List<ClassFile> classFiles = classPathScanner.scan(ClassFilePredicates
+				.declaresMember(memberCriteria));
+		assertEquals(Arrays.asList(ScannedSub.class.getName()),
+				getNames(classFiles));
+	}
+
+	@Test
+	public void loadClasses() throws Exception {
+		ClassPathScanner classPathScanner = createTestClassesScanner();
+		List<Class<?>> classes = classPathScanner
+				.loadClasses(ClassFilePredicates
+						.annotatedWith(Deprecated.class.getName()));
+		assertTrue(classes.contains(ScannedSub.class));
+	}
+
+	@Test
+	public void scanJar() throws Exception {
+		File jar = temporaryFolder.newFile("scan.jar");
+		JarOutputStream jarOutputStream = new JarOutputStream(
+				new FileOutputStream(jar));
+		try {
+			for (Class<?> clazz : Arrays.asList(ScannedBase.class,
+					ScannedSub.class, ScanMarker.class)) {
+				String entryName = clazz.getName().replace('.', '/')
+						+ ".class";
+				jarOutputStream.putNextEntry(new JarEntry(entryName));
+				copy(clazz.getResourceAsStream("/" + entryName),
+						jarOutputStream);
+				jarOutputStream.closeEntry();
+			}
+		} finally {
+			jarOutputStream.close();
+		}
+
+		ClassPathScanner classPathScanner = new ClassPathScanner(
+				new URL[] { jar.toURI().toURL() }, getClass()
+						.getClassLoader());
+		ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+		try {
+			classPathScanner.setForkJoinPool(forkJoinPool);
+			List<ClassFile> classFiles = classPathScanner.scan();
+			assertEquals(3, classFiles.size());
+
+			classFiles = classPathScanner.scan(ClassFilePredicates
+					.subtypeOf(ScannedBase.class));
+			assertEquals(
+					Arrays.asList(ScannedBase.class.getName(),
+							ScannedSub.class.getName()), getNames(classFiles));
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	@Test
+	public void firstClassPathEntryWins() throws Exception {
+		URL testClasses = ScannedBase.class.getProtectionDomain()
+				.getCodeSource().getLocation();
+		ClassPathScanner classPathScanner = new ClassPathScanner(new URL[] {
+				testClasses, testClasses }, getClass().getClassLoader());
+		List<ClassFile> classFiles = classPathScanner.scan(ClassFilePredicates
+				.annotatedWith(ScanMarker.class));
+		assertEquals(1, classFiles.size());
+	}
+
+	private void copy(InputStream in, OutputStream out) throws IOException {
+		try {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.classfile;
+
+import java.io.Serializable;
+
+@ScanMarker(value = "base", numbers = { 1, 2 })
+public class ScannedBase implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	protected long id;
+
+	public ScannedBase() {
+	}
+
+	public ScannedBase(long id) {
+		this.id = id;
+	}
+}
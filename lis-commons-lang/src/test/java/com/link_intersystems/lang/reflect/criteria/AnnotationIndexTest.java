@@ -0,0 +1,180 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AnnotationIndexTest {
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Documented
+	public @interface Meta {
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Inherited
+	@Meta
+	public @interface Marked {
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface Unused {
+	}
+
+	public interface MarkedInterface {
+
+		@Meta
+		void interfaceMethod();
+	}
+
+	@Marked
+	public static class Base {
+
+		@Marked
+		protected String field;
+
+		@Marked
+		public void marked() {
+		}
+
+		public void notMarked() {
+		}
+	}
+
+	public static class Sub extends Base implements MarkedInterface {
+
+		@Meta
+		public void subMethod() {
+		}
+
+		public void interfaceMethod() {
+		}
+	}
+
+	@Test
+	public void classIndex() throws Exception {
+		AnnotationIndex annotationIndex = AnnotationIndex.forClass(Base.class);
+
+		assertEquals(Arrays.asList(Base.class),
+				annotationIndex.getClasses(Marked.class));
+		assertEquals(Arrays.asList(Base.class.getDeclaredMethod("marked")),
+				annotationIndex.getMethods(Marked.class));
+		assertEquals(Arrays.asList(Base.class.getDeclaredField("field")),
+				annotationIndex.getFields(Marked.class));
+		assertTrue(annotationIndex.getConstructors(Marked.class).isEmpty());
+		assertEquals(Collections.emptyList(),
+				annotationIndex.getAnnotatedElements(Unused.class));
+	}
+
+	@Test
+	public void inheritedAnnotation() {
+		AnnotationIndex annotationIndex = AnnotationIndex.forClass(Sub.class);
+		assertEquals(Arrays.asList(Sub.class),
+				annotationIndex.getClasses(Marked.class));
+	}
+
+	@Test
+	public void metaAnnotations() throws Exception {
+		AnnotationIndex annotationIndex = AnnotationIndex.forClass(Base.class);
+		assertEquals(Arrays.asList(Base.class.getDeclaredMethod("marked")),
+				annotationIndex.getMethods(Meta.class));
+	}
+
+	@Test
+	public void javaLangAnnotationMetaAnnotationsAreNotIndexed() {
+		AnnotationIndex annotationIndex = AnnotationIndex
+				.forHierarchy(Sub.class);
+		assertTrue(annotationIndex.getAnnotatedElements(Documented.class)
+				.isEmpty());
+		assertTrue(annotationIndex.getAnnotatedElements(Retention.class)
+				.isEmpty());
+		assertTrue(annotationIndex.getAnnotatedElements(Inherited.class)
+				.isEmpty());
+
+		AnnotationIndex metaIndex = AnnotationIndex.forClass(Marked.class);
+		assertEquals(Arrays.asList(Marked.class),
+				metaIndex.getClasses(Retention.class));
+		assertTrue(metaIndex.getClasses(Documented.class).isEmpty());
+	}
+
+	@Test
+	public void hierarchyIndex() throws Exception {
+		AnnotationIndex annotationIndex = AnnotationIndex
+				.forHierarchy(Sub.class);
+
+		assertEquals(Arrays.asList(Sub.class, Base.class),
+				annotationIndex.getClasses(Marked.class));
+		Method subMethod = Sub.class.getDeclaredMethod("subMethod");
+		Method marked = Base.class.getDeclaredMethod("marked");
+		Method interfaceMethod = MarkedInterface.class
+				.getDeclaredMethod("interfaceMethod");
+		assertEquals(Arrays.asList(marked),
+				annotationIndex.getMethods(Marked.class));
+		assertTrue(annotationIndex.getMethods(Meta.class).containsAll(
+				Arrays.asList(subMethod, marked, interfaceMethod)));
+		assertEquals(3, annotationIndex.getMethods(Meta.class).size());
+
+		Field field = Base.class.getDeclaredField("field");
+		assertEquals(Arrays.asList(field),
+				annotationIndex.getFields(Marked.class));
+	}
+
+	@Test
+	public void indexedMembersAreCopied() {
+		AnnotationIndex annotationIndex = AnnotationIndex.forClass(Base.class);
+		List<Method> methods = annotationIndex.getMethods(Marked.class);
+		List<Method> methodsAgain = annotationIndex.getMethods(Marked.class);
+		assertFalse(methods.isEmpty());
+		assertEquals(methods, methodsAgain);
+		assertNotSame(methods.get(0), methodsAgain.get(0));
+	}
+
+	@Test
+	public void indexesAreCached() {
+		assertSame(AnnotationIndex.forHierarchy(Sub.class),
+				AnnotationIndex.forHierarchy(Sub.class));
+		assertSame(AnnotationIndex.forClass(Sub.class),
+				AnnotationIndex.forClass(Sub.class));
+	}
+
+	@Test
+	public void indexOfClassQuery() throws Exception {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setSelection(ClassCriteria.ClassType.INNER_CLASSES);
+		AnnotationIndex annotationIndex = AnnotationIndex.of(classCriteria
+				.getIterable(Sub.class));
+		assertTrue(annotationIndex.getMethods(Meta.class).contains(
+				Sub.class.getDeclaredMethod("subMethod")));
+		assertTrue(annotationIndex.getAnnotationTypes().contains(
+				Marked.class));
+	}
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.collections4.Predicate;
+import org.junit.Test;
+
+import com.link_intersystems.lang.reflect.ReflectFacade;
+import com.link_intersystems.lang.reflect.criteria.ClassCriteria.ClassType;
+import com.link_intersystems.lang.reflect.criteria.ClassCriteria.TraverseStrategy;
+
+public class ClassQueryTest {
+
+	@Test
+	public void queryIsNotAffectedByCriteriaChanges() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setSelection(ClassType.CLASSES);
+		ClassQuery classQuery = classCriteria.compile();
+
+		classCriteria.setResult(Result.FIRST);
+		classCriteria.setSelection(ClassType.INTERFACES);
+
+		Iterator<Class<?>> iterator = classQuery.getIterable(ArrayList.class)
+				.iterator();
+		assertEquals(ArrayList.class, iterator.next());
+		assertEquals(AbstractList.class, iterator.next());
+		assertEquals(AbstractCollection.class, iterator.next());
+		assertEquals(Object.class, iterator.next());
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void queryIsReusable() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setSelection(ClassType.CLASSES);
+		ClassQuery classQuery = classCriteria.compile();
+		Iterable<Class<?>> iterable = classQuery.getIterable(ArrayList.class,
+				AbstractList.class);
+
+		for (int i = 0; i < 2; i++) {
+			Iterator<Class<?>> iterator = iterable.iterator();
+			assertEquals(ArrayList.class, iterator.next());
+			assertEquals(AbstractList.class, iterator.next());
+			assertFalse(iterator.hasNext());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void stopClassNotASuperclass() {
+		new ClassCriteria().compile().getIterable(ArrayList.class,
+				String.class);
+	}
+
+	@Test
+	public void result() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setResult(Result.LAST);
+		ClassQuery classQuery = classCriteria.compile();
+		assertEquals(Result.LAST, classQuery.getResult());
+		assertTrue(classQuery.getIterable(ArrayList.class).iterator()
+				.hasNext());
+	}
+
+	@Test
+	public void cachedLinearizationEqualsTraversal() {
+		for (TraverseStrategy traverseStrategy : TraverseStrategy.values()) {
+			ClassCriteria classCriteria = new ClassCriteria();
+			classCriteria.setTraverseStrategy(traverseStrategy);
+			ClassQuery classQuery = classCriteria.compile();
+
+			final Comparator<Class<?>> canonicalClassNameComparator = ReflectFacade
+					.getCanonicalClassNameComparator();
+			classCriteria
+					.setInterfacesIterationOrder(new Comparator<Class<?>>() {
+
+						public int compare(Class<?> o1, Class<?> o2) {
+							return canonicalClassNameComparator.compare(o1, o2);
+						}
+					});
+			ClassQuery notCachedQuery = classCriteria.compile();
+
+			List<Class<?>> expected = toList(notCachedQuery
+					.getIterable(ArrayList.class));
+			List<Class<?>> firstIteration = toList(classQuery
+					.getIterable(ArrayList.class));
+			List<Class<?>> secondIteration = toList(classQuery
+					.getIterable(ArrayList.class));
+
+			assertEquals(expected, firstIteration);
+			assertEquals(expected, secondIteration);
+		}
+	}
+
+	@Test
+	public void fullIterationAfterPartialIteration() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setTraverseClassesUniquely(true);
+		ClassQuery classQuery = classCriteria.compile();
+
+		Iterator<Class<?>> iterator = classQuery.getIterable(ArrayList.class)
+				.iterator();
+		assertEquals(ArrayList.class, iterator.next());
+
+		List<Class<?>> linearization = toList(classQuery
+				.getIterable(ArrayList.class));
+		assertEquals(ArrayList.class, linearization.get(0));
+		assertTrue(linearization.contains(Object.class));
+		assertEquals(linearization,
+				toList(classQuery.getIterable(ArrayList.class)));
+	}
+
+	@Test
+	public void streamEqualsIterable() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setTraverseClassesUniquely(true);
+		ClassQuery classQuery = classCriteria.compile();
+
+		List<Class<?>> expected = toList(classQuery.getIterable(
+				ArrayList.class, AbstractCollection.class));
+		List<Class<?>> streamed = classQuery
+				.stream(ArrayList.class, AbstractCollection.class).parallel()
+				.collect(Collectors.<Class<?>> toList());
+		assertEquals(expected, streamed);
+	}
+
+	@Test
+	public void streamTraversesLazily() {
+		ClassQuery classQuery = new ClassCriteria().compile();
+
+		Stream<Class<?>> stream = classQuery.stream(LazilyStreamed.class);
+		assertNull(classQuery.getCachedLinearization(LazilyStreamed.class));
+		Class<?> first = stream.findFirst().get();
+		assertNull(classQuery.getCachedLinearization(LazilyStreamed.class));
+
+		List<Class<?>> streamed = classQuery.stream(LazilyStreamed.class)
+				.collect(Collectors.<Class<?>> toList());
+		assertNotNull(classQuery.getCachedLinearization(LazilyStreamed.class));
+		assertEquals(first, streamed.get(0));
+		assertEquals(toList(classQuery.getIterable(LazilyStreamed.class)),
+				streamed);
+		assertEquals(streamed, classQuery.stream(LazilyStreamed.class)
+				.parallel().collect(Collectors.<Class<?>> toList()));
+	}
+
+	private static class LazilyStreamed extends ArrayList<Object> {
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	@Test
+	public void streamResultFirst() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setResult(Result.FIRST);
+		List<Class<?>> streamed = classCriteria.stream(ArrayList.class)
+				.collect(Collectors.<Class<?>> toList());
+		assertEquals(1, streamed.size());
+		assertEquals(ArrayList.class, streamed.get(0));
+	}
+
+	@Test
+	public void skipAndLimit() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setSelection(ClassType.CLASSES);
+		classCriteria.setSkip(1);
+		classCriteria.setLimit(2);
+		ClassQuery classQuery = classCriteria.compile();
+
+		List<Class<?>> expected = Arrays.<Class<?>> asList(
+				AbstractList.class, AbstractCollection.class);
+		assertEquals(expected, toList(classQuery.getIterable(ArrayList.class)));
+		assertEquals(expected, classQuery.stream(ArrayList.class).collect(
+				Collectors.<Class<?>> toList()));
+	}
+
+	@Test
+	public void limitWithLastResult() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setSelection(ClassType.CLASSES);
+		classCriteria.setLimit(2);
+		classCriteria.setResult(Result.LAST);
+
+		assertEquals(Arrays.<Class<?>> asList(AbstractList.class),
+				toList(classCriteria.getIterable(ArrayList.class)));
+	}
+
+	@Test
+	public void firstResultShortCircuits() {
+		CountingPredicate countingPredicate = new CountingPredicate();
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.add(countingPredicate);
+		classCriteria.setResult(Result.FIRST);
+
+		Iterator<Class<?>> iterator = classCriteria.getIterable(
+				ArrayList.class).iterator();
+		assertEquals(ArrayList.class, iterator.next());
+		assertFalse(iterator.hasNext());
+		assertEquals(1, countingPredicate.evaluations);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeLimit() {
+		new ClassCriteria().setLimit(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeSkip() {
+		new ClassCriteria().setSkip(-1);
+	}
+
+	@Test(timeout = 10000)
+	public void uniqueTraversalOfCyclicHierarchy() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setSelection(ClassType.INNER_CLASSES, ClassType.CLASSES);
+		classCriteria.setTraverseClassesUniquely(true);
+		classCriteria.setTraverseStrategy(TraverseStrategy.DEPTH_FIRST);
+		List<Class<?>> depthFirst = toList(classCriteria.compile().getIterable(
+				CyclicOuter.class));
+		assertEquals(Arrays.<Class<?>> asList(CyclicOuter.class,
+				CyclicOuter.CyclicInner.class, Object.class), depthFirst);
+
+		classCriteria.setTraverseStrategy(TraverseStrategy.BREADTH_FIRST);
+		List<Class<?>> breadthFirst = toList(classCriteria.compile()
+				.getIterable(CyclicOuter.class));
+		assertEquals(Arrays.<Class<?>> asList(CyclicOuter.class,
+				CyclicOuter.CyclicInner.class, Object.class), breadthFirst);
+	}
+
+	/**
+	 * The inner class extends its outer class. Thus the class hierarchy
+	 * contains the cycle CyclicOuter -> CyclicInner -> CyclicOuter.
+	 */
+	public static class CyclicOuter {
+
+		public static class CyclicInner extends CyclicOuter {
+		}
+	}
+
+	private static class CountingPredicate implements Predicate<Class<?>>,
+			Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private int evaluations;
+
+		public boolean evaluate(Class<?> object) {
+			evaluations++;
+			return true;
+		}
+	}
+
+	private List<Class<?>> toList(Iterable<Class<?>> iterable) {
+		List<Class<?>> list = new ArrayList<Class<?>>();
+		for (Class<?> clazz : iterable) {
+			list.add(clazz);
+		}
+		return list;
+	}
+}
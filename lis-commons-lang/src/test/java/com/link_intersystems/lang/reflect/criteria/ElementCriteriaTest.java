@@ -15,6 +15,12 @@
  */
 package com.link_intersystems.lang.reflect.criteria;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
 import org.apache.commons.collections4.Predicate;
 import org.apache.commons.lang3.SerializationUtils;
 import org.junit.Test;
@@ -67,4 +73,65 @@ public abstract class ElementCriteriaTest {
 		}
 
 	}
+
+	@Test
+	public void limitSerializable() {
+		ElementCriteria criteria = getElementCriteria();
+		criteria.setSkip(2);
+		criteria.setLimit(3);
+		ElementCriteria clone = SerializationUtils.clone(criteria);
+		assertEquals(2, clone.getSkip());
+		assertEquals(3, clone.getLimit());
+	}
+
+	/**
+	 * Criteria that were serialized before skip and limit existed do not
+	 * contain these fields. The stream of such a criteria is emulated by
+	 * renaming the fields in the serialized form, so that they are unknown
+	 * when the criteria is deserialized.
+	 */
+	@Test
+	public void deserializeCriteriaWithoutLimit() throws Exception {
+		ElementCriteria criteria = getElementCriteria();
+		criteria.setSkip(2);
+		criteria.setLimit(3);
+		byte[] serialized = SerializationUtils.serialize(criteria);
+		serialized = renameField(serialized, "skip", "xxxx");
+		serialized = renameField(serialized, "limit", "xxxxx");
+		serialized = renameField(serialized, "limited", "xxxxxxx");
+
+		ElementCriteria deserialized = (ElementCriteria) SerializationUtils
+				.deserialize(serialized);
+		assertEquals(0, deserialized.getSkip());
+		assertEquals(ElementQuery.NO_LIMIT, deserialized.getLimit());
+	}
+
+	private byte[] renameField(byte[] serialized, String name, String newName)
+			throws UnsupportedEncodingException {
+		byte[] fieldName = encodeFieldName(name);
+		byte[] newFieldName = encodeFieldName(newName);
+		for (int i = 0; i <= serialized.length - fieldName.length; i++) {
+			if (Arrays.equals(fieldName,
+					Arrays.copyOfRange(serialized, i, i + fieldName.length))) {
+				System.arraycopy(newFieldName, 0, serialized, i,
+						newFieldName.length);
+				return serialized;
+			}
+		}
+		fail("field " + name + " not found in the serialized form");
+		return serialized;
+	}
+
+	/**
+	 * @return the field name as it is written to the class descriptor, i.e.
+	 *         prefixed by its length.
+	 */
+	private byte[] encodeFieldName(String name)
+			throws UnsupportedEncodingException {
+		byte[] bytes = name.getBytes("UTF-8");
+		byte[] fieldName = new byte[bytes.length + 2];
+		fieldName[1] = (byte) bytes.length;
+		System.arraycopy(bytes, 0, fieldName, 2, bytes.length);
+		return fieldName;
+	}
 }
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.link_intersystems.lang.reflect.AccessType;
+import com.link_intersystems.lang.reflect.ReflectFacade;
+
+public class MemberIndexTest {
+
+	@Test
+	public void membersByName() {
+		MemberIndex memberIndex = MemberIndex.get(ArrayList.class);
+		Member[] addMembers = memberIndex.getMembers("add",
+				MemberIndex.ALL_MEMBER_TYPES);
+		assertTrue(addMembers.length > 1);
+		for (Member member : addMembers) {
+			assertEquals("add", member.getName());
+		}
+
+		Member[] sizeFields = memberIndex.getMembers("size",
+				MemberIndex.FIELD);
+		assertEquals(1, sizeFields.length);
+		assertTrue(sizeFields[0] instanceof Field);
+
+		assertEquals(0,
+				memberIndex.getMembers("notAMember",
+						MemberIndex.ALL_MEMBER_TYPES).length);
+	}
+
+	@Test
+	public void membersByKind() {
+		MemberIndex memberIndex = MemberIndex.get(ArrayList.class);
+		Member[] publicMethods = memberIndex.getMembers(MemberIndex.METHOD,
+				MemberIndex.PUBLIC_ACCESS, 0);
+		assertTrue(publicMethods.length > 0);
+		for (Member member : publicMethods) {
+			assertTrue(member instanceof Method);
+			assertTrue(Modifier.isPublic(member.getModifiers()));
+		}
+		assertSame(publicMethods, memberIndex.getMembers(MemberIndex.METHOD,
+				MemberIndex.PUBLIC_ACCESS, 0));
+
+		Member[] staticFinalFields = memberIndex.getMembers(MemberIndex.FIELD,
+				MemberIndex.PRIVATE_ACCESS | MemberIndex.DEFAULT_ACCESS,
+				Modifier.STATIC | Modifier.FINAL);
+		assertTrue(staticFinalFields.length > 0);
+		for (Member member : staticFinalFields) {
+			assertTrue(member instanceof Field);
+			int modifiers = member.getModifiers();
+			assertTrue(Modifier.isStatic(modifiers));
+			assertTrue(Modifier.isFinal(modifiers));
+			assertTrue(!Modifier.isPublic(modifiers));
+		}
+	}
+
+	@Test
+	public void indexedQueryEqualsScan() {
+		MemberCriteria<Member> memberCriteria = new MemberCriteria<Member>();
+		memberCriteria.membersOfType(Method.class, Field.class);
+		memberCriteria.withAccess(AccessType.PUBLIC, AccessType.PRIVATE);
+		assertQueryResultEqualsScan(memberCriteria);
+
+		memberCriteria.withModifiers(Modifier.STATIC);
+		assertQueryResultEqualsScan(memberCriteria);
+
+		memberCriteria.named("serialVersionUID");
+		assertQueryResultEqualsScan(memberCriteria);
+	}
+
+	private void assertQueryResultEqualsScan(
+			MemberCriteria<Member> memberCriteria) {
+		List<Class<?>> classes = Arrays.<Class<?>> asList(ArrayList.class);
+		List<Member> indexedMembers = new ArrayList<Member>();
+		for (Member member : memberCriteria.getIterable(classes)) {
+			indexedMembers.add(member);
+		}
+
+		/*
+		 * A custom iterate order can not be served by the index.
+		 */
+		final Comparator<Member> memberNameComparator = new Comparator<Member>() {
+
+			public int compare(Member o1, Member o2) {
+				return o1.getName().compareTo(o2.getName());
+			}
+		};
+		memberCriteria.setMemberIterateOrder(memberNameComparator);
+		List<Member> scannedMembers = new ArrayList<Member>();
+		for (Member member : memberCriteria.getIterable(classes)) {
+			scannedMembers.add(member);
+		}
+		memberCriteria.setMemberIterateOrder(ReflectFacade
+				.getMemberNameComparator());
+
+		assertTrue(indexedMembers.size() > 0);
+		assertEquals(scannedMembers, indexedMembers);
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.link_intersystems.lang.reflect.AccessType;
+
+public class MemberMatcherTest {
+
+	@Test
+	public void access() throws Exception {
+		Method publicMethod = ArrayList.class.getDeclaredMethod("size");
+		Method privateMethod = ArrayList.class.getDeclaredMethod("grow",
+				int.class);
+		Field defaultAccessField = ArrayList.class
+				.getDeclaredField("elementData");
+
+		MemberMatcher publicMatcher = new MemberMatcher(
+				Arrays.asList(AccessType.PUBLIC), 0, null, null);
+		assertTrue(publicMatcher.evaluate(publicMethod));
+		assertFalse(publicMatcher.evaluate(privateMethod));
+		assertFalse(publicMatcher.evaluate(defaultAccessField));
+
+		MemberMatcher defaultMatcher = new MemberMatcher(Arrays.asList(
+				AccessType.PRIVATE, AccessType.DEFAULT), 0, null, null);
+		assertFalse(defaultMatcher.evaluate(publicMethod));
+		assertTrue(defaultMatcher.evaluate(privateMethod));
+		assertTrue(defaultMatcher.evaluate(defaultAccessField));
+	}
+
+	@Test
+	public void modifiers() throws Exception {
+		Field staticFinalField = ArrayList.class
+				.getDeclaredField("serialVersionUID");
+		Field staticField = ArrayList.class.getDeclaredField("EMPTY_ELEMENTDATA");
+		Method method = ArrayList.class.getDeclaredMethod("size");
+
+		MemberMatcher memberMatcher = new MemberMatcher(
+				Arrays.asList(AccessType.values()), Modifier.STATIC
+						| Modifier.FINAL, null, null);
+		assertTrue(memberMatcher.evaluate(staticFinalField));
+		assertTrue(memberMatcher.evaluate(staticField));
+		assertFalse(memberMatcher.evaluate(method));
+	}
+
+	@Test
+	public void name() throws Exception {
+		Method size = ArrayList.class.getDeclaredMethod("size");
+		Method isEmpty = ArrayList.class.getDeclaredMethod("isEmpty");
+
+		MemberMatcher memberMatcher = new MemberMatcher(
+				Arrays.asList(AccessType.values()), 0, "size", null);
+		assertTrue(memberMatcher.evaluate(size));
+		assertFalse(memberMatcher.evaluate(isEmpty));
+	}
+
+	@Test
+	public void pattern() throws Exception {
+		Method size = ArrayList.class.getDeclaredMethod("size");
+		Method isEmpty = ArrayList.class.getDeclaredMethod("isEmpty");
+
+		MemberMatcher memberMatcher = new MemberMatcher(
+				Arrays.asList(AccessType.values()), 0, null,
+				Pattern.compile("is.*"));
+		assertFalse(memberMatcher.evaluate(size));
+		assertTrue(memberMatcher.evaluate(isEmpty));
+	}
+
+	@Test
+	public void noAccess() throws Exception {
+		Method size = ArrayList.class.getDeclaredMethod("size");
+		MemberMatcher memberMatcher = new MemberMatcher(
+				Collections.<AccessType> emptyList(), 0, null, null);
+		assertFalse(memberMatcher.evaluate(size));
+	}
+}
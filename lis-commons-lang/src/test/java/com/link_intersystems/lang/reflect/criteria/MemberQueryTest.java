@@ -0,0 +1,266 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.link_intersystems.lang.reflect.ReflectFacade;
+import com.link_intersystems.lang.reflect.criteria.ClassCriteria.ClassType;
+import com.link_intersystems.lang.reflect.criteria.MemberCriteria.IterateStrategy;
+
+public class MemberQueryTest {
+
+	@Test
+	public void sortedMembersSharedByQueries() {
+		MemberQuery<? extends Member> memberQuery1 = new MemberCriteria<Member>()
+				.compile();
+		MemberQuery<? extends Member> memberQuery2 = new MemberCriteria<Member>()
+				.compile();
+
+		List<Member> sortedMembers1 = memberQuery1
+				.getSortedMembers(ArrayList.class);
+		List<Member> sortedMembers2 = memberQuery2
+				.getSortedMembers(ArrayList.class);
+
+		assertEquals(sortedMembers1.size(), sortedMembers2.size());
+		for (int i = 0; i < sortedMembers1.size(); i++) {
+			assertSame(sortedMembers1.get(i), sortedMembers2.get(i));
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void sortedMembersUnmodifiable() {
+		MemberQuery<? extends Member> memberQuery = new MemberCriteria<Member>()
+				.compile();
+		List<Member> sortedMembers = memberQuery
+				.getSortedMembers(ArrayList.class);
+		sortedMembers.clear();
+	}
+
+	@Test
+	public void customMemberIterateOrder() {
+		MemberCriteria<Member> memberCriteria = new MemberCriteria<Member>();
+		memberCriteria.membersOfType(Method.class);
+		List<Member> nameOrder = memberCriteria.compile().getSortedMembers(
+				ArrayList.class);
+
+		final Comparator<Member> memberNameComparator = ReflectFacade
+				.getMemberNameComparator();
+		memberCriteria.setMemberIterateOrder(new Comparator<Member>() {
+
+			public int compare(Member o1, Member o2) {
+				return memberNameComparator.compare(o2, o1);
+			}
+		});
+		List<Member> reverseNameOrder = memberCriteria.compile()
+				.getSortedMembers(ArrayList.class);
+
+		List<String> expectedNames = getNames(nameOrder);
+		Collections.reverse(expectedNames);
+		assertEquals(expectedNames, getNames(reverseNameOrder));
+	}
+
+	private List<String> getNames(List<Member> members) {
+		List<String> names = new ArrayList<String>();
+		for (Member member : members) {
+			names.add(member.getName());
+		}
+		return names;
+	}
+
+	@Test
+	public void streamEqualsIterable() {
+		MemberCriteria<Member> memberCriteria = new MemberCriteria<Member>();
+		memberCriteria.membersOfType(Method.class);
+		MemberQuery<Member> memberQuery = memberCriteria.compile();
+		Iterable<Class<?>> classIterable = new ClassCriteria()
+				.getIterable(ArrayList.class);
+
+		List<Member> expected = new ArrayList<Member>();
+		for (Member member : memberQuery.getIterable(classIterable)) {
+			expected.add(member);
+		}
+
+		List<Member> streamed = memberQuery.stream(classIterable).collect(
+				Collectors.<Member> toList());
+		assertEquals(expected, streamed);
+
+		List<Member> parallelStreamed = memberQuery.stream(classIterable)
+				.parallel().collect(Collectors.<Member> toList());
+		assertEquals(expected, parallelStreamed);
+	}
+
+	@Test
+	public void streamFindFirst() {
+		MemberCriteria<Member> memberCriteria = new MemberCriteria<Member>();
+		memberCriteria.named("size");
+		Iterable<Class<?>> classIterable = new ClassCriteria()
+				.getIterable(ArrayList.class);
+
+		Optional<Member> first = memberCriteria.stream(classIterable)
+				.parallel().findFirst();
+		assertTrue(first.isPresent());
+		assertEquals(ArrayList.class, first.get().getDeclaringClass());
+	}
+
+	@Test
+	public void streamResultLast() {
+		MemberCriteria<Member> memberCriteria = new MemberCriteria<Member>();
+		memberCriteria.named("size");
+		memberCriteria.setResult(Result.LAST);
+		Iterable<Class<?>> classIterable = new ClassCriteria()
+				.getIterable(ArrayList.class);
+
+		List<Member> members = memberCriteria.stream(classIterable).collect(
+				Collectors.<Member> toList());
+		assertEquals(1, members.size());
+		assertEquals(memberCriteria.getIterable(classIterable).iterator()
+				.next(), members.get(0));
+	}
+
+	@Test
+	public void streamIsLazy() {
+		MemberCriteria<Member> memberCriteria = new MemberCriteria<Member>();
+		memberCriteria.named("size");
+		memberCriteria.setResult(Result.LAST);
+		final Iterable<Class<?>> classIterable = new ClassCriteria()
+				.getIterable(ArrayList.class);
+		final int[] iterations = new int[1];
+		Iterable<Class<?>> countingIterable = new Iterable<Class<?>>() {
+
+			public Iterator<Class<?>> iterator() {
+				iterations[0]++;
+				return classIterable.iterator();
+			}
+		};
+
+		Stream<Member> stream = memberCriteria.stream(countingIterable);
+		assertEquals(0, iterations[0]);
+
+		List<Member> members = stream.collect(Collectors.<Member> toList());
+		assertEquals(1, iterations[0]);
+		assertEquals(1, members.size());
+	}
+
+	@Test
+	public void skipAndLimitApplyToAllClasses() {
+		MemberCriteria<Member> memberCriteria = new MemberCriteria<Member>();
+		memberCriteria.membersOfType(Method.class);
+		memberCriteria.named("size");
+		Iterable<Class<?>> classIterable = new ClassCriteria()
+				.getIterable(ArrayList.class);
+		List<Member> sizeMethods = new ArrayList<Member>();
+		for (Member member : memberCriteria.getIterable(classIterable)) {
+			sizeMethods.add(member);
+		}
+		assertTrue(sizeMethods.size() > 2);
+
+		memberCriteria.setSkip(1);
+		memberCriteria.setLimit(1);
+		MemberQuery<Member> memberQuery = memberCriteria.compile();
+		List<Member> selected = new ArrayList<Member>();
+		for (Member member : memberQuery.getIterable(classIterable)) {
+			selected.add(member);
+		}
+		assertEquals(sizeMethods.subList(1, 2), selected);
+		assertEquals(selected, memberQuery.stream(classIterable).collect(
+				Collectors.<Member> toList()));
+	}
+
+	@Test
+	public void annotatedElementsSkipAndLimitApplyPerClass() {
+		MemberCriteria<Member> memberCriteria = new MemberCriteria<Member>();
+		memberCriteria.membersOfType(Method.class);
+		memberCriteria.setSkip(1);
+		memberCriteria.setLimit(2);
+		MemberQuery<Member> memberQuery = memberCriteria.compile();
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setSelection(ClassType.CLASSES);
+		Iterable<Class<?>> classIterable = classCriteria
+				.getIterable(ArrayList.class);
+
+		List<Object> expected = new ArrayList<Object>();
+		for (Class<?> clazz : classIterable) {
+			Iterable<Class<?>> singleClass = Collections
+					.<Class<?>> singletonList(clazz);
+			for (Member member : memberQuery.getIterable(singleClass)) {
+				expected.add(member);
+			}
+		}
+		assertTrue(expected.size() > 2);
+
+		List<Object> annotatedElements = new ArrayList<Object>();
+		for (Object annotatedElement : memberQuery.getAnnotatedElementIterable(
+				classIterable, IterateStrategy.MEMBERS_ONLY)) {
+			annotatedElements.add(annotatedElement);
+		}
+		assertEquals(expected, annotatedElements);
+	}
+
+	@Test
+	public void returnedMembersAreCopies() {
+		MemberCriteria<Field> memberCriteria = new MemberCriteria<Field>();
+		memberCriteria.membersOfType(Field.class);
+		memberCriteria.named("value");
+		MemberQuery<Field> memberQuery = memberCriteria.compile();
+		Iterable<Class<?>> classIterable = Collections
+				.<Class<?>> singletonList(PrivateField.class);
+
+		Field iterated = (Field) memberQuery.getIterable(classIterable)
+				.iterator().next();
+		Field streamed = memberQuery.stream(classIterable).findFirst().get();
+		Field annotatedElement = (Field) memberQuery
+				.getAnnotatedElementIterable(classIterable,
+						IterateStrategy.MEMBERS_ONLY).iterator().next();
+		assertEquals(iterated, streamed);
+		assertEquals(iterated, annotatedElement);
+		assertNotSame(iterated, streamed);
+		assertNotSame(iterated, annotatedElement);
+		assertNotSame(iterated, memberQuery.getSortedMembers(PrivateField.class)
+				.get(0));
+
+		iterated.setAccessible(true);
+		assertFalse(streamed.isAccessible());
+		assertFalse(annotatedElement.isAccessible());
+		Field iteratedAgain = (Field) memberQuery.getIterable(classIterable)
+				.iterator().next();
+		assertFalse(iteratedAgain.isAccessible());
+	}
+
+	private static class PrivateField {
+
+		@SuppressWarnings("unused")
+		private int value;
+	}
+}
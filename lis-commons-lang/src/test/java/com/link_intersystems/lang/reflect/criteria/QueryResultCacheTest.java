@@ -0,0 +1,234 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.lang.reflect.criteria;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.collections4.Predicate;
+import org.junit.Test;
+
+import com.link_intersystems.lang.reflect.AccessType;
+import com.link_intersystems.lang.reflect.ReflectFacade;
+import com.link_intersystems.lang.reflect.criteria.ClassCriteria.ClassType;
+import com.link_intersystems.lang.reflect.criteria.ClassCriteria.TraverseStrategy;
+
+public class QueryResultCacheTest {
+
+	private ClassCriteria createClassCriteria() {
+		ClassCriteria classCriteria = new ClassCriteria();
+		classCriteria.setSelection(ClassType.CLASSES);
+		return classCriteria;
+	}
+
+	private MemberCriteria<Method> createSetterCriteria() {
+		MemberCriteria<Method> memberCriteria = new MemberCriteria<Method>();
+		memberCriteria.membersOfType(Method.class);
+		memberCriteria.withAccess(AccessType.PUBLIC);
+		memberCriteria.named("set");
+		memberCriteria.add(ReflectFacade.getDeclaringClassPredicate(List.class));
+		return memberCriteria;
+	}
+
+	@Test
+	public void classes() {
+		QueryResultCache queryResultCache = new QueryResultCache();
+		ClassQuery classQuery = createClassCriteria().compile();
+
+		List<Class<?>> classes = queryResultCache.getClasses(classQuery,
+				ArrayList.class);
+		List<Class<?>> expected = new ArrayList<Class<?>>();
+		for (Class<?> clazz : classQuery.getIterable(ArrayList.class)) {
+			expected.add(clazz);
+		}
+		assertEquals(expected, classes);
+
+		List<Class<?>> cachedClasses = queryResultCache.getClasses(
+				createClassCriteria().compile(), ArrayList.class);
+		assertEquals(classes, cachedClasses);
+
+		List<Class<?>> stoppedClasses = queryResultCache.getClasses(
+				classQuery, ArrayList.class, AbstractList.class);
+		assertEquals(2, stoppedClasses.size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void resultIsUnmodifiable() {
+		QueryResultCache queryResultCache = new QueryResultCache();
+		List<Class<?>> classes = queryResultCache.getClasses(
+				createClassCriteria().compile(), ArrayList.class);
+		classes.clear();
+	}
+
+	@Test
+	public void members() {
+		QueryResultCache queryResultCache = new QueryResultCache();
+		ClassQuery classQuery = createClassCriteria().compile();
+		MemberCriteria<Method> memberCriteria = new MemberCriteria<Method>();
+		memberCriteria.membersOfType(Method.class);
+		memberCriteria.withAccess(AccessType.PUBLIC);
+		memberCriteria.named("size");
+
+		List<Method> sizeMethods = queryResultCache.getMembers(
+				memberCriteria.compile(), classQuery, ArrayList.class);
+		assertFalse(sizeMethods.isEmpty());
+		for (Member member : sizeMethods) {
+			assertEquals("size", member.getName());
+		}
+
+		List<Method> cachedSizeMethods = queryResultCache.getMembers(
+				memberCriteria.compile(), classQuery, ArrayList.class);
+		assertEquals(sizeMethods, cachedSizeMethods);
+
+		queryResultCache.clear();
+		List<Method> clearedSizeMethods = queryResultCache.getMembers(
+				memberCriteria.compile(), classQuery, ArrayList.class);
+		assertEquals(sizeMethods, clearedSizeMethods);
+	}
+
+	@Test
+	public void cachedMembersAreCopied() {
+		QueryResultCache queryResultCache = new QueryResultCache();
+		ClassQuery classQuery = createClassCriteria().compile();
+		MemberCriteria<Method> memberCriteria = new MemberCriteria<Method>();
+		memberCriteria.membersOfType(Method.class);
+		memberCriteria.named("size");
+		MemberQuery<Method> memberQuery = memberCriteria.compile();
+
+		List<Method> sizeMethods = queryResultCache.getMembers(memberQuery,
+				classQuery, ArrayList.class);
+		List<Method> cachedSizeMethods = queryResultCache.getMembers(
+				memberQuery, classQuery, ArrayList.class);
+		assertEquals(sizeMethods, cachedSizeMethods);
+		assertFalse(sizeMethods.isEmpty());
+		for (int i = 0; i < sizeMethods.size(); i++) {
+			assertNotSame(sizeMethods.get(i), cachedSizeMethods.get(i));
+		}
+	}
+
+	@Test
+	public void cacheDoesNotReferenceQueries() throws InterruptedException {
+		QueryResultCache queryResultCache = new QueryResultCache();
+		WeakReference<Predicate<Method>> predicateReference = cacheSizeMethods(
+				queryResultCache, AbstractList.class);
+
+		for (int i = 0; i < 50 && predicateReference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(predicateReference.get());
+	}
+
+	private WeakReference<Predicate<Method>> cacheSizeMethods(
+			QueryResultCache queryResultCache, Class<?> stopAt) {
+		Predicate<Method> predicate = new SizeMethodPredicate();
+		MemberCriteria<Method> memberCriteria = new MemberCriteria<Method>();
+		memberCriteria.membersOfType(Method.class);
+		memberCriteria.add(predicate);
+		List<Method> sizeMethods = queryResultCache.getMembers(
+				memberCriteria.compile(), createClassCriteria().compile(),
+				ArrayList.class, stopAt);
+		assertFalse(sizeMethods.isEmpty());
+		return new WeakReference<Predicate<Method>>(predicate);
+	}
+
+	private static class SizeMethodPredicate implements Predicate<Method>,
+			Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		public boolean evaluate(Method method) {
+			return "size".equals(method.getName());
+		}
+	}
+
+	@Test
+	public void equalQueriesHitAfterGarbageCollection()
+			throws InterruptedException {
+		QueryResultCache queryResultCache = new QueryResultCache();
+		ClassCriteria classCriteria = createClassCriteria();
+		classCriteria.add(new CountingClassPredicate());
+		CountingClassPredicate.EVALUATIONS.set(0);
+
+		List<Class<?>> classes = queryResultCache.getClasses(
+				classCriteria.compile(), ArrayList.class);
+		int evaluations = CountingClassPredicate.EVALUATIONS.get();
+		assertTrue(evaluations > 0);
+
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		List<Class<?>> cachedClasses = queryResultCache.getClasses(
+				classCriteria.compile(), ArrayList.class);
+		assertEquals(classes, cachedClasses);
+		assertEquals(evaluations, CountingClassPredicate.EVALUATIONS.get());
+	}
+
+	private static class CountingClassPredicate implements Predicate<Class<?>>,
+			Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		static final AtomicInteger EVALUATIONS = new AtomicInteger();
+
+		public boolean evaluate(Class<?> clazz) {
+			EVALUATIONS.incrementAndGet();
+			return true;
+		}
+	}
+
+	@Test
+	public void fingerprint() {
+		MemberQuery<Method> memberQuery1 = createSetterCriteria().compile();
+		MemberQuery<Method> memberQuery2 = createSetterCriteria().compile();
+		assertNotSame(memberQuery1, memberQuery2);
+		assertEquals(memberQuery1.getFingerprint(),
+				memberQuery2.getFingerprint());
+		assertSame(memberQuery1.getFingerprint(),
+				memberQuery1.getFingerprint());
+		assertEquals(memberQuery1.getFingerprint().getValue(), memberQuery2
+				.getFingerprint().getValue());
+
+		MemberCriteria<Method> otherCriteria = createSetterCriteria();
+		otherCriteria.setLimit(1);
+		assertFalse(memberQuery1.getFingerprint().equals(
+				otherCriteria.compile().getFingerprint()));
+		assertFalse(memberQuery1.getFingerprint().getValue().equals(
+				otherCriteria.compile().getFingerprint().getValue()));
+
+		ClassCriteria classCriteria = createClassCriteria();
+		classCriteria.setTraverseStrategy(TraverseStrategy.BREADTH_FIRST);
+		assertFalse(createClassCriteria().compile().getFingerprint()
+				.equals(classCriteria.compile().getFingerprint()));
+		assertTrue(createClassCriteria().compile().getFingerprint()
+				.equals(createClassCriteria().compile().getFingerprint()));
+	}
+}
@@ -20,6 +20,7 @@ import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -65,6 +66,9 @@ public abstract class AbstractNodeIteratorTest {
 
 	protected abstract Iterator<Node> createIterator(Node start);
 
+	protected abstract Iterator<Node> createIterator(Node start,
+			boolean visitNodesOnce);
+
 	protected abstract TraverseAssertion getTraverseAssertion(Node start);
 
 	@Test(expected = NoSuchElementException.class)
@@ -92,6 +96,49 @@ public abstract class AbstractNodeIteratorTest {
 		traverseAssertion.assertAllUserObjectsTraversed();
 	}
 
+	/**
+	 * Adds cycles and a second path to E to the test graph.
+	 *
+	 * <pre>
+	 *   +-> B
+	 *   |
+	 *   |     +-> E -> C
+	 *   |     |
+	 * A +-> C +-> F
+	 *   |
+	 *   +-> D -> A
+	 *       |
+	 *       +--> E
+	 * </pre>
+	 */
+	protected void makeCyclic() {
+		eRef.addReference(cRef);
+		dRef.addReference(start);
+		dRef.addReference(eRef);
+	}
+
+	@Test
+	public void visitNodesOnceOnLongPath() {
+		Node first = new NodeImpl(0);
+		Node last = first;
+		for (int i = 1; i < 100000; i++) {
+			Node node = new NodeImpl(i);
+			last.addReference(node);
+			last.addReference(first);
+			last = node;
+		}
+		Iterator<Node> iterator = createIterator(first, true);
+		assertEquals(100000, getUserObjects(iterator).size());
+	}
+
+	protected List<Object> getUserObjects(Iterator<Node> nodeIterator) {
+		List<Object> userObjects = new ArrayList<Object>();
+		while (nodeIterator.hasNext()) {
+			userObjects.add(nodeIterator.next().getUserObject());
+		}
+		return userObjects;
+	}
+
 	protected static class TraverseAssertion implements Closure {
 
 		private final Iterator<String> userObjects;
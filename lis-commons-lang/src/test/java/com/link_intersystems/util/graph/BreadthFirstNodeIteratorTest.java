@@ -15,6 +15,8 @@
  */
 package com.link_intersystems.util.graph;
 
+import static junit.framework.Assert.assertEquals;
+
 import java.util.Arrays;
 import java.util.Iterator;
 
@@ -27,6 +29,12 @@ public class BreadthFirstNodeIteratorTest extends AbstractNodeIteratorTest {
 		return new BreadthFirstNodeIterator(start);
 	}
 
+	@Override
+	protected Iterator<Node> createIterator(Node start,
+			boolean visitNodesOnce) {
+		return new BreadthFirstNodeIterator(start, visitNodesOnce);
+	}
+
 	@Override
 	protected TraverseAssertion getTraverseAssertion(Node start) {
 		TraverseAssertion traverseAssertion = new TraverseAssertion(
@@ -38,4 +46,12 @@ public class BreadthFirstNodeIteratorTest extends AbstractNodeIteratorTest {
 	public void nullArgumentConstructor() {
 		new BreadthFirstNodeIterator(null);
 	}
+
+	@Test
+	public void visitNodesOnceOnCyclicGraph() {
+		makeCyclic();
+		Iterator<Node> iterator = createIterator(start, true);
+		assertEquals(Arrays.<Object> asList("A", "B", "C", "D", "E", "F"),
+				getUserObjects(iterator));
+	}
 }
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactGraphTest {
+
+	private Node start;
+
+	@Before
+	public void before() {
+		/**
+		 * <pre>
+		 *   +-> B
+		 *   |
+		 *   |     +-> E -> C
+		 *   |     |
+		 * A +-> C +-> F
+		 *   |
+		 *   +-> D -> A
+		 * </pre>
+		 */
+		start = new NodeImpl("A");
+		start.addReference(new NodeImpl("B"));
+		Node c = new NodeImpl("C");
+		start.addReference(c);
+		Node d = new NodeImpl("D");
+		start.addReference(d);
+		Node e = new NodeImpl("E");
+		c.addReference(e);
+		c.addReference(new NodeImpl("F"));
+		e.addReference(c);
+		d.addReference(start);
+	}
+
+	@Test
+	public void structure() {
+		CompactGraph compactGraph = CompactGraph.of(start);
+		assertEquals(6, compactGraph.getNodeCount());
+		assertEquals(7, compactGraph.getEdgeCount());
+
+		assertEquals("A", compactGraph.getUserObject(0));
+		assertEquals(3, compactGraph.getReferenceCount(0));
+		int c = compactGraph.getReference(0, 1);
+		assertEquals("C", compactGraph.getUserObject(c));
+		int e = compactGraph.getReference(c, 0);
+		assertEquals("E", compactGraph.getUserObject(e));
+		assertEquals(c, compactGraph.getReferences(e)[0]);
+	}
+
+	@Test
+	public void nodeViewsAreCanonical() {
+		CompactGraph compactGraph = CompactGraph.of(start);
+		Node node = compactGraph.getNode(0);
+		assertSame(node, compactGraph.getNode(0));
+		Node b = node.getReferences().iterator().next();
+		assertSame(compactGraph.getNode(compactGraph.getReference(0, 0)), b);
+	}
+
+	@Test
+	public void traversalEqualsOriginalGraph() {
+		CompactGraph compactGraph = CompactGraph.of(start);
+		Node compactStart = compactGraph.getNode(0);
+
+		assertEquals(getUserObjects(new DepthFirstNodeIterator(start, true)),
+				getUserObjects(new DepthFirstNodeIterator(compactStart, true)));
+		assertEquals(
+				getUserObjects(new BreadthFirstNodeIterator(start, true)),
+				getUserObjects(new BreadthFirstNodeIterator(compactStart, true)));
+		assertEquals(Arrays.<Object> asList("A", "B", "C", "E", "F", "D"),
+				getUserObjects(new DepthFirstNodeIterator(compactStart, true)));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void immutable() {
+		CompactGraph compactGraph = CompactGraph.of(start);
+		compactGraph.getNode(0).addReference(new NodeImpl("X"));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void unknownNode() {
+		CompactGraph.of(start).getReferenceCount(6);
+	}
+
+	private List<Object> getUserObjects(Iterator<Node> nodeIterator) {
+		List<Object> userObjects = new ArrayList<Object>();
+		while (nodeIterator.hasNext()) {
+			userObjects.add(nodeIterator.next().getUserObject());
+		}
+		return userObjects;
+	}
+}
@@ -15,6 +15,8 @@
  */
 package com.link_intersystems.util.graph;
 
+import static junit.framework.Assert.assertEquals;
+
 import java.util.Arrays;
 import java.util.Iterator;
 
@@ -27,6 +29,12 @@ public class DepthFirstNodeIteratorTest extends AbstractNodeIteratorTest {
 		return new DepthFirstNodeIterator(start);
 	}
 
+	@Override
+	protected Iterator<Node> createIterator(Node start,
+			boolean visitNodesOnce) {
+		return new DepthFirstNodeIterator(start, visitNodesOnce);
+	}
+
 	@Override
 	protected TraverseAssertion getTraverseAssertion(Node start) {
 		TraverseAssertion traverseAssertion = new TraverseAssertion(
@@ -39,4 +47,11 @@ public class DepthFirstNodeIteratorTest extends AbstractNodeIteratorTest {
 		new DepthFirstNodeIterator(null);
 	}
 
+	@Test
+	public void visitNodesOnceOnCyclicGraph() {
+		makeCyclic();
+		Iterator<Node> iterator = createIterator(start, true);
+		assertEquals(Arrays.<Object> asList("A", "B", "C", "E", "F", "D"),
+				getUserObjects(iterator));
+	}
 }
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GraphFacadeAlgorithmsTest {
+
+	private Node a;
+	private Node b;
+	private Node c;
+	private Node d;
+	private Node e;
+
+	@Before
+	public void createDiamond() {
+		/**
+		 * <pre>
+		 *     +-> B --+
+		 *     |       |
+		 * A --+       +-> D -> E
+		 *     |       |
+		 *     +-> C --+
+		 * </pre>
+		 */
+		a = new NodeImpl("A");
+		b = new NodeImpl("B");
+		c = new NodeImpl("C");
+		d = new NodeImpl("D");
+		e = new NodeImpl("E");
+		a.addReference(b);
+		a.addReference(c);
+		b.addReference(d);
+		c.addReference(d);
+		d.addReference(e);
+	}
+
+	@Test
+	public void diamondIsNoCycle() {
+		assertTrue(GraphFacade.findCycle(a).isEmpty());
+	}
+
+	@Test
+	public void findCycle() {
+		e.addReference(b);
+		assertEquals(Arrays.asList(b, d, e), GraphFacade.findCycle(a));
+	}
+
+	@Test
+	public void selfReference() {
+		d.addReference(d);
+		assertEquals(Arrays.asList(d), GraphFacade.findCycle(a));
+	}
+
+	@Test
+	public void topologicalSort() {
+		assertEquals(Arrays.asList(a, b, c, d, e),
+				GraphFacade.topologicalSort(a));
+	}
+
+	@Test
+	public void topologicalSortOfCyclicGraph() {
+		e.addReference(d);
+		try {
+			GraphFacade.topologicalSort(a);
+			fail("CyclicGraphException expected");
+		} catch (CyclicGraphException cyclicGraphException) {
+			assertEquals(Arrays.asList(d, e), cyclicGraphException.getCycle());
+			assertEquals(d, cyclicGraphException.getCycleCause());
+		}
+	}
+
+	@Test
+	public void cycleMessageContainsFirstNodesOnly() {
+		final int[] toStringInvocations = new int[1];
+		List<Node> cycle = new ArrayList<Node>();
+		for (int i = 0; i < 1000; i++) {
+			final int index = i;
+			cycle.add(new NodeImpl(index) {
+
+				@Override
+				public String toString() {
+					toStringInvocations[0]++;
+					return "node" + index;
+				}
+			});
+		}
+		String message = new CyclicGraphException(cycle).getMessage();
+		assertEquals("cycle of 1000 nodes detected: "
+				+ "[node0, node1, node2, node3, node4, ...]", message);
+		assertEquals(5, toStringInvocations[0]);
+	}
+
+	@Test
+	public void stronglyConnectedComponents() {
+		e.addReference(b);
+		List<List<Node>> components = GraphFacade.stronglyConnectedComponents(a);
+		assertEquals(3, components.size());
+		assertEquals(new HashSet<Node>(Arrays.asList(b, d, e)),
+				new HashSet<Node>(components.get(0)));
+		assertEquals(Arrays.asList(c), components.get(1));
+		assertEquals(Arrays.asList(a), components.get(2));
+	}
+
+	@Test
+	public void longPathDoesNotOverflowStack() {
+		Node first = new NodeImpl(0);
+		Node last = first;
+		List<Node> path = new ArrayList<Node>();
+		path.add(first);
+		for (int i = 1; i < 200000; i++) {
+			Node node = new NodeImpl(i);
+			last.addReference(node);
+			path.add(node);
+			last = node;
+		}
+		assertEquals(path, GraphFacade.topologicalSort(first));
+		assertEquals(200000, GraphFacade.stronglyConnectedComponents(first)
+				.size());
+
+		last.addReference(first);
+		assertEquals(path, GraphFacade.findCycle(first));
+		assertEquals(1, GraphFacade.stronglyConnectedComponents(first).size());
+	}
+}
@@ -16,7 +16,11 @@
 package com.link_intersystems.util.graph;
 
 import static java.util.Arrays.asList;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -135,4 +139,51 @@ public class GraphFacadeImpl_perPredicateNodeIteratorTest {
 		traverseAssertion.assertAllUserObjectsTraversed();
 	}
 
+	@Test
+	public void noPredicates() {
+		Iterator<Node> iterator = GraphFacade.perPredicateNodeIterator(
+				NodeIterateStrategy.DEPTH_FIRST, A);
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void traversedOnlyOnce() {
+		ExpansionCountingNode root = new ExpansionCountingNode("root");
+		ExpansionCountingNode child1 = new ExpansionCountingNode("child1");
+		ExpansionCountingNode child2 = new ExpansionCountingNode("child2");
+		root.addReference(child1);
+		root.addReference(child2);
+
+		Iterator<Node> iterator = GraphFacade.perPredicateNodeIterator(
+				NodeIterateStrategy.BREADTH_FIRST, root, pred1, pred2, pred3);
+		List<Node> nodes = new ArrayList<Node>();
+		while (iterator.hasNext()) {
+			nodes.add(iterator.next());
+		}
+
+		assertEquals(0, nodes.size());
+		assertEquals(1, root.getExpansions());
+		assertEquals(1, child1.getExpansions());
+		assertEquals(1, child2.getExpansions());
+	}
+
+	private static class ExpansionCountingNode extends NodeImpl {
+
+		private int expansions;
+
+		public ExpansionCountingNode(Object userObject) {
+			super(userObject);
+		}
+
+		@Override
+		public Collection<Node> getReferences() {
+			expansions++;
+			return super.getReferences();
+		}
+
+		public int getExpansions() {
+			return expansions;
+		}
+	}
+
 }
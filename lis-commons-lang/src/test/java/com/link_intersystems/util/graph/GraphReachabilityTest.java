@@ -0,0 +1,163 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GraphReachabilityTest {
+
+	private Node a;
+	private Node b;
+	private Node c;
+	private Node d;
+	private Node e;
+	private Node f;
+
+	@Before
+	public void createGraph() {
+		/**
+		 * <pre>
+		 *     +-> B --+
+		 *     |       |
+		 * A --+       +-> D -> E
+		 *     |       |    ^   |
+		 *     +-> C --+    +---+
+		 *
+		 * F -> C
+		 * </pre>
+		 */
+		a = new NodeImpl("A");
+		b = new NodeImpl("B");
+		c = new NodeImpl("C");
+		d = new NodeImpl("D");
+		e = new NodeImpl("E");
+		f = new NodeImpl("F");
+		a.addReference(b);
+		a.addReference(c);
+		b.addReference(d);
+		c.addReference(d);
+		d.addReference(e);
+		e.addReference(d);
+		f.addReference(c);
+	}
+
+	@Test
+	public void isReachable() {
+		GraphReachability reachability = new GraphReachability(a, f);
+		assertTrue(reachability.isReachable(a, e));
+		assertTrue(reachability.isReachable(e, d));
+		assertTrue(reachability.isReachable(d, e));
+		assertTrue(reachability.isReachable(b, b));
+		assertFalse(reachability.isReachable(b, c));
+		assertFalse(reachability.isReachable(e, a));
+		assertFalse(reachability.isReachable(a, f));
+		assertTrue(reachability.isReachable(f, e));
+	}
+
+	@Test
+	public void unknownTarget() {
+		GraphReachability reachability = new GraphReachability(b);
+		assertFalse(reachability.isReachable(b, a));
+		assertTrue(reachability.getShortestPath(b, a).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownSource() {
+		GraphReachability reachability = new GraphReachability(b);
+		reachability.isReachable(a, b);
+	}
+
+	@Test
+	public void reachableNodes() {
+		GraphReachability reachability = new GraphReachability(a, f);
+		assertEquals(Arrays.asList(c, d, e),
+				reachability.getReachableNodes(c));
+		assertEquals(Arrays.asList(b, c, d, e),
+				reachability.getReachableNodes(b, c));
+		assertEquals(Arrays.asList(a, f, b, c, d, e),
+				GraphFacade.reachableNodes(Arrays.asList(a, f)));
+	}
+
+	@Test
+	public void shortestPath() {
+		GraphReachability reachability = new GraphReachability(a);
+		assertEquals(Arrays.asList(a, b, d, e),
+				reachability.getShortestPath(a, e));
+		assertEquals(Arrays.asList(e, d), reachability.getShortestPath(e, d));
+		assertEquals(Collections.singletonList(a),
+				reachability.getShortestPath(a, a));
+		assertTrue(reachability.getShortestPath(e, a).isEmpty());
+		assertEquals(Arrays.asList(a, b, d), GraphFacade.shortestPath(a, d));
+		assertTrue(GraphFacade.isReachable(a, e));
+		assertFalse(GraphFacade.isReachable(c, a));
+	}
+
+	@Test
+	public void cachedClosuresAreConsistent() {
+		Random random = new Random(4711);
+		List<Node> randomNodes = new ArrayList<Node>();
+		for (int i = 0; i < 200; i++) {
+			randomNodes.add(new NodeImpl(i));
+		}
+		for (Node node : randomNodes) {
+			for (int i = 0; i < 2; i++) {
+				node.addReference(randomNodes.get(random.nextInt(200)));
+			}
+		}
+		GraphReachability reachability = new GraphReachability(randomNodes);
+		for (int i = 0; i < 1000; i++) {
+			Node source = randomNodes.get(random.nextInt(200));
+			Node target = randomNodes.get(random.nextInt(200));
+			boolean expected = !new GraphReachability(source)
+					.getShortestPath(source, target).isEmpty();
+			assertEquals(expected, reachability.isReachable(source, target));
+			assertEquals(expected, GraphFacade.isReachable(source, target));
+			assertEquals(reachability.getShortestPath(source, target).size(),
+					GraphFacade.shortestPath(source, target).size());
+		}
+	}
+
+	@Test
+	public void facadeSearchStopsAtTarget() {
+		Node start = new NodeImpl("start");
+		Node target = new NodeImpl("target");
+		Node unexpanded = new NodeImpl("unexpanded") {
+
+			@Override
+			public Collection<Node> getReferences() {
+				throw new AssertionError("search did not stop at the target");
+			}
+		};
+		start.addReference(target);
+		start.addReference(unexpanded);
+
+		assertTrue(GraphFacade.isReachable(start, target));
+		assertEquals(Arrays.asList(start, target),
+				GraphFacade.shortestPath(start, target));
+	}
+}
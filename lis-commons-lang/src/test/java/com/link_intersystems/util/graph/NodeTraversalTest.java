@@ -0,0 +1,220 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.collections4.Predicate;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.link_intersystems.util.graph.GraphFacade.NodeIterateStrategy;
+import com.link_intersystems.util.graph.NodeVisitor.VisitResult;
+
+public class NodeTraversalTest {
+
+	private Node start;
+
+	private List<Object> expandedNodes;
+
+	@Before
+	public void before() {
+		/**
+		 * <pre>
+		 *   +-> B
+		 *   |
+		 *   |     +-> E -> G
+		 *   |     |
+		 * A +-> C +-> F
+		 *   |
+		 *   +-> D
+		 * </pre>
+		 */
+		expandedNodes = new ArrayList<Object>();
+		start = new ExpansionRecordingNode("A");
+		start.addReference(new ExpansionRecordingNode("B"));
+		Node c = new ExpansionRecordingNode("C");
+		start.addReference(c);
+		start.addReference(new ExpansionRecordingNode("D"));
+		Node e = new ExpansionRecordingNode("E");
+		c.addReference(e);
+		c.addReference(new ExpansionRecordingNode("F"));
+		e.addReference(new ExpansionRecordingNode("G"));
+	}
+
+	@Test
+	public void depthFirst() {
+		NodeTraversal nodeTraversal = new NodeTraversal(start);
+		RecordingVisitor visitor = new RecordingVisitor(null, null);
+		assertEquals(VisitResult.CONTINUE, nodeTraversal.traverse(visitor));
+		assertEquals(Arrays.<Object> asList("A0", "B1", "C1", "E2", "G3",
+				"F2", "D1"), visitor.visited);
+	}
+
+	@Test
+	public void breadthFirst() {
+		NodeTraversal nodeTraversal = new NodeTraversal(start);
+		nodeTraversal.setNodeIterateStrategy(NodeIterateStrategy.BREADTH_FIRST);
+		RecordingVisitor visitor = new RecordingVisitor(null, null);
+		nodeTraversal.traverse(visitor);
+		assertEquals(Arrays.<Object> asList("A0", "B1", "C1", "D1", "E2",
+				"F2", "G3"), visitor.visited);
+	}
+
+	@Test
+	public void skipSubtree() {
+		for (NodeIterateStrategy strategy : NodeIterateStrategy.values()) {
+			expandedNodes.clear();
+			NodeTraversal nodeTraversal = new NodeTraversal(start);
+			nodeTraversal.setNodeIterateStrategy(strategy);
+			RecordingVisitor visitor = new RecordingVisitor("C", null);
+			nodeTraversal.traverse(visitor);
+			assertEquals(Arrays.<Object> asList("A0", "B1", "C1", "D1"),
+					visitor.visited);
+			assertEquals(Arrays.<Object> asList("A", "B", "D"), expandedNodes);
+		}
+	}
+
+	@Test
+	public void terminate() {
+		NodeTraversal nodeTraversal = new NodeTraversal(start);
+		RecordingVisitor visitor = new RecordingVisitor(null, "E");
+		assertEquals(VisitResult.TERMINATE, nodeTraversal.traverse(visitor));
+		assertEquals(Arrays.<Object> asList("A0", "B1", "C1", "E2"),
+				visitor.visited);
+	}
+
+	@Test
+	public void maxDepth() {
+		NodeTraversal nodeTraversal = new NodeTraversal(start);
+		nodeTraversal.setMaxDepth(1);
+		RecordingVisitor visitor = new RecordingVisitor(null, null);
+		nodeTraversal.traverse(visitor);
+		assertEquals(Arrays.<Object> asList("A0", "B1", "C1", "D1"),
+				visitor.visited);
+		assertEquals(Arrays.<Object> asList("A"), expandedNodes);
+	}
+
+	@Test
+	public void predicates() {
+		NodeTraversal nodeTraversal = new NodeTraversal(start);
+		nodeTraversal.setVisitPredicate(new Predicate<Node>() {
+
+			public boolean evaluate(Node node) {
+				return !"C".equals(node.getUserObject());
+			}
+		});
+		nodeTraversal.setDescendPredicate(new Predicate<Node>() {
+
+			public boolean evaluate(Node node) {
+				return !"E".equals(node.getUserObject());
+			}
+		});
+		RecordingVisitor visitor = new RecordingVisitor(null, null);
+		nodeTraversal.traverse(visitor);
+		assertEquals(Arrays.<Object> asList("A0", "B1", "E2", "F2", "D1"),
+				visitor.visited);
+	}
+
+	@Test
+	public void visitNodesOnceOnCyclicGraph() {
+		start.addReference(start);
+		NodeTraversal nodeTraversal = new NodeTraversal(start);
+		nodeTraversal.setVisitNodesOnce(true);
+		RecordingVisitor visitor = new RecordingVisitor(null, null);
+		nodeTraversal.traverse(visitor);
+		assertEquals(7, visitor.visited.size());
+	}
+
+	@Test
+	public void visitNodesOnceWithinMaxDepth() {
+		/**
+		 * <pre>
+		 * A -> B -> C -> D
+		 * |         ^
+		 * +---------+
+		 * </pre>
+		 */
+		Node a = new NodeImpl("A");
+		Node b = new NodeImpl("B");
+		Node c = new NodeImpl("C");
+		a.addReference(b);
+		a.addReference(c);
+		b.addReference(c);
+		c.addReference(new NodeImpl("D"));
+
+		for (NodeIterateStrategy strategy : NodeIterateStrategy.values()) {
+			NodeTraversal nodeTraversal = new NodeTraversal(a);
+			nodeTraversal.setNodeIterateStrategy(strategy);
+			nodeTraversal.setVisitNodesOnce(true);
+			nodeTraversal.setMaxDepth(2);
+			RecordingVisitor visitor = new RecordingVisitor(null, null);
+			nodeTraversal.traverse(visitor);
+			assertEquals(4, visitor.visited.size());
+			assertTrue(visitor.visited.contains("D2"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeMaxDepth() {
+		new NodeTraversal(start).setMaxDepth(-2);
+	}
+
+	private class ExpansionRecordingNode extends NodeImpl {
+
+		public ExpansionRecordingNode(Object userObject) {
+			super(userObject);
+		}
+
+		@Override
+		public Collection<Node> getReferences() {
+			expandedNodes.add(getUserObject());
+			return super.getReferences();
+		}
+	}
+
+	private static class RecordingVisitor implements NodeVisitor {
+
+		private final List<Object> visited = new ArrayList<Object>();
+
+		private final Object skip;
+
+		private final Object terminate;
+
+		public RecordingVisitor(Object skip, Object terminate) {
+			this.skip = skip;
+			this.terminate = terminate;
+		}
+
+		public VisitResult visit(Node node, int depth) {
+			Object userObject = node.getUserObject();
+			visited.add(userObject.toString() + depth);
+			if (userObject.equals(terminate)) {
+				return VisitResult.TERMINATE;
+			}
+			if (userObject.equals(skip)) {
+				return VisitResult.SKIP_SUBTREE;
+			}
+			return VisitResult.CONTINUE;
+		}
+	}
+}
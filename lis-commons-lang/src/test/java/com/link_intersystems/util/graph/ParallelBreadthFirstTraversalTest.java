@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011 Link Intersystems GmbH <rene.link@link-intersystems.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.link_intersystems.util.graph;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.collections4.Closure;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelBreadthFirstTraversalTest {
+
+	private Node start;
+
+	@Before
+	public void before() {
+		Random random = new Random(42);
+		List<Node> nodes = new ArrayList<Node>();
+		for (int i = 0; i < 5000; i++) {
+			nodes.add(new NodeImpl(i));
+		}
+		for (Node node : nodes) {
+			int referenceCount = random.nextInt(4);
+			for (int i = 0; i < referenceCount; i++) {
+				node.addReference(nodes.get(random.nextInt(nodes.size())));
+			}
+		}
+		start = new NodeImpl("start");
+		for (int i = 0; i < 49; i++) {
+			start.addReference(nodes.get(i));
+		}
+	}
+
+	@Test
+	public void orderedEqualsBreadthFirstIterator() {
+		ParallelBreadthFirstTraversal traversal = new ParallelBreadthFirstTraversal(
+				start);
+		ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		try {
+			traversal.setForkJoinPool(forkJoinPool);
+			List<Node> nodes = traversal.traverse();
+			assertEquals(toList(new BreadthFirstNodeIterator(start, true)),
+					nodes);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	@Test
+	public void unorderedVisitsSameNodesLevelByLevel() {
+		ParallelBreadthFirstTraversal traversal = new ParallelBreadthFirstTraversal(
+				start);
+		traversal.setOrdered(false);
+		List<Node> nodes = traversal.traverse();
+		List<Node> expected = toList(new BreadthFirstNodeIterator(start, true));
+		assertEquals(expected.size(), nodes.size());
+		assertEquals(new HashSet<Node>(expected), new HashSet<Node>(nodes));
+		assertEquals(start, nodes.get(0));
+		assertEquals(new HashSet<Node>(expected.subList(1, 50)),
+				new HashSet<Node>(nodes.subList(1, 50)));
+	}
+
+	@Test
+	public void graphFacade() {
+		Node a = new NodeImpl("A");
+		Node b = new NodeImpl("B");
+		a.addReference(b);
+		b.addReference(a);
+		final List<Object> userObjects = new ArrayList<Object>();
+		GraphFacade.traverseBreadthFirstParallel(a, new Closure<Node>() {
+
+			public void execute(Node node) {
+				userObjects.add(node.getUserObject());
+			}
+		});
+		assertEquals(2, userObjects.size());
+		assertEquals("A", userObjects.get(0));
+	}
+
+	private List<Node> toList(Iterator<Node> iterator) {
+		List<Node> nodes = new ArrayList<Node>();
+		while (iterator.hasNext()) {
+			nodes.add(iterator.next());
+		}
+		return nodes;
+	}
+}